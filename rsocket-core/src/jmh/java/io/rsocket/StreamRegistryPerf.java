@@ -0,0 +1,170 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket;
+
+import io.netty.util.collection.IntObjectHashMap;
+import io.rsocket.internal.SynchronizedIntObjectHashMap;
+import io.rsocket.util.PayloadImpl;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxProcessor;
+import reactor.core.publisher.Mono;
+
+/**
+ * Measures the cost of the stream registry of {@link RSocketClient} when many threads issue
+ * requests on the same connection. {@code registry} measures {@link SynchronizedIntObjectHashMap}
+ * against {@code synchronizedRegistry}, the same Netty map locked at each call site as the client
+ * used to do; contention only shows with as many cores as threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@Threads(4)
+public class StreamRegistryPerf {
+
+  @Benchmark
+  public Payload requestResponse(Client client) {
+    return client.client.requestResponse(Client.HELLO_PAYLOAD).block();
+  }
+
+  @Benchmark
+  public Object synchronizedRegistry(Registries registries, Keys keys) {
+    int key = keys.next();
+    IntObjectHashMap<Object> map = registries.synchronizedMap;
+    synchronized (map) {
+      map.put(key, registries.value);
+    }
+    Object value;
+    synchronized (map) {
+      value = map.get(key);
+    }
+    synchronized (map) {
+      map.remove(key);
+    }
+    return value;
+  }
+
+  @Benchmark
+  public Object registry(Registries registries, Keys keys) {
+    int key = keys.next();
+    SynchronizedIntObjectHashMap<Object> map = registries.map;
+    map.put(key, registries.value);
+    Object value = map.get(key);
+    map.remove(key);
+    return value;
+  }
+
+  @State(Scope.Benchmark)
+  public static class Client {
+    static final ByteBuffer HELLO = ByteBuffer.wrap("HELLO".getBytes(StandardCharsets.UTF_8));
+
+    static final Payload HELLO_PAYLOAD = new PayloadImpl(HELLO);
+
+    RSocketClient client;
+
+    @Setup
+    public void setup() {
+      client =
+          new RSocketClient(
+              new EchoConnection(), Throwable::printStackTrace, StreamIdSupplier.clientSupplier());
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Registries {
+    final Object value = new Object();
+    final IntObjectHashMap<Object> synchronizedMap = new IntObjectHashMap<>(256, 0.9f);
+    final SynchronizedIntObjectHashMap<Object> map = new SynchronizedIntObjectHashMap<>(256, 0.9f);
+  }
+
+  @State(Scope.Thread)
+  public static class Keys {
+    private static final AtomicInteger THREADS = new AtomicInteger();
+
+    // every thread walks its own window of stream ids, like requests on a shared connection
+    final int base = THREADS.getAndIncrement() << 20;
+    int next;
+
+    int next() {
+      next = (next + 2) & 0xFFFFF;
+      return base + next + 1;
+    }
+  }
+
+  /** Answers every request-response with a payload on the same stream, synchronously. */
+  private static class EchoConnection implements DuplexConnection {
+    private final FluxProcessor<Frame, Frame> receive = DirectProcessor.<Frame>create().serialize();
+
+    @Override
+    public Mono<Void> send(Publisher<Frame> frames) {
+      return Flux.from(frames).doOnNext(this::respond).then();
+    }
+
+    @Override
+    public Mono<Void> sendOne(Frame frame) {
+      respond(frame);
+      return Mono.empty();
+    }
+
+    private void respond(Frame frame) {
+      try {
+        if (frame.getType() == FrameType.REQUEST_RESPONSE) {
+          receive.onNext(
+              Frame.PayloadFrame.from(
+                  frame.getStreamId(), FrameType.NEXT_COMPLETE, Client.HELLO_PAYLOAD));
+        }
+      } finally {
+        frame.release();
+      }
+    }
+
+    @Override
+    public Flux<Frame> receive() {
+      return receive;
+    }
+
+    @Override
+    public double availability() {
+      return 1.0;
+    }
+
+    @Override
+    public Mono<Void> close() {
+      return Mono.empty();
+    }
+
+    @Override
+    public Mono<Void> onClose() {
+      return Mono.never();
+    }
+  }
+}
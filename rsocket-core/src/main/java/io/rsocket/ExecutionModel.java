@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket;
+
+import io.rsocket.internal.ScheduledDuplexConnection;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Decides the threads that the frames received on a connection are handled on, which are the
+ * threads that handlers are called on and that responses are delivered on, unless they switch
+ * threads themselves. The frames of a connection are always handled one at a time and in order.
+ */
+public abstract class ExecutionModel {
+
+  /**
+   * Handles frames on the transport thread that received them, e.g. the event loop of the
+   * connection. This has the least latency, as long as handlers never block.
+   */
+  public static final ExecutionModel INLINE =
+      new ExecutionModel() {
+        @Override
+        DuplexConnection apply(DuplexConnection connection) {
+          return connection;
+        }
+      };
+
+  private ExecutionModel() {}
+
+  /** Pins every connection to one thread of {@link Schedulers#parallel()}. */
+  public static ExecutionModel pinned() {
+    return pinned(Schedulers.parallel());
+  }
+
+  /**
+   * Pins every connection to a worker of the {@code scheduler}, which the state of all streams of
+   * the connection stays on, e.g. one thread of a parallel scheduler.
+   */
+  public static ExecutionModel pinned(Scheduler scheduler) {
+    return new ExecutionModel() {
+      @Override
+      DuplexConnection apply(DuplexConnection connection) {
+        Scheduler.Worker worker = scheduler.createWorker();
+        return new ScheduledDuplexConnection(
+            connection, Schedulers.fromExecutor(worker::schedule), worker);
+      }
+    };
+  }
+
+  /**
+   * Handles the frames of all connections on a shared pool, e.g. a bounded pool created with {@link
+   * Schedulers#fromExecutorService}, where a connection runs on whichever thread is free. This
+   * spreads busy connections over the pool, at the cost of moving between threads.
+   */
+  public static ExecutionModel shared(Scheduler scheduler) {
+    return new ExecutionModel() {
+      @Override
+      DuplexConnection apply(DuplexConnection connection) {
+        return new ScheduledDuplexConnection(connection, scheduler, () -> {});
+      }
+    };
+  }
+
+  /** Returns the {@code connection} receiving its frames in this execution model. */
+  abstract DuplexConnection apply(DuplexConnection connection);
+}
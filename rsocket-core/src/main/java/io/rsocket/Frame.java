@@ -18,6 +18,7 @@ package io.rsocket;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufHolder;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.util.IllegalReferenceCountException;
 import io.netty.util.Recycler;
@@ -25,12 +26,16 @@ import io.netty.util.Recycler.Handle;
 import io.netty.util.ResourceLeakDetector;
 import io.rsocket.frame.ErrorFrameFlyweight;
 import io.rsocket.frame.FrameHeaderFlyweight;
+import io.rsocket.frame.FrameHeaderView;
 import io.rsocket.frame.KeepaliveFrameFlyweight;
 import io.rsocket.frame.LeaseFrameFlyweight;
 import io.rsocket.frame.RequestFrameFlyweight;
 import io.rsocket.frame.RequestNFrameFlyweight;
+import io.rsocket.frame.ResumeFrameFlyweight;
+import io.rsocket.frame.ResumeOkFrameFlyweight;
 import io.rsocket.frame.SetupFrameFlyweight;
 import io.rsocket.frame.VersionFlyweight;
+import io.rsocket.util.ByteBufPayload;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import javax.annotation.Nullable;
@@ -50,6 +55,15 @@ public class Frame implements ByteBufHolder {
   public static final int METADATA_MTU = 32 * 1024;
   public static final int DATA_MTU = 32 * 1024;
 
+  /**
+   * Payloads with at least this many bytes of metadata and data are not copied when encoded into a
+   * {@link Frame}. Instead, they are attached after a separately allocated header as components of
+   * a {@link CompositeByteBuf}, so the buffers of such a payload must not be modified until the
+   * frame has been sent.
+   */
+  public static final int COMPOSITE_THRESHOLD =
+      Integer.getInteger("io.rsocket.frame.compositeThreshold", 1024);
+
   private static final Recycler<Frame> RECYCLER =
       new Recycler<Frame>() {
         protected Frame newObject(Handle<Frame> handle) {
@@ -58,18 +72,33 @@ public class Frame implements ByteBufHolder {
       };
 
   private final Handle<Frame> handle;
+  private final FrameHeaderView header;
   private @Nullable ByteBuf content;
 
   private Frame(final Handle<Frame> handle) {
     this.handle = handle;
+    this.header = new FrameHeaderView();
   }
 
   /** Clear and recycle this instance. */
   private void recycle() {
     content = null;
+    header.reset();
     handle.recycle(this);
   }
 
+  /**
+   * Returns the header of this frame, decoding it on first use. The frame content must not be
+   * modified after that.
+   */
+  private FrameHeaderView header() {
+    final FrameHeaderView header = this.header;
+    if (!header.isDecoded()) {
+      header.decode(content);
+    }
+    return header;
+  }
+
   /** Return the content which is held by this {@link Frame}. */
   @Override
   public ByteBuf content() {
@@ -196,7 +225,7 @@ public class Frame implements ByteBufHolder {
    * @return ByteBuffer containing the content
    */
   public ByteBuffer getMetadata() {
-    final ByteBuf metadata = FrameHeaderFlyweight.sliceFrameMetadata(content);
+    final ByteBuf metadata = sliceFrameMetadata();
     if (metadata.readableBytes() > 0) {
       final ByteBuffer buffer = ByteBuffer.allocateDirect(metadata.readableBytes());
       metadata.readBytes(buffer);
@@ -215,7 +244,7 @@ public class Frame implements ByteBufHolder {
    * @return ByteBuffer containing the data
    */
   public ByteBuffer getData() {
-    final ByteBuf data = FrameHeaderFlyweight.sliceFrameData(content);
+    final ByteBuf data = sliceFrameData();
     if (data.readableBytes() > 0) {
       final ByteBuffer buffer = ByteBuffer.allocateDirect(data.readableBytes());
       data.readBytes(buffer);
@@ -232,7 +261,7 @@ public class Frame implements ByteBufHolder {
    * @return frame stream identifier
    */
   public int getStreamId() {
-    return FrameHeaderFlyweight.streamId(content);
+    return header().streamId();
   }
 
   /**
@@ -241,7 +270,7 @@ public class Frame implements ByteBufHolder {
    * @return frame type
    */
   public FrameType getType() {
-    return FrameHeaderFlyweight.frameType(content);
+    return header().frameType();
   }
 
   /**
@@ -250,7 +279,34 @@ public class Frame implements ByteBufHolder {
    * @return frame flags field value
    */
   public int flags() {
-    return FrameHeaderFlyweight.flags(content);
+    return header().flags();
+  }
+
+  /**
+   * Return a slice of the frame content holding the metadata, without copying or retaining it.
+   *
+   * @return frame metadata, empty if no metadata is present
+   */
+  public ByteBuf sliceFrameMetadata() {
+    return header().sliceMetadata(content);
+  }
+
+  /**
+   * Return a slice of the frame content holding the data, without copying or retaining it.
+   *
+   * @return frame data, empty if no data is present
+   */
+  public ByteBuf sliceFrameData() {
+    return header().sliceData(content);
+  }
+
+  /**
+   * Return the length of the metadata and data of the frame, including the metadata length field
+   *
+   * @return frame payload length
+   */
+  public int payloadLength() {
+    return header().payloadLength();
   }
 
   /**
@@ -266,6 +322,53 @@ public class Frame implements ByteBufHolder {
     return frame;
   }
 
+  /**
+   * Returns the metadata of the {@code payload} as a buffer owned by the caller, without copying
+   * it.
+   */
+  private static ByteBuf sliceMetadata(Payload payload) {
+    if (payload instanceof ByteBufPayload) {
+      return ((ByteBufPayload) payload).sliceMetadata().retainedSlice();
+    }
+    return wrap(payload.getMetadata());
+  }
+
+  /**
+   * Returns the data of the {@code payload} as a buffer owned by the caller, without copying it.
+   */
+  private static ByteBuf sliceData(Payload payload) {
+    if (payload instanceof ByteBufPayload) {
+      return ((ByteBufPayload) payload).sliceData().retainedSlice();
+    }
+    return wrap(payload.getData());
+  }
+
+  private static ByteBuf wrap(@Nullable ByteBuffer buffer) {
+    return buffer != null && buffer.hasRemaining()
+        ? Unpooled.wrappedBuffer(buffer)
+        : Unpooled.EMPTY_BUFFER;
+  }
+
+  /**
+   * Assembles the frame content from an already encoded {@code header} followed by the {@code
+   * metadata} and {@code data}, taking ownership of all three buffers.
+   */
+  private static ByteBuf compose(ByteBuf header, ByteBuf metadata, ByteBuf data) {
+    final CompositeByteBuf content = ByteBufAllocator.DEFAULT.compositeBuffer(3);
+    content.addComponent(true, header);
+    if (metadata.isReadable()) {
+      content.addComponent(true, metadata);
+    } else {
+      metadata.release();
+    }
+    if (data.isReadable()) {
+      content.addComponent(true, data);
+    } else {
+      data.release();
+    }
+    return content;
+  }
+
   /* TODO:
    *
    * fromRequest(type, id, payload)
@@ -285,6 +388,24 @@ public class Frame implements ByteBufHolder {
         String metadataMimeType,
         String dataMimeType,
         Payload payload) {
+      return from(
+          flags,
+          keepaliveInterval,
+          maxLifetime,
+          Unpooled.EMPTY_BUFFER,
+          metadataMimeType,
+          dataMimeType,
+          payload);
+    }
+
+    public static Frame from(
+        int flags,
+        int keepaliveInterval,
+        int maxLifetime,
+        ByteBuf resumeToken,
+        String metadataMimeType,
+        String dataMimeType,
+        Payload payload) {
       final ByteBuf metadata =
           payload.getMetadata() != null
               ? Unpooled.wrappedBuffer(payload.getMetadata())
@@ -299,6 +420,7 @@ public class Frame implements ByteBufHolder {
           ByteBufAllocator.DEFAULT.buffer(
               SetupFrameFlyweight.computeFrameLength(
                   flags,
+                  resumeToken.readableBytes(),
                   metadataMimeType,
                   dataMimeType,
                   metadata.readableBytes(),
@@ -309,6 +431,7 @@ public class Frame implements ByteBufHolder {
               flags,
               keepaliveInterval,
               maxLifetime,
+              resumeToken,
               metadataMimeType,
               dataMimeType,
               metadata,
@@ -318,7 +441,7 @@ public class Frame implements ByteBufHolder {
 
     public static int getFlags(final Frame frame) {
       ensureFrameType(FrameType.SETUP, frame);
-      final int flags = FrameHeaderFlyweight.flags(frame.content);
+      final int flags = frame.flags();
 
       return flags & SetupFrameFlyweight.VALID_FLAGS;
     }
@@ -347,6 +470,69 @@ public class Frame implements ByteBufHolder {
       ensureFrameType(FrameType.SETUP, frame);
       return SetupFrameFlyweight.dataMimeType(frame.content);
     }
+
+    /** Returns the resume token as a slice of the frame, empty if resumption is not enabled. */
+    public static ByteBuf resumeToken(final Frame frame) {
+      ensureFrameType(FrameType.SETUP, frame);
+      return SetupFrameFlyweight.resumeToken(frame.content);
+    }
+  }
+
+  public static class Resume {
+    private Resume() {}
+
+    public static Frame from(
+        ByteBuf resumeToken, long lastReceivedServerPosition, long firstAvailableClientPosition) {
+      final Frame frame = RECYCLER.get();
+      frame.content =
+          ByteBufAllocator.DEFAULT.buffer(
+              ResumeFrameFlyweight.computeFrameLength(resumeToken.readableBytes()));
+      frame.content.writerIndex(
+          ResumeFrameFlyweight.encode(
+              frame.content,
+              resumeToken,
+              lastReceivedServerPosition,
+              firstAvailableClientPosition));
+      return frame;
+    }
+
+    public static int version(final Frame frame) {
+      ensureFrameType(FrameType.RESUME, frame);
+      return ResumeFrameFlyweight.version(frame.content);
+    }
+
+    /** Returns the resume token as a slice of the frame. */
+    public static ByteBuf resumeToken(final Frame frame) {
+      ensureFrameType(FrameType.RESUME, frame);
+      return ResumeFrameFlyweight.resumeToken(frame.content);
+    }
+
+    public static long lastReceivedServerPosition(final Frame frame) {
+      ensureFrameType(FrameType.RESUME, frame);
+      return ResumeFrameFlyweight.lastReceivedServerPosition(frame.content);
+    }
+
+    public static long firstAvailableClientPosition(final Frame frame) {
+      ensureFrameType(FrameType.RESUME, frame);
+      return ResumeFrameFlyweight.firstAvailableClientPosition(frame.content);
+    }
+  }
+
+  public static class ResumeOk {
+    private ResumeOk() {}
+
+    public static Frame from(long lastReceivedClientPosition) {
+      final Frame frame = RECYCLER.get();
+      frame.content = ByteBufAllocator.DEFAULT.buffer(ResumeOkFrameFlyweight.computeFrameLength());
+      frame.content.writerIndex(
+          ResumeOkFrameFlyweight.encode(frame.content, lastReceivedClientPosition));
+      return frame;
+    }
+
+    public static long lastReceivedClientPosition(final Frame frame) {
+      ensureFrameType(FrameType.RESUME_OK, frame);
+      return ResumeOkFrameFlyweight.lastReceivedClientPosition(frame.content);
+    }
   }
 
   public static class Error {
@@ -450,20 +636,26 @@ public class Frame implements ByteBufHolder {
       if (initialRequestN < 1) {
         throw new IllegalStateException("initial request n must be greater than 0");
       }
-      final ByteBuf metadata =
-          payload.getMetadata() != null
-              ? Unpooled.wrappedBuffer(payload.getMetadata())
-              : Unpooled.EMPTY_BUFFER;
-      final ByteBuf data =
-          payload.getData() != null
-              ? Unpooled.wrappedBuffer(payload.getData())
-              : Unpooled.EMPTY_BUFFER;
+      final ByteBuf metadata = sliceMetadata(payload);
+      final ByteBuf data = sliceData(payload);
+      final int metadataLength = metadata.readableBytes();
+      final int dataLength = data.readableBytes();
 
       final Frame frame = RECYCLER.get();
+      if (metadataLength + dataLength >= COMPOSITE_THRESHOLD) {
+        final ByteBuf header =
+            ByteBufAllocator.DEFAULT.buffer(
+                RequestFrameFlyweight.computeHeaderLength(type, metadataLength));
+        header.writerIndex(
+            RequestFrameFlyweight.encodeHeader(
+                header, streamId, 0, type, initialRequestN, metadataLength, dataLength));
+        frame.content = compose(header, metadata, data);
+        return frame;
+      }
+
       frame.content =
           ByteBufAllocator.DEFAULT.buffer(
-              RequestFrameFlyweight.computeFrameLength(
-                  type, metadata.readableBytes(), data.readableBytes()));
+              RequestFrameFlyweight.computeFrameLength(type, metadataLength, dataLength));
 
       if (type.hasInitialRequestN()) {
         frame.content.writerIndex(
@@ -473,6 +665,8 @@ public class Frame implements ByteBufHolder {
         frame.content.writerIndex(
             RequestFrameFlyweight.encode(frame.content, streamId, 0, type, metadata, data));
       }
+      metadata.release();
+      data.release();
 
       return frame;
     }
@@ -530,7 +724,7 @@ public class Frame implements ByteBufHolder {
 
     public static boolean isRequestChannelComplete(final Frame frame) {
       ensureFrameType(FrameType.REQUEST_CHANNEL, frame);
-      final int flags = FrameHeaderFlyweight.flags(frame.content);
+      final int flags = frame.flags();
 
       return (flags & FrameHeaderFlyweight.FLAGS_C) == FrameHeaderFlyweight.FLAGS_C;
     }
@@ -549,15 +743,27 @@ public class Frame implements ByteBufHolder {
     }
 
     public static Frame from(int streamId, FrameType type, Payload payload, int flags) {
-      final ByteBuf metadata =
-          payload.getMetadata() != null
-              ? Unpooled.wrappedBuffer(payload.getMetadata())
-              : Unpooled.EMPTY_BUFFER;
-      final ByteBuf data =
-          payload.getData() != null
-              ? Unpooled.wrappedBuffer(payload.getData())
-              : Unpooled.EMPTY_BUFFER;
-      return from(streamId, type, metadata, data, flags);
+      final ByteBuf metadata = sliceMetadata(payload);
+      final ByteBuf data = sliceData(payload);
+      final int metadataLength = metadata.readableBytes();
+      final int dataLength = data.readableBytes();
+
+      if (metadataLength + dataLength >= COMPOSITE_THRESHOLD) {
+        final ByteBuf header =
+            ByteBufAllocator.DEFAULT.buffer(
+                FrameHeaderFlyweight.computeHeaderLength(type, metadataLength));
+        header.writerIndex(
+            FrameHeaderFlyweight.encodeHeader(
+                header, streamId, flags, type, metadataLength, dataLength));
+        final Frame frame = RECYCLER.get();
+        frame.content = compose(header, metadata, data);
+        return frame;
+      }
+
+      final Frame frame = from(streamId, type, metadata, data, flags);
+      metadata.release();
+      data.release();
+      return frame;
     }
 
     public static Frame from(
@@ -612,11 +818,17 @@ public class Frame implements ByteBufHolder {
 
     public static boolean hasRespondFlag(final Frame frame) {
       ensureFrameType(FrameType.KEEPALIVE, frame);
-      final int flags = FrameHeaderFlyweight.flags(frame.content);
+      final int flags = frame.flags();
 
       return (flags & KeepaliveFrameFlyweight.FLAGS_KEEPALIVE_R)
           == KeepaliveFrameFlyweight.FLAGS_KEEPALIVE_R;
     }
+
+    /** Returns the implied position of the last frame received by the sender of the keepalive. */
+    public static long lastPosition(final Frame frame) {
+      ensureFrameType(FrameType.KEEPALIVE, frame);
+      return KeepaliveFrameFlyweight.lastPosition(frame.content);
+    }
   }
 
   public static void ensureFrameType(final FrameType frameType, final Frame frame) {
@@ -635,20 +847,20 @@ public class Frame implements ByteBufHolder {
     String additionalFlags = "";
 
     try {
-      type = FrameHeaderFlyweight.frameType(content);
+      type = getType();
 
-      ByteBuf metadata = FrameHeaderFlyweight.sliceFrameMetadata(content);
+      ByteBuf metadata = sliceFrameMetadata();
       if (0 < metadata.readableBytes()) {
         payload.append(
             String.format("metadata: \"%s\" ", metadata.toString(StandardCharsets.UTF_8)));
       }
 
-      ByteBuf data = FrameHeaderFlyweight.sliceFrameData(content);
+      ByteBuf data = sliceFrameData();
       if (0 < data.readableBytes()) {
         payload.append(String.format("data: \"%s\" ", data.toString(StandardCharsets.UTF_8)));
       }
 
-      streamId = FrameHeaderFlyweight.streamId(content);
+      streamId = getStreamId();
 
       switch (type) {
         case LEASE:
@@ -17,18 +17,25 @@
 package io.rsocket;
 
 import io.netty.buffer.Unpooled;
-import io.netty.util.collection.IntObjectHashMap;
 import io.rsocket.exceptions.ConnectionException;
 import io.rsocket.exceptions.Exceptions;
+import io.rsocket.exceptions.RejectedException;
 import io.rsocket.internal.LimitableRequestPublisher;
+import io.rsocket.internal.RequestNReplenisher;
+import io.rsocket.internal.SendQueue;
+import io.rsocket.internal.SynchronizedIntObjectHashMap;
+import io.rsocket.lease.LeaseImpl;
+import io.rsocket.lease.LeaseManager;
 import io.rsocket.util.PayloadImpl;
 import java.nio.channels.ClosedChannelException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import javax.annotation.Nullable;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
@@ -46,11 +53,17 @@ class RSocketClient implements RSocket {
 
   private final DuplexConnection connection;
   private final Consumer<Throwable> errorConsumer;
+  private final Function<Frame, ? extends Payload> frameDecoder;
   private final StreamIdSupplier streamIdSupplier;
   private final MonoProcessor<Void> started;
-  private final IntObjectHashMap<LimitableRequestPublisher> senders;
-  private final IntObjectHashMap<Subscriber<Payload>> receivers;
+  private final SynchronizedIntObjectHashMap<LimitableRequestPublisher> senders;
+  private final SynchronizedIntObjectHashMap<Subscriber<Payload>> receivers;
+  private final SendQueue sendQueue;
+  private final @Nullable ToIntFunction<Payload> streamWeight;
+  private final int prefetch;
+  private final int maxPrefetch;
   private final AtomicInteger missedAckCounter;
+  private final @Nullable LeaseManager leaseManager;
 
   private @Nullable Disposable keepAliveSendSub;
 
@@ -60,23 +73,99 @@ class RSocketClient implements RSocket {
       DuplexConnection connection,
       Consumer<Throwable> errorConsumer,
       StreamIdSupplier streamIdSupplier) {
-    this(connection, errorConsumer, streamIdSupplier, Duration.ZERO, Duration.ZERO, 0);
+    this(connection, errorConsumer, PayloadImpl::new, streamIdSupplier);
   }
 
   RSocketClient(
       DuplexConnection connection,
       Consumer<Throwable> errorConsumer,
+      Function<Frame, ? extends Payload> frameDecoder,
+      StreamIdSupplier streamIdSupplier) {
+    this(
+        connection, errorConsumer, frameDecoder, streamIdSupplier, Duration.ZERO, Duration.ZERO, 0);
+  }
+
+  RSocketClient(
+      DuplexConnection connection,
+      Consumer<Throwable> errorConsumer,
+      Function<Frame, ? extends Payload> frameDecoder,
       StreamIdSupplier streamIdSupplier,
       Duration tickPeriod,
       Duration ackTimeout,
       int missedAcks) {
+    this(
+        connection,
+        errorConsumer,
+        frameDecoder,
+        streamIdSupplier,
+        tickPeriod,
+        ackTimeout,
+        missedAcks,
+        null);
+  }
+
+  RSocketClient(
+      DuplexConnection connection,
+      Consumer<Throwable> errorConsumer,
+      Function<Frame, ? extends Payload> frameDecoder,
+      StreamIdSupplier streamIdSupplier,
+      Duration tickPeriod,
+      Duration ackTimeout,
+      int missedAcks,
+      @Nullable LeaseManager leaseManager) {
+    this(
+        connection,
+        errorConsumer,
+        frameDecoder,
+        streamIdSupplier,
+        tickPeriod,
+        ackTimeout,
+        missedAcks,
+        leaseManager,
+        new SendQueue(connection),
+        null,
+        0,
+        0);
+  }
+
+  /**
+   * @param leaseManager to account for the leases received from the server, if this client honors
+   *     leases, in which case requests are only sent while allowed by the current lease.
+   * @param sendQueue for the frames sent on the connection, shared with the {@link RSocketServer}
+   *     of the same connection.
+   * @param streamWeight to weigh the frames of a stream by its request payload when scheduling the
+   *     frames queued on the connection, or {@code null} to weigh all streams the same.
+   * @param prefetch number of payloads of a stream requested ahead of the subscriber and
+   *     replenished in batches, see {@link RequestNReplenisher}, or 0 to pass on the requests of
+   *     the subscriber as they come.
+   * @param maxPrefetch maximum the number of payloads requested ahead may grow to.
+   */
+  RSocketClient(
+      DuplexConnection connection,
+      Consumer<Throwable> errorConsumer,
+      Function<Frame, ? extends Payload> frameDecoder,
+      StreamIdSupplier streamIdSupplier,
+      Duration tickPeriod,
+      Duration ackTimeout,
+      int missedAcks,
+      @Nullable LeaseManager leaseManager,
+      SendQueue sendQueue,
+      @Nullable ToIntFunction<Payload> streamWeight,
+      int prefetch,
+      int maxPrefetch) {
     this.connection = connection;
     this.errorConsumer = errorConsumer;
+    this.frameDecoder = frameDecoder;
     this.streamIdSupplier = streamIdSupplier;
     this.started = MonoProcessor.create();
-    this.senders = new IntObjectHashMap<>(256, 0.9f);
-    this.receivers = new IntObjectHashMap<>(256, 0.9f);
+    this.senders = new SynchronizedIntObjectHashMap<>(256, 0.9f);
+    this.receivers = new SynchronizedIntObjectHashMap<>(256, 0.9f);
+    this.sendQueue = sendQueue;
+    this.streamWeight = streamWeight;
+    this.prefetch = prefetch;
+    this.maxPrefetch = maxPrefetch;
     this.missedAckCounter = new AtomicInteger();
+    this.leaseManager = leaseManager;
 
     if (!Duration.ZERO.equals(tickPeriod)) {
       long ackTimeoutMs = ackTimeout.toMillis();
@@ -94,6 +183,12 @@ class RSocketClient implements RSocket {
               .subscribe();
     }
 
+    // all streams, of the requester and the responder, share a single send of the connection
+    sendQueue
+        .onSendTerminated()
+        .doOnError(this::handleSendProcessorError)
+        .subscribe(null, errorConsumer);
+
     connection
         .onClose()
         .doFinally(signalType -> cleanup())
@@ -121,18 +216,22 @@ class RSocketClient implements RSocket {
       }
     }
 
-    return connection.sendOne(Frame.Keepalive.from(Unpooled.EMPTY_BUFFER, true));
+    sendFrame(Frame.Keepalive.from(Unpooled.EMPTY_BUFFER, true));
+    return Mono.empty();
   }
 
   @Override
   public Mono<Void> fireAndForget(Payload payload) {
     Mono<Void> defer =
-        Mono.defer(
+        Mono.fromRunnable(
             () -> {
-              final int streamId = streamIdSupplier.nextStreamId();
+              if (!acquireLease()) {
+                throw leaseRejected();
+              }
+              final int streamId = streamIdSupplier.nextStreamId(receivers);
               final Frame requestFrame =
                   Frame.Request.from(streamId, FrameType.FIRE_AND_FORGET, payload, 1);
-              return connection.sendOne(requestFrame);
+              sendFrame(requestFrame);
             });
 
     return started.then(defer);
@@ -155,13 +254,20 @@ class RSocketClient implements RSocket {
 
   @Override
   public Mono<Void> metadataPush(Payload payload) {
-    final Frame requestFrame = Frame.Request.from(0, FrameType.METADATA_PUSH, payload, 1);
-    return connection.sendOne(requestFrame);
+    return Mono.fromRunnable(
+        () -> {
+          final Frame requestFrame = Frame.Request.from(0, FrameType.METADATA_PUSH, payload, 1);
+          sendFrame(requestFrame);
+        });
   }
 
   @Override
   public double availability() {
-    return connection.availability();
+    double availability = connection.availability();
+    if (leaseManager != null) {
+      availability = Math.min(availability, leaseManager.availability());
+    }
+    return availability;
   }
 
   @Override
@@ -177,25 +283,17 @@ class RSocketClient implements RSocket {
   private Mono<Payload> handleRequestResponse(final Payload payload) {
     return started.then(
         () -> {
-          int streamId = streamIdSupplier.nextStreamId();
+          if (!acquireLease()) {
+            return Mono.error(leaseRejected());
+          }
+          int streamId = streamIdSupplier.nextStreamId(receivers);
           final Frame requestFrame =
               Frame.Request.from(streamId, FrameType.REQUEST_RESPONSE, payload, 1);
 
           MonoProcessor<Payload> receiver = MonoProcessor.create();
 
-          synchronized (this) {
-            receivers.put(streamId, receiver);
-          }
-
-          MonoProcessor<Void> subscribedRequest =
-              connection
-                  .sendOne(requestFrame)
-                  .doOnError(
-                      t -> {
-                        errorConsumer.accept(t);
-                        receiver.cancel();
-                      })
-                  .subscribe();
+          receivers.put(streamId, receiver);
+          sendFrame(requestFrame);
 
           return receiver
               .doOnError(
@@ -203,10 +301,7 @@ class RSocketClient implements RSocket {
                     if (contains(streamId)
                         && connection.availability() > 0.0
                         && !receiver.isTerminated()) {
-                      connection
-                          .sendOne(Frame.Error.from(streamId, t))
-                          .doOnError(errorConsumer::accept)
-                          .subscribe();
+                      sendFrame(Frame.Error.from(streamId, t));
                     }
                   })
               .doOnCancel(
@@ -214,12 +309,8 @@ class RSocketClient implements RSocket {
                     if (contains(streamId)
                         && connection.availability() > 0.0
                         && !receiver.isTerminated()) {
-                      connection
-                          .sendOne(Frame.Cancel.from(streamId))
-                          .doOnError(errorConsumer::accept)
-                          .subscribe();
+                      sendFrame(Frame.Cancel.from(streamId));
                     }
-                    subscribedRequest.cancel();
                   })
               .doFinally(s -> removeReceiver(streamId));
         });
@@ -229,9 +320,17 @@ class RSocketClient implements RSocket {
     return started.thenMany(
         new Supplier<Publisher<Payload>>() {
           final UnicastProcessor<Payload> receiver = UnicastProcessor.create();
-          final int streamId = streamIdSupplier.nextStreamId();
-          volatile @Nullable MonoProcessor<Void> subscribedRequests;
-          boolean firstRequest = true;
+          final int streamId = streamIdSupplier.nextStreamId(receivers);
+          volatile @Nullable Disposable subscribedRequests;
+          final AtomicBoolean firstRequest = new AtomicBoolean(true);
+          final @Nullable RequestNReplenisher replenisher =
+              prefetch > 0
+                  ? new RequestNReplenisher(
+                      prefetch,
+                      maxPrefetch,
+                      receiver::size,
+                      n -> sendOneFrame(Frame.RequestN.from(streamId, n)))
+                  : null;
 
           boolean isValidToSendFrame() {
             return contains(streamId)
@@ -241,36 +340,33 @@ class RSocketClient implements RSocket {
 
           void sendOneFrame(Frame frame) {
             if (isValidToSendFrame()) {
-              connection.sendOne(frame).doOnError(errorConsumer::accept).subscribe();
+              sendFrame(frame);
             }
           }
 
           @Override
           public Publisher<Payload> get() {
-            return receiver
+            if (!acquireLease()) {
+              return Flux.error(leaseRejected());
+            }
+            Flux<Payload> payloads =
+                replenisher == null ? receiver : receiver.doOnNext(p -> replenisher.onDelivered());
+            return payloads
                 .doOnRequest(
                     l -> {
-                      boolean _firstRequest = false;
-                      synchronized (RSocketClient.this) {
-                        if (firstRequest) {
-                          _firstRequest = true;
-                          firstRequest = false;
-                        }
-                      }
-
-                      if (_firstRequest) {
+                      if (firstRequest.compareAndSet(true, false)) {
+                        long initialRequestN =
+                            replenisher == null ? l : replenisher.initialRequest(l);
                         Flux<Frame> requestFrames =
                             request
                                 .transform(
                                     f -> {
                                       LimitableRequestPublisher<Payload> wrapped =
-                                          LimitableRequestPublisher.wrap(f);
+                                          LimitableRequestPublisher.wrap(f, sendQueue.budget());
                                       // Need to set this to one for first the frame
                                       wrapped.increaseRequestLimit(1);
-                                      synchronized (RSocketClient.this) {
-                                        senders.put(streamId, wrapped);
-                                        receivers.put(streamId, receiver);
-                                      }
+                                      senders.put(streamId, wrapped);
+                                      receivers.put(streamId, receiver);
 
                                       return wrapped;
                                     })
@@ -289,8 +385,9 @@ class RSocketClient implements RSocket {
                                         }
 
                                         if (_firstPayload) {
+                                          prioritize(streamId, payload);
                                           return Frame.Request.from(
-                                              streamId, requestType, payload, l);
+                                              streamId, requestType, payload, initialRequestN);
                                         } else {
                                           return Frame.PayloadFrame.from(
                                               streamId, FrameType.NEXT, payload);
@@ -306,16 +403,16 @@ class RSocketClient implements RSocket {
                                     });
 
                         subscribedRequests =
-                            connection
-                                .send(requestFrames)
-                                .doOnError(
-                                    t -> {
-                                      errorConsumer.accept(t);
-                                      receiver.cancel();
-                                    })
-                                .subscribe();
-                      } else {
+                            requestFrames.subscribe(
+                                RSocketClient.this::sendFrame,
+                                t -> {
+                                  errorConsumer.accept(t);
+                                  receiver.cancel();
+                                });
+                      } else if (replenisher == null) {
                         sendOneFrame(Frame.RequestN.from(streamId, l));
+                      } else {
+                        replenisher.request(l);
                       }
                     })
                 .doOnError(t -> sendOneFrame(Frame.Error.from(streamId, t)))
@@ -323,47 +420,69 @@ class RSocketClient implements RSocket {
                     () -> {
                       sendOneFrame(Frame.Cancel.from(streamId));
                       if (subscribedRequests != null) {
-                        subscribedRequests.cancel();
+                        subscribedRequests.dispose();
                       }
                     })
                 .doFinally(
                     s -> {
                       removeReceiver(streamId);
                       removeSender(streamId);
+                      sendQueue.removeWeight(streamId);
                     });
           }
         });
   }
 
-  private boolean contains(int streamId) {
-    synchronized (RSocketClient.this) {
-      return receivers.containsKey(streamId);
+  private void prioritize(int streamId, Payload payload) {
+    if (streamWeight != null) {
+      sendQueue.setWeight(streamId, Math.max(1, streamWeight.applyAsInt(payload)));
     }
   }
 
-  protected void cleanup() {
-    senders.forEach(
-        (integer, limitableRequestPublisher) ->
-            cleanUpLimitableRequestPublisher(limitableRequestPublisher));
+  private boolean acquireLease() {
+    return leaseManager == null || leaseManager.tryAcquire();
+  }
 
-    receivers.forEach((integer, subscriber) -> cleanUpSubscriber(subscriber));
+  private static RejectedException leaseRejected() {
+    return new RejectedException("No lease available to send the request");
+  }
 
-    synchronized (this) {
-      senders.clear();
-      receivers.clear();
-    }
+  private boolean contains(int streamId) {
+    return receivers.containsKey(streamId);
+  }
+
+  protected void cleanup() {
+    senders.forEachValue(this::cleanUpLimitableRequestPublisher);
+    receivers.forEachValue(this::cleanUpSubscriber);
+
+    senders.clear();
+    receivers.clear();
 
     if (null != keepAliveSendSub) {
       keepAliveSendSub.dispose();
     }
+
+    sendQueue.dispose();
+  }
+
+  private void sendFrame(Frame frame) {
+    sendQueue.send(frame);
+  }
+
+  private void handleSendProcessorError(Throwable t) {
+    senders.forEachValue(this::cleanUpLimitableRequestPublisher);
+    receivers.forEachValue(subscriber -> subscriber.onError(t));
+
+    senders.clear();
+    receivers.clear();
   }
 
-  private synchronized void cleanUpLimitableRequestPublisher(
+  private void cleanUpLimitableRequestPublisher(
       LimitableRequestPublisher<?> limitableRequestPublisher) {
     limitableRequestPublisher.cancel();
   }
 
-  private synchronized void cleanUpSubscriber(Subscriber<?> subscriber) {
+  private void cleanUpSubscriber(Subscriber<?> subscriber) {
     subscriber.onError(CLOSED_CHANNEL_EXCEPTION);
   }
 
@@ -386,9 +505,10 @@ class RSocketClient implements RSocket {
       case ERROR:
         throw Exceptions.from(frame);
       case LEASE:
-        {
-          break;
+        if (leaseManager != null) {
+          leaseManager.grant(new LeaseImpl(frame));
         }
+        break;
       case KEEPALIVE:
         if (!Frame.Keepalive.hasRespondFlag(frame)) {
           timeLastTickSentMs = System.currentTimeMillis();
@@ -404,10 +524,7 @@ class RSocketClient implements RSocket {
 
   @SuppressWarnings("unchecked")
   private void handleFrame(int streamId, FrameType type, Frame frame) {
-    Subscriber<Payload> receiver;
-    synchronized (this) {
-      receiver = receivers.get(streamId);
-    }
+    Subscriber<Payload> receiver = receivers.get(streamId);
     if (receiver == null) {
       handleMissingResponseProcessor(streamId, type, frame);
     } else {
@@ -417,30 +534,24 @@ class RSocketClient implements RSocket {
           removeReceiver(streamId);
           break;
         case NEXT_COMPLETE:
-          receiver.onNext(new PayloadImpl(frame));
+          receiver.onNext(frameDecoder.apply(frame));
           receiver.onComplete();
           break;
         case CANCEL:
           {
-            LimitableRequestPublisher sender;
-            synchronized (this) {
-              sender = senders.remove(streamId);
-              removeReceiver(streamId);
-            }
+            LimitableRequestPublisher sender = senders.remove(streamId);
+            removeReceiver(streamId);
             if (sender != null) {
               sender.cancel();
             }
             break;
           }
         case NEXT:
-          receiver.onNext(new PayloadImpl(frame));
+          receiver.onNext(frameDecoder.apply(frame));
           break;
         case REQUEST_N:
           {
-            LimitableRequestPublisher sender;
-            synchronized (this) {
-              sender = senders.get(streamId);
-            }
+            LimitableRequestPublisher sender = senders.get(streamId);
             if (sender != null) {
               int n = Frame.RequestN.requestN(frame);
               sender.increaseRequestLimit(n);
@@ -449,9 +560,7 @@ class RSocketClient implements RSocket {
           }
         case COMPLETE:
           receiver.onComplete();
-          synchronized (this) {
-            receivers.remove(streamId);
-          }
+          receivers.remove(streamId);
           break;
         default:
           throw new IllegalStateException(
@@ -484,11 +593,11 @@ class RSocketClient implements RSocket {
     // so ignore (cancellation is async so there is a race condition)
   }
 
-  private synchronized void removeReceiver(int streamId) {
+  private void removeReceiver(int streamId) {
     receivers.remove(streamId);
   }
 
-  private synchronized void removeSender(int streamId) {
+  private void removeSender(int streamId) {
     senders.remove(streamId);
   }
 }
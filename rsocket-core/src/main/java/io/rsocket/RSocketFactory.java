@@ -1,17 +1,30 @@
 package io.rsocket;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.rsocket.exceptions.InvalidSetupException;
+import io.rsocket.exceptions.UnsupportedSetupException;
 import io.rsocket.fragmentation.FragmentationDuplexConnection;
+import io.rsocket.fragmentation.ReassemblyLimits;
+import io.rsocket.fragmentation.StreamingPayload;
 import io.rsocket.frame.SetupFrameFlyweight;
 import io.rsocket.frame.VersionFlyweight;
 import io.rsocket.internal.ClientServerInputMultiplexer;
+import io.rsocket.internal.OutboundBudget;
+import io.rsocket.internal.SendQueue;
+import io.rsocket.lease.LeaseManager;
+import io.rsocket.lease.LeasePolicy;
+import io.rsocket.resume.ResumableDuplexConnection;
+import io.rsocket.resume.ResumeSessionStore;
 import io.rsocket.transport.ClientTransport;
 import io.rsocket.transport.ServerTransport;
 import io.rsocket.util.PayloadImpl;
 import java.time.Duration;
+import java.util.UUID;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import reactor.core.publisher.Mono;
 
 /**
@@ -60,6 +73,29 @@ public interface RSocketFactory {
       A,
       B extends Closeable> {
     R fragment(int mtu);
+
+    /**
+     * Hands payloads fragmented by the peer to the application as {@link StreamingPayload}s as soon
+     * as their metadata was received, and streams their data as the fragments arrive instead of
+     * reassembling them in memory first.
+     *
+     * <p>There is no flow control within a payload: the peer sends all of its fragments, whatever
+     * the demand for {@link StreamingPayload#data()}, and the chunks not requested yet are queued.
+     * The queue of a payload is bounded by the {@link #reassemblyLimits reassembly limits}, which
+     * fail the stream of a payload that exceeds them, so a slow consumer should set limits, and
+     * request payloads one at a time to bound how much is in flight.
+     */
+    R streamFragmentedPayloads();
+
+    /**
+     * Limits the memory held for reassembling the fragmented payloads received on a connection.
+     * Payloads exceeding a limit fail their stream with a {@link
+     * io.rsocket.exceptions.RejectedException}. The limits apply on their own, without {@link
+     * #fragment(int)} or {@link #streamFragmentedPayloads()}.
+     *
+     * @see ReassemblyLimits
+     */
+    R reassemblyLimits(int maxPayloadSize, int maxReassemblies, long maxBytes, Duration timeout);
   }
 
   interface ErrorConsumer<
@@ -82,6 +118,16 @@ public interface RSocketFactory {
     T keepAliveMissedAcks(int missedAcks);
   }
 
+  interface PayloadDecoder<T> {
+    /**
+     * Sets the function used to turn received {@link Frame}s into the {@link Payload}s handed to
+     * the application. Defaults to {@code PayloadImpl::new}, which copies the frame content. {@code
+     * ByteBufPayload::create} avoids the copy, in which case every received payload <em>must</em>
+     * be released by the application.
+     */
+    T frameDecoder(Function<Frame, ? extends Payload> frameDecoder);
+  }
+
   interface MimeType<T> {
     T mimeType(String dataMineType, String metadataMimeType);
 
@@ -93,6 +139,7 @@ public interface RSocketFactory {
   class ClientRSocketFactory
       implements KeepAlive<ClientRSocketFactory>,
           MimeType<ClientRSocketFactory>,
+          PayloadDecoder<ClientRSocketFactory>,
           Acceptor<ClientTransport, Function<RSocket, RSocket>, RSocket>,
           Transport<ClientTransport, RSocket>,
           Fragmentation<ClientRSocketFactory, ClientTransport, Function<RSocket, RSocket>, RSocket>,
@@ -105,7 +152,19 @@ public interface RSocketFactory {
     private Supplier<io.rsocket.transport.ClientTransport> transportClient;
     private Consumer<Throwable> errorConsumer = Throwable::printStackTrace;
     private int mtu = 0;
+    private boolean streamFragments;
+    private ReassemblyLimits reassemblyLimits = ReassemblyLimits.NONE;
+    private ExecutionModel executionModel = ExecutionModel.INLINE;
     private int flags = SetupFrameFlyweight.FLAGS_STRICT_INTERPRETATION;
+    private boolean honorLease;
+    private boolean resume;
+    private Duration resumeSessionDuration = ResumableDuplexConnection.DEFAULT_SESSION_DURATION;
+    private int resumeCacheSize = ResumableDuplexConnection.DEFAULT_CACHE_SIZE;
+    private int maxQueuedFrames = OutboundBudget.DEFAULT_MAX_FRAMES;
+    private long maxQueuedBytes = OutboundBudget.DEFAULT_MAX_BYTES;
+    private ToIntFunction<Payload> streamWeight;
+    private int prefetch;
+    private int maxPrefetch;
 
     private Payload setupPayload = PayloadImpl.EMPTY;
 
@@ -116,6 +175,8 @@ public interface RSocketFactory {
     private String dataMineType = "application/binary";
     private String metadataMimeType = "application/binary";
 
+    private Function<Frame, ? extends Payload> frameDecoder = PayloadImpl::new;
+
     @Override
     public ClientRSocketFactory keepAlive() {
       tickPeriod = Duration.ofSeconds(20);
@@ -168,6 +229,102 @@ public interface RSocketFactory {
       return this;
     }
 
+    @Override
+    public ClientRSocketFactory frameDecoder(Function<Frame, ? extends Payload> frameDecoder) {
+      this.frameDecoder = frameDecoder;
+      return this;
+    }
+
+    /**
+     * Tells the server that this client honors leases. Requests are then only sent while allowed by
+     * the last lease received from the server and fail with a {@link
+     * io.rsocket.exceptions.RejectedException} otherwise, including before the first lease is
+     * received. The {@link RSocket#availability() availability} of the client reflects the part of
+     * the lease that is still available.
+     */
+    public ClientRSocketFactory honorLease() {
+      this.honorLease = true;
+      this.flags |= SetupFrameFlyweight.FLAGS_WILL_HONOR_LEASE;
+      return this;
+    }
+
+    /**
+     * Makes the session resumable. When the connection is lost, the client connects again and
+     * resumes the session, sending again the frames the server did not receive, for as long as the
+     * {@link #resumeSessionDuration(Duration) session duration}. The server must enable resumption
+     * as well. Requests can be sent while resuming, they are sent once resumed.
+     *
+     * <p>Frames are cached until the server acknowledges them in a {@code KEEPALIVE} frame, so
+     * {@link #keepAlive()} should be enabled to release them early.
+     */
+    public ClientRSocketFactory resume() {
+      this.resume = true;
+      return this;
+    }
+
+    /** How long to try to resume a session before closing it. Defaults to 2 minutes. */
+    public ClientRSocketFactory resumeSessionDuration(Duration sessionDuration) {
+      this.resumeSessionDuration = sessionDuration;
+      return this;
+    }
+
+    /**
+     * Bytes of sent frames that are cached off-heap to be sent again when resuming. A session can
+     * not be resumed if the server missed frames that were evicted. Defaults to 1 MiB.
+     */
+    public ClientRSocketFactory resumeCacheSize(int cacheSize) {
+      this.resumeCacheSize = cacheSize;
+      return this;
+    }
+
+    /**
+     * Limits the frames queued to be sent on the connection, until the transport can write them.
+     * Streams stop emitting while the limit is exceeded and take turns once it is not. Defaults to
+     * 1024 frames and 8 MiB.
+     */
+    public ClientRSocketFactory outboundBudget(int maxQueuedFrames, long maxQueuedBytes) {
+      this.maxQueuedFrames = maxQueuedFrames;
+      this.maxQueuedBytes = maxQueuedBytes;
+      return this;
+    }
+
+    /**
+     * Sets the threads that the frames received on a connection are handled on. Defaults to {@link
+     * ExecutionModel#INLINE}.
+     */
+    public ClientRSocketFactory executionModel(ExecutionModel executionModel) {
+      this.executionModel = executionModel;
+      return this;
+    }
+
+    /**
+     * Weighs the frames of each stream by its request, typically by a priority carried in the
+     * metadata, when frames are queued because the connection does not keep up. A stream of weight
+     * {@code n} is given {@code n} times the share of the connection of a stream of weight 1, which
+     * is the weight of all streams by default. The function must not consume the payload.
+     */
+    public ClientRSocketFactory streamWeight(ToIntFunction<Payload> streamWeight) {
+      this.streamWeight = streamWeight;
+      return this;
+    }
+
+    /**
+     * Requests the payloads of streams and channels ahead of the subscriber, {@code prefetch} at
+     * first, and replenishes them once three quarters were consumed, instead of sending a {@code
+     * REQUEST_N} for every request of the subscriber. The number requested ahead grows up to {@code
+     * maxPrefetch} while the subscriber waits on the peer, to keep the connection busy over a long
+     * round trip. By default the requests of the subscriber are passed on as they come.
+     */
+    public ClientRSocketFactory streamPrefetch(int prefetch, int maxPrefetch) {
+      if (prefetch <= 0 || maxPrefetch < prefetch) {
+        throw new IllegalArgumentException(
+            "prefetch must be positive and at most maxPrefetch: " + prefetch + ", " + maxPrefetch);
+      }
+      this.prefetch = prefetch;
+      this.maxPrefetch = maxPrefetch;
+      return this;
+    }
+
     @Override
     public Start<RSocket> transport(Supplier<io.rsocket.transport.ClientTransport> t) {
       return new ClientTransport().transport(t);
@@ -196,6 +353,20 @@ public interface RSocketFactory {
       return this;
     }
 
+    @Override
+    public ClientRSocketFactory streamFragmentedPayloads() {
+      this.streamFragments = true;
+      return this;
+    }
+
+    @Override
+    public ClientRSocketFactory reassemblyLimits(
+        int maxPayloadSize, int maxReassemblies, long maxBytes, Duration timeout) {
+      this.reassemblyLimits =
+          new ReassemblyLimits(maxPayloadSize, maxReassemblies, maxBytes, timeout);
+      return this;
+    }
+
     @Override
     public ClientRSocketFactory errorConsumer(Consumer<Throwable> errorConsumer) {
       this.errorConsumer = errorConsumer;
@@ -215,33 +386,75 @@ public interface RSocketFactory {
             .get()
             .connect()
             .then(
-                connection -> {
-                  Frame setupFrame =
-                      Frame.Setup.from(
-                          flags,
-                          (int) ackTimeout.toMillis(),
-                          (int) ackTimeout.toMillis() * missedAcks,
-                          dataMineType,
-                          metadataMimeType,
-                          setupPayload);
+                transportConnection -> {
+                  DuplexConnection connection;
+                  Frame setupFrame;
+                  if (resume) {
+                    ByteBuf resumeToken = newResumeToken();
+                    connection =
+                        ResumableDuplexConnection.client(
+                            transportConnection,
+                            resumeToken,
+                            () -> transportClient.get().connect(),
+                            resumeSessionDuration,
+                            resumeCacheSize);
+                    setupFrame =
+                        Frame.Setup.from(
+                            flags | SetupFrameFlyweight.FLAGS_RESUME_ENABLE,
+                            (int) ackTimeout.toMillis(),
+                            (int) ackTimeout.toMillis() * missedAcks,
+                            resumeToken,
+                            dataMineType,
+                            metadataMimeType,
+                            setupPayload);
+                  } else {
+                    connection = transportConnection;
+                    setupFrame =
+                        Frame.Setup.from(
+                            flags,
+                            (int) ackTimeout.toMillis(),
+                            (int) ackTimeout.toMillis() * missedAcks,
+                            dataMineType,
+                            metadataMimeType,
+                            setupPayload);
+                  }
 
                   ClientServerInputMultiplexer multiplexer;
-                  if (mtu > 0) {
+                  Function<Frame, ? extends Payload> decoder;
+                  if (mtu > 0 || streamFragments || reassemblyLimits != ReassemblyLimits.NONE) {
+                    FragmentationDuplexConnection fragmentation =
+                        new FragmentationDuplexConnection(
+                            connection, mtu, streamFragments, reassemblyLimits);
                     multiplexer =
-                        new ClientServerInputMultiplexer(
-                            new FragmentationDuplexConnection(connection, mtu));
+                        new ClientServerInputMultiplexer(executionModel.apply(fragmentation));
+                    decoder =
+                        streamFragments
+                            ? fragmentation.streamingFrameDecoder(frameDecoder)
+                            : frameDecoder;
                   } else {
-                    multiplexer = new ClientServerInputMultiplexer(connection);
+                    multiplexer =
+                        new ClientServerInputMultiplexer(executionModel.apply(connection));
+                    decoder = frameDecoder;
                   }
 
+                  SendQueue sendQueue =
+                      new SendQueue(
+                          multiplexer.asStreamZeroConnection(),
+                          new OutboundBudget(maxQueuedFrames, maxQueuedBytes));
                   RSocketClient rSocketClient =
                       new RSocketClient(
                           multiplexer.asClientConnection(),
                           errorConsumer,
+                          decoder,
                           StreamIdSupplier.clientSupplier(),
                           tickPeriod,
                           ackTimeout,
-                          missedAcks);
+                          missedAcks,
+                          honorLease ? new LeaseManager() : null,
+                          sendQueue,
+                          streamWeight,
+                          prefetch,
+                          maxPrefetch);
 
                   return Plugins.CLIENT_REACTIVE_SOCKET_INTERCEPTOR
                       .apply(rSocketClient)
@@ -256,24 +469,51 @@ public interface RSocketFactory {
                                         new RSocketServer(
                                             multiplexer.asServerConnection(),
                                             rSocket,
-                                            errorConsumer))
+                                            errorConsumer,
+                                            decoder,
+                                            null,
+                                            sendQueue,
+                                            streamWeight,
+                                            prefetch,
+                                            maxPrefetch))
                                 .then(connection.sendOne(setupFrame))
                                 .then(Mono.just(wrappedClientRSocket));
                           });
                 });
       }
+
+      private ByteBuf newResumeToken() {
+        UUID uuid = UUID.randomUUID();
+        return Unpooled.buffer(16)
+            .writeLong(uuid.getMostSignificantBits())
+            .writeLong(uuid.getLeastSignificantBits());
+      }
     }
   }
 
   class ServerRSocketFactory
       implements Acceptor<ServerTransport, SocketAcceptor, Closeable>,
           Fragmentation<ServerRSocketFactory, ServerTransport, SocketAcceptor, Closeable>,
-          ErrorConsumer<ServerRSocketFactory, ServerTransport, SocketAcceptor, Closeable> {
+          ErrorConsumer<ServerRSocketFactory, ServerTransport, SocketAcceptor, Closeable>,
+          PayloadDecoder<ServerRSocketFactory> {
 
     private Supplier<SocketAcceptor> acceptor;
     private Supplier<io.rsocket.transport.ServerTransport> transportServer;
     private Consumer<Throwable> errorConsumer = Throwable::printStackTrace;
     private int mtu = 0;
+    private boolean streamFragments;
+    private ReassemblyLimits reassemblyLimits = ReassemblyLimits.NONE;
+    private ExecutionModel executionModel = ExecutionModel.INLINE;
+    private Function<Frame, ? extends Payload> frameDecoder = PayloadImpl::new;
+    private LeasePolicy leasePolicy;
+    private boolean resume;
+    private Duration resumeSessionDuration = ResumableDuplexConnection.DEFAULT_SESSION_DURATION;
+    private int resumeCacheSize = ResumableDuplexConnection.DEFAULT_CACHE_SIZE;
+    private int maxQueuedFrames = OutboundBudget.DEFAULT_MAX_FRAMES;
+    private long maxQueuedBytes = OutboundBudget.DEFAULT_MAX_BYTES;
+    private ToIntFunction<Payload> streamWeight;
+    private int prefetch;
+    private int maxPrefetch;
 
     private ServerRSocketFactory() {}
 
@@ -290,12 +530,116 @@ public interface RSocketFactory {
       return this;
     }
 
+    @Override
+    public ServerRSocketFactory streamFragmentedPayloads() {
+      this.streamFragments = true;
+      return this;
+    }
+
+    @Override
+    public ServerRSocketFactory reassemblyLimits(
+        int maxPayloadSize, int maxReassemblies, long maxBytes, Duration timeout) {
+      this.reassemblyLimits =
+          new ReassemblyLimits(maxPayloadSize, maxReassemblies, maxBytes, timeout);
+      return this;
+    }
+
     @Override
     public ServerRSocketFactory errorConsumer(Consumer<Throwable> errorConsumer) {
       this.errorConsumer = errorConsumer;
       return this;
     }
 
+    @Override
+    public ServerRSocketFactory frameDecoder(Function<Frame, ? extends Payload> frameDecoder) {
+      this.frameDecoder = frameDecoder;
+      return this;
+    }
+
+    /**
+     * Grants leases decided by the {@code leasePolicy} to every client that honors leases, and
+     * rejects the requests of such a client that exceed them. Clients that do not honor leases are
+     * not affected.
+     */
+    public ServerRSocketFactory lease(LeasePolicy leasePolicy) {
+      this.leasePolicy = leasePolicy;
+      return this;
+    }
+
+    /**
+     * Lets clients that ask for it resume their session on a new connection when the connection is
+     * lost. A session is kept for the {@link #resumeSessionDuration(Duration) session duration}
+     * after its connection is lost. Without it, clients asking to resume are rejected.
+     */
+    public ServerRSocketFactory resume() {
+      this.resume = true;
+      return this;
+    }
+
+    /** How long to keep a session after its connection is lost. Defaults to 2 minutes. */
+    public ServerRSocketFactory resumeSessionDuration(Duration sessionDuration) {
+      this.resumeSessionDuration = sessionDuration;
+      return this;
+    }
+
+    /**
+     * Bytes of sent frames that are cached off-heap per session to be sent again when resuming.
+     * Defaults to 1 MiB.
+     */
+    public ServerRSocketFactory resumeCacheSize(int cacheSize) {
+      this.resumeCacheSize = cacheSize;
+      return this;
+    }
+
+    /**
+     * Limits the frames queued to be sent on each connection, until the transport can write them.
+     * Streams stop emitting while the limit is exceeded and take turns once it is not, so that a
+     * slow client does not make the frames for it pile up. Defaults to 1024 frames and 8 MiB.
+     */
+    public ServerRSocketFactory outboundBudget(int maxQueuedFrames, long maxQueuedBytes) {
+      this.maxQueuedFrames = maxQueuedFrames;
+      this.maxQueuedBytes = maxQueuedBytes;
+      return this;
+    }
+
+    /**
+     * Sets the threads that the frames received on a connection are handled on. Defaults to {@link
+     * ExecutionModel#INLINE}.
+     */
+    public ServerRSocketFactory executionModel(ExecutionModel executionModel) {
+      this.executionModel = executionModel;
+      return this;
+    }
+
+    /**
+     * Weighs the frames of each stream by its request, typically by a priority carried in the
+     * metadata, when frames are queued because the connection does not keep up. A stream of weight
+     * {@code n} is given {@code n} times the share of the connection of a stream of weight 1, which
+     * is the weight of all streams by default. The function must not consume the payload.
+     */
+    public ServerRSocketFactory streamWeight(ToIntFunction<Payload> streamWeight) {
+      this.streamWeight = streamWeight;
+      return this;
+    }
+
+    /**
+     * Requests the payloads of the channels of clients and of the streams requested from clients
+     * ahead of the subscriber, {@code prefetch} at first, and replenishes them once three quarters
+     * were consumed, instead of sending a {@code REQUEST_N} for every request of the subscriber.
+     * The number requested ahead grows up to {@code maxPrefetch} while the subscriber waits on the
+     * peer, to keep the connection busy over a long round trip. By default the requests of the
+     * subscriber are passed on as they come.
+     */
+    public ServerRSocketFactory streamPrefetch(int prefetch, int maxPrefetch) {
+      if (prefetch <= 0 || maxPrefetch < prefetch) {
+        throw new IllegalArgumentException(
+            "prefetch must be positive and at most maxPrefetch: " + prefetch + ", " + maxPrefetch);
+      }
+      this.prefetch = prefetch;
+      this.maxPrefetch = maxPrefetch;
+      return this;
+    }
+
     private class ServerTransport
         implements Transport<io.rsocket.transport.ServerTransport, Closeable> {
       @Override
@@ -308,29 +652,47 @@ public interface RSocketFactory {
     private class ServerStart implements Start {
       @Override
       public Mono<Closeable> start() {
+        ResumeSessionStore sessions = resume ? new ResumeSessionStore() : null;
         return transportServer
             .get()
             .start(
-                connection -> {
+                transportConnection -> {
+                  DuplexConnection connection =
+                      resume
+                          ? ResumableDuplexConnection.server(
+                              transportConnection, sessions, resumeSessionDuration, resumeCacheSize)
+                          : transportConnection;
+
                   ClientServerInputMultiplexer multiplexer;
-                  if (mtu > 0) {
+                  Function<Frame, ? extends Payload> decoder;
+                  if (mtu > 0 || streamFragments || reassemblyLimits != ReassemblyLimits.NONE) {
+                    FragmentationDuplexConnection fragmentation =
+                        new FragmentationDuplexConnection(
+                            connection, mtu, streamFragments, reassemblyLimits);
                     multiplexer =
-                        new ClientServerInputMultiplexer(
-                            new FragmentationDuplexConnection(connection, mtu));
+                        new ClientServerInputMultiplexer(executionModel.apply(fragmentation));
+                    decoder =
+                        streamFragments
+                            ? fragmentation.streamingFrameDecoder(frameDecoder)
+                            : frameDecoder;
                   } else {
-                    multiplexer = new ClientServerInputMultiplexer(connection);
+                    multiplexer =
+                        new ClientServerInputMultiplexer(executionModel.apply(connection));
+                    decoder = frameDecoder;
                   }
 
                   return multiplexer
                       .asStreamZeroConnection()
                       .receive()
                       .next()
-                      .then(setupFrame -> processSetupFrame(multiplexer, setupFrame));
+                      .then(setupFrame -> processSetupFrame(multiplexer, decoder, setupFrame));
                 });
       }
 
       private Mono<? extends Void> processSetupFrame(
-          ClientServerInputMultiplexer multiplexer, Frame setupFrame) {
+          ClientServerInputMultiplexer multiplexer,
+          Function<Frame, ? extends Payload> decoder,
+          Frame setupFrame) {
         int version = Frame.Setup.version(setupFrame);
         if (version != SetupFrameFlyweight.CURRENT_VERSION) {
           InvalidSetupException error =
@@ -342,11 +704,37 @@ public interface RSocketFactory {
               .then(multiplexer.close());
         }
 
+        if (!resume && (setupFrame.flags() & SetupFrameFlyweight.FLAGS_RESUME_ENABLE) != 0) {
+          UnsupportedSetupException error =
+              new UnsupportedSetupException("Resumption is not supported");
+          return multiplexer
+              .asStreamZeroConnection()
+              .sendOne(Frame.Error.from(0, error))
+              .then(multiplexer.close());
+        }
+
         ConnectionSetupPayload setupPayload = ConnectionSetupPayload.create(setupFrame);
+        LeasePolicy leasePolicy =
+            setupPayload.willClientHonorLease() ? ServerRSocketFactory.this.leasePolicy : null;
 
+        SendQueue sendQueue =
+            new SendQueue(
+                multiplexer.asStreamZeroConnection(),
+                new OutboundBudget(maxQueuedFrames, maxQueuedBytes));
         RSocketClient rSocketClient =
             new RSocketClient(
-                multiplexer.asServerConnection(), errorConsumer, StreamIdSupplier.serverSupplier());
+                multiplexer.asServerConnection(),
+                errorConsumer,
+                decoder,
+                StreamIdSupplier.serverSupplier(),
+                Duration.ZERO,
+                Duration.ZERO,
+                0,
+                null,
+                sendQueue,
+                streamWeight,
+                prefetch,
+                maxPrefetch);
 
         Mono<RSocket> wrappedRSocketClient =
             Plugins.CLIENT_REACTIVE_SOCKET_INTERCEPTOR.apply(rSocketClient);
@@ -360,7 +748,16 @@ public interface RSocketFactory {
                         .then(Plugins.SERVER_REACTIVE_SOCKET_INTERCEPTOR::apply))
             .map(
                 handler ->
-                    new RSocketServer(multiplexer.asClientConnection(), handler, errorConsumer))
+                    new RSocketServer(
+                        multiplexer.asClientConnection(),
+                        handler,
+                        errorConsumer,
+                        decoder,
+                        leasePolicy,
+                        sendQueue,
+                        streamWeight,
+                        prefetch,
+                        maxPrefetch))
             .then();
       }
     }
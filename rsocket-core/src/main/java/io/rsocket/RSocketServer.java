@@ -18,13 +18,23 @@ package io.rsocket;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
-import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.ReferenceCountUtil;
 import io.rsocket.Frame.Request;
 import io.rsocket.exceptions.ApplicationException;
+import io.rsocket.exceptions.RejectedException;
 import io.rsocket.frame.FrameHeaderFlyweight;
 import io.rsocket.internal.LimitableRequestPublisher;
+import io.rsocket.internal.RequestNReplenisher;
+import io.rsocket.internal.SendQueue;
+import io.rsocket.internal.SynchronizedIntObjectHashMap;
+import io.rsocket.lease.Lease;
+import io.rsocket.lease.LeaseManager;
+import io.rsocket.lease.LeasePolicy;
 import io.rsocket.util.PayloadImpl;
+import java.nio.ByteBuffer;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 import javax.annotation.Nullable;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
@@ -40,19 +50,90 @@ class RSocketServer implements RSocket {
   private final DuplexConnection connection;
   private final RSocket requestHandler;
   private final Consumer<Throwable> errorConsumer;
+  private final Function<Frame, ? extends Payload> frameDecoder;
 
-  private final IntObjectHashMap<Subscription> sendingSubscriptions;
-  private final IntObjectHashMap<UnicastProcessor<Payload>> channelProcessors;
+  private final SynchronizedIntObjectHashMap<Subscription> sendingSubscriptions;
+  private final SynchronizedIntObjectHashMap<UnicastProcessor<Payload>> channelProcessors;
+  private final SendQueue sendQueue;
+  private final @Nullable ToIntFunction<Payload> streamWeight;
+  private final int prefetch;
+  private final int maxPrefetch;
+  private final @Nullable LeaseManager leaseManager;
 
   private Disposable receiveDisposable;
+  private @Nullable Disposable leaseDisposable;
 
   RSocketServer(
       DuplexConnection connection, RSocket requestHandler, Consumer<Throwable> errorConsumer) {
+    this(connection, requestHandler, errorConsumer, PayloadImpl::new);
+  }
+
+  RSocketServer(
+      DuplexConnection connection,
+      RSocket requestHandler,
+      Consumer<Throwable> errorConsumer,
+      Function<Frame, ? extends Payload> frameDecoder) {
+    this(connection, requestHandler, errorConsumer, frameDecoder, null);
+  }
+
+  RSocketServer(
+      DuplexConnection connection,
+      RSocket requestHandler,
+      Consumer<Throwable> errorConsumer,
+      Function<Frame, ? extends Payload> frameDecoder,
+      @Nullable LeasePolicy leasePolicy) {
+    this(
+        connection,
+        requestHandler,
+        errorConsumer,
+        frameDecoder,
+        leasePolicy,
+        new SendQueue(connection),
+        null,
+        0,
+        0);
+  }
+
+  /**
+   * @param leasePolicy to grant leases to the client with, if the client honors leases, in which
+   *     case requests beyond the granted leases are rejected.
+   * @param sendQueue for the frames sent on the connection, shared with the {@link RSocketClient}
+   *     of the same connection.
+   * @param streamWeight to weigh the frames of a stream by its request payload when scheduling the
+   *     frames queued on the connection, or {@code null} to weigh all streams the same.
+   * @param prefetch number of payloads of a channel requested ahead of the subscriber and
+   *     replenished in batches, see {@link RequestNReplenisher}, or 0 to pass on the requests of
+   *     the subscriber as they come.
+   * @param maxPrefetch maximum the number of payloads requested ahead may grow to.
+   */
+  RSocketServer(
+      DuplexConnection connection,
+      RSocket requestHandler,
+      Consumer<Throwable> errorConsumer,
+      Function<Frame, ? extends Payload> frameDecoder,
+      @Nullable LeasePolicy leasePolicy,
+      SendQueue sendQueue,
+      @Nullable ToIntFunction<Payload> streamWeight,
+      int prefetch,
+      int maxPrefetch) {
     this.connection = connection;
     this.requestHandler = requestHandler;
     this.errorConsumer = errorConsumer;
-    this.sendingSubscriptions = new IntObjectHashMap<>();
-    this.channelProcessors = new IntObjectHashMap<>();
+    this.frameDecoder = frameDecoder;
+    this.sendingSubscriptions = new SynchronizedIntObjectHashMap<>(256, 0.9f);
+    this.channelProcessors = new SynchronizedIntObjectHashMap<>(256, 0.9f);
+    this.sendQueue = sendQueue;
+    this.streamWeight = streamWeight;
+    this.prefetch = prefetch;
+    this.maxPrefetch = maxPrefetch;
+    this.leaseManager = leasePolicy == null ? null : new LeaseManager();
+
+    // all streams, of the requester and the responder, share a single send of the connection
+    sendQueue
+        .onSendTerminated()
+        .doOnError(this::handleSendProcessorError)
+        .subscribe(null, errorConsumer);
+
     this.receiveDisposable =
         connection
             .receive()
@@ -61,6 +142,11 @@ class RSocketServer implements RSocket {
             .then()
             .subscribe();
 
+    if (leasePolicy != null) {
+      this.leaseDisposable =
+          leasePolicy.leases(sendingSubscriptions::size).subscribe(this::sendLease, errorConsumer);
+    }
+
     this.connection
         .onClose()
         .doOnError(errorConsumer::accept)
@@ -132,27 +218,63 @@ class RSocketServer implements RSocket {
     cleanUpChannelProcessors();
 
     requestHandler.close().subscribe();
+    sendQueue.dispose();
+
+    if (leaseDisposable != null) {
+      leaseDisposable.dispose();
+    }
+  }
+
+  private void sendLease(Lease lease) {
+    // account for the lease before the client can use it
+    leaseManager.grant(lease);
+    ByteBuffer metadata = lease.getMetadata();
+    sendFrame(
+        Frame.Lease.from(
+            lease.getTtl(),
+            lease.getAllowedRequests(),
+            metadata == null ? Unpooled.EMPTY_BUFFER : Unpooled.wrappedBuffer(metadata)));
   }
 
-  private synchronized void cleanUpSendingSubscriptions() {
-    sendingSubscriptions.values().forEach(Subscription::cancel);
+  private void sendFrame(Frame frame) {
+    sendQueue.send(frame);
+  }
+
+  private void prioritize(int streamId, Payload payload) {
+    if (streamWeight != null) {
+      sendQueue.setWeight(streamId, Math.max(1, streamWeight.applyAsInt(payload)));
+    }
+  }
+
+  private void handleSendProcessorError(Throwable t) {
+    cleanUpSendingSubscriptions();
+    cleanUpChannelProcessors();
+  }
+
+  private void cleanUpSendingSubscriptions() {
+    sendingSubscriptions.forEachValue(Subscription::cancel);
     sendingSubscriptions.clear();
   }
 
-  private synchronized void cleanUpChannelProcessors() {
-    channelProcessors.values().forEach(Subscription::cancel);
+  private void cleanUpChannelProcessors() {
+    channelProcessors.forEachValue(Subscription::cancel);
     channelProcessors.clear();
   }
 
   private Mono<Void> handleFrame(Frame frame) {
     try {
       int streamId = frame.getStreamId();
+      FrameType type = frame.getType();
+      if (type.isRequestType() && leaseManager != null && !leaseManager.tryAcquire()) {
+        return handleLeaseRejected(streamId, type);
+      }
+
       Subscriber<Payload> receiver;
-      switch (frame.getType()) {
+      switch (type) {
         case FIRE_AND_FORGET:
-          return handleFireAndForget(streamId, fireAndForget(new PayloadImpl(frame)));
+          return handleFireAndForget(streamId, fireAndForget(frameDecoder.apply(frame)));
         case REQUEST_RESPONSE:
-          return handleRequestResponse(streamId, requestResponse(new PayloadImpl(frame)));
+          return handleRequestResponse(streamId, requestResponse(frameDecoder.apply(frame)));
         case CANCEL:
           return handleCancelFrame(streamId);
         case KEEPALIVE:
@@ -160,39 +282,41 @@ class RSocketServer implements RSocket {
         case REQUEST_N:
           return handleRequestN(streamId, frame);
         case REQUEST_STREAM:
-          return handleStream(streamId, requestStream(new PayloadImpl(frame)), frame);
+          Payload request = frameDecoder.apply(frame);
+          prioritize(streamId, request);
+          return handleStream(streamId, requestStream(request), frame);
         case REQUEST_CHANNEL:
           return handleChannel(streamId, frame);
         case PAYLOAD:
           // TODO: Hook in receiving socket.
           return Mono.empty();
         case METADATA_PUSH:
-          return metadataPush(new PayloadImpl(frame));
+          return metadataPush(frameDecoder.apply(frame));
         case LEASE:
           // Lease must not be received here as this is the server end of the socket which sends leases.
           return Mono.empty();
         case NEXT:
-          receiver = getChannelProcessor(streamId);
+          receiver = channelProcessors.get(streamId);
           if (receiver != null) {
-            receiver.onNext(new PayloadImpl(frame));
+            receiver.onNext(frameDecoder.apply(frame));
           }
           return Mono.empty();
         case COMPLETE:
-          receiver = getChannelProcessor(streamId);
+          receiver = channelProcessors.get(streamId);
           if (receiver != null) {
             receiver.onComplete();
           }
           return Mono.empty();
         case ERROR:
-          receiver = getChannelProcessor(streamId);
+          receiver = channelProcessors.get(streamId);
           if (receiver != null) {
             receiver.onError(new ApplicationException(new PayloadImpl(frame)));
           }
           return Mono.empty();
         case NEXT_COMPLETE:
-          receiver = getChannelProcessor(streamId);
+          receiver = channelProcessors.get(streamId);
           if (receiver != null) {
-            receiver.onNext(new PayloadImpl(frame));
+            receiver.onNext(frameDecoder.apply(frame));
             receiver.onComplete();
           }
 
@@ -203,9 +327,7 @@ class RSocketServer implements RSocket {
               streamId, new IllegalStateException("Setup frame received post setup."));
         default:
           return handleError(
-              streamId,
-              new IllegalStateException(
-                  "ServerRSocket: Unexpected frame type: " + frame.getType()));
+              streamId, new IllegalStateException("ServerRSocket: Unexpected frame type: " + type));
       }
     } finally {
       frame.release();
@@ -214,16 +336,16 @@ class RSocketServer implements RSocket {
 
   private Mono<Void> handleFireAndForget(int streamId, Mono<Void> result) {
     return result
-        .doOnSubscribe(subscription -> addSubscription(streamId, subscription))
+        .doOnSubscribe(subscription -> sendingSubscriptions.put(streamId, subscription))
         .doOnError(errorConsumer)
-        .doFinally(signalType -> removeSubscription(streamId))
+        .doFinally(signalType -> sendingSubscriptions.remove(streamId))
         .ignoreElement();
   }
 
   private Mono<Void> handleRequestResponse(int streamId, Mono<Payload> response) {
     Mono<Frame> responseFrame =
         response
-            .doOnSubscribe(subscription -> addSubscription(streamId, subscription))
+            .doOnSubscribe(subscription -> sendingSubscriptions.put(streamId, subscription))
             .map(
                 payload ->
                     Frame.PayloadFrame.from(
@@ -231,10 +353,10 @@ class RSocketServer implements RSocket {
             .onErrorResume(t -> Mono.just(Frame.Error.from(streamId, t)))
             .doFinally(
                 signalType -> {
-                  removeSubscription(streamId);
+                  sendingSubscriptions.remove(streamId);
                 });
 
-    return responseFrame.then(connection::sendOne);
+    return responseFrame.doOnNext(this::sendFrame).then();
   }
 
   private Mono<Void> handleStream(int streamId, Flux<Payload> response, Frame firstFrame) {
@@ -245,10 +367,8 @@ class RSocketServer implements RSocket {
             .transform(
                 frameFlux -> {
                   LimitableRequestPublisher<Frame> frames =
-                      LimitableRequestPublisher.wrap(frameFlux);
-                  synchronized (RSocketServer.this) {
-                    sendingSubscriptions.put(streamId, frames);
-                  }
+                      LimitableRequestPublisher.wrap(frameFlux, sendQueue.budget());
+                  sendingSubscriptions.put(streamId, frames);
                   frames.increaseRequestLimit(initialRequestN);
                   return frames;
                 })
@@ -256,43 +376,61 @@ class RSocketServer implements RSocket {
             .onErrorResume(t -> Mono.just(Frame.Error.from(streamId, t)))
             .doFinally(
                 signalType -> {
-                  removeSubscription(streamId);
+                  sendingSubscriptions.remove(streamId);
+                  sendQueue.removeWeight(streamId);
                 });
 
-    return connection.send(responseFrames);
+    return responseFrames.doOnNext(this::sendFrame).then();
   }
 
   private Mono<Void> handleChannel(int streamId, Frame firstFrame) {
+    if (streamWeight != null) {
+      // the first payload is only decoded to weigh the channel, it is not delivered
+      Payload payload = frameDecoder.apply(firstFrame);
+      prioritize(streamId, payload);
+      ReferenceCountUtil.release(payload);
+    }
     UnicastProcessor<Payload> frames = UnicastProcessor.create();
-    addChannelProcessor(streamId, frames);
+    channelProcessors.put(streamId, frames);
+
+    RequestNReplenisher replenisher =
+        prefetch > 0
+            ? new RequestNReplenisher(
+                prefetch,
+                maxPrefetch,
+                frames::size,
+                n -> {
+                  if (connection.availability() > 0.0) {
+                    sendFrame(Frame.RequestN.from(streamId, n));
+                  }
+                })
+            : null;
 
     Flux<Payload> payloads =
-        frames
+        (replenisher == null ? frames : frames.doOnNext(p -> replenisher.onDelivered()))
             .doOnCancel(
                 () -> {
                   if (connection.availability() > 0.0) {
-                    connection.sendOne(Frame.Cancel.from(streamId)).subscribe(null, errorConsumer);
+                    sendFrame(Frame.Cancel.from(streamId));
                   }
                 })
             .doOnError(
                 t -> {
                   if (connection.availability() > 0.0) {
-                    connection
-                        .sendOne(Frame.Error.from(streamId, t))
-                        .subscribe(null, errorConsumer);
+                    sendFrame(Frame.Error.from(streamId, t));
                   }
                 })
             .doOnRequest(
                 l -> {
-                  if (connection.availability() > 0.0) {
-                    connection
-                        .sendOne(Frame.RequestN.from(streamId, l))
-                        .subscribe(null, errorConsumer);
+                  if (replenisher != null) {
+                    replenisher.request(l);
+                  } else if (connection.availability() > 0.0) {
+                    sendFrame(Frame.RequestN.from(streamId, l));
                   }
                 })
             .doFinally(
                 signalType -> {
-                  removeChannelProcessor(streamId);
+                  channelProcessors.remove(streamId);
                 });
 
     return handleStream(streamId, requestChannel(payloads), firstFrame);
@@ -301,17 +439,13 @@ class RSocketServer implements RSocket {
   private Mono<Void> handleKeepAliveFrame(Frame frame) {
     if (Frame.Keepalive.hasRespondFlag(frame)) {
       ByteBuf data = Unpooled.wrappedBuffer(frame.getData());
-      return connection.sendOne(Frame.Keepalive.from(data, false)).doOnError(errorConsumer);
+      sendFrame(Frame.Keepalive.from(data, false));
     }
     return Mono.empty();
   }
 
   private Mono<Void> handleCancelFrame(int streamId) {
-    Subscription subscription;
-    synchronized (this) {
-      subscription = sendingSubscriptions.remove(streamId);
-    }
-
+    Subscription subscription = sendingSubscriptions.remove(streamId);
     if (subscription != null) {
       subscription.cancel();
     }
@@ -321,39 +455,25 @@ class RSocketServer implements RSocket {
 
   private Mono<Void> handleError(int streamId, Throwable t) {
     errorConsumer.accept(t);
-    return connection.sendOne(Frame.Error.from(streamId, t)).doOnError(errorConsumer);
+    sendFrame(Frame.Error.from(streamId, t));
+    return Mono.empty();
+  }
+
+  private Mono<Void> handleLeaseRejected(int streamId, FrameType type) {
+    // fire-and-forget has no response to reject
+    if (type != FrameType.FIRE_AND_FORGET) {
+      sendFrame(
+          Frame.Error.from(streamId, new RejectedException("Request exceeds the granted lease")));
+    }
+    return Mono.empty();
   }
 
   private Mono<Void> handleRequestN(int streamId, Frame frame) {
-    final Subscription subscription = getSubscription(streamId);
+    final Subscription subscription = sendingSubscriptions.get(streamId);
     if (subscription != null) {
       int n = Frame.RequestN.requestN(frame);
       subscription.request(n >= Integer.MAX_VALUE ? Long.MAX_VALUE : n);
     }
     return Mono.empty();
   }
-
-  private synchronized void addSubscription(int streamId, Subscription subscription) {
-    sendingSubscriptions.put(streamId, subscription);
-  }
-
-  private synchronized @Nullable Subscription getSubscription(int streamId) {
-    return sendingSubscriptions.get(streamId);
-  }
-
-  private synchronized void removeSubscription(int streamId) {
-    sendingSubscriptions.remove(streamId);
-  }
-
-  private synchronized void addChannelProcessor(int streamId, UnicastProcessor<Payload> processor) {
-    channelProcessors.put(streamId, processor);
-  }
-
-  private synchronized @Nullable UnicastProcessor<Payload> getChannelProcessor(int streamId) {
-    return channelProcessors.get(streamId);
-  }
-
-  private synchronized void removeChannelProcessor(int streamId) {
-    channelProcessors.remove(streamId);
-  }
 }
@@ -16,21 +16,46 @@
 
 package io.rsocket;
 
+import io.rsocket.internal.SynchronizedIntObjectHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates stream ids for one side of a connection: odd ids for the client and even ids for the
+ * server.
+ *
+ * <p>Stream ids are limited to 31 bits. Once they are exhausted, allocation wraps around and skips
+ * any id that is still in use by an active stream.
+ */
 final class StreamIdSupplier {
 
-  private int streamId;
+  private static final int MASK = 0x7FFFFFFF;
+
+  // a long so that the count of allocated ids keeps increasing after the 31 bit ids wrap
+  private final AtomicLong streamId;
 
-  private StreamIdSupplier(int streamId) {
-    this.streamId = streamId;
+  StreamIdSupplier(long streamId) {
+    this.streamId = new AtomicLong(streamId);
   }
 
-  synchronized int nextStreamId() {
-    streamId += 2;
+  /**
+   * Returns the next stream id which is not a key of {@code activeStreams}.
+   *
+   * @param activeStreams streams of this side of the connection that have not terminated.
+   */
+  int nextStreamId(SynchronizedIntObjectHashMap<?> activeStreams) {
+    int streamId;
+    do {
+      streamId = (int) (this.streamId.addAndGet(2) & MASK);
+    } while (streamId == 0 || activeStreams.containsKey(streamId));
     return streamId;
   }
 
-  synchronized boolean isBeforeOrCurrent(int streamId) {
-    return this.streamId >= streamId && streamId > 0;
+  /**
+   * Returns {@code true} if {@code streamId} may have been allocated by this supplier, which is
+   * always the case for positive ids once the ids have wrapped.
+   */
+  boolean isBeforeOrCurrent(int streamId) {
+    return this.streamId.get() >= streamId && streamId > 0;
   }
 
   static StreamIdSupplier clientSupplier() {
@@ -45,6 +45,9 @@ public class Exceptions {
       case REJECTED:
         ex = new RejectedException(StandardCharsets.UTF_8.decode(frame.getData()).toString());
         break;
+      case REJECTED_RESUME:
+        ex = new RejectedResumeException(StandardCharsets.UTF_8.decode(frame.getData()).toString());
+        break;
       case REJECTED_SETUP:
         ex = new RejectedSetupException(StandardCharsets.UTF_8.decode(frame.getData()).toString());
         break;
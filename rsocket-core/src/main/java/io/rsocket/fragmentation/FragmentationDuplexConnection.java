@@ -1,23 +1,104 @@
 package io.rsocket.fragmentation;
 
-import io.netty.util.collection.IntObjectHashMap;
+import io.netty.buffer.ByteBuf;
 import io.rsocket.DuplexConnection;
 import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.Payload;
+import io.rsocket.exceptions.CancelException;
+import io.rsocket.exceptions.Exceptions;
+import io.rsocket.exceptions.RejectedException;
 import io.rsocket.frame.FrameHeaderFlyweight;
+import io.rsocket.internal.SynchronizedIntObjectHashMap;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import javax.annotation.Nullable;
 import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxProcessor;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.UnicastProcessor;
 
-/** Fragments and Re-assembles frames. MTU is number of bytes per fragment. The default is 1024 */
+/**
+ * Fragments and Re-assembles frames. MTU is number of bytes per fragment. The default is 1024
+ *
+ * <p>All frames, fragmented or not, are sent with a single {@link DuplexConnection#send(Publisher)}
+ * of the source connection. The reassemblers of the streams are looked up without locking, as
+ * frames are received one at a time and only the closing of the connection runs concurrently.
+ *
+ * <p>When streaming, a fragmented payload is not reassembled: a frame with its metadata is received
+ * as soon as the metadata is complete, with the follows flag still set, and {@link
+ * #streamingFrameDecoder(Function)} decodes it into a {@link StreamingPayload} that the data of the
+ * following fragments is passed on to.
+ *
+ * <p>Payloads that exceed the {@link ReassemblyLimits} are rejected: a request is answered with an
+ * {@code ERROR}, while for any other payload a {@code CANCEL} is sent and an {@code ERROR} is
+ * received in place of the payload. The queued chunks of a streamed payload count against the same
+ * limits: a streamed payload that exceeds them fails, and its stream is failed the same way, except
+ * that a request, which was received in part, is also cancelled. A rejected payload is forgotten at
+ * once, and only its stream is remembered to drop the fragments that are still received, up to the
+ * last one.
+ */
 public class FragmentationDuplexConnection implements DuplexConnection {
 
+  private static final ClosedChannelException CLOSED_CHANNEL_EXCEPTION =
+      new ClosedChannelException();
+
   private final DuplexConnection source;
-  private final IntObjectHashMap<FrameReassembler> frameReassemblers = new IntObjectHashMap<>();
+  private final SynchronizedIntObjectHashMap<Reassembly> reassemblies =
+      new SynchronizedIntObjectHashMap<>();
+  private final SynchronizedIntObjectHashMap<StreamingPayload> streamingPayloads =
+      new SynchronizedIntObjectHashMap<>();
+  private final SynchronizedIntObjectHashMap<Boolean> rejectedStreams =
+      new SynchronizedIntObjectHashMap<>();
   private final FrameFragmenter frameFragmenter;
+  private final boolean streaming;
+  private final ReassemblyLimits limits;
+  private final AtomicInteger reassemblyCount = new AtomicInteger();
+  private final AtomicLong reassemblyBytes = new AtomicLong();
+  private final FluxProcessor<Frame, Frame> rejections =
+      UnicastProcessor.<Frame>create(new ConcurrentLinkedQueue<>()).serialize();
 
   public FragmentationDuplexConnection(DuplexConnection source, int mtu) {
+    this(source, mtu, false);
+  }
+
+  public FragmentationDuplexConnection(DuplexConnection source, int mtu, boolean streaming) {
+    this(source, mtu, streaming, ReassemblyLimits.NONE);
+  }
+
+  /**
+   * @param mtu number of bytes per fragment, or {@code 0} to not fragment sent frames.
+   * @param streaming whether to stream the data of received fragmented payloads.
+   * @param limits limits on the memory held for reassembling received payloads.
+   */
+  public FragmentationDuplexConnection(
+      DuplexConnection source, int mtu, boolean streaming, ReassemblyLimits limits) {
     this.source = source;
     this.frameFragmenter = new FrameFragmenter(mtu);
+    this.streaming = streaming;
+    this.limits = limits;
+  }
+
+  /**
+   * Returns a frame decoder that decodes the frames of streamed payloads into their {@link
+   * StreamingPayload}, and all other frames with {@code frameDecoder}.
+   */
+  public Function<Frame, Payload> streamingFrameDecoder(
+      Function<Frame, ? extends Payload> frameDecoder) {
+    return frame -> {
+      if ((frame.flags() & FrameHeaderFlyweight.FLAGS_F) != 0) {
+        StreamingPayload payload = streamingPayloads.get(frame.getStreamId());
+        if (payload != null) {
+          return payload;
+        }
+      }
+      return frameDecoder.apply(frame);
+    };
   }
 
   @Override
@@ -27,54 +108,233 @@ public class FragmentationDuplexConnection implements DuplexConnection {
 
   @Override
   public Mono<Void> send(Publisher<Frame> frames) {
-    return Flux.from(frames).concatMap(this::sendOne).then();
+    return source.send(Flux.from(frames).concatMap(this::fragment));
   }
 
   @Override
   public Mono<Void> sendOne(Frame frame) {
     if (frameFragmenter.shouldFragment(frame)) {
-      return source.send(frameFragmenter.fragment(frame));
+      return source.send(fragment(frame));
     } else {
       return source.sendOne(frame);
     }
   }
 
+  private Publisher<Frame> fragment(Frame frame) {
+    if (frameFragmenter.shouldFragment(frame)) {
+      return frameFragmenter.fragment(frame).doFinally(s -> frame.release());
+    } else {
+      return Mono.just(frame);
+    }
+  }
+
   @Override
   public Flux<Frame> receive() {
     return source
         .receive()
-        .concatMap(
-            frame -> {
-              if (FrameHeaderFlyweight.FLAGS_F == (frame.flags() & FrameHeaderFlyweight.FLAGS_F)) {
-                FrameReassembler frameReassembler = getFrameReassembler(frame);
-                frameReassembler.append(frame);
-                return Mono.empty();
-              } else if (frameReassemblersContain(frame.getStreamId())) {
-                FrameReassembler frameReassembler = removeFrameReassembler(frame.getStreamId());
-                frameReassembler.append(frame);
-                Frame reassembled = frameReassembler.reassemble();
-                return Mono.just(reassembled);
-              } else {
-                return Mono.just(frame);
+        .<Frame>handle(
+            (frame, sink) -> {
+              Frame reassembled = reassemble(frame);
+              if (reassembled != null) {
+                sink.next(reassembled);
               }
-            });
+            })
+        .doFinally(s -> rejections.onComplete())
+        .mergeWith(rejections);
   }
 
-  @Override
-  public Mono<Void> close() {
-    return source.close();
+  /**
+   * Returns the {@code frame} if it is not a fragment, the reassembled frame if it is the last
+   * fragment, and otherwise {@code null}.
+   */
+  private @Nullable Frame reassemble(Frame frame) {
+    final int streamId = frame.getStreamId();
+    if (!FrameFragmenter.isFragmentableFrame(frame.getType())) {
+      interrupt(streamId, frame);
+      return frame;
+    }
+
+    if (streaming) {
+      StreamingPayload streamingPayload = streamingPayloads.get(streamId);
+      if (streamingPayload != null) {
+        return stream(streamingPayload, frame);
+      }
+    }
+
+    Reassembly reassembly = reassemblies.get(streamId);
+    if (reassembly == null && rejectedStreams.containsKey(streamId)) {
+      if ((frame.flags() & FrameHeaderFlyweight.FLAGS_F) == 0) {
+        rejectedStreams.remove(streamId);
+      }
+      frame.release();
+      return null;
+    }
+    if (FrameHeaderFlyweight.FLAGS_F == (frame.flags() & FrameHeaderFlyweight.FLAGS_F)) {
+      if (reassembly == null) {
+        reassembly = new Reassembly(frame);
+        reassemblies.put(streamId, reassembly);
+        reassembly.start();
+      }
+      if (streaming && frame.sliceFrameData().isReadable()) {
+        return startStreaming(reassembly, frame);
+      }
+      reassembly.append(frame, true);
+      frame.release();
+      return null;
+    } else if (reassembly != null) {
+      reassemblies.remove(streamId);
+      reassembly.append(frame, true);
+      frame.release();
+      Frame reassembled = reassembly.reassemble();
+      if (reassembled == null) {
+        // rejected after it was looked up
+        rejectedStreams.remove(streamId);
+      }
+      return reassembled;
+    } else {
+      return frame;
+    }
+  }
+
+  /**
+   * Returns a frame with the complete metadata of the payload and no data, and passes on the data
+   * of this and the following fragments to a {@link StreamingPayload}.
+   */
+  private @Nullable Frame startStreaming(Reassembly reassembly, Frame frame) {
+    final int streamId = frame.getStreamId();
+    reassembly.append(frame, false);
+    Frame head = reassembly.reassemble();
+    if (head == null) {
+      // rejected, the following fragments are dropped until the last one
+      frame.release();
+      return null;
+    }
+    reassemblies.remove(streamId);
+
+    final ByteBuf data = frame.sliceFrameData();
+    final String rejection = reserveChunk(0, data.readableBytes());
+    if (rejection != null) {
+      head.release();
+      frame.release();
+      rejectedStreams.put(streamId, Boolean.TRUE);
+      rejectStream(streamId, reassembly.request, false, rejection);
+      return null;
+    }
+    StreamingPayload streamingPayload =
+        new StreamingPayload(
+            head.getMetadata(), reassembly.request, length -> reassemblyBytes.addAndGet(-length));
+    streamingPayloads.put(streamId, streamingPayload);
+    streamingPayload.onChunk(data.retain());
+    frame.release();
+    return head;
+  }
+
+  /**
+   * Passes on the data of a fragment to the {@link StreamingPayload} of its stream, and returns a
+   * {@code COMPLETE} frame if it is the last fragment and completes the stream.
+   */
+  private @Nullable Frame stream(StreamingPayload streamingPayload, Frame frame) {
+    final int streamId = frame.getStreamId();
+    final int flags = frame.flags();
+    final ByteBuf data = frame.sliceFrameData();
+    final String rejection = reserveChunk(streamingPayload.queuedBytes(), data.readableBytes());
+    if (rejection == null && data.isReadable()) {
+      streamingPayload.onChunk(data.retain());
+    }
+    frame.release();
+
+    if (rejection != null) {
+      streamingPayloads.remove(streamId);
+      if ((flags & FrameHeaderFlyweight.FLAGS_F) != 0) {
+        rejectedStreams.put(streamId, Boolean.TRUE);
+      }
+      streamingPayload.onError(new RejectedException(rejection));
+      rejectStream(streamId, streamingPayload.isRequest(), true, rejection);
+      return null;
+    }
+    if ((flags & FrameHeaderFlyweight.FLAGS_F) != 0) {
+      return null;
+    }
+    streamingPayloads.remove(streamId);
+    streamingPayload.onComplete();
+    return (flags & FrameHeaderFlyweight.FLAGS_C) != 0
+        ? Frame.PayloadFrame.from(streamId, FrameType.COMPLETE)
+        : null;
+  }
+
+  /** Counts {@code length} bytes against the budget, unless that would exceed it. */
+  private boolean reserve(int length) {
+    if (reassemblyBytes.addAndGet(length) > limits.maxBytes()) {
+      reassemblyBytes.addAndGet(-length);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Counts a chunk of {@code length} bytes against the budget, unless it cannot be queued after the
+   * {@code queued} bytes of its payload.
+   *
+   * @return why the chunk cannot be queued, or {@code null} if it was counted.
+   */
+  private @Nullable String reserveChunk(long queued, int length) {
+    if (queued + length > limits.maxPayloadSize()) {
+      return "Streamed payload queues more than " + limits.maxPayloadSize() + " bytes";
+    }
+    return reserve(length) ? null : budgetExceeded();
   }
 
-  private synchronized FrameReassembler getFrameReassembler(Frame frame) {
-    return frameReassemblers.computeIfAbsent(frame.getStreamId(), s -> new FrameReassembler(frame));
+  private String budgetExceeded() {
+    return "Payloads being reassembled take more than " + limits.maxBytes() + " bytes";
+  }
+
+  /**
+   * Fails the stream of a rejected payload: a request is answered with an {@code ERROR}, and any
+   * other payload is cancelled and an {@code ERROR} received in its place. A request that was
+   * already {@code received} in part is also cancelled, so its responder stops.
+   */
+  private void rejectStream(int streamId, boolean request, boolean received, String message) {
+    RejectedException exception = new RejectedException(message);
+    if (streamId == 0) {
+      // a metadata push has no stream to fail, it is only dropped
+      return;
+    } else if (request) {
+      source.sendOne(Frame.Error.from(streamId, exception)).subscribe();
+      if (received) {
+        rejections.onNext(Frame.Cancel.from(streamId));
+      }
+    } else {
+      source.sendOne(Frame.Cancel.from(streamId)).subscribe();
+      rejections.onNext(Frame.Error.from(streamId, exception));
+    }
   }
 
-  private synchronized FrameReassembler removeFrameReassembler(int streamId) {
-    return frameReassemblers.remove(streamId);
+  /**
+   * Discards the payload that is being reassembled, and fails the payload that is being streamed,
+   * if the stream is cancelled or fails.
+   */
+  private void interrupt(int streamId, Frame frame) {
+    final FrameType frameType = frame.getType();
+    if (frameType != FrameType.ERROR && frameType != FrameType.CANCEL) {
+      return;
+    }
+    Reassembly reassembly = reassemblies.remove(streamId);
+    if (reassembly != null) {
+      reassembly.dispose();
+    }
+    rejectedStreams.remove(streamId);
+    StreamingPayload streamingPayload = streamingPayloads.remove(streamId);
+    if (streamingPayload != null) {
+      streamingPayload.onError(
+          frameType == FrameType.ERROR
+              ? Exceptions.from(frame)
+              : new CancelException("Stream cancelled by the peer"));
+    }
   }
 
-  private synchronized boolean frameReassemblersContain(int streamId) {
-    return frameReassemblers.containsKey(streamId);
+  @Override
+  public Mono<Void> close() {
+    return source.close();
   }
 
   @Override
@@ -83,11 +343,111 @@ public class FragmentationDuplexConnection implements DuplexConnection {
         .onClose()
         .doFinally(
             s -> {
-              synchronized (FragmentationDuplexConnection.this) {
-                frameReassemblers.values().forEach(FrameReassembler::dispose);
-
-                frameReassemblers.clear();
-              }
+              reassemblies.forEachValue(Reassembly::dispose);
+              reassemblies.clear();
+              rejectedStreams.clear();
+              streamingPayloads.forEachValue(p -> p.onError(CLOSED_CHANNEL_EXCEPTION));
+              streamingPayloads.clear();
             });
   }
+
+  /**
+   * The fragments of a payload received so far, accounted for against the {@link ReassemblyLimits}.
+   * Appending runs on the receiving thread, while the payload may time out on another one.
+   */
+  private final class Reassembly {
+    private final int streamId;
+    private final boolean request;
+    private final FrameReassembler frameReassembler;
+    private @Nullable Disposable timeout;
+    private long size;
+    private boolean done;
+
+    private Reassembly(Frame frame) {
+      this.streamId = frame.getStreamId();
+      this.request = frame.getType().isRequestType();
+      this.frameReassembler = new FrameReassembler(frame);
+    }
+
+    private synchronized void start() {
+      if (reassemblyCount.incrementAndGet() > limits.maxReassemblies()) {
+        reject("More than " + limits.maxReassemblies() + " payloads are being reassembled");
+      } else if (!limits.timeout().isZero()) {
+        timeout =
+            Mono.delay(limits.timeout())
+                .subscribe(
+                    l ->
+                        reject(
+                            "Payload not reassembled within "
+                                + limits.timeout().toMillis()
+                                + "ms"));
+      }
+    }
+
+    /** Appends the metadata, and the data if {@code withData}, of a fragment. */
+    private synchronized void append(Frame frame, boolean withData) {
+      if (done) {
+        return;
+      }
+
+      final int length =
+          withData ? frame.payloadLength() : frame.sliceFrameMetadata().readableBytes();
+      if (size + length > limits.maxPayloadSize()) {
+        reject("Payload is larger than " + limits.maxPayloadSize() + " bytes");
+        return;
+      }
+      if (!reserve(length)) {
+        reject(budgetExceeded());
+        return;
+      }
+      size += length;
+
+      if (withData) {
+        frameReassembler.append(frame);
+      } else {
+        frameReassembler.appendMetadata(frame);
+      }
+    }
+
+    /** Returns the reassembled frame, or {@code null} if the payload was rejected. */
+    private synchronized @Nullable Frame reassemble() {
+      if (done) {
+        return null;
+      }
+      finish();
+      return frameReassembler.reassemble();
+    }
+
+    /**
+     * Releases the fragments, forgets the payload while its stream is remembered as rejected, and
+     * fails the stream.
+     */
+    private synchronized void reject(String message) {
+      if (done) {
+        return;
+      }
+      finish();
+      frameReassembler.dispose();
+      // flagged before the removal, so a fragment always finds one of them
+      rejectedStreams.put(streamId, Boolean.TRUE);
+      reassemblies.remove(streamId, this);
+      rejectStream(streamId, request, false, message);
+    }
+
+    private synchronized void dispose() {
+      if (!done) {
+        finish();
+        frameReassembler.dispose();
+      }
+    }
+
+    private void finish() {
+      done = true;
+      if (timeout != null) {
+        timeout.dispose();
+      }
+      reassemblyCount.decrementAndGet();
+      reassemblyBytes.addAndGet(-size);
+    }
+  }
 }
@@ -1,12 +1,21 @@
 package io.rsocket.fragmentation;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.rsocket.Frame;
 import io.rsocket.FrameType;
 import io.rsocket.frame.FrameHeaderFlyweight;
 import reactor.core.publisher.Flux;
 
+/**
+ * Splits a frame into fragments of at most {@code mtu} bytes of metadata and data each.
+ *
+ * <p>The fragments reference slices of the frame instead of copying them, and only get a header of
+ * their own. The first fragment keeps the type and header of the frame, e.g. the initial request n
+ * of a request, the following fragments are {@code PAYLOAD} frames. All but the last fragment have
+ * the follows flag set, and the last one has the complete flag of the frame.
+ */
 public class FrameFragmenter {
   private final int mtu;
 
@@ -15,17 +24,17 @@ public class FrameFragmenter {
   }
 
   public boolean shouldFragment(Frame frame) {
-    return isFragmentableFrame(frame.getType())
-        && FrameHeaderFlyweight.payloadLength(frame.content()) > mtu;
+    return mtu > 0 && isFragmentableFrame(frame.getType()) && frame.payloadLength() > mtu;
   }
 
-  private boolean isFragmentableFrame(FrameType type) {
+  static boolean isFragmentableFrame(FrameType type) {
     switch (type) {
       case FIRE_AND_FORGET:
       case REQUEST_STREAM:
       case REQUEST_CHANNEL:
       case REQUEST_RESPONSE:
       case PAYLOAD:
+      case NEXT:
       case NEXT_COMPLETE:
       case METADATA_PUSH:
         return true;
@@ -34,62 +43,104 @@ public class FrameFragmenter {
     }
   }
 
+  /**
+   * Fragments the {@code frame}, which is retained until all fragments were generated. The
+   * fragments hold on to the content of the frame until they are released.
+   */
   public Flux<Frame> fragment(Frame frame) {
-    final FrameType frameType = frame.getType();
-    final int streamId = frame.getStreamId();
-    final int flags = frame.flags() & ~FrameHeaderFlyweight.FLAGS_F & ~FrameHeaderFlyweight.FLAGS_M;
-    final ByteBuf metadata = FrameHeaderFlyweight.sliceFrameMetadata(frame.content());
-    final ByteBuf data = FrameHeaderFlyweight.sliceFrameData(frame.content());
-    frame.retain();
-
     return Flux.generate(
-        sink -> {
-          final int metadataLength = metadata.readableBytes();
-          final int dataLength = data.readableBytes();
-
-          if (metadataLength > mtu) {
-            sink.next(
-                Frame.PayloadFrame.from(
-                    streamId,
-                    frameType,
-                    metadata.readSlice(mtu),
-                    Unpooled.EMPTY_BUFFER,
-                    flags | FrameHeaderFlyweight.FLAGS_M | FrameHeaderFlyweight.FLAGS_F));
-          } else if (metadataLength > 0) {
-            if (dataLength > mtu - metadataLength) {
-              sink.next(
-                  Frame.PayloadFrame.from(
-                      streamId,
-                      frameType,
-                      metadata.readSlice(metadataLength),
-                      data.readSlice(mtu - metadataLength),
-                      flags | FrameHeaderFlyweight.FLAGS_M | FrameHeaderFlyweight.FLAGS_F));
-            } else {
-              sink.next(
-                  Frame.PayloadFrame.from(
-                      streamId,
-                      frameType,
-                      metadata.readSlice(metadataLength),
-                      data.readSlice(dataLength),
-                      flags | FrameHeaderFlyweight.FLAGS_M));
-              frame.release();
-              sink.complete();
-            }
-          } else if (dataLength > mtu) {
-            sink.next(
-                Frame.PayloadFrame.from(
-                    streamId,
-                    frameType,
-                    Unpooled.EMPTY_BUFFER,
-                    data.readSlice(mtu),
-                    flags | FrameHeaderFlyweight.FLAGS_F));
-          } else {
-            sink.next(
-                Frame.PayloadFrame.from(
-                    streamId, frameType, Unpooled.EMPTY_BUFFER, data.readSlice(dataLength), flags));
-            frame.release();
+        () -> new Fragments(frame.retain()),
+        (fragments, sink) -> {
+          Frame fragment = fragments.next();
+          sink.next(fragment);
+          if (fragments.isDone()) {
             sink.complete();
           }
-        });
+          return fragments;
+        },
+        Fragments::release);
+  }
+
+  private final class Fragments {
+    private final Frame frame;
+    private final FrameType frameType;
+    private final int streamId;
+    private final int flags;
+    private final int headerLength;
+    private final ByteBuf metadata;
+    private final ByteBuf data;
+    private boolean first = true;
+
+    private Fragments(Frame frame) {
+      this.frame = frame;
+      this.frameType = frame.getType();
+      this.streamId = frame.getStreamId();
+      this.flags = frame.flags();
+      this.headerLength = frame.content().readableBytes() - frame.payloadLength();
+      this.metadata = frame.sliceFrameMetadata();
+      this.data = frame.sliceFrameData();
+    }
+
+    private boolean isDone() {
+      return !metadata.isReadable() && !data.isReadable();
+    }
+
+    private Frame next() {
+      final int metadataLength = Math.min(mtu, metadata.readableBytes());
+      final int dataLength = Math.min(mtu - metadataLength, data.readableBytes());
+      final boolean last =
+          metadataLength == metadata.readableBytes() && dataLength == data.readableBytes();
+
+      int fragmentFlags =
+          last ? flags & FrameHeaderFlyweight.FLAGS_C : FrameHeaderFlyweight.FLAGS_F;
+      final ByteBuf header;
+      if (first) {
+        first = false;
+        // keep the header of the frame, with the flags of the fragment
+        fragmentFlags |=
+            flags
+                & ~(FrameHeaderFlyweight.FLAGS_F
+                    | FrameHeaderFlyweight.FLAGS_M
+                    | FrameHeaderFlyweight.FLAGS_C);
+        header =
+            ByteBufAllocator.DEFAULT.buffer(headerLength + FrameHeaderFlyweight.FRAME_LENGTH_SIZE);
+        header.writeBytes(frame.content(), 0, headerLength);
+        FrameHeaderFlyweight.encodeFlags(header, fragmentFlags);
+        header.writerIndex(
+            headerLength
+                + FrameHeaderFlyweight.encodeMetadataLength(
+                    header, frameType, headerLength, metadataLength));
+      } else {
+        header =
+            ByteBufAllocator.DEFAULT.buffer(
+                FrameHeaderFlyweight.computeHeaderLength(FrameType.NEXT, metadataLength));
+        header.writerIndex(
+            FrameHeaderFlyweight.encodeHeader(
+                header, streamId, fragmentFlags, FrameType.NEXT, metadataLength, dataLength));
+      }
+      FrameHeaderFlyweight.encodeFrameLength(
+          header, header.readableBytes() + metadataLength + dataLength);
+
+      if (metadataLength + dataLength < Frame.COMPOSITE_THRESHOLD) {
+        header.ensureWritable(metadataLength + dataLength);
+        header.writeBytes(metadata, metadataLength);
+        header.writeBytes(data, dataLength);
+        return Frame.from(header);
+      }
+
+      final CompositeByteBuf content = ByteBufAllocator.DEFAULT.compositeBuffer(3);
+      content.addComponent(true, header);
+      if (metadataLength > 0) {
+        content.addComponent(true, metadata.readRetainedSlice(metadataLength));
+      }
+      if (dataLength > 0) {
+        content.addComponent(true, data.readRetainedSlice(dataLength));
+      }
+      return Frame.from(content);
+    }
+
+    private void release() {
+      frame.release();
+    }
   }
 }
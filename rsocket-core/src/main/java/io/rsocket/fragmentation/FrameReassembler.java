@@ -1,55 +1,140 @@
 package io.rsocket.fragmentation;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.CompositeByteBuf;
-import io.netty.buffer.PooledByteBufAllocator;
 import io.rsocket.Frame;
 import io.rsocket.FrameType;
 import io.rsocket.frame.FrameHeaderFlyweight;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import javax.annotation.Nullable;
 import reactor.core.Disposable;
 
-/** Assembles Fragmented frames. */
+/**
+ * Assembles Fragmented frames.
+ *
+ * <p>The metadata and data of the fragments are not copied: the reassembled frame is a composite of
+ * the header of the first fragment and slices of all fragments. Fragments are expected to be
+ * appended by one thread at a time, while {@link #dispose()} may be called from any thread.
+ */
 public class FrameReassembler implements Disposable {
+
+  private static final int IDLE = 0;
+  private static final int BUSY = 1;
+  private static final int DISPOSED = 2;
+
+  private static final AtomicIntegerFieldUpdater<FrameReassembler> STATE =
+      AtomicIntegerFieldUpdater.newUpdater(FrameReassembler.class, "state");
+
   private final FrameType frameType;
-  private final int streamId;
   private final int flags;
-  private final CompositeByteBuf dataBuffer;
-  private final CompositeByteBuf metadataBuffer;
+  private final ByteBuf header;
+  private final CompositeByteBuf payload;
+  private int metadataLength;
+  private int dataLength;
+  private int lastFlags;
+
+  private volatile int state;
 
   public FrameReassembler(Frame frame) {
     this.frameType = frame.getType();
-    this.streamId = frame.getStreamId();
     this.flags = frame.flags();
-    dataBuffer = PooledByteBufAllocator.DEFAULT.compositeBuffer();
-    metadataBuffer = PooledByteBufAllocator.DEFAULT.compositeBuffer();
-  }
-
-  public synchronized void append(Frame frame) {
-    final ByteBuf byteBuf = frame.content();
-    final FrameType frameType = FrameHeaderFlyweight.frameType(byteBuf);
-    final int frameLength = FrameHeaderFlyweight.frameLength(byteBuf);
-    final int metadataLength = FrameHeaderFlyweight.metadataLength(byteBuf, frameType, frameLength);
-    final int dataLength = FrameHeaderFlyweight.dataLength(byteBuf, frameType);
-    if (0 < metadataLength) {
-      int metadataOffset = FrameHeaderFlyweight.metadataOffset(byteBuf);
-      if (FrameHeaderFlyweight.hasMetadataLengthField(frameType)) {
-        metadataOffset += FrameHeaderFlyweight.FRAME_LENGTH_SIZE;
-      }
-      metadataBuffer.addComponent(true, byteBuf.retainedSlice(metadataOffset, metadataLength));
+    final int headerLength = frame.content().readableBytes() - frame.payloadLength();
+    this.header =
+        ByteBufAllocator.DEFAULT
+            .buffer(headerLength + FrameHeaderFlyweight.FRAME_LENGTH_SIZE)
+            .writeBytes(frame.content(), 0, headerLength);
+    this.payload = ByteBufAllocator.DEFAULT.compositeBuffer(Integer.MAX_VALUE);
+  }
+
+  /** Appends the metadata and data of a fragment, which is not released. */
+  public void append(Frame frame) {
+    append(frame, true);
+  }
+
+  /**
+   * Appends only the metadata of a fragment, which is not released. The frame reassembled after
+   * this keeps the follows flag of the fragment, as its data is still to come.
+   */
+  void appendMetadata(Frame frame) {
+    append(frame, false);
+  }
+
+  private void append(Frame frame, boolean withData) {
+    if (!STATE.compareAndSet(this, IDLE, BUSY)) {
+      return;
+    }
+
+    // all metadata is sent ahead of the data, so both can go in one buffer
+    final ByteBuf metadata = frame.sliceFrameMetadata();
+    if (metadata.isReadable()) {
+      metadataLength += metadata.readableBytes();
+      payload.addComponent(true, metadata.retain());
     }
-    if (0 < dataLength) {
-      final int dataOffset = FrameHeaderFlyweight.dataOffset(byteBuf, frameType, frameLength);
-      dataBuffer.addComponent(true, byteBuf.retainedSlice(dataOffset, dataLength));
+    final ByteBuf data = frame.sliceFrameData();
+    if (withData && data.isReadable()) {
+      dataLength += data.readableBytes();
+      payload.addComponent(true, data.retain());
+    }
+    lastFlags = frame.flags();
+
+    if (!STATE.compareAndSet(this, BUSY, IDLE)) {
+      release();
     }
   }
 
-  public synchronized Frame reassemble() {
-    return Frame.PayloadFrame.from(streamId, frameType, metadataBuffer, dataBuffer, flags);
+  /**
+   * Returns the frame assembled from the appended fragments, after which this reassembler is
+   * disposed, or {@code null} if it already was.
+   */
+  public @Nullable Frame reassemble() {
+    if (!STATE.compareAndSet(this, IDLE, DISPOSED)) {
+      return null;
+    }
+
+    final int headerLength = header.readableBytes();
+    FrameHeaderFlyweight.encodeFlags(
+        header,
+        flags
+                & ~(FrameHeaderFlyweight.FLAGS_F
+                    | FrameHeaderFlyweight.FLAGS_M
+                    | FrameHeaderFlyweight.FLAGS_C)
+            | lastFlags & (FrameHeaderFlyweight.FLAGS_F | FrameHeaderFlyweight.FLAGS_C));
+    header.writerIndex(
+        headerLength
+            + FrameHeaderFlyweight.encodeMetadataLength(
+                header, frameType, headerLength, metadataLength));
+    FrameHeaderFlyweight.encodeFrameLength(
+        header, header.readableBytes() + metadataLength + dataLength);
+
+    payload.addComponent(true, 0, header);
+    return Frame.from(payload);
   }
 
   @Override
   public void dispose() {
-    dataBuffer.release();
-    metadataBuffer.release();
+    for (; ; ) {
+      int s = state;
+      if (s == DISPOSED) {
+        return;
+      }
+      if (STATE.compareAndSet(this, s, DISPOSED)) {
+        // a concurrent append releases once it is done
+        if (s == IDLE) {
+          release();
+        }
+        return;
+      }
+    }
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return state == DISPOSED;
+  }
+
+  private void release() {
+    header.release();
+    payload.release();
   }
 }
@@ -0,0 +1,80 @@
+package io.rsocket.fragmentation;
+
+import io.rsocket.frame.FrameHeaderFlyweight;
+import java.time.Duration;
+
+/**
+ * Limits on the memory a connection holds for reassembling fragmented payloads. A payload that
+ * exceeds a limit is rejected: its fragments are released, and the stream fails with an {@code
+ * ERROR} instead of the connection.
+ *
+ * <p>The limits apply to the fragments held until a payload is complete. Of a streamed payload, they
+ * apply to its metadata, and to the chunks of its data that are queued until they are delivered to
+ * the subscriber or released.
+ */
+public final class ReassemblyLimits {
+  /**
+   * The largest payload any frame can hold, as its length is encoded in 24 bits, with room for the
+   * initial request n and the metadata length in its header.
+   */
+  public static final int MAX_PAYLOAD_SIZE =
+      FrameHeaderFlyweight.FRAME_LENGTH_MASK - FrameHeaderFlyweight.FRAME_HEADER_LENGTH - 8;
+
+  /** No limits but the size of a frame. */
+  public static final ReassemblyLimits NONE =
+      new ReassemblyLimits(MAX_PAYLOAD_SIZE, Integer.MAX_VALUE, Long.MAX_VALUE, Duration.ZERO);
+
+  private final int maxPayloadSize;
+  private final int maxReassemblies;
+  private final long maxBytes;
+  private final Duration timeout;
+
+  /**
+   * @param maxPayloadSize maximum size of the metadata and data of a reassembled payload, and of
+   *     the queued chunks of a streamed payload, at most {@link #MAX_PAYLOAD_SIZE}.
+   * @param maxReassemblies maximum number of payloads reassembled at the same time.
+   * @param maxBytes maximum number of bytes held for all payloads being reassembled, and for the
+   *     queued chunks of all streamed payloads.
+   * @param timeout maximum time between the first and the last fragment of a payload, or {@link
+   *     Duration#ZERO} for none.
+   */
+  public ReassemblyLimits(
+      int maxPayloadSize, int maxReassemblies, long maxBytes, Duration timeout) {
+    if (maxPayloadSize <= 0 || maxPayloadSize > MAX_PAYLOAD_SIZE) {
+      throw new IllegalArgumentException(
+          "maxPayloadSize must be positive and at most "
+              + MAX_PAYLOAD_SIZE
+              + ": "
+              + maxPayloadSize);
+    }
+    if (maxReassemblies <= 0) {
+      throw new IllegalArgumentException("maxReassemblies must be positive: " + maxReassemblies);
+    }
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+    }
+    if (timeout.isNegative()) {
+      throw new IllegalArgumentException("timeout must not be negative: " + timeout);
+    }
+    this.maxPayloadSize = maxPayloadSize;
+    this.maxReassemblies = maxReassemblies;
+    this.maxBytes = maxBytes;
+    this.timeout = timeout;
+  }
+
+  public int maxPayloadSize() {
+    return maxPayloadSize;
+  }
+
+  public int maxReassemblies() {
+    return maxReassemblies;
+  }
+
+  public long maxBytes() {
+    return maxBytes;
+  }
+
+  public Duration timeout() {
+    return timeout;
+  }
+}
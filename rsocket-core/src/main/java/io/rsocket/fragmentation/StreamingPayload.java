@@ -0,0 +1,192 @@
+package io.rsocket.fragmentation;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AbstractReferenceCounted;
+import io.rsocket.Payload;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.UnicastProcessor;
+
+/**
+ * A fragmented {@link Payload} that is handed to the application as soon as its metadata was
+ * received, while its data is still arriving. The data is {@link #data() streamed} in chunks, one
+ * per fragment, instead of being reassembled in memory.
+ *
+ * <p>The chunks of a payload are sent by the peer without flow control, and are buffered until the
+ * subscriber requests them. Flow control applies between payloads: by requesting the next payload
+ * of a stream only once the chunks of the current one were consumed, e.g. with {@code
+ * concatMap(payload -> write(payload.data()), 1)}, at most one payload is in flight at a time. The
+ * buffered chunks of a payload are bounded by the {@link ReassemblyLimits#maxPayloadSize()}, and
+ * count against the {@link ReassemblyLimits#maxBytes()} of the connection until they are delivered
+ * or released. The payload fails with a {@link io.rsocket.exceptions.RejectedException} once they
+ * would exceed either.
+ *
+ * <p>Every chunk is a slice of a received frame, which <em>must</em> be released by the subscriber.
+ * Chunks that were not delivered are released when the subscriber cancels, when the stream fails,
+ * and when the payload is {@link #release() released} or {@link #dispose() disposed}, which a
+ * payload whose data is not subscribed must be.
+ */
+public final class StreamingPayload extends AbstractReferenceCounted
+    implements Payload, Disposable {
+
+  private final ByteBuffer metadata;
+  private final boolean request;
+  private final IntConsumer dequeued;
+  private final Queue<ByteBuf> chunks;
+  private final AtomicLong queuedBytes = new AtomicLong();
+  private final UnicastProcessor<ByteBuf> processor;
+  private volatile boolean subscribed;
+  private volatile boolean cancelled;
+
+  StreamingPayload(ByteBuffer metadata) {
+    this(metadata, false, length -> {});
+  }
+
+  /**
+   * @param request whether the payload is the one of a request.
+   * @param dequeued called with the length of every chunk that is no longer queued, as it was
+   *     delivered or released.
+   */
+  StreamingPayload(ByteBuffer metadata, boolean request, IntConsumer dequeued) {
+    this.metadata = metadata;
+    this.request = request;
+    this.dequeued = dequeued;
+    this.chunks = new ConcurrentLinkedQueue<>();
+    this.processor = UnicastProcessor.create(chunks);
+  }
+
+  /** Returns the chunks of data, which can only be subscribed once. */
+  public Flux<ByteBuf> data() {
+    return processor
+        .doOnNext(chunk -> dequeue(chunk.readableBytes()))
+        .doOnSubscribe(
+            s -> {
+              synchronized (this) {
+                subscribed = true;
+              }
+            })
+        .doOnCancel(this::dispose);
+  }
+
+  @Override
+  public ByteBuffer getMetadata() {
+    return metadata.duplicate();
+  }
+
+  /**
+   * Returns a copy of the data received so far, which is all of it once the payload completed, for
+   * callers that read payloads generically, e.g. to weigh or log them. The chunks stay queued for
+   * {@link #data()}.
+   *
+   * @throws IllegalStateException if {@link #data()} was subscribed, as the chunks delivered to the
+   *     subscriber are no longer held by the payload.
+   */
+  @Override
+  public synchronized ByteBuffer getData() {
+    if (subscribed) {
+      throw new IllegalStateException(
+          "The data of a streaming payload is read with data() once subscribed");
+    }
+    int size = 0;
+    for (ByteBuf chunk : chunks) {
+      size += chunk.readableBytes();
+    }
+    ByteBuffer data = ByteBuffer.allocate(size);
+    for (ByteBuf chunk : chunks) {
+      data.put(chunk.nioBuffer());
+    }
+    data.flip();
+    return data;
+  }
+
+  boolean isRequest() {
+    return request;
+  }
+
+  /** Returns the length of the chunks that were neither delivered nor released yet. */
+  long queuedBytes() {
+    return queuedBytes.get();
+  }
+
+  /** Passes on a chunk of data, which is released if the payload was cancelled. */
+  void onChunk(ByteBuf chunk) {
+    queuedBytes.addAndGet(chunk.readableBytes());
+    if (cancelled) {
+      dequeue(chunk.readableBytes());
+      chunk.release();
+      return;
+    }
+    processor.onNext(chunk);
+    if (cancelled) {
+      discard();
+    }
+  }
+
+  void onComplete() {
+    processor.onComplete();
+  }
+
+  void onError(Throwable t) {
+    // the processor drops the queued chunks on error without releasing them
+    dispose();
+    processor.onError(t);
+  }
+
+  /** Releases the chunks that were not delivered, and any received later. */
+  @Override
+  public void dispose() {
+    cancelled = true;
+    discard();
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return cancelled;
+  }
+
+  @Override
+  public StreamingPayload retain() {
+    super.retain();
+    return this;
+  }
+
+  @Override
+  public StreamingPayload retain(int increment) {
+    super.retain(increment);
+    return this;
+  }
+
+  @Override
+  public StreamingPayload touch() {
+    super.touch();
+    return this;
+  }
+
+  @Override
+  public StreamingPayload touch(Object hint) {
+    return this;
+  }
+
+  @Override
+  protected void deallocate() {
+    dispose();
+  }
+
+  private synchronized void discard() {
+    ByteBuf chunk;
+    while ((chunk = chunks.poll()) != null) {
+      dequeue(chunk.readableBytes());
+      chunk.release();
+    }
+  }
+
+  private void dequeue(int length) {
+    queuedBytes.addAndGet(-length);
+    dequeued.accept(length);
+  }
+}
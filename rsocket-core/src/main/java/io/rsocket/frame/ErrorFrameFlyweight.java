@@ -23,6 +23,7 @@ import io.rsocket.exceptions.ConnectionException;
 import io.rsocket.exceptions.InvalidRequestException;
 import io.rsocket.exceptions.InvalidSetupException;
 import io.rsocket.exceptions.RejectedException;
+import io.rsocket.exceptions.RejectedResumeException;
 import io.rsocket.exceptions.RejectedSetupException;
 import io.rsocket.exceptions.UnsupportedSetupException;
 
@@ -79,6 +80,8 @@ public class ErrorFrameFlyweight {
       return UNSUPPORTED_SETUP;
     } else if (ex instanceof RejectedSetupException) {
       return REJECTED_SETUP;
+    } else if (ex instanceof RejectedResumeException) {
+      return REJECTED_RESUME;
     } else if (ex instanceof ConnectionException) {
       return CONNECTION_ERROR;
     } else if (ex instanceof InvalidRequestException) {
@@ -35,7 +35,7 @@ public class FrameHeaderFlyweight {
 
   private static final int FRAME_TYPE_BITS = 6;
   private static final int FRAME_TYPE_SHIFT = 16 - FRAME_TYPE_BITS;
-  private static final int FRAME_FLAGS_MASK = 0b0000_0011_1111_1111;
+  static final int FRAME_FLAGS_MASK = 0b0000_0011_1111_1111;
 
   public static final int FRAME_LENGTH_SIZE = 3;
   public static final int FRAME_LENGTH_MASK = 0xFFFFFF;
@@ -90,8 +90,29 @@ public class FrameHeaderFlyweight {
       final FrameType frameType,
       final int metadataOffset,
       final ByteBuf metadata) {
-    int length = 0;
     final int metadataLength = metadata.readableBytes();
+    int length = encodeMetadataLength(byteBuf, frameType, metadataOffset, metadataLength);
+
+    if (0 < metadataLength) {
+      byteBuf.setBytes(metadataOffset + length, metadata);
+      length += metadataLength;
+    }
+
+    return length;
+  }
+
+  /**
+   * Sets the metadata flag and writes the metadata length field, if the frame type has one, without
+   * writing the metadata itself.
+   *
+   * @return number of bytes written at {@code metadataOffset}
+   */
+  public static int encodeMetadataLength(
+      final ByteBuf byteBuf,
+      final FrameType frameType,
+      final int metadataOffset,
+      final int metadataLength) {
+    int length = 0;
 
     if (0 < metadataLength) {
       int typeAndFlags = byteBuf.getShort(FRAME_TYPE_AND_FLAGS_FIELD_OFFSET);
@@ -102,8 +123,6 @@ public class FrameHeaderFlyweight {
         encodeLength(byteBuf, metadataOffset, metadataLength);
         length += FRAME_LENGTH_SIZE;
       }
-      byteBuf.setBytes(metadataOffset + length, metadata);
-      length += metadataLength;
     }
 
     return length;
@@ -132,6 +151,43 @@ public class FrameHeaderFlyweight {
     final int frameLength =
         computeFrameHeaderLength(frameType, metadata.readableBytes(), data.readableBytes());
 
+    int length = encodePayloadFrameHeader(byteBuf, frameLength, flags, frameType, streamId);
+
+    length += encodeMetadata(byteBuf, frameType, length, metadata);
+    length += encodeData(byteBuf, length, data);
+
+    return length;
+  }
+
+  /**
+   * Encodes the frame header and metadata length field of a frame of a type handled by {@link
+   * #encode(ByteBuf, int, int, FrameType, ByteBuf, ByteBuf)}, but none of the metadata or data
+   * bytes. The metadata and then the data are expected to directly follow the returned number of
+   * bytes, e.g. as components of a {@link io.netty.buffer.CompositeByteBuf}.
+   *
+   * @return number of bytes written
+   */
+  public static int encodeHeader(
+      final ByteBuf byteBuf,
+      final int streamId,
+      int flags,
+      final FrameType frameType,
+      final int metadataLength,
+      final int dataLength) {
+    final int frameLength = computeFrameHeaderLength(frameType, metadataLength, dataLength);
+
+    int length = encodePayloadFrameHeader(byteBuf, frameLength, flags, frameType, streamId);
+    length += encodeMetadataLength(byteBuf, frameType, length, metadataLength);
+
+    return length;
+  }
+
+  private static int encodePayloadFrameHeader(
+      final ByteBuf byteBuf,
+      final int frameLength,
+      int flags,
+      final FrameType frameType,
+      final int streamId) {
     final FrameType outFrameType;
     switch (frameType) {
       case PAYLOAD:
@@ -154,12 +210,29 @@ public class FrameHeaderFlyweight {
         break;
     }
 
-    int length = encodeFrameHeader(byteBuf, frameLength, flags, outFrameType, streamId);
+    return encodeFrameHeader(byteBuf, frameLength, flags, outFrameType, streamId);
+  }
 
-    length += encodeMetadata(byteBuf, frameType, length, metadata);
-    length += encodeData(byteBuf, length, data);
+  /**
+   * Computes the length of the part of a frame written by {@link #encodeHeader(ByteBuf, int, int,
+   * FrameType, int, int)}.
+   */
+  public static int computeHeaderLength(final FrameType frameType, final int metadataLength) {
+    return computeFrameHeaderLength(frameType, metadataLength, 0) - metadataLength;
+  }
 
-    return length;
+  /**
+   * Overwrites the frame length field of an already encoded frame, e.g. one whose header was copied
+   * from another frame.
+   */
+  public static void encodeFrameLength(final ByteBuf byteBuf, final int frameLength) {
+    encodeLength(byteBuf, FRAME_LENGTH_FIELD_OFFSET, frameLength - FRAME_LENGTH_SIZE);
+  }
+
+  /** Overwrites the flags of an already encoded frame, keeping its type. */
+  public static void encodeFlags(final ByteBuf byteBuf, final int flags) {
+    int typeAndFlags = typeAndFlags(byteBuf) & ~FRAME_FLAGS_MASK;
+    byteBuf.setShort(FRAME_TYPE_AND_FLAGS_FIELD_OFFSET, typeAndFlags | (flags & FRAME_FLAGS_MASK));
   }
 
   public static int flags(final ByteBuf byteBuf) {
@@ -168,7 +241,14 @@ public class FrameHeaderFlyweight {
   }
 
   public static FrameType frameType(final ByteBuf byteBuf) {
-    int typeAndFlags = byteBuf.getShort(FRAME_TYPE_AND_FLAGS_FIELD_OFFSET);
+    return frameType(typeAndFlags(byteBuf));
+  }
+
+  static int typeAndFlags(final ByteBuf byteBuf) {
+    return byteBuf.getShort(FRAME_TYPE_AND_FLAGS_FIELD_OFFSET);
+  }
+
+  static FrameType frameType(final int typeAndFlags) {
     FrameType result = FrameType.from(typeAndFlags >> FRAME_TYPE_SHIFT);
 
     if (FrameType.PAYLOAD == result) {
@@ -278,7 +358,7 @@ public class FrameHeaderFlyweight {
     byteBuf.setByte(offset + 2, length);
   }
 
-  private static int decodeLength(final ByteBuf byteBuf, final int offset) {
+  static int decodeLength(final ByteBuf byteBuf, final int offset) {
     int length = (byteBuf.getByte(offset) & 0xFF) << 16;
     length |= (byteBuf.getByte(offset + 1) & 0xFF) << 8;
     length |= byteBuf.getByte(offset + 2) & 0xFF;
@@ -305,7 +385,10 @@ public class FrameHeaderFlyweight {
 
   private static int payloadOffset(final ByteBuf byteBuf) {
     int typeAndFlags = byteBuf.getShort(FRAME_TYPE_AND_FLAGS_FIELD_OFFSET);
-    FrameType frameType = FrameType.from(typeAndFlags >> FRAME_TYPE_SHIFT);
+    return payloadOffset(byteBuf, FrameType.from(typeAndFlags >> FRAME_TYPE_SHIFT));
+  }
+
+  static int payloadOffset(final ByteBuf byteBuf, final FrameType frameType) {
     int result = PAYLOAD_OFFSET;
 
     switch (frameType) {
@@ -330,6 +413,12 @@ public class FrameHeaderFlyweight {
       case REQUEST_N:
         result = RequestNFrameFlyweight.payloadOffset(byteBuf);
         break;
+      case RESUME:
+        result = ResumeFrameFlyweight.payloadOffset(byteBuf);
+        break;
+      case RESUME_OK:
+        result = ResumeOkFrameFlyweight.payloadOffset(byteBuf);
+        break;
     }
 
     return result;
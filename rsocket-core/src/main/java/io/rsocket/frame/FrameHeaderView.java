@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rsocket.frame;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.FrameType;
+
+/**
+ * Reusable view of a frame header, decoded once by {@link #decode(ByteBuf)} instead of on every
+ * access as with the static accessors of {@link FrameHeaderFlyweight}.
+ *
+ * <p>The values are only valid as long as the decoded buffer is not modified. Not thread-safe.
+ * Assumed to be used single-threaded
+ */
+public final class FrameHeaderView {
+
+  private boolean decoded;
+  private int streamId;
+  private FrameType frameType;
+  private int flags;
+  private int frameLength;
+  private int payloadOffset;
+  private int metadataOffset;
+  private int metadataLength;
+  private int dataOffset;
+  private int dataLength;
+
+  /**
+   * Decodes the header of the frame in {@code byteBuf}, replacing any previously decoded values.
+   */
+  public FrameHeaderView decode(final ByteBuf byteBuf) {
+    final int typeAndFlags = FrameHeaderFlyweight.typeAndFlags(byteBuf);
+    final FrameType frameType = FrameHeaderFlyweight.frameType(typeAndFlags);
+    final int flags = typeAndFlags & FrameHeaderFlyweight.FRAME_FLAGS_MASK;
+    final int frameLength = FrameHeaderFlyweight.frameLength(byteBuf);
+    final int payloadOffset = FrameHeaderFlyweight.payloadOffset(byteBuf, frameType);
+
+    int metadataOffset = payloadOffset;
+    int metadataLength;
+    int metadataFieldLength;
+    if (!FrameHeaderFlyweight.hasMetadataLengthField(frameType)) {
+      // frames without a metadata length field carry nothing but metadata
+      metadataLength = Math.max(0, frameLength - payloadOffset);
+      metadataFieldLength = metadataLength;
+    } else {
+      metadataLength = 0;
+      if ((flags & FrameHeaderFlyweight.FLAGS_M) == FrameHeaderFlyweight.FLAGS_M) {
+        metadataLength = FrameHeaderFlyweight.decodeLength(byteBuf, payloadOffset);
+      }
+      metadataFieldLength =
+          metadataLength == 0 ? 0 : metadataLength + FrameHeaderFlyweight.FRAME_LENGTH_SIZE;
+      metadataOffset += FrameHeaderFlyweight.FRAME_LENGTH_SIZE;
+    }
+
+    this.streamId = FrameHeaderFlyweight.streamId(byteBuf);
+    this.frameType = frameType;
+    this.flags = flags;
+    this.frameLength = frameLength;
+    this.payloadOffset = payloadOffset;
+    this.metadataOffset = metadataOffset;
+    this.metadataLength = metadataLength;
+    this.dataOffset = payloadOffset + metadataFieldLength;
+    this.dataLength = frameLength - dataOffset;
+    this.decoded = true;
+    return this;
+  }
+
+  /** Forgets the decoded values, so that {@link #isDecoded()} returns {@code false}. */
+  public void reset() {
+    decoded = false;
+    frameType = null;
+  }
+
+  public boolean isDecoded() {
+    return decoded;
+  }
+
+  public int streamId() {
+    return streamId;
+  }
+
+  public FrameType frameType() {
+    return frameType;
+  }
+
+  public int flags() {
+    return flags;
+  }
+
+  public int frameLength() {
+    return frameLength;
+  }
+
+  /** Offset of the metadata bytes, after the metadata length field if the frame type has one. */
+  public int metadataOffset() {
+    return metadataOffset;
+  }
+
+  public int metadataLength() {
+    return metadataLength;
+  }
+
+  public int dataOffset() {
+    return dataOffset;
+  }
+
+  public int dataLength() {
+    return dataLength;
+  }
+
+  /** Length of the metadata and data, including the metadata length field. */
+  public int payloadLength() {
+    return frameLength - payloadOffset;
+  }
+
+  /** Slices the metadata out of {@code byteBuf}, which must be the decoded buffer. */
+  public ByteBuf sliceMetadata(final ByteBuf byteBuf) {
+    return 0 < metadataLength
+        ? byteBuf.slice(metadataOffset, metadataLength)
+        : Unpooled.EMPTY_BUFFER;
+  }
+
+  /** Slices the data out of {@code byteBuf}, which must be the decoded buffer. */
+  public ByteBuf sliceData(final ByteBuf byteBuf) {
+    return 0 < dataLength ? byteBuf.slice(dataOffset, dataLength) : Unpooled.EMPTY_BUFFER;
+  }
+}
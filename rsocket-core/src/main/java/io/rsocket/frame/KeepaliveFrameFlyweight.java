@@ -37,7 +37,7 @@ public class KeepaliveFrameFlyweight {
     int length =
         FrameHeaderFlyweight.encodeFrameHeader(byteBuf, frameLength, flags, FrameType.KEEPALIVE, 0);
 
-    // We don't support resumability, last position is always zero
+    // the last position is only relevant for resumable connections, which set it when sending
     byteBuf.setLong(length, 0);
     length += Long.BYTES;
 
@@ -46,6 +46,15 @@ public class KeepaliveFrameFlyweight {
     return length;
   }
 
+  /** Returns the implied position of the last frame received by the sender of the keepalive. */
+  public static long lastPosition(final ByteBuf byteBuf) {
+    return byteBuf.getLong(LAST_POSITION_OFFSET);
+  }
+
+  public static void encodeLastPosition(final ByteBuf byteBuf, final long lastPosition) {
+    byteBuf.setLong(LAST_POSITION_OFFSET, lastPosition);
+  }
+
   public static int payloadOffset(final ByteBuf byteBuf) {
     return PAYLOAD_OFFSET;
   }
@@ -82,6 +82,44 @@ public class RequestFrameFlyweight {
     return length;
   }
 
+  /**
+   * Encodes the header, initial request n (for types that carry one) and metadata length field of a
+   * request frame, but none of the metadata or data bytes.
+   *
+   * @return number of bytes written
+   * @see FrameHeaderFlyweight#encodeHeader(ByteBuf, int, int, FrameType, int, int)
+   */
+  public static int encodeHeader(
+      final ByteBuf byteBuf,
+      final int streamId,
+      final int flags,
+      final FrameType type,
+      final int initialRequestN,
+      final int metadataLength,
+      final int dataLength) {
+    final int frameLength = computeFrameLength(type, metadataLength, dataLength);
+
+    int length =
+        FrameHeaderFlyweight.encodeFrameHeader(byteBuf, frameLength, flags, type, streamId);
+
+    if (type.hasInitialRequestN()) {
+      byteBuf.setInt(INITIAL_REQUEST_N_FIELD_OFFSET, initialRequestN);
+      length += Integer.BYTES;
+    }
+
+    length += FrameHeaderFlyweight.encodeMetadataLength(byteBuf, type, length, metadataLength);
+
+    return length;
+  }
+
+  /**
+   * Computes the length of the part of a request frame written by {@link #encodeHeader(ByteBuf,
+   * int, int, FrameType, int, int, int)}.
+   */
+  public static int computeHeaderLength(final FrameType type, final int metadataLength) {
+    return computeFrameLength(type, metadataLength, 0) - metadataLength;
+  }
+
   public static int initialRequestN(final ByteBuf byteBuf) {
     return byteBuf.getInt(INITIAL_REQUEST_N_FIELD_OFFSET);
   }
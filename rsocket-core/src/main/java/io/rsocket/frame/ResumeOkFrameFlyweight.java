@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rsocket.frame;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.FrameType;
+
+public class ResumeOkFrameFlyweight {
+  private ResumeOkFrameFlyweight() {}
+
+  // relative to start of passed offset
+  private static final int LAST_RECEIVED_CLIENT_POSITION_FIELD_OFFSET =
+      FrameHeaderFlyweight.FRAME_HEADER_LENGTH;
+  private static final int PAYLOAD_OFFSET = LAST_RECEIVED_CLIENT_POSITION_FIELD_OFFSET + Long.BYTES;
+
+  public static int computeFrameLength() {
+    int length = FrameHeaderFlyweight.computeFrameHeaderLength(FrameType.RESUME_OK, 0, 0);
+    return length + Long.BYTES;
+  }
+
+  public static int encode(final ByteBuf byteBuf, final long lastReceivedClientPosition) {
+    final int frameLength = computeFrameLength();
+
+    int length =
+        FrameHeaderFlyweight.encodeFrameHeader(byteBuf, frameLength, 0, FrameType.RESUME_OK, 0);
+
+    byteBuf.setLong(LAST_RECEIVED_CLIENT_POSITION_FIELD_OFFSET, lastReceivedClientPosition);
+
+    return length + Long.BYTES;
+  }
+
+  public static long lastReceivedClientPosition(final ByteBuf byteBuf) {
+    return byteBuf.getLong(LAST_RECEIVED_CLIENT_POSITION_FIELD_OFFSET);
+  }
+
+  public static int payloadOffset(final ByteBuf byteBuf) {
+    return PAYLOAD_OFFSET;
+  }
+}
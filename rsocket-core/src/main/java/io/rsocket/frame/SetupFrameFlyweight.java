@@ -48,7 +48,7 @@ public class SetupFrameFlyweight {
     return computeFrameLength(flags, 0, metadataMimeType, dataMimeType, metadataLength, dataLength);
   }
 
-  private static int computeFrameLength(
+  public static int computeFrameLength(
       final int flags,
       final int resumeTokenLength,
       final String metadataMimeType,
@@ -80,7 +80,7 @@ public class SetupFrameFlyweight {
       final ByteBuf metadata,
       final ByteBuf data) {
     if ((flags & FLAGS_RESUME_ENABLE) != 0) {
-      throw new IllegalArgumentException("RESUME_ENABLE not supported");
+      throw new IllegalArgumentException("RESUME_ENABLE requires a resume token");
     }
 
     return encode(
@@ -95,8 +95,7 @@ public class SetupFrameFlyweight {
         data);
   }
 
-  // Only exposed for testing, other code shouldn't create frames with resumption tokens for now
-  static int encode(
+  public static int encode(
       final ByteBuf byteBuf,
       int flags,
       final int keepaliveInterval,
@@ -128,7 +127,7 @@ public class SetupFrameFlyweight {
       byteBuf.setShort(length, resumeToken.readableBytes());
       length += Short.BYTES;
       int resumeTokenLength = resumeToken.readableBytes();
-      byteBuf.setBytes(length, resumeToken, resumeTokenLength);
+      byteBuf.setBytes(length, resumeToken, resumeToken.readerIndex(), resumeTokenLength);
       length += resumeTokenLength;
     }
 
@@ -141,6 +140,14 @@ public class SetupFrameFlyweight {
     return length;
   }
 
+  public static ByteBuf resumeToken(final ByteBuf byteBuf) {
+    if ((FrameHeaderFlyweight.flags(byteBuf) & FLAGS_RESUME_ENABLE) == 0) {
+      return Unpooled.EMPTY_BUFFER;
+    }
+    return byteBuf.slice(
+        VARIABLE_DATA_OFFSET + Short.BYTES, byteBuf.getShort(VARIABLE_DATA_OFFSET));
+  }
+
   public static int version(final ByteBuf byteBuf) {
     return byteBuf.getInt(VERSION_FIELD_OFFSET);
   }
@@ -26,7 +26,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.MonoProcessor;
 
 /**
  * {@link DuplexConnection#receive()} is a single stream on which the following type of frames
@@ -50,12 +49,15 @@ public class ClientServerInputMultiplexer {
   private final DuplexConnection serverConnection;
   private final DuplexConnection clientConnection;
   private final DuplexConnection source;
+  private final UnboundedProcessor<Frame> streamZero;
+  private final UnboundedProcessor<Frame> server;
+  private final UnboundedProcessor<Frame> client;
 
   public ClientServerInputMultiplexer(DuplexConnection source) {
     this.source = source;
-    final MonoProcessor<Flux<Frame>> streamZero = MonoProcessor.create();
-    final MonoProcessor<Flux<Frame>> server = MonoProcessor.create();
-    final MonoProcessor<Flux<Frame>> client = MonoProcessor.create();
+    this.streamZero = new UnboundedProcessor<>();
+    this.server = new UnboundedProcessor<>();
+    this.client = new UnboundedProcessor<>();
 
     source = Plugins.DUPLEX_CONNECTION_INTERCEPTOR.apply(Type.SOURCE, source);
     streamZeroConnection =
@@ -68,41 +70,36 @@ public class ClientServerInputMultiplexer {
         Plugins.DUPLEX_CONNECTION_INTERCEPTOR.apply(
             Type.CLIENT, new InternalDuplexConnection(source, client));
 
-    source
-        .receive()
-        .groupBy(
-            frame -> {
-              int streamId = frame.getStreamId();
-              final Type type;
-              if (streamId == 0) {
-                if (frame.getType() == FrameType.SETUP) {
-                  type = Type.STREAM_ZERO;
-                } else {
-                  type = Type.CLIENT;
-                }
-              } else if ((streamId & 0b1) == 0) {
-                type = Type.SERVER;
-              } else {
-                type = Type.CLIENT;
-              }
-              return type;
-            })
-        .subscribe(
-            group -> {
-              switch (group.key()) {
-                case STREAM_ZERO:
-                  streamZero.onNext(group);
-                  break;
-
-                case SERVER:
-                  server.onNext(group);
-                  break;
-
-                case CLIENT:
-                  client.onNext(group);
-                  break;
-              }
-            });
+    // Frames are passed to the processor of their stream on the receiving thread. A processor only
+    // queues frames which arrive before its connection is subscribed to or while it is busy.
+    source.receive().subscribe(this::dispatch, this::onReceiveError, this::onReceiveComplete);
+  }
+
+  private void dispatch(Frame frame) {
+    int streamId = frame.getStreamId();
+    if (streamId == 0) {
+      if (frame.getType() == FrameType.SETUP) {
+        streamZero.onNext(frame);
+      } else {
+        client.onNext(frame);
+      }
+    } else if ((streamId & 0b1) == 0) {
+      server.onNext(frame);
+    } else {
+      client.onNext(frame);
+    }
+  }
+
+  private void onReceiveError(Throwable t) {
+    streamZero.onError(t);
+    server.onError(t);
+    client.onError(t);
+  }
+
+  private void onReceiveComplete() {
+    streamZero.onComplete();
+    server.onComplete();
+    client.onComplete();
   }
 
   public DuplexConnection asServerConnection() {
@@ -123,10 +120,10 @@ public class ClientServerInputMultiplexer {
 
   private static class InternalDuplexConnection implements DuplexConnection {
     private final DuplexConnection source;
-    private final MonoProcessor<Flux<Frame>> processor;
+    private final Flux<Frame> processor;
     private final boolean debugEnabled;
 
-    public InternalDuplexConnection(DuplexConnection source, MonoProcessor<Flux<Frame>> processor) {
+    public InternalDuplexConnection(DuplexConnection source, Flux<Frame> processor) {
       this.source = source;
       this.processor = processor;
       this.debugEnabled = LOGGER.isDebugEnabled();
@@ -152,14 +149,11 @@ public class ClientServerInputMultiplexer {
 
     @Override
     public Flux<Frame> receive() {
-      return processor.flatMapMany(
-          f -> {
-            if (debugEnabled) {
-              return f.doOnNext(frame -> LOGGER.debug("receiving -> " + frame.toString()));
-            } else {
-              return f;
-            }
-          });
+      if (debugEnabled) {
+        return processor.doOnNext(frame -> LOGGER.debug("receiving -> " + frame.toString()));
+      } else {
+        return processor;
+      }
     }
 
     @Override
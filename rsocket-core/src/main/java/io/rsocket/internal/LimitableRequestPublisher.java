@@ -8,27 +8,43 @@ import org.reactivestreams.Subscription;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Operators;
 
-/** */
+/**
+ * Requests from the source only as much as both the subscriber and the limit, raised by {@code
+ * REQUEST_N} frames, allow. With an {@link OutboundBudget}, the source is requested in batches
+ * while the budget of the connection is available, and waits for it otherwise.
+ */
 public class LimitableRequestPublisher<T> extends Flux<T> implements Subscription {
   private final Publisher<T> source;
 
+  private final @Nullable OutboundBudget budget;
+
   private final AtomicBoolean canceled;
 
   private long internalRequested;
 
   private long externalRequested;
 
+  private long outstanding;
+
+  private boolean awaitingBudget;
+
   private volatile boolean subscribed;
 
   private volatile @Nullable Subscription internalSubscription;
 
-  private LimitableRequestPublisher(Publisher<T> source) {
+  private LimitableRequestPublisher(Publisher<T> source, @Nullable OutboundBudget budget) {
     this.source = source;
+    this.budget = budget;
     this.canceled = new AtomicBoolean();
   }
 
   public static <T> LimitableRequestPublisher<T> wrap(Publisher<T> source) {
-    return new LimitableRequestPublisher<>(source);
+    return new LimitableRequestPublisher<>(source, null);
+  }
+
+  public static <T> LimitableRequestPublisher<T> wrap(
+      Publisher<T> source, @Nullable OutboundBudget budget) {
+    return new LimitableRequestPublisher<>(source, budget);
   }
 
   @Override
@@ -60,19 +76,43 @@ public class LimitableRequestPublisher<T> extends Flux<T> implements Subscriptio
 
   private void requestN() {
     long r;
+    boolean await = false;
     synchronized (this) {
       if (internalSubscription == null) {
         return;
       }
 
       r = Math.min(internalRequested, externalRequested);
+      if (budget != null && r > 0) {
+        if (outstanding > 0 || awaitingBudget) {
+          // requested again once the current batch is emitted or the budget is available
+          return;
+        }
+        if (!budget.isAvailable()) {
+          awaitingBudget = true;
+          await = true;
+          r = 0;
+        } else {
+          r = Math.min(r, budget.batchSize());
+          outstanding = r;
+        }
+      }
       externalRequested -= r;
       internalRequested -= r;
     }
 
     if (r > 0) {
       internalSubscription.request(r);
+    } else if (await) {
+      budget.await(this::onBudgetAvailable);
+    }
+  }
+
+  private void onBudgetAvailable() {
+    synchronized (this) {
+      awaitingBudget = false;
     }
+    requestN();
   }
 
   public void cancel() {
@@ -111,6 +151,17 @@ public class LimitableRequestPublisher<T> extends Flux<T> implements Subscriptio
         destination.onNext(t);
       } catch (Throwable e) {
         onError(e);
+        return;
+      }
+
+      if (budget != null) {
+        boolean batchEmitted;
+        synchronized (LimitableRequestPublisher.this) {
+          batchEmitted = outstanding > 0 && --outstanding == 0;
+        }
+        if (batchEmitted) {
+          requestN();
+        }
       }
     }
 
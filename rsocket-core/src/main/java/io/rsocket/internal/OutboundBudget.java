@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.rsocket.Frame;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Budget for the frames of a connection that are queued to be sent, in frames and in bytes. Frames
+ * are acquired when queued and released when the transport takes them, which it only does as fast
+ * as it can write them, e.g. while a Netty channel is writable.
+ *
+ * <p>Streams emit frames in batches of at most {@link #batchSize()} frames while the budget is not
+ * used up and otherwise {@link #await(Runnable) wait} for it, in the order they started waiting, so
+ * that every stream gets its turn when the connection is slow. The budget is a soft limit: streams
+ * that already requested a batch still emit it, and frames not sent by a stream, e.g. responses to
+ * request-response, are only accounted for.
+ */
+public final class OutboundBudget {
+  public static final int DEFAULT_MAX_FRAMES = 1024;
+  public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+  private static final int MAX_BATCH_SIZE = 32;
+
+  private final int maxFrames;
+  private final long maxBytes;
+  private final int batchSize;
+  private final AtomicInteger frames;
+  private final AtomicLong bytes;
+  private final Queue<Runnable> waiting;
+  private final AtomicInteger wip;
+
+  public OutboundBudget() {
+    this(DEFAULT_MAX_FRAMES, DEFAULT_MAX_BYTES);
+  }
+
+  public OutboundBudget(int maxFrames, long maxBytes) {
+    if (maxFrames <= 0) {
+      throw new IllegalArgumentException("maxFrames must be positive: " + maxFrames);
+    }
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+    }
+    this.maxFrames = maxFrames;
+    this.maxBytes = maxBytes;
+    this.batchSize = Math.min(MAX_BATCH_SIZE, maxFrames);
+    this.frames = new AtomicInteger();
+    this.bytes = new AtomicLong();
+    this.waiting = new ConcurrentLinkedQueue<>();
+    this.wip = new AtomicInteger();
+  }
+
+  /** Whether more frames can be queued. */
+  public boolean isAvailable() {
+    return frames.get() < maxFrames && bytes.get() < maxBytes;
+  }
+
+  /** Number of frames a stream may request at once while the budget is available. */
+  public int batchSize() {
+    return batchSize;
+  }
+
+  public int queuedFrames() {
+    return frames.get();
+  }
+
+  public long queuedBytes() {
+    return bytes.get();
+  }
+
+  /** Accounts for a frame that is queued to be sent. */
+  public void acquire(Frame frame) {
+    frames.incrementAndGet();
+    bytes.addAndGet(frame.content().readableBytes());
+  }
+
+  /** Accounts for a frame that the transport took off the queue. */
+  public void release(Frame frame) {
+    frames.decrementAndGet();
+    bytes.addAndGet(-frame.content().readableBytes());
+    if (!waiting.isEmpty()) {
+      resumeWaiting();
+    }
+  }
+
+  /**
+   * Runs {@code resume} once the budget is available, after the streams that waited before. Runs it
+   * right away if nothing else waits and the budget is available.
+   */
+  public void await(Runnable resume) {
+    waiting.offer(resume);
+    resumeWaiting();
+  }
+
+  private void resumeWaiting() {
+    // a resumed stream emits right away, which may release frames again on the same thread
+    if (wip.getAndIncrement() != 0) {
+      return;
+    }
+
+    int missed = 1;
+    for (; ; ) {
+      Runnable resume;
+      while (isAvailable() && (resume = waiting.poll()) != null) {
+        resume.run();
+      }
+
+      missed = wip.addAndGet(-missed);
+      if (missed == 0) {
+        break;
+      }
+    }
+  }
+}
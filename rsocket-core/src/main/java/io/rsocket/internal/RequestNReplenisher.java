@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+import reactor.core.publisher.Operators;
+
+/**
+ * Decides the {@code REQUEST_N} sent to the peer for the payloads received on a stream, instead of
+ * forwarding every request of the subscriber as it comes, which is one frame per payload for a
+ * subscriber that requests one at a time.
+ *
+ * <p>A window of payloads is requested ahead of the subscriber, and replenished once three quarters
+ * of it were delivered, as long as the subscriber has demand left. If the subscriber already took
+ * everything that was received when the window is replenished, it is waiting on the peer and the
+ * window is doubled, up to a maximum, so that the window grows until it covers the round trip to
+ * the peer at the rate the subscriber consumes. An unbounded request of the subscriber is passed on
+ * as is.
+ */
+public final class RequestNReplenisher {
+
+  private final int maxWindow;
+  private final IntSupplier buffered;
+  private final LongConsumer requestN;
+
+  private int window;
+  private long demand;
+  private long pending;
+  private boolean unbounded;
+  private boolean unboundedRequested;
+
+  /**
+   * @param prefetch initial window of payloads requested ahead of the subscriber.
+   * @param maxPrefetch maximum the window may grow to.
+   * @param buffered number of payloads received and not yet delivered to the subscriber.
+   * @param requestN sends a {@code REQUEST_N} to the peer.
+   */
+  public RequestNReplenisher(
+      int prefetch, int maxPrefetch, IntSupplier buffered, LongConsumer requestN) {
+    if (prefetch <= 0 || maxPrefetch < prefetch) {
+      throw new IllegalArgumentException(
+          "prefetch must be positive and at most maxPrefetch: " + prefetch + ", " + maxPrefetch);
+    }
+    this.window = prefetch;
+    this.maxWindow = maxPrefetch;
+    this.buffered = buffered;
+    this.requestN = requestN;
+  }
+
+  /**
+   * Accounts for the first request of the subscriber, and returns the number of payloads to request
+   * with the request frame rather than sending a {@code REQUEST_N}.
+   */
+  public synchronized long initialRequest(long n) {
+    addDemand(n);
+    return replenish();
+  }
+
+  /** Accounts for a request of the subscriber, and sends a {@code REQUEST_N} if needed. */
+  public void request(long n) {
+    long r;
+    synchronized (this) {
+      addDemand(n);
+      r = replenish();
+    }
+    if (r > 0) {
+      requestN.accept(r);
+    }
+  }
+
+  /**
+   * Accounts for a payload delivered to the subscriber, and sends a {@code REQUEST_N} if needed.
+   */
+  public void onDelivered() {
+    long r;
+    synchronized (this) {
+      if (unbounded) {
+        return;
+      }
+      pending--;
+      demand--;
+      r = replenish();
+    }
+    if (r > 0) {
+      requestN.accept(r);
+    }
+  }
+
+  public synchronized int window() {
+    return window;
+  }
+
+  private void addDemand(long n) {
+    if (Operators.validate(n)) {
+      demand = Operators.addCap(demand, n);
+      unbounded = demand == Long.MAX_VALUE;
+    }
+  }
+
+  private long replenish() {
+    if (unbounded) {
+      if (unboundedRequested) {
+        return 0;
+      }
+      unboundedRequested = true;
+      return Long.MAX_VALUE;
+    }
+
+    // replenish once three quarters of the window were delivered
+    if (demand == 0 || pending > window / 4) {
+      return 0;
+    }
+
+    if (pending > 0 && buffered.getAsInt() == 0 && window < maxWindow) {
+      window = Math.min(maxWindow, window * 2);
+    }
+
+    long n = window - pending;
+    pending = window;
+    return n;
+  }
+}
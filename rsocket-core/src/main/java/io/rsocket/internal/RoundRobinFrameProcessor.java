@@ -0,0 +1,480 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.internal.PlatformDependent;
+import io.rsocket.Frame;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.FluxProcessor;
+import reactor.core.publisher.Operators;
+
+/**
+ * A processor like {@link UnboundedProcessor} that, instead of relaying the frames queued by any
+ * number of threads in the order they were queued, interleaves the frames of the different streams
+ * so that a stream with many frames queued does not hold back the frames of the other streams.
+ *
+ * <p>Frames are scheduled by deficit round-robin over the bytes of the frames, as in the FQ-CoDel
+ * queueing discipline: each stream with frames queued is given a quantum of bytes per round, in
+ * proportion to its {@link #setWeight(int, int) weight}, and a stream that just became active is
+ * served before the streams that have had frames queued for longer, so a response of a few frames
+ * is sent ahead of the backlog of a bulk stream. Frames of the same stream keep their order, and
+ * frames of stream 0 (keep-alive, lease, metadata push, connection errors) are always sent first.
+ *
+ * <p>Frames are only held back while the subscriber does not request more, so this has no cost when
+ * the connection keeps up with the frames queued to it.
+ */
+public final class RoundRobinFrameProcessor extends FluxProcessor<Frame, Frame>
+    implements Subscription {
+
+  /** Number of bytes a stream of weight 1 may send per round. */
+  public static final int DEFAULT_QUANTUM = 8 * 1024;
+
+  /** Maximum number of {@link StreamQueue} kept for reuse. */
+  private static final int MAX_POOLED_QUEUES = 64;
+
+  private static final AtomicIntegerFieldUpdater<RoundRobinFrameProcessor> WIP =
+      AtomicIntegerFieldUpdater.newUpdater(RoundRobinFrameProcessor.class, "wip");
+
+  private static final AtomicIntegerFieldUpdater<RoundRobinFrameProcessor> ONCE =
+      AtomicIntegerFieldUpdater.newUpdater(RoundRobinFrameProcessor.class, "once");
+
+  private static final AtomicLongFieldUpdater<RoundRobinFrameProcessor> REQUESTED =
+      AtomicLongFieldUpdater.newUpdater(RoundRobinFrameProcessor.class, "requested");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<RoundRobinFrameProcessor, Subscriber> ACTUAL =
+      AtomicReferenceFieldUpdater.newUpdater(
+          RoundRobinFrameProcessor.class, Subscriber.class, "actual");
+
+  private final int quantum;
+  private final Consumer<? super Frame> onDiscard;
+  private final Queue<Frame> incoming;
+  private final SynchronizedIntObjectHashMap<Integer> weights;
+
+  // only accessed by the thread that drains
+  private final ArrayDeque<Frame> connectionFrames;
+  private final IntObjectHashMap<StreamQueue> streams;
+  private final ArrayDeque<StreamQueue> newStreams;
+  private final ArrayDeque<StreamQueue> oldStreams;
+  private final ArrayDeque<StreamQueue> pooledQueues;
+  private int scheduled;
+
+  private volatile int wip;
+  private volatile int once;
+  private volatile long requested;
+  private volatile @Nullable Subscriber<? super Frame> actual;
+  private volatile boolean done;
+  private volatile boolean cancelled;
+  private @Nullable Throwable error;
+
+  public RoundRobinFrameProcessor() {
+    this(DEFAULT_QUANTUM);
+  }
+
+  /** @param quantum number of bytes a stream of weight 1 may send per round. */
+  public RoundRobinFrameProcessor(int quantum) {
+    this(quantum, frame -> {});
+  }
+
+  /**
+   * @param quantum number of bytes a stream of weight 1 may send per round.
+   * @param onDiscard called with each frame that is released instead of sent, because the processor
+   *     was cancelled or terminated with an error.
+   */
+  public RoundRobinFrameProcessor(int quantum, Consumer<? super Frame> onDiscard) {
+    if (quantum <= 0) {
+      throw new IllegalArgumentException("quantum must be positive: " + quantum);
+    }
+    this.quantum = quantum;
+    this.onDiscard = onDiscard;
+    this.incoming = PlatformDependent.newMpscQueue();
+    this.weights = new SynchronizedIntObjectHashMap<>();
+    this.connectionFrames = new ArrayDeque<>();
+    this.streams = new IntObjectHashMap<>();
+    this.newStreams = new ArrayDeque<>();
+    this.oldStreams = new ArrayDeque<>();
+    this.pooledQueues = new ArrayDeque<>();
+  }
+
+  /**
+   * Sets the weight of a stream, so that it may send {@code weight} times as many bytes per round
+   * as a stream of the default weight 1. Applies to the frames queued after this call, until {@link
+   * #removeWeight(int)}.
+   */
+  public void setWeight(int streamId, int weight) {
+    if (weight <= 0) {
+      throw new IllegalArgumentException("weight must be positive: " + weight);
+    }
+    if (weight == 1) {
+      weights.remove(streamId);
+    } else {
+      weights.put(streamId, weight);
+    }
+  }
+
+  /** Resets the weight of a stream to 1, should be called once the stream terminated. */
+  public void removeWeight(int streamId) {
+    if (!weights.isEmpty()) {
+      weights.remove(streamId);
+    }
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super Frame> s) {
+    if (once == 0 && ONCE.compareAndSet(this, 0, 1)) {
+      s.onSubscribe(this);
+      ACTUAL.lazySet(this, s);
+      if (cancelled) {
+        actual = null;
+      } else {
+        drain();
+      }
+    } else {
+      Operators.error(
+          s, new IllegalStateException("RoundRobinFrameProcessor allows only a single Subscriber"));
+    }
+  }
+
+  @Override
+  public void onSubscribe(Subscription s) {
+    if (done || cancelled) {
+      s.cancel();
+    } else {
+      s.request(Long.MAX_VALUE);
+    }
+  }
+
+  @Override
+  public void onNext(Frame frame) {
+    if (done || cancelled) {
+      discard(frame);
+      return;
+    }
+
+    // hand the frame straight to the subscriber if nothing is queued and no one else is draining
+    if (wip == 0 && WIP.compareAndSet(this, 0, 1)) {
+      Subscriber<? super Frame> a = actual;
+      if (a != null && requested != 0 && scheduled == 0 && incoming.isEmpty()) {
+        a.onNext(frame);
+        if (requested != Long.MAX_VALUE) {
+          REQUESTED.decrementAndGet(this);
+        }
+        if (WIP.decrementAndGet(this) == 0) {
+          return;
+        }
+      } else {
+        incoming.offer(frame);
+      }
+      drainLoop();
+      return;
+    }
+
+    incoming.offer(frame);
+    drain();
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    if (done || cancelled) {
+      Operators.onErrorDropped(t);
+      return;
+    }
+
+    error = t;
+    done = true;
+    drain();
+  }
+
+  @Override
+  public void onComplete() {
+    if (done || cancelled) {
+      return;
+    }
+
+    done = true;
+    drain();
+  }
+
+  @Override
+  public void request(long n) {
+    if (Operators.validate(n)) {
+      Operators.addAndGet(REQUESTED, this, n);
+      drain();
+    }
+  }
+
+  @Override
+  public void cancel() {
+    if (cancelled) {
+      return;
+    }
+    cancelled = true;
+
+    if (WIP.getAndIncrement(this) == 0) {
+      clear();
+    }
+  }
+
+  @Override
+  public void dispose() {
+    cancel();
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return cancelled || done;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return done;
+  }
+
+  @Override
+  @Nullable
+  public Throwable getError() {
+    return error;
+  }
+
+  @Override
+  public long downstreamCount() {
+    return actual == null ? 0 : 1;
+  }
+
+  private void drain() {
+    if (WIP.getAndIncrement(this) != 0) {
+      return;
+    }
+    drainLoop();
+  }
+
+  private void drainLoop() {
+    int missed = 1;
+    for (; ; ) {
+      Subscriber<? super Frame> a = actual;
+      if (a != null) {
+        drainRegular(a);
+        return;
+      }
+
+      if (cancelled) {
+        clear();
+        return;
+      }
+
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        return;
+      }
+    }
+  }
+
+  private void drainRegular(Subscriber<? super Frame> a) {
+    int missed = 1;
+
+    for (; ; ) {
+      long r = requested;
+      long e = 0L;
+
+      while (r != e) {
+        boolean d = done;
+        schedule();
+        Frame frame = poll();
+        boolean empty = frame == null;
+
+        if (checkTerminated(d, empty, a)) {
+          if (!empty) {
+            discard(frame);
+          }
+          return;
+        }
+        if (empty) {
+          break;
+        }
+
+        a.onNext(frame);
+        e++;
+      }
+
+      if (r == e && checkTerminated(done, scheduled == 0 && incoming.isEmpty(), a)) {
+        return;
+      }
+
+      if (e != 0 && r != Long.MAX_VALUE) {
+        REQUESTED.addAndGet(this, -e);
+      }
+
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        break;
+      }
+    }
+  }
+
+  /** Moves the frames queued by the producers into the queues of their streams. */
+  private void schedule() {
+    Frame frame;
+    while ((frame = incoming.poll()) != null) {
+      int streamId = frame.getStreamId();
+      if (streamId == 0) {
+        connectionFrames.offer(frame);
+      } else {
+        StreamQueue stream = streams.get(streamId);
+        if (stream == null) {
+          stream = pooledQueues.poll();
+          if (stream == null) {
+            stream = new StreamQueue();
+          }
+          stream.activate(streamId, quantumOf(streamId));
+          streams.put(streamId, stream);
+          newStreams.offer(stream);
+        }
+        stream.frames.offer(frame);
+      }
+      scheduled++;
+    }
+  }
+
+  private int quantumOf(int streamId) {
+    if (weights.isEmpty()) {
+      return quantum;
+    }
+    Integer weight = weights.get(streamId);
+    return weight == null ? quantum : (int) Math.min(Integer.MAX_VALUE, (long) quantum * weight);
+  }
+
+  /** Returns the next frame to send, or {@code null} if none is queued. */
+  private @Nullable Frame poll() {
+    Frame frame = connectionFrames.poll();
+    if (frame != null) {
+      scheduled--;
+      return frame;
+    }
+
+    for (; ; ) {
+      ArrayDeque<StreamQueue> list = newStreams;
+      StreamQueue stream = list.peek();
+      if (stream == null) {
+        list = oldStreams;
+        stream = list.peek();
+        if (stream == null) {
+          return null;
+        }
+      }
+
+      if (stream.deficit <= 0) {
+        // used up its quantum, continue with the next stream
+        stream.deficit += stream.quantum;
+        list.poll();
+        oldStreams.offer(stream);
+        continue;
+      }
+
+      frame = stream.frames.poll();
+      if (frame == null) {
+        list.poll();
+        if (list == newStreams && !oldStreams.isEmpty()) {
+          // keeps a stream that alternates between empty and not from always being served first
+          oldStreams.offer(stream);
+        } else {
+          streams.remove(stream.streamId);
+          if (pooledQueues.size() < MAX_POOLED_QUEUES) {
+            pooledQueues.offer(stream);
+          }
+        }
+        continue;
+      }
+
+      stream.deficit -= frame.content().readableBytes();
+      scheduled--;
+      return frame;
+    }
+  }
+
+  private boolean checkTerminated(boolean d, boolean empty, Subscriber<? super Frame> a) {
+    if (cancelled) {
+      clear();
+      actual = null;
+      return true;
+    }
+    if (d) {
+      Throwable e = error;
+      if (e != null) {
+        clear();
+        actual = null;
+        a.onError(e);
+        return true;
+      }
+      if (empty) {
+        actual = null;
+        a.onComplete();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void clear() {
+    Frame frame;
+    while ((frame = incoming.poll()) != null) {
+      discard(frame);
+    }
+    while ((frame = connectionFrames.poll()) != null) {
+      discard(frame);
+    }
+    for (StreamQueue stream : streams.values()) {
+      while ((frame = stream.frames.poll()) != null) {
+        discard(frame);
+      }
+    }
+    streams.clear();
+    newStreams.clear();
+    oldStreams.clear();
+    scheduled = 0;
+  }
+
+  private void discard(Frame frame) {
+    try {
+      onDiscard.accept(frame);
+    } finally {
+      frame.release();
+    }
+  }
+
+  /** The frames queued for one stream. */
+  private static final class StreamQueue {
+    private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+    private int streamId;
+    private int quantum;
+    private int deficit;
+
+    private void activate(int streamId, int quantum) {
+      this.streamId = streamId;
+      this.quantum = quantum;
+      this.deficit = quantum;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.rsocket.DuplexConnection;
+import io.rsocket.Frame;
+import org.reactivestreams.Publisher;
+import reactor.core.Cancellation;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * A {@link DuplexConnection} that receives frames on a {@link Scheduler} instead of the thread of
+ * the transport. The frames are received one at a time and in order, as the scheduler only runs one
+ * task of the connection at a time.
+ */
+public final class ScheduledDuplexConnection implements DuplexConnection {
+  private final DuplexConnection source;
+  private final Scheduler scheduler;
+  private final Cancellation onTerminate;
+
+  /**
+   * @param scheduler to receive the frames on.
+   * @param onTerminate disposed once no more frames are received, e.g. to release the scheduler.
+   */
+  public ScheduledDuplexConnection(
+      DuplexConnection source, Scheduler scheduler, Cancellation onTerminate) {
+    this.source = source;
+    this.scheduler = scheduler;
+    this.onTerminate = onTerminate;
+  }
+
+  @Override
+  public Mono<Void> send(Publisher<Frame> frame) {
+    return source.send(frame);
+  }
+
+  @Override
+  public Mono<Void> sendOne(Frame frame) {
+    return source.sendOne(frame);
+  }
+
+  @Override
+  public Flux<Frame> receive() {
+    return source.receive().publishOn(scheduler).doFinally(s -> onTerminate.dispose());
+  }
+
+  @Override
+  public double availability() {
+    return source.availability();
+  }
+
+  @Override
+  public Mono<Void> close() {
+    return source.close();
+  }
+
+  @Override
+  public Mono<Void> onClose() {
+    return source.onClose();
+  }
+}
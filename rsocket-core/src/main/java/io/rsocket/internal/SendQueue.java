@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.rsocket.DuplexConnection;
+import io.rsocket.Frame;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+/**
+ * The frames queued to be sent on a connection, shared by the requester and the responder of the
+ * connection so that the frames of all streams, in either role, are interleaved by one {@link
+ * RoundRobinFrameProcessor} and accounted for in one {@link OutboundBudget}.
+ *
+ * <p>The queue is subscribed to the connection once, when created, and {@link #onSendTerminated()}
+ * lets either side observe the outcome of that single send.
+ */
+public final class SendQueue implements Disposable {
+  private final RoundRobinFrameProcessor processor;
+  private final OutboundBudget budget;
+  private final MonoProcessor<Void> sent;
+
+  public SendQueue(DuplexConnection connection) {
+    this(connection, new OutboundBudget());
+  }
+
+  public SendQueue(DuplexConnection connection, OutboundBudget budget) {
+    // frames dropped when the queue is disposed are never taken by the transport
+    this.processor =
+        new RoundRobinFrameProcessor(RoundRobinFrameProcessor.DEFAULT_QUANTUM, budget::release);
+    this.budget = budget;
+    this.sent =
+        connection.send(processor.doOnNext(budget::release)).subscribeWith(MonoProcessor.create());
+  }
+
+  /** Queues a frame to be sent, accounting for it in the budget until the transport takes it. */
+  public void send(Frame frame) {
+    budget.acquire(frame);
+    processor.onNext(frame);
+  }
+
+  /** @see RoundRobinFrameProcessor#setWeight(int, int) */
+  public void setWeight(int streamId, int weight) {
+    processor.setWeight(streamId, weight);
+  }
+
+  /** @see RoundRobinFrameProcessor#removeWeight(int) */
+  public void removeWeight(int streamId) {
+    processor.removeWeight(streamId);
+  }
+
+  public OutboundBudget budget() {
+    return budget;
+  }
+
+  /** Completes or fails as the send of the connection does. */
+  public Mono<Void> onSendTerminated() {
+    return sent;
+  }
+
+  @Override
+  public void dispose() {
+    processor.dispose();
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return processor.isDisposed();
+  }
+}
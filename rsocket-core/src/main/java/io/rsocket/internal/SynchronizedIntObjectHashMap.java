@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.netty.util.collection.IntObjectHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+
+/**
+ * A map from primitive {@code int} keys to objects, used to look up the state of a stream by its
+ * stream id. Every operation holds the monitor of the map around a Netty {@link IntObjectHashMap},
+ * which does not allocate on {@link #put(int, Object)}.
+ *
+ * <p>Null values are not supported.
+ */
+public final class SynchronizedIntObjectHashMap<V> {
+
+  private final IntObjectHashMap<V> map;
+
+  public SynchronizedIntObjectHashMap() {
+    this.map = new IntObjectHashMap<>();
+  }
+
+  public SynchronizedIntObjectHashMap(int initialCapacity, float loadFactor) {
+    this.map = new IntObjectHashMap<>(initialCapacity, loadFactor);
+  }
+
+  public synchronized @Nullable V get(int key) {
+    return map.get(key);
+  }
+
+  public synchronized boolean containsKey(int key) {
+    return map.containsKey(key);
+  }
+
+  /** @return the previous value for the {@code key} or {@code null} if there was none */
+  public synchronized @Nullable V put(int key, V value) {
+    if (value == null) {
+      throw new NullPointerException("value");
+    }
+    return map.put(key, value);
+  }
+
+  /** @return the current value for the {@code key} or {@code null} if {@code value} was added */
+  public synchronized @Nullable V putIfAbsent(int key, V value) {
+    if (value == null) {
+      throw new NullPointerException("value");
+    }
+    V current = map.get(key);
+    if (current == null) {
+      map.put(key, value);
+    }
+    return current;
+  }
+
+  /** @return the removed value or {@code null} if there was none */
+  public synchronized @Nullable V remove(int key) {
+    return map.remove(key);
+  }
+
+  /** @return whether the {@code key} was mapped to {@code value} and was removed */
+  public synchronized boolean remove(int key, V value) {
+    if (value != null && value.equals(map.get(key))) {
+      map.remove(key);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Passes every value to the {@code action}. The values are copied under the lock and the action
+   * runs without it, so it may modify the map; entries added or removed meanwhile may or may not be
+   * visited.
+   */
+  public void forEachValue(Consumer<? super V> action) {
+    List<V> values;
+    synchronized (this) {
+      if (map.isEmpty()) {
+        return;
+      }
+      values = new ArrayList<>(map.values());
+    }
+    values.forEach(action);
+  }
+
+  public synchronized int size() {
+    return map.size();
+  }
+
+  public synchronized boolean isEmpty() {
+    return map.isEmpty();
+  }
+
+  public synchronized void clear() {
+    map.clear();
+  }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.internal.PlatformDependent;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import javax.annotation.Nullable;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.FluxProcessor;
+import reactor.core.publisher.Operators;
+
+/**
+ * A processor that any number of threads may emit to and that relays to a single subscriber. An
+ * item is passed directly to the subscriber when nothing is queued and no other thread is emitting,
+ * otherwise it is queued in an unbounded, lock-free multi-producer single-consumer queue and
+ * drained by whichever thread wins the right to drain, so the subscriber is never called
+ * concurrently.
+ *
+ * <p>It is used to merge the frames of all streams of a connection into the one {@link
+ * io.rsocket.DuplexConnection#send(org.reactivestreams.Publisher)} of that connection, without a
+ * subscription per frame, and to pass received frames on to the client or server side of a
+ * connection. Flow control is done per stream by {@code REQUEST_N} so the queue is not bounded.
+ *
+ * <p>Items that are never delivered because the subscriber cancelled or the processor terminated
+ * with an error are released if they are {@link io.netty.util.ReferenceCounted}.
+ */
+public final class UnboundedProcessor<T> extends FluxProcessor<T, T> implements Subscription {
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<UnboundedProcessor> WIP =
+      AtomicIntegerFieldUpdater.newUpdater(UnboundedProcessor.class, "wip");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<UnboundedProcessor> ONCE =
+      AtomicIntegerFieldUpdater.newUpdater(UnboundedProcessor.class, "once");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicLongFieldUpdater<UnboundedProcessor> REQUESTED =
+      AtomicLongFieldUpdater.newUpdater(UnboundedProcessor.class, "requested");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<UnboundedProcessor, Subscriber> ACTUAL =
+      AtomicReferenceFieldUpdater.newUpdater(UnboundedProcessor.class, Subscriber.class, "actual");
+
+  private final Queue<T> queue;
+
+  private volatile int wip;
+  private volatile int once;
+  private volatile long requested;
+  private volatile @Nullable Subscriber<? super T> actual;
+  private volatile boolean done;
+  private volatile boolean cancelled;
+  private @Nullable Throwable error;
+
+  public UnboundedProcessor() {
+    this.queue = PlatformDependent.newMpscQueue();
+  }
+
+  @Override
+  public void subscribe(Subscriber<? super T> s) {
+    if (once == 0 && ONCE.compareAndSet(this, 0, 1)) {
+      s.onSubscribe(this);
+      ACTUAL.lazySet(this, s);
+      if (cancelled) {
+        actual = null;
+      } else {
+        drain();
+      }
+    } else {
+      Operators.error(
+          s, new IllegalStateException("UnboundedProcessor allows only a single Subscriber"));
+    }
+  }
+
+  @Override
+  public void onSubscribe(Subscription s) {
+    if (done || cancelled) {
+      s.cancel();
+    } else {
+      s.request(Long.MAX_VALUE);
+    }
+  }
+
+  @Override
+  public void onNext(T t) {
+    if (done || cancelled) {
+      release(t);
+      return;
+    }
+
+    // hand the item straight to the subscriber if nothing is queued and no one else is draining
+    if (wip == 0 && WIP.compareAndSet(this, 0, 1)) {
+      Subscriber<? super T> a = actual;
+      if (a != null && requested != 0 && queue.isEmpty()) {
+        a.onNext(t);
+        if (requested != Long.MAX_VALUE) {
+          REQUESTED.decrementAndGet(this);
+        }
+        if (WIP.decrementAndGet(this) == 0) {
+          return;
+        }
+      } else {
+        queue.offer(t);
+      }
+      drainLoop();
+      return;
+    }
+
+    queue.offer(t);
+    drain();
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    if (done || cancelled) {
+      Operators.onErrorDropped(t);
+      return;
+    }
+
+    error = t;
+    done = true;
+    drain();
+  }
+
+  @Override
+  public void onComplete() {
+    if (done || cancelled) {
+      return;
+    }
+
+    done = true;
+    drain();
+  }
+
+  @Override
+  public void request(long n) {
+    if (Operators.validate(n)) {
+      Operators.addAndGet(REQUESTED, this, n);
+      drain();
+    }
+  }
+
+  @Override
+  public void cancel() {
+    if (cancelled) {
+      return;
+    }
+    cancelled = true;
+
+    if (WIP.getAndIncrement(this) == 0) {
+      clear();
+    }
+  }
+
+  @Override
+  public void dispose() {
+    cancel();
+  }
+
+  @Override
+  public boolean isDisposed() {
+    return cancelled || done;
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return done;
+  }
+
+  @Override
+  @Nullable
+  public Throwable getError() {
+    return error;
+  }
+
+  @Override
+  public long downstreamCount() {
+    return actual == null ? 0 : 1;
+  }
+
+  private void drain() {
+    if (WIP.getAndIncrement(this) != 0) {
+      return;
+    }
+    drainLoop();
+  }
+
+  private void drainLoop() {
+    int missed = 1;
+    for (; ; ) {
+      Subscriber<? super T> a = actual;
+      if (a != null) {
+        drainRegular(a);
+        return;
+      }
+
+      if (cancelled) {
+        clear();
+        return;
+      }
+
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        return;
+      }
+    }
+  }
+
+  private void drainRegular(Subscriber<? super T> a) {
+    final Queue<T> q = queue;
+    int missed = 1;
+
+    for (; ; ) {
+      long r = requested;
+      long e = 0L;
+
+      while (r != e) {
+        boolean d = done;
+        T t = q.poll();
+        boolean empty = t == null;
+
+        if (checkTerminated(d, empty, a)) {
+          if (!empty) {
+            release(t);
+          }
+          return;
+        }
+        if (empty) {
+          break;
+        }
+
+        a.onNext(t);
+        e++;
+      }
+
+      if (r == e && checkTerminated(done, q.isEmpty(), a)) {
+        return;
+      }
+
+      if (e != 0 && r != Long.MAX_VALUE) {
+        REQUESTED.addAndGet(this, -e);
+      }
+
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        break;
+      }
+    }
+  }
+
+  private boolean checkTerminated(boolean d, boolean empty, Subscriber<? super T> a) {
+    if (cancelled) {
+      clear();
+      actual = null;
+      return true;
+    }
+    if (d) {
+      Throwable e = error;
+      if (e != null) {
+        clear();
+        actual = null;
+        a.onError(e);
+        return true;
+      }
+      if (empty) {
+        actual = null;
+        a.onComplete();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void clear() {
+    T t;
+    while ((t = queue.poll()) != null) {
+      release(t);
+    }
+  }
+
+  private static void release(Object t) {
+    ReferenceCountUtil.safeRelease(t);
+  }
+}
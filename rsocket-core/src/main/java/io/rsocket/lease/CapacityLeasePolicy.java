@@ -0,0 +1,55 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.lease;
+
+import java.time.Duration;
+import reactor.core.publisher.Flux;
+
+/**
+ * A {@link LeasePolicy} that keeps at most {@code maxConcurrentRequests} requests active on a
+ * connection. Every {@code period} it grants a lease for the capacity not used by the currently
+ * active requests. A lease is valid for twice the period, so that it does not expire before the
+ * next one is received.
+ */
+public final class CapacityLeasePolicy implements LeasePolicy {
+
+  private final int maxConcurrentRequests;
+  private final Duration period;
+
+  public CapacityLeasePolicy(int maxConcurrentRequests, Duration period) {
+    if (maxConcurrentRequests <= 0) {
+      throw new IllegalArgumentException(
+          "maxConcurrentRequests must be positive: " + maxConcurrentRequests);
+    }
+    if (period.isNegative() || period.isZero()) {
+      throw new IllegalArgumentException("period must be positive: " + period);
+    }
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    this.period = period;
+  }
+
+  @Override
+  public Flux<Lease> leases(LeaseStats stats) {
+    int ttl = (int) Math.min(Integer.MAX_VALUE, period.toMillis() * 2);
+    return Flux.interval(Duration.ZERO, period)
+        .map(
+            tick -> {
+              int allowedRequests = Math.max(0, maxConcurrentRequests - stats.activeRequests());
+              return new LeaseImpl(allowedRequests, ttl);
+            });
+  }
+}
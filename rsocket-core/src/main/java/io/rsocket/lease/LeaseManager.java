@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.lease;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps track of the current {@link Lease} of a connection and of the requests still allowed by it.
+ * Used by the requester to account for the leases it received and by the responder to enforce the
+ * leases it granted.
+ */
+public final class LeaseManager {
+
+  private volatile @Nullable Grant current;
+
+  /** Replaces the current lease with {@code lease}, allowing its number of requests. */
+  public void grant(Lease lease) {
+    current = new Grant(lease);
+  }
+
+  /**
+   * Takes one request from the current lease.
+   *
+   * @return {@code false} if there is no lease, it has expired or all of its requests are used.
+   */
+  public boolean tryAcquire() {
+    Grant grant = current;
+    if (grant == null || grant.lease.isExpired()) {
+      return false;
+    }
+    for (; ; ) {
+      int remaining = grant.remaining.get();
+      if (remaining <= 0) {
+        return false;
+      }
+      if (grant.remaining.compareAndSet(remaining, remaining - 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Fraction of the current lease still available, {@code 0.0} if there is no valid lease.
+   *
+   * @return value between {@code 0.0} and {@code 1.0}.
+   */
+  public double availability() {
+    Grant grant = current;
+    if (grant == null || grant.lease.isExpired()) {
+      return 0.0;
+    }
+    int allowed = grant.lease.getAllowedRequests();
+    return allowed <= 0 ? 0.0 : (double) grant.remaining.get() / allowed;
+  }
+
+  /**
+   * Returns the current lease, which may have expired.
+   *
+   * @return current lease, {@code null} if none was granted yet.
+   */
+  @Nullable
+  public Lease getLease() {
+    Grant grant = current;
+    return grant == null ? null : grant.lease;
+  }
+
+  private static final class Grant {
+    private final Lease lease;
+    private final AtomicInteger remaining;
+
+    private Grant(Lease lease) {
+      this.lease = lease;
+      this.remaining = new AtomicInteger(lease.getAllowedRequests());
+    }
+  }
+}
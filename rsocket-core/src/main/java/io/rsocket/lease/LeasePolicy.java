@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.lease;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Decides which {@link Lease}s a server grants to a client that honors leases. Every lease emitted
+ * is sent to the client as a {@code LEASE} frame and replaces the previous one, so the client may
+ * send at most {@link Lease#getAllowedRequests()} requests until {@link Lease#expiry()}. Requests
+ * beyond the current lease are rejected by the server.
+ */
+public interface LeasePolicy {
+
+  /**
+   * Returns the leases to grant on one connection. The returned {@link Flux} is subscribed once the
+   * connection is set up and cancelled when it is closed.
+   *
+   * @param stats of the connection the leases are granted on.
+   * @return leases to grant, in order.
+   */
+  Flux<Lease> leases(LeaseStats stats);
+}
@@ -0,0 +1,537 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.resume;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.DuplexConnection;
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.exceptions.Exceptions;
+import io.rsocket.exceptions.RejectedResumeException;
+import io.rsocket.exceptions.RejectedSetupException;
+import io.rsocket.frame.KeepaliveFrameFlyweight;
+import io.rsocket.frame.SetupFrameFlyweight;
+import io.rsocket.internal.UnboundedProcessor;
+import java.nio.channels.ClosedChannelException;
+import java.time.Duration;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+/**
+ * A {@link DuplexConnection} for a resumable session, that outlives the physical connections it
+ * sends and receives frames on. When the physical connection is lost, the client connects again and
+ * resumes the session with a {@code RESUME} frame, while the server keeps the session until it is
+ * resumed or until the session duration passed. Both sides then send again the frames the other
+ * side did not receive, from a {@link ResumeCache} of a bounded size. Frames sent while no physical
+ * connection is available are only cached.
+ *
+ * <p>The implied position of the frames received is sent in every {@code KEEPALIVE} frame, which
+ * lets the other side release the frames it no longer needs to cache.
+ *
+ * <p>On the server every accepted connection is wrapped, and the first frame received decides what
+ * it is: a {@code SETUP} frame with a resume token starts a new session, one without leaves the
+ * connection as it is and a {@code RESUME} frame hands the physical connection over to the session
+ * it resumes, after which this connection completes.
+ */
+public class ResumableDuplexConnection implements DuplexConnection {
+  private static final Logger logger = LoggerFactory.getLogger(ResumableDuplexConnection.class);
+
+  public static final Duration DEFAULT_SESSION_DURATION = Duration.ofMinutes(2);
+  public static final int DEFAULT_CACHE_SIZE = 1024 * 1024;
+
+  /**
+   * Availability while resuming. Frames sent meanwhile are cached and sent once resumed, so new
+   * requests are accepted, but connected sessions are preferred.
+   */
+  static final double RESUMING_AVAILABILITY = 0.5;
+
+  private static final Duration RECONNECT_DELAY = Duration.ofSeconds(1);
+
+  private final @Nullable Supplier<Mono<DuplexConnection>> reconnect;
+  private final @Nullable ResumeSessionStore sessions;
+  private final Duration sessionDuration;
+  private final ResumeCache cache;
+  private final UnboundedProcessor<Frame> inbound;
+  private final MonoProcessor<Void> onClose;
+
+  private ByteBuf resumeToken;
+  private volatile boolean resumeEnabled;
+  private volatile boolean established;
+  private volatile long impliedPosition;
+
+  // written while holding this, volatile for the frames and availability read without it
+  private volatile @Nullable Link link;
+  private volatile @Nullable Link resumingLink;
+
+  // guarded by this
+  private @Nullable Disposable sessionTimeout;
+  private @Nullable Disposable reconnecting;
+  private boolean closed;
+
+  private ResumableDuplexConnection(
+      DuplexConnection connection,
+      ByteBuf resumeToken,
+      @Nullable Supplier<Mono<DuplexConnection>> reconnect,
+      @Nullable ResumeSessionStore sessions,
+      Duration sessionDuration,
+      int cacheSize) {
+    this.resumeToken = resumeToken;
+    this.reconnect = reconnect;
+    this.sessions = sessions;
+    this.sessionDuration = sessionDuration;
+    this.cache = new ResumeCache(cacheSize);
+    this.inbound = new UnboundedProcessor<>();
+    this.onClose = MonoProcessor.create();
+
+    Link link = new Link(connection, this);
+    this.link = link;
+    link.start();
+  }
+
+  /**
+   * Creates the client side of a session. The {@code SETUP} frame with the {@code resumeToken} must
+   * be the first frame sent. {@code reconnect} connects again to the server when the connection is
+   * lost.
+   */
+  public static ResumableDuplexConnection client(
+      DuplexConnection connection,
+      ByteBuf resumeToken,
+      Supplier<Mono<DuplexConnection>> reconnect,
+      Duration sessionDuration,
+      int cacheSize) {
+    ResumableDuplexConnection client =
+        new ResumableDuplexConnection(
+            connection, resumeToken, reconnect, null, sessionDuration, cacheSize);
+    client.resumeEnabled = true;
+    client.established = true;
+    return client;
+  }
+
+  /**
+   * Wraps a connection accepted by a server, which either starts a new session, resumes one of the
+   * {@code sessions} or is not resumable at all.
+   */
+  public static ResumableDuplexConnection server(
+      DuplexConnection connection,
+      ResumeSessionStore sessions,
+      Duration sessionDuration,
+      int cacheSize) {
+    return new ResumableDuplexConnection(
+        connection, Unpooled.EMPTY_BUFFER, null, sessions, sessionDuration, cacheSize);
+  }
+
+  @Override
+  public Mono<Void> send(Publisher<Frame> frames) {
+    return Flux.from(frames).doOnNext(this::sendFrame).then();
+  }
+
+  @Override
+  public Mono<Void> sendOne(Frame frame) {
+    return Mono.fromRunnable(() -> sendFrame(frame));
+  }
+
+  @Override
+  public Flux<Frame> receive() {
+    return inbound;
+  }
+
+  @Override
+  public double availability() {
+    Link link = this.link;
+    if (link != null) {
+      return link.connection.availability();
+    }
+    return onClose.isDisposed() ? 0.0 : RESUMING_AVAILABILITY;
+  }
+
+  @Override
+  public Mono<Void> close() {
+    return Mono.defer(
+        () -> {
+          closeSession(null);
+          return onClose;
+        });
+  }
+
+  @Override
+  public Mono<Void> onClose() {
+    return onClose;
+  }
+
+  /** Implied position of the frames received. */
+  long impliedPosition() {
+    return impliedPosition;
+  }
+
+  private void sendFrame(Frame frame) {
+    synchronized (this) {
+      if (!closed) {
+        if (resumeEnabled) {
+          if (frame.getStreamId() != 0) {
+            cache.add(frame);
+          } else if (frame.getType() == FrameType.KEEPALIVE) {
+            KeepaliveFrameFlyweight.encodeLastPosition(frame.content(), impliedPosition);
+          }
+        }
+
+        Link link = this.link;
+        if (link != null) {
+          link.sink.onNext(frame);
+          return;
+        }
+      }
+    }
+    // not connected, the frame is sent from the cache once resumed if it is resumable
+    frame.release();
+  }
+
+  private void onLinkFrame(Link link, Frame frame) {
+    if (!established) {
+      established = true;
+      FrameType type = frame.getType();
+      if (type == FrameType.RESUME) {
+        onResumeRequested(link, frame);
+        return;
+      }
+      if (type == FrameType.SETUP
+          && (frame.flags() & SetupFrameFlyweight.FLAGS_RESUME_ENABLE) != 0
+          && !startSession(Frame.Setup.resumeToken(frame))) {
+        frame.release();
+        return;
+      }
+    }
+
+    if (link != this.link && link != resumingLink) {
+      // a frame that was still in flight on a connection that was replaced
+      frame.release();
+      return;
+    }
+
+    if (frame.getStreamId() != 0) {
+      if (resumeEnabled) {
+        impliedPosition += frame.content().readableBytes();
+      }
+    } else if (resumeEnabled) {
+      switch (frame.getType()) {
+        case KEEPALIVE:
+          long position = Frame.Keepalive.lastPosition(frame);
+          synchronized (this) {
+            cache.release(position);
+          }
+          break;
+        case RESUME_OK:
+          onResumed(link, frame);
+          frame.release();
+          return;
+        case ERROR:
+          if (link == resumingLink) {
+            closeSession(Exceptions.from(frame));
+            frame.release();
+            return;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    inbound.onNext(frame);
+  }
+
+  private void onLinkClosed(Link link, @Nullable Throwable t) {
+    boolean wasResuming;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      wasResuming = link == resumingLink;
+      if (wasResuming) {
+        resumingLink = null;
+      } else if (link == this.link) {
+        this.link = null;
+      } else {
+        return;
+      }
+    }
+    link.close();
+
+    if (!resumeEnabled) {
+      closeSession(null);
+      return;
+    }
+
+    if (logger.isDebugEnabled()) {
+      logger.debug("connection of resumable session lost", t);
+    }
+    startSessionTimeout();
+    if (reconnect != null) {
+      // back off if the connection was lost while resuming, it might be lost again right away
+      reconnect(wasResuming ? RECONNECT_DELAY : Duration.ZERO);
+    }
+  }
+
+  /** Server: the first frame is a {@code SETUP} frame of a resumable session. */
+  private boolean startSession(ByteBuf resumeToken) {
+    if (sessions == null || !sessions.register(resumeToken, this)) {
+      rejectAndClose(new RejectedSetupException("Resume token already in use"));
+      return false;
+    }
+    this.resumeToken = Unpooled.copiedBuffer(resumeToken);
+    this.resumeEnabled = true;
+    return true;
+  }
+
+  /**
+   * Server: the first frame is a {@code RESUME} frame, so the physical connection is handed over to
+   * the session it resumes and this connection completes.
+   */
+  private void onResumeRequested(Link link, Frame resumeFrame) {
+    ResumableDuplexConnection session =
+        sessions == null ? null : sessions.get(Frame.Resume.resumeToken(resumeFrame));
+    boolean resumed = session != null && session.resume(link, resumeFrame);
+    resumeFrame.release();
+
+    if (!resumed) {
+      rejectAndClose(new RejectedResumeException("Session can not be resumed"));
+      return;
+    }
+
+    synchronized (this) {
+      this.link = null;
+      closed = true;
+    }
+    inbound.onComplete();
+    onClose.onComplete();
+  }
+
+  /** Server: takes over the physical connection of {@code link} if the session can be resumed. */
+  private boolean resume(Link link, Frame resumeFrame) {
+    long lastReceivedServerPosition = Frame.Resume.lastReceivedServerPosition(resumeFrame);
+    long firstAvailableClientPosition = Frame.Resume.firstAvailableClientPosition(resumeFrame);
+    boolean cached;
+    Link previous = null;
+    synchronized (this) {
+      if (closed) {
+        return false;
+      }
+      cached =
+          cache.canReplayFrom(lastReceivedServerPosition)
+              && firstAvailableClientPosition <= impliedPosition;
+      if (cached) {
+        cancelSessionTimeout();
+        previous = this.link;
+        link.owner = this;
+        link.sink.onNext(Frame.ResumeOk.from(impliedPosition));
+        cache.replay(lastReceivedServerPosition, link.sink::onNext);
+        this.link = link;
+      }
+    }
+
+    if (!cached) {
+      logger.debug(
+          "can not resume from position {}, the frames are no longer cached",
+          lastReceivedServerPosition);
+      closeSession(new RejectedResumeException("Frames to resume from are no longer cached"));
+      return false;
+    }
+    if (previous != null) {
+      previous.close();
+    }
+    return true;
+  }
+
+  /** Client: reconnects after {@code delay} and sends a {@code RESUME} frame. */
+  private void reconnect(Duration delay) {
+    Supplier<Mono<DuplexConnection>> reconnect = this.reconnect;
+    if (reconnect == null) {
+      return;
+    }
+
+    Disposable reconnecting =
+        Mono.delay(delay)
+            .then(ignored -> Mono.defer(reconnect))
+            .retryWhen(errors -> errors.delayElements(RECONNECT_DELAY))
+            .subscribe(this::onReconnected);
+
+    Disposable previous;
+    synchronized (this) {
+      if (closed) {
+        previous = reconnecting;
+      } else {
+        previous = this.reconnecting;
+        this.reconnecting = reconnecting;
+      }
+    }
+    if (previous != null) {
+      previous.dispose();
+    }
+  }
+
+  private void onReconnected(DuplexConnection connection) {
+    Link link = new Link(connection, this);
+    Frame resumeFrame;
+    synchronized (this) {
+      if (closed) {
+        connection.close().subscribe();
+        return;
+      }
+      resumingLink = link;
+      resumeFrame = Frame.Resume.from(resumeToken, impliedPosition, cache.firstAvailablePosition());
+    }
+    link.start();
+    link.sink.onNext(resumeFrame);
+  }
+
+  /** Client: the server accepted to resume on the physical connection of {@code link}. */
+  private void onResumed(Link link, Frame resumeOkFrame) {
+    long lastReceivedClientPosition = Frame.ResumeOk.lastReceivedClientPosition(resumeOkFrame);
+    synchronized (this) {
+      if (link != resumingLink) {
+        return;
+      }
+      if (cache.canReplayFrom(lastReceivedClientPosition)) {
+        cancelSessionTimeout();
+        resumingLink = null;
+        cache.replay(lastReceivedClientPosition, link.sink::onNext);
+        this.link = link;
+        return;
+      }
+    }
+    closeSession(new RejectedResumeException("Frames to resume from are no longer cached"));
+  }
+
+  private void startSessionTimeout() {
+    Disposable timeout =
+        Mono.delay(sessionDuration)
+            .subscribe(
+                ignored -> {
+                  logger.debug("resumable session expired");
+                  closeSession(new ClosedChannelException());
+                });
+
+    synchronized (this) {
+      if (!closed && sessionTimeout == null && link == null) {
+        sessionTimeout = timeout;
+        return;
+      }
+    }
+    timeout.dispose();
+  }
+
+  private synchronized void cancelSessionTimeout() {
+    if (sessionTimeout != null) {
+      sessionTimeout.dispose();
+      sessionTimeout = null;
+    }
+    if (reconnecting != null) {
+      reconnecting.dispose();
+      reconnecting = null;
+    }
+  }
+
+  private void rejectAndClose(Throwable error) {
+    Link link;
+    synchronized (this) {
+      link = this.link;
+      this.link = null;
+    }
+    if (link != null) {
+      link.connection
+          .sendOne(Frame.Error.from(0, error))
+          .then(link.connection.close())
+          .subscribe(null, t -> link.close());
+    }
+    // the connection never became a session, so there is no one to report the error to
+    closeSession(null);
+  }
+
+  private void closeSession(@Nullable Throwable error) {
+    Link link;
+    Link resumingLink;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      cancelSessionTimeout();
+      link = this.link;
+      resumingLink = this.resumingLink;
+      this.link = null;
+      this.resumingLink = null;
+      cache.clear();
+    }
+
+    if (sessions != null && resumeEnabled) {
+      sessions.remove(resumeToken, this);
+    }
+    if (link != null) {
+      link.close();
+    }
+    if (resumingLink != null) {
+      resumingLink.close();
+    }
+
+    if (error == null) {
+      inbound.onComplete();
+    } else {
+      inbound.onError(error);
+    }
+    onClose.onComplete();
+  }
+
+  /**
+   * A physical connection of a session. The session owning it may change on the server, when a new
+   * connection resumes an existing session.
+   */
+  private static final class Link {
+    private final DuplexConnection connection;
+    private final UnboundedProcessor<Frame> sink;
+    private volatile ResumableDuplexConnection owner;
+
+    private Link(DuplexConnection connection, ResumableDuplexConnection owner) {
+      this.connection = connection;
+      this.sink = new UnboundedProcessor<>();
+      this.owner = owner;
+    }
+
+    private void start() {
+      connection.send(sink).subscribe(null, t -> owner.onLinkClosed(this, t));
+      connection
+          .onClose()
+          .subscribe(null, t -> owner.onLinkClosed(this, t), () -> owner.onLinkClosed(this, null));
+      connection
+          .receive()
+          .subscribe(
+              frame -> owner.onLinkFrame(this, frame),
+              t -> owner.onLinkClosed(this, t),
+              () -> owner.onLinkClosed(this, null));
+    }
+
+    private void close() {
+      sink.dispose();
+      connection.close().subscribe(null, t -> {});
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.resume;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.rsocket.Frame;
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * The frames sent on a resumable connection that may have to be sent again after resuming, bounded
+ * by the number of bytes they take up. Frames are evicted oldest first once the bound is exceeded
+ * or once the peer acknowledged their receipt, so only the most recent frames can be replayed.
+ *
+ * <p>The cached frames are kept off-heap: direct buffers are retained rather than copied, anything
+ * else is copied into a pooled direct buffer.
+ *
+ * <p>Positions are the implied positions of the protocol, the number of bytes of resumable frames
+ * sent before a frame. Not thread-safe.
+ */
+final class ResumeCache {
+  private final int maxBytes;
+  private final ArrayDeque<ByteBuf> frames = new ArrayDeque<>();
+  private long firstAvailablePosition;
+  private long position;
+  private int bytes;
+
+  ResumeCache(int maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  /** Position of the first frame that can be replayed. */
+  long firstAvailablePosition() {
+    return firstAvailablePosition;
+  }
+
+  /** Position after the last frame sent. */
+  long position() {
+    return position;
+  }
+
+  int bytes() {
+    return bytes;
+  }
+
+  /** Adds a frame that is about to be sent, without taking over the caller's reference. */
+  void add(Frame frame) {
+    ByteBuf content = frame.content();
+    int length = content.readableBytes();
+    frames.addLast(retainOffHeap(content));
+    position += length;
+    bytes += length;
+
+    while (bytes > maxBytes) {
+      evictFirst();
+    }
+  }
+
+  /** Evicts the frames the peer acknowledged, all frames before {@code position}. */
+  void release(long position) {
+    while (!frames.isEmpty()
+        && firstAvailablePosition + frames.peekFirst().readableBytes() <= position) {
+      evictFirst();
+    }
+  }
+
+  /** Whether all frames sent from {@code position} on are still cached. */
+  boolean canReplayFrom(long position) {
+    return firstAvailablePosition <= position && position <= this.position;
+  }
+
+  /**
+   * Passes the frames sent from {@code position} on to {@code sink}, which owns them. The frames
+   * before {@code position} are evicted.
+   */
+  void replay(long position, Consumer<Frame> sink) {
+    if (!canReplayFrom(position)) {
+      throw new IllegalArgumentException(
+          "Frames from position "
+              + position
+              + " are not available, first available position is "
+              + firstAvailablePosition);
+    }
+
+    release(position);
+    for (ByteBuf frame : frames) {
+      sink.accept(Frame.from(frame.retainedDuplicate()));
+    }
+  }
+
+  /** Releases all cached frames. */
+  void clear() {
+    while (!frames.isEmpty()) {
+      evictFirst();
+    }
+  }
+
+  private void evictFirst() {
+    ByteBuf frame = frames.pollFirst();
+    int length = frame.readableBytes();
+    firstAvailablePosition += length;
+    bytes -= length;
+    frame.release();
+  }
+
+  private static ByteBuf retainOffHeap(ByteBuf content) {
+    if (content.isDirect() && !(content instanceof CompositeByteBuf)) {
+      return content.retainedDuplicate();
+    }
+
+    ByteBuf copy = ByteBufAllocator.DEFAULT.directBuffer(content.readableBytes());
+    copy.writeBytes(content, content.readerIndex(), content.readableBytes());
+    return copy;
+  }
+}
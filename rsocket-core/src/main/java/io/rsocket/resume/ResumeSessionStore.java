@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.resume;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * The resumable sessions of a server by resume token, so that a {@code RESUME} frame received on a
+ * new connection finds the session it continues. A session stays in the store until it is closed,
+ * including while it waits to be resumed.
+ */
+public final class ResumeSessionStore {
+  private final ConcurrentMap<ByteBuf, ResumableDuplexConnection> sessions =
+      new ConcurrentHashMap<>();
+
+  /** Number of sessions, connected or waiting to be resumed. */
+  public int size() {
+    return sessions.size();
+  }
+
+  /** Adds a session, unless another session already uses the token. */
+  boolean register(ByteBuf resumeToken, ResumableDuplexConnection session) {
+    return sessions.putIfAbsent(Unpooled.copiedBuffer(resumeToken), session) == null;
+  }
+
+  @Nullable
+  ResumableDuplexConnection get(ByteBuf resumeToken) {
+    return sessions.get(resumeToken);
+  }
+
+  void remove(ByteBuf resumeToken, ResumableDuplexConnection session) {
+    sessions.remove(resumeToken, session);
+  }
+}
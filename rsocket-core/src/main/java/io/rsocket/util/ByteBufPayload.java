@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.Recycler;
+import io.netty.util.Recycler.Handle;
+import io.rsocket.Frame;
+import io.rsocket.Payload;
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Payload} that is a view over the content of a received {@link Frame}. Data and metadata
+ * are {@link ByteBuf#slice() slices} of the frame so no bytes are copied when the payload is
+ * created.
+ *
+ * <p>The payload has its own reference count and holds a single reference on the frame content it
+ * was created from, which is only returned to its allocator once the payload is {@link #release()
+ * released}. Anyone who receives a {@code ByteBufPayload} <em>must</em> release it when done with
+ * it, otherwise the underlying (usually pooled) buffer leaks.
+ *
+ * <p>This implementation is <b>not</b> thread-safe.
+ */
+public class ByteBufPayload extends AbstractReferenceCounted implements Payload {
+
+  private static final Recycler<ByteBufPayload> RECYCLER =
+      new Recycler<ByteBufPayload>() {
+        protected ByteBufPayload newObject(Handle<ByteBufPayload> handle) {
+          return new ByteBufPayload(handle);
+        }
+      };
+
+  private final Handle<ByteBufPayload> handle;
+  private @Nullable ByteBuf content;
+  private @Nullable ByteBuf data;
+  private @Nullable ByteBuf metadata;
+
+  private ByteBufPayload(final Handle<ByteBufPayload> handle) {
+    this.handle = handle;
+  }
+
+  /**
+   * Creates a payload backed by the content of the passed {@link Frame}. The frame content is
+   * {@link ByteBuf#retain() retained}, so the caller still owns and must release its own reference
+   * to the frame.
+   *
+   * @param frame to slice data and metadata from.
+   * @return payload sharing the frame content.
+   */
+  public static ByteBufPayload create(Frame frame) {
+    final ByteBufPayload payload = RECYCLER.get();
+    payload.setRefCnt(1);
+    payload.content = frame.content().retain();
+    payload.data = frame.sliceFrameData();
+    payload.metadata = frame.sliceFrameMetadata();
+    return payload;
+  }
+
+  /** Clear and recycle this instance. */
+  private void recycle() {
+    content = null;
+    data = null;
+    metadata = null;
+    handle.recycle(this);
+  }
+
+  /**
+   * Returns the data of this payload as a {@link ByteBuf} sharing the frame content. The returned
+   * buffer is only valid while this payload is not released.
+   */
+  public ByteBuf sliceData() {
+    ensureAccessible();
+    return data;
+  }
+
+  /**
+   * Returns the metadata of this payload as a {@link ByteBuf} sharing the frame content. The
+   * returned buffer is only valid while this payload is not released.
+   */
+  public ByteBuf sliceMetadata() {
+    ensureAccessible();
+    return metadata;
+  }
+
+  /**
+   * Returns the data as a {@link ByteBuffer} view of the frame content. This does not copy unless
+   * the frame content is made of multiple buffers.
+   */
+  @Override
+  public ByteBuffer getData() {
+    return toByteBuffer(sliceData());
+  }
+
+  /**
+   * Returns the metadata as a {@link ByteBuffer} view of the frame content. This does not copy
+   * unless the frame content is made of multiple buffers.
+   */
+  @Override
+  public ByteBuffer getMetadata() {
+    return toByteBuffer(sliceMetadata());
+  }
+
+  private static ByteBuffer toByteBuffer(ByteBuf buf) {
+    return buf.isReadable() ? buf.nioBuffer() : Frame.NULL_BYTEBUFFER;
+  }
+
+  private void ensureAccessible() {
+    if (refCnt() == 0) {
+      throw new IllegalReferenceCountException(0);
+    }
+  }
+
+  @Override
+  public ByteBufPayload retain() {
+    super.retain();
+    return this;
+  }
+
+  @Override
+  public ByteBufPayload retain(int increment) {
+    super.retain(increment);
+    return this;
+  }
+
+  @Override
+  public ByteBufPayload touch() {
+    super.touch();
+    return this;
+  }
+
+  @Override
+  public ByteBufPayload touch(@Nullable Object hint) {
+    ensureAccessible();
+    content.touch(hint);
+    return this;
+  }
+
+  /** Releases the reference on the frame content once the payload is no longer referenced. */
+  @Override
+  protected void deallocate() {
+    content.release();
+    recycle();
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+
+import io.rsocket.test.util.TestDuplexConnection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+public class ExecutionModelTest {
+  private final TestDuplexConnection connection = new TestDuplexConnection();
+
+  @Test
+  public void testInline() {
+    assertThat(ExecutionModel.INLINE.apply(connection), is(sameInstance(connection)));
+  }
+
+  @Test
+  public void testPinned() {
+    Scheduler scheduler = Schedulers.newParallel("pinned", 4);
+    try {
+      StepVerifier.create(receivingThreads(ExecutionModel.pinned(scheduler)))
+          .then(this::receiveFrames)
+          .assertNext(
+              threads -> {
+                assertThat(threads, everyItem(startsWith("pinned")));
+                assertThat(new HashSet<>(threads), hasSize(1));
+              })
+          .verifyComplete();
+    } finally {
+      scheduler.dispose();
+    }
+  }
+
+  @Test
+  public void testShared() {
+    ExecutorService pool =
+        Executors.newFixedThreadPool(2, r -> new Thread(r, "shared-" + System.nanoTime()));
+    try {
+      StepVerifier.create(
+              receivingThreads(ExecutionModel.shared(Schedulers.fromExecutorService(pool))))
+          .then(this::receiveFrames)
+          .assertNext(threads -> assertThat(threads, everyItem(startsWith("shared"))))
+          .verifyComplete();
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private Mono<List<String>> receivingThreads(ExecutionModel executionModel) {
+    return executionModel
+        .apply(connection)
+        .receive()
+        .map(
+            frame -> {
+              frame.release();
+              return Thread.currentThread().getName();
+            })
+        .take(16)
+        .collectList();
+  }
+
+  private void receiveFrames() {
+    for (int i = 0; i < 16; i++) {
+      connection.addToReceivedBuffer(Frame.RequestN.from(1, 1));
+    }
+  }
+}
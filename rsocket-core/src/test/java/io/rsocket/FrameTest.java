@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.util.ByteBufPayload;
+import io.rsocket.util.PayloadImpl;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.Test;
+
+public class FrameTest {
+
+  @Test
+  public void testSmallPayloadIsCopied() {
+    Frame frame = Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl("data", "metadata"));
+    assertThat("Unexpected content.", frame.content(), not(instanceOf(CompositeByteBuf.class)));
+    frame.release();
+  }
+
+  @Test
+  public void testLargePayloadFrameIsNotCopied() {
+    ByteBuffer data = randomBytes(Frame.COMPOSITE_THRESHOLD);
+    ByteBuffer metadata = randomBytes(16);
+    Frame frame = Frame.PayloadFrame.from(3, FrameType.NEXT, new PayloadImpl(data, metadata));
+
+    assertThat("Unexpected content.", frame.content(), instanceOf(CompositeByteBuf.class));
+    assertThat("Unexpected frame type.", frame.getType(), is(FrameType.NEXT));
+    assertThat("Unexpected stream id.", frame.getStreamId(), is(3));
+    assertThat("Unexpected data.", frame.getData(), equalTo(data));
+    assertThat("Unexpected metadata.", frame.getMetadata(), equalTo(metadata));
+
+    data.put(0, (byte) ~data.get(0));
+    assertThat("Data was copied.", frame.getData(), equalTo(data));
+    frame.release();
+  }
+
+  @Test
+  public void testLargeRequestFrameMatchesCopiedEncoding() {
+    ByteBuf data = Unpooled.wrappedBuffer(randomBytes(Frame.COMPOSITE_THRESHOLD));
+    ByteBuf metadata = Unpooled.wrappedBuffer(randomBytes(16));
+    Frame copied =
+        Frame.Request.from(5, FrameType.REQUEST_STREAM, metadata.slice(), data.slice(), 7, 0);
+    Frame composite =
+        Frame.Request.from(
+            5,
+            FrameType.REQUEST_STREAM,
+            new PayloadImpl(data.nioBuffer(), metadata.nioBuffer()),
+            7);
+
+    assertThat("Unexpected content.", composite.content(), instanceOf(CompositeByteBuf.class));
+    assertThat(
+        "Unexpected encoding.",
+        ByteBufUtil.hexDump(composite.content()),
+        equalTo(ByteBufUtil.hexDump(copied.content())));
+    assertThat("Unexpected request n.", Frame.Request.initialRequestN(composite), is(7));
+    copied.release();
+    composite.release();
+  }
+
+  @Test
+  public void testByteBufPayloadIsRetainedUntilSent() {
+    Frame received =
+        Frame.PayloadFrame.from(
+            1, FrameType.NEXT, new PayloadImpl(randomBytes(Frame.COMPOSITE_THRESHOLD)));
+    ByteBuf content = received.content();
+    ByteBuffer data = received.getData();
+    ByteBufPayload payload = ByteBufPayload.create(received);
+    received.release();
+
+    Frame frame = Frame.PayloadFrame.from(2, FrameType.NEXT_COMPLETE, payload);
+    assertThat("Payload not retained.", content.refCnt(), is(2));
+    payload.release();
+    assertThat("Payload not retained.", frame.getData(), equalTo(data));
+    frame.release();
+    assertThat("Payload not released.", content.refCnt(), is(0));
+  }
+
+  private static ByteBuffer randomBytes(int size) {
+    byte[] bytes = new byte[size];
+    ThreadLocalRandom.current().nextBytes(bytes);
+    return ByteBuffer.wrap(bytes);
+  }
+}
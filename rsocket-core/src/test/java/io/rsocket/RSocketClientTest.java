@@ -18,8 +18,11 @@ package io.rsocket;
 
 import static io.rsocket.FrameType.CANCEL;
 import static io.rsocket.FrameType.KEEPALIVE;
+import static io.rsocket.FrameType.NEXT;
 import static io.rsocket.FrameType.NEXT_COMPLETE;
+import static io.rsocket.FrameType.REQUEST_N;
 import static io.rsocket.FrameType.REQUEST_RESPONSE;
+import static io.rsocket.FrameType.REQUEST_STREAM;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
@@ -29,10 +32,17 @@ import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 
+import io.netty.buffer.Unpooled;
 import io.reactivex.subscribers.TestSubscriber;
 import io.rsocket.exceptions.ApplicationException;
+import io.rsocket.exceptions.RejectedException;
 import io.rsocket.exceptions.RejectedSetupException;
+import io.rsocket.internal.SendQueue;
+import io.rsocket.lease.LeaseManager;
+import io.rsocket.test.util.TestDuplexConnection;
+import io.rsocket.util.ByteBufPayload;
 import io.rsocket.util.PayloadImpl;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.Rule;
@@ -139,6 +149,102 @@ public class RSocketClientTest {
     assertThat("Stream ID reused.", streamId2, not(equalTo(streamId)));
   }
 
+  @Test(timeout = 2_000)
+  public void testZeroCopyFrameDecoder() throws Throwable {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    RSocketClient socket =
+        new RSocketClient(
+            connection,
+            throwable -> rule.errors.add(throwable),
+            ByteBufPayload::create,
+            StreamIdSupplier.clientSupplier());
+
+    TestSubscriber<Payload> responseSub = TestSubscriber.create();
+    socket.requestResponse(PayloadImpl.EMPTY).subscribe(responseSub);
+
+    int streamId = connection.awaitSend().getStreamId();
+    Frame responseFrame =
+        Frame.PayloadFrame.from(streamId, NEXT_COMPLETE, new PayloadImpl("response"));
+    connection.addToReceivedBuffer(responseFrame);
+
+    responseSub.assertValueCount(1);
+    responseSub.assertComplete();
+    ByteBufPayload payload = (ByteBufPayload) responseSub.values().get(0);
+    assertThat("Frame content not retained.", payload.refCnt(), is(1));
+    assertThat("Unexpected data.", TestUtil.byteToString(payload.getData()), is("response"));
+    payload.release();
+  }
+
+  @Test(timeout = 2_000)
+  public void testHonorLease() throws Throwable {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    RSocketClient socket =
+        new RSocketClient(
+            connection,
+            throwable -> rule.errors.add(throwable),
+            PayloadImpl::new,
+            StreamIdSupplier.clientSupplier(),
+            Duration.ZERO,
+            Duration.ZERO,
+            0,
+            new LeaseManager());
+
+    TestSubscriber<Payload> rejectedSub = TestSubscriber.create();
+    socket.requestResponse(PayloadImpl.EMPTY).subscribe(rejectedSub);
+    rejectedSub.assertError(RejectedException.class);
+    assertThat("Request sent without lease.", connection.getSent(), hasSize(0));
+    assertThat("Unexpected availability.", socket.availability(), is(0.0));
+
+    connection.addToReceivedBuffer(Frame.Lease.from(60_000, 1, Unpooled.EMPTY_BUFFER));
+    assertThat("Unexpected availability.", socket.availability(), is(1.0));
+
+    socket.requestResponse(PayloadImpl.EMPTY).subscribe(TestSubscriber.create());
+    assertThat("Unexpected frame sent.", connection.awaitSend().getType(), is(REQUEST_RESPONSE));
+    assertThat("Unexpected availability.", socket.availability(), is(0.0));
+
+    TestSubscriber<Payload> exhaustedSub = TestSubscriber.create();
+    socket.requestStream(PayloadImpl.EMPTY).subscribe(exhaustedSub);
+    exhaustedSub.assertError(RejectedException.class);
+    assertThat("Request sent beyond lease.", connection.getSent(), hasSize(0));
+  }
+
+  @Test(timeout = 2_000)
+  public void testStreamPrefetch() throws Throwable {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    RSocketClient socket =
+        new RSocketClient(
+            connection,
+            throwable -> rule.errors.add(throwable),
+            PayloadImpl::new,
+            StreamIdSupplier.clientSupplier(),
+            Duration.ZERO,
+            Duration.ZERO,
+            0,
+            null,
+            new SendQueue(connection),
+            null,
+            4,
+            4);
+
+    TestSubscriber<Payload> streamSub = TestSubscriber.create(1);
+    socket.requestStream(PayloadImpl.EMPTY).subscribe(streamSub);
+    Frame request = connection.awaitSend();
+    assertThat("Unexpected frame sent.", request.getType(), is(REQUEST_STREAM));
+    assertThat("Unexpected initial request.", Frame.Request.initialRequestN(request), is(4));
+
+    for (int i = 0; i < 3; i++) {
+      connection.addToReceivedBuffer(
+          Frame.PayloadFrame.from(request.getStreamId(), NEXT, PayloadImpl.EMPTY));
+      streamSub.request(1);
+    }
+
+    streamSub.assertValueCount(3);
+    assertThat("Unexpected frames sent.", connection.getSent(), hasSize(1));
+    Frame requestN = connection.awaitSend();
+    assertThat("Unexpected frame sent.", requestN.getType(), is(REQUEST_N));
+    assertThat("Unexpected request.", Frame.RequestN.requestN(requestN), is(3));
+  }
+
   public int sendRequestResponse(Publisher<Payload> response) {
     TestSubscriber<Payload> sub = TestSubscriber.create();
     response.subscribe(sub);
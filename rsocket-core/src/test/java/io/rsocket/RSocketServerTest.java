@@ -24,6 +24,8 @@ import static org.hamcrest.Matchers.is;
 
 import io.netty.buffer.Unpooled;
 import io.reactivex.subscribers.TestSubscriber;
+import io.rsocket.frame.ErrorFrameFlyweight;
+import io.rsocket.lease.LeaseImpl;
 import io.rsocket.test.util.TestDuplexConnection;
 import io.rsocket.util.PayloadImpl;
 import java.util.Collection;
@@ -31,6 +33,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Rule;
 import org.junit.Test;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public class RSocketServerTest {
@@ -52,15 +55,12 @@ public class RSocketServerTest {
   @Test(timeout = 2000)
   public void testHandleResponseFrameNoError() throws Exception {
     final int streamId = 4;
-    rule.connection.clearSendReceiveBuffers();
-
     rule.sendRequest(streamId, FrameType.REQUEST_RESPONSE);
 
+    // all frames are sent on a single send of the connection
     Collection<TestSubscriber<Frame>> sendSubscribers = rule.connection.getSendSubscribers();
-    assertThat("Request not sent.", sendSubscribers, hasSize(1));
+    assertThat("Unexpected send subscribers.", sendSubscribers, hasSize(1));
     assertThat("Unexpected error.", rule.errors, is(empty()));
-    TestSubscriber<Frame> sendSub = sendSubscribers.iterator().next();
-    sendSub.request(2);
     assertThat(
         "Unexpected frame sent.",
         rule.connection.awaitSend().getType(),
@@ -97,6 +97,42 @@ public class RSocketServerTest {
     assertThat("Subscription not cancelled.", cancelled.get(), is(true));
   }
 
+  @Test(timeout = 2000)
+  public void testRejectBeyondLease() throws Exception {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    new RSocketServer(
+        connection,
+        new AbstractRSocket() {
+          @Override
+          public Mono<Payload> requestResponse(Payload payload) {
+            return Mono.just(payload);
+          }
+        },
+        throwable -> rule.errors.add(throwable),
+        PayloadImpl::new,
+        stats -> Flux.just(new LeaseImpl(1, 60_000)));
+
+    Frame lease = connection.awaitSend();
+    assertThat("Unexpected frame sent.", lease.getType(), is(FrameType.LEASE));
+    assertThat("Unexpected lease.", Frame.Lease.numberOfRequests(lease), is(1));
+
+    connection.addToReceivedBuffer(
+        Frame.Request.from(1, FrameType.REQUEST_RESPONSE, PayloadImpl.EMPTY, 1));
+    connection.addToReceivedBuffer(
+        Frame.Request.from(3, FrameType.REQUEST_RESPONSE, PayloadImpl.EMPTY, 1));
+
+    assertThat(
+        "Unexpected frame sent.", connection.awaitSend().getType(), is(FrameType.NEXT_COMPLETE));
+    Frame rejected = connection.awaitSend();
+    assertThat("Unexpected frame sent.", rejected.getType(), is(FrameType.ERROR));
+    assertThat("Unexpected stream rejected.", rejected.getStreamId(), is(3));
+    assertThat(
+        "Unexpected error code.",
+        Frame.Error.errorCode(rejected),
+        is(ErrorFrameFlyweight.REJECTED));
+    assertThat("Unexpected error.", rule.errors, is(empty()));
+  }
+
   public static class ServerSocketRule extends AbstractSocketRule<RSocketServer> {
 
     private RSocket acceptingSocket;
@@ -20,37 +20,41 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import io.rsocket.internal.SynchronizedIntObjectHashMap;
 import org.junit.Test;
 
 public class StreamIdSupplierTest {
   @Test
   public void testClientSequence() {
+    SynchronizedIntObjectHashMap<Object> map = new SynchronizedIntObjectHashMap<>();
     StreamIdSupplier s = StreamIdSupplier.clientSupplier();
-    assertEquals(1, s.nextStreamId());
-    assertEquals(3, s.nextStreamId());
-    assertEquals(5, s.nextStreamId());
+    assertEquals(1, s.nextStreamId(map));
+    assertEquals(3, s.nextStreamId(map));
+    assertEquals(5, s.nextStreamId(map));
   }
 
   @Test
   public void testServerSequence() {
+    SynchronizedIntObjectHashMap<Object> map = new SynchronizedIntObjectHashMap<>();
     StreamIdSupplier s = StreamIdSupplier.serverSupplier();
-    assertEquals(2, s.nextStreamId());
-    assertEquals(4, s.nextStreamId());
-    assertEquals(6, s.nextStreamId());
+    assertEquals(2, s.nextStreamId(map));
+    assertEquals(4, s.nextStreamId(map));
+    assertEquals(6, s.nextStreamId(map));
   }
 
   @Test
   public void testClientIsValid() {
+    SynchronizedIntObjectHashMap<Object> map = new SynchronizedIntObjectHashMap<>();
     StreamIdSupplier s = StreamIdSupplier.clientSupplier();
 
     assertFalse(s.isBeforeOrCurrent(1));
     assertFalse(s.isBeforeOrCurrent(3));
 
-    s.nextStreamId();
+    s.nextStreamId(map);
     assertTrue(s.isBeforeOrCurrent(1));
     assertFalse(s.isBeforeOrCurrent(3));
 
-    s.nextStreamId();
+    s.nextStreamId(map);
     assertTrue(s.isBeforeOrCurrent(3));
 
     // negative
@@ -63,16 +67,17 @@ public class StreamIdSupplierTest {
 
   @Test
   public void testServerIsValid() {
+    SynchronizedIntObjectHashMap<Object> map = new SynchronizedIntObjectHashMap<>();
     StreamIdSupplier s = StreamIdSupplier.serverSupplier();
 
     assertFalse(s.isBeforeOrCurrent(2));
     assertFalse(s.isBeforeOrCurrent(4));
 
-    s.nextStreamId();
+    s.nextStreamId(map);
     assertTrue(s.isBeforeOrCurrent(2));
     assertFalse(s.isBeforeOrCurrent(4));
 
-    s.nextStreamId();
+    s.nextStreamId(map);
     assertTrue(s.isBeforeOrCurrent(4));
 
     // negative
@@ -82,4 +87,41 @@ public class StreamIdSupplierTest {
     // client also accepted (checked externally)
     assertTrue(s.isBeforeOrCurrent(1));
   }
+
+  @Test
+  public void testClientWrap() {
+    SynchronizedIntObjectHashMap<Object> map = new SynchronizedIntObjectHashMap<>();
+    StreamIdSupplier s = new StreamIdSupplier(Integer.MAX_VALUE - 4);
+
+    assertEquals(Integer.MAX_VALUE - 2, s.nextStreamId(map));
+    assertEquals(Integer.MAX_VALUE, s.nextStreamId(map));
+    assertEquals(1, s.nextStreamId(map));
+    assertEquals(3, s.nextStreamId(map));
+
+    // all ids were in use before the wrap
+    assertTrue(s.isBeforeOrCurrent(Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void testServerWrap() {
+    SynchronizedIntObjectHashMap<Object> map = new SynchronizedIntObjectHashMap<>();
+    StreamIdSupplier s = new StreamIdSupplier(Integer.MAX_VALUE - 3);
+
+    assertEquals(Integer.MAX_VALUE - 1, s.nextStreamId(map));
+    // 0 is the connection stream
+    assertEquals(2, s.nextStreamId(map));
+    assertEquals(4, s.nextStreamId(map));
+  }
+
+  @Test
+  public void testSkipsActiveStreamsAfterWrap() {
+    SynchronizedIntObjectHashMap<Object> map = new SynchronizedIntObjectHashMap<>();
+    map.put(1, new Object());
+    map.put(5, new Object());
+    StreamIdSupplier s = new StreamIdSupplier(Integer.MAX_VALUE - 2);
+
+    assertEquals(Integer.MAX_VALUE, s.nextStreamId(map));
+    assertEquals(3, s.nextStreamId(map));
+    assertEquals(7, s.nextStreamId(map));
+  }
 }
@@ -1,18 +1,33 @@
 package io.rsocket.fragmentation;
 
+import static io.rsocket.frame.FrameHeaderFlyweight.FLAGS_C;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.rsocket.DuplexConnection;
 import io.rsocket.Frame;
 import io.rsocket.FrameType;
+import io.rsocket.Payload;
+import io.rsocket.exceptions.Exceptions;
+import io.rsocket.exceptions.RejectedException;
 import io.rsocket.util.PayloadImpl;
 import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.EmitterProcessor;
 import reactor.core.publisher.Flux;
@@ -73,7 +88,7 @@ public class FragmentationDuplexConnectionTest {
             invocation -> {
               Publisher<Frame> frames = invocation.getArgumentAt(0, Publisher.class);
 
-              StepVerifier.create(frames).expectNextCount(16).verifyComplete();
+              StepVerifier.create(frames).expectNextCount(48).verifyComplete();
 
               return Mono.empty();
             });
@@ -94,7 +109,19 @@ public class FragmentationDuplexConnectionTest {
 
     StepVerifier.create(duplexConnection.send(Flux.just(frame1, frame2, frame3))).verifyComplete();
 
-    verify(mockConnection, times(3)).send(any());
+    verify(mockConnection, times(1)).send(any());
+  }
+
+  @Test
+  public void testReceiveKeepaliveWithRespondFlag() {
+    Frame keepalive = Frame.Keepalive.from(Unpooled.EMPTY_BUFFER, true);
+    DuplexConnection mockConnection = mock(DuplexConnection.class);
+    when(mockConnection.receive()).thenReturn(Flux.just(keepalive));
+
+    FragmentationDuplexConnection duplexConnection =
+        new FragmentationDuplexConnection(mockConnection, 2);
+
+    StepVerifier.create(duplexConnection.receive()).expectNext(keepalive).verifyComplete();
   }
 
   @Test
@@ -121,6 +148,226 @@ public class FragmentationDuplexConnectionTest {
         .subscribe();
   }
 
+  @Test
+  public void testStreamFragmentedPayload() {
+    ByteBuffer data = createRandomBytes(16);
+    ByteBuffer metadata = createRandomBytes(6);
+    Frame frame =
+        Frame.PayloadFrame.from(
+            1, FrameType.NEXT_COMPLETE, new PayloadImpl(data, metadata), FLAGS_C);
+    DuplexConnection mockConnection = mock(DuplexConnection.class);
+    when(mockConnection.receive()).then(answer -> new FrameFragmenter(4).fragment(frame));
+
+    FragmentationDuplexConnection duplexConnection =
+        new FragmentationDuplexConnection(mockConnection, 0, true);
+    Function<Frame, Payload> frameDecoder =
+        duplexConnection.streamingFrameDecoder(PayloadImpl::new);
+
+    List<Payload> payloads = new ArrayList<>();
+    List<FrameType> frameTypes = new ArrayList<>();
+    duplexConnection
+        .receive()
+        .subscribe(
+            f -> {
+              frameTypes.add(f.getType());
+              payloads.add(frameDecoder.apply(f));
+              f.release();
+            });
+
+    assertThat(frameTypes, contains(FrameType.NEXT, FrameType.COMPLETE));
+    assertThat(payloads.get(0), instanceOf(StreamingPayload.class));
+    assertThat(payloads.get(0).getMetadata(), is(metadata.rewind()));
+
+    ByteBuf received = Unpooled.buffer();
+    StepVerifier.create(((StreamingPayload) payloads.get(0)).data())
+        .thenConsumeWhile(
+            chunk -> {
+              received.writeBytes(chunk);
+              return chunk.release();
+            })
+        .verifyComplete();
+    assertThat(received.nioBuffer(), is(data.rewind()));
+  }
+
+  @Test
+  public void testRejectStreamedPayloadOverBudget() {
+    assertStreamedPayloadRejected(new ReassemblyLimits(1024, 16, 8, Duration.ZERO));
+  }
+
+  @Test
+  public void testRejectStreamedPayloadQueueLargerThanLimit() {
+    assertStreamedPayloadRejected(new ReassemblyLimits(8, 16, 1024, Duration.ZERO));
+  }
+
+  private void assertStreamedPayloadRejected(ReassemblyLimits limits) {
+    Frame frame =
+        Frame.PayloadFrame.from(
+            1, FrameType.NEXT, new PayloadImpl(createRandomBytes(16), createRandomBytes(2)));
+    List<Frame> fragments = new FrameFragmenter(4).fragment(frame).collectList().block();
+    List<ByteBuf> contents = new ArrayList<>();
+    fragments.forEach(f -> contents.add(f.content()));
+    frame.release();
+
+    DuplexConnection mockConnection = mock(DuplexConnection.class);
+    when(mockConnection.receive()).then(answer -> Flux.fromIterable(fragments));
+    when(mockConnection.sendOne(any(Frame.class))).thenReturn(Mono.empty());
+
+    FragmentationDuplexConnection duplexConnection =
+        new FragmentationDuplexConnection(mockConnection, 0, true, limits);
+    Function<Frame, Payload> frameDecoder =
+        duplexConnection.streamingFrameDecoder(PayloadImpl::new);
+
+    List<Payload> payloads = new ArrayList<>();
+    List<FrameType> frameTypes = new ArrayList<>();
+    duplexConnection
+        .receive()
+        .subscribe(
+            f -> {
+              frameTypes.add(f.getType());
+              payloads.add(frameDecoder.apply(f));
+              f.release();
+            });
+
+    assertThat(frameTypes, contains(FrameType.NEXT, FrameType.ERROR));
+    StepVerifier.create(((StreamingPayload) payloads.get(0)).data())
+        .verifyError(RejectedException.class);
+
+    ArgumentCaptor<Frame> sent = ArgumentCaptor.forClass(Frame.class);
+    verify(mockConnection).sendOne(sent.capture());
+    assertThat(sent.getValue().getType(), is(FrameType.CANCEL));
+    for (ByteBuf content : contents) {
+      assertThat("Fragment not released.", content.refCnt(), is(0));
+    }
+  }
+
+  @Test
+  public void testRejectPayloadLargerThanLimit() {
+    Frame frame =
+        Frame.PayloadFrame.from(
+            1, FrameType.NEXT, new PayloadImpl(createRandomBytes(16), createRandomBytes(4)));
+    List<Frame> fragments = new FrameFragmenter(4).fragment(frame).collectList().block();
+    List<ByteBuf> contents = new ArrayList<>();
+    fragments.forEach(f -> contents.add(f.content()));
+    frame.release();
+
+    DuplexConnection mockConnection = mock(DuplexConnection.class);
+    when(mockConnection.receive()).then(answer -> Flux.fromIterable(fragments));
+    when(mockConnection.sendOne(any(Frame.class))).thenReturn(Mono.empty());
+
+    FragmentationDuplexConnection duplexConnection =
+        new FragmentationDuplexConnection(
+            mockConnection, 0, false, new ReassemblyLimits(8, 16, 1024, Duration.ZERO));
+
+    StepVerifier.create(duplexConnection.receive())
+        .assertNext(
+            f -> {
+              assertThat(f.getType(), is(FrameType.ERROR));
+              assertThat(Exceptions.from(f), instanceOf(RejectedException.class));
+            })
+        .verifyComplete();
+
+    ArgumentCaptor<Frame> sent = ArgumentCaptor.forClass(Frame.class);
+    verify(mockConnection).sendOne(sent.capture());
+    assertThat(sent.getValue().getType(), is(FrameType.CANCEL));
+    for (ByteBuf content : contents) {
+      assertThat("Fragment not released.", content.refCnt(), is(0));
+    }
+  }
+
+  @Test
+  public void testRejectTooManyReassemblies() {
+    Frame first = fragmentedRequest(1).get(0);
+    Frame second = fragmentedRequest(3).get(0);
+
+    DuplexConnection mockConnection = mock(DuplexConnection.class);
+    when(mockConnection.receive()).then(answer -> Flux.just(first, second));
+    when(mockConnection.sendOne(any(Frame.class))).thenReturn(Mono.empty());
+
+    FragmentationDuplexConnection duplexConnection =
+        new FragmentationDuplexConnection(
+            mockConnection, 0, false, new ReassemblyLimits(1024, 1, 1024, Duration.ZERO));
+
+    StepVerifier.create(duplexConnection.receive()).verifyComplete();
+
+    ArgumentCaptor<Frame> sent = ArgumentCaptor.forClass(Frame.class);
+    verify(mockConnection).sendOne(sent.capture());
+    assertThat(sent.getValue().getType(), is(FrameType.ERROR));
+    assertThat(sent.getValue().getStreamId(), is(3));
+  }
+
+  @Test
+  public void testDropFragmentsOfRejectedPayload() {
+    List<Frame> accepted = fragmentedRequest(1);
+    List<Frame> rejected = fragmentedRequest(3);
+    List<ByteBuf> rejectedContents = new ArrayList<>();
+    rejected.forEach(f -> rejectedContents.add(f.content()));
+
+    DuplexConnection mockConnection = mock(DuplexConnection.class);
+    when(mockConnection.receive())
+        .then(
+            answer ->
+                Flux.just(accepted.get(0))
+                    .concatWith(Flux.fromIterable(rejected))
+                    .concatWith(Flux.fromIterable(accepted.subList(1, accepted.size()))));
+    when(mockConnection.sendOne(any(Frame.class))).thenReturn(Mono.empty());
+
+    FragmentationDuplexConnection duplexConnection =
+        new FragmentationDuplexConnection(
+            mockConnection, 0, false, new ReassemblyLimits(1024, 1, 1024, Duration.ZERO));
+
+    StepVerifier.create(duplexConnection.receive())
+        .assertNext(
+            f -> {
+              assertThat(f.getStreamId(), is(1));
+              assertThat(f.getType(), is(FrameType.REQUEST_RESPONSE));
+              f.release();
+            })
+        .verifyComplete();
+
+    ArgumentCaptor<Frame> sent = ArgumentCaptor.forClass(Frame.class);
+    verify(mockConnection).sendOne(sent.capture());
+    assertThat(sent.getValue().getType(), is(FrameType.ERROR));
+    assertThat(sent.getValue().getStreamId(), is(3));
+    for (ByteBuf content : rejectedContents) {
+      assertThat("Fragment not released.", content.refCnt(), is(0));
+    }
+  }
+
+  @Test
+  public void testRejectOnTimeout() {
+    Frame first = fragmentedRequest(1).get(0);
+
+    DuplexConnection mockConnection = mock(DuplexConnection.class);
+    when(mockConnection.receive()).then(answer -> Flux.just(first).concatWith(Flux.never()));
+    when(mockConnection.sendOne(any(Frame.class))).thenReturn(Mono.empty());
+
+    FragmentationDuplexConnection duplexConnection =
+        new FragmentationDuplexConnection(
+            mockConnection, 0, false, new ReassemblyLimits(1024, 16, 1024, Duration.ofMillis(10)));
+
+    StepVerifier.create(duplexConnection.receive())
+        .expectSubscription()
+        .expectNoEvent(Duration.ofMillis(100))
+        .thenCancel()
+        .verify();
+
+    ArgumentCaptor<Frame> sent = ArgumentCaptor.forClass(Frame.class);
+    verify(mockConnection).sendOne(sent.capture());
+    assertThat(sent.getValue().getType(), is(FrameType.ERROR));
+    assertThat(Exceptions.from(sent.getValue()), instanceOf(RejectedException.class));
+  }
+
+  private List<Frame> fragmentedRequest(int streamId) {
+    Frame frame =
+        Frame.Request.from(
+            streamId, FrameType.REQUEST_RESPONSE, new PayloadImpl(createRandomBytes(16)), 1);
+    return new FrameFragmenter(4)
+        .fragment(frame)
+        .doFinally(s -> frame.release())
+        .collectList()
+        .block();
+  }
+
   private ByteBuffer createRandomBytes(int size) {
     byte[] bytes = new byte[size];
     ThreadLocalRandom.current().nextBytes(bytes);
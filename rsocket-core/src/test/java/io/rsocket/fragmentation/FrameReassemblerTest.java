@@ -1,9 +1,16 @@
 package io.rsocket.fragmentation;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.CompositeByteBuf;
 import io.rsocket.Frame;
 import io.rsocket.FrameType;
+import io.rsocket.frame.FrameHeaderFlyweight;
 import io.rsocket.util.PayloadImpl;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 import org.junit.Test;
 
@@ -21,6 +28,85 @@ public class FrameReassemblerTest {
     frameFragmenter.fragment(from).subscribe(reassembler::append);
   }
 
+  @Test
+  public void testReassembleRequestStream() {
+    ByteBuffer data = createRandomBytes(4096);
+    ByteBuffer metadata = createRandomBytes(2048);
+
+    Frame from =
+        Frame.Request.from(5, FrameType.REQUEST_STREAM, new PayloadImpl(data, metadata), 7);
+    List<Frame> fragments = new FrameFragmenter(1024).fragment(from).collectList().block();
+
+    assertEquals(6, fragments.size());
+    assertEquals(FrameType.REQUEST_STREAM, fragments.get(0).getType());
+    assertEquals(7, Frame.Request.initialRequestN(fragments.get(0)));
+    assertTrue(fragments.get(0).content() instanceof CompositeByteBuf);
+    for (int i = 1; i < fragments.size(); i++) {
+      assertEquals(FrameType.NEXT, fragments.get(i).getType());
+    }
+
+    Frame reassembled = reassemble(fragments);
+    assertEquals(5, reassembled.getStreamId());
+    assertEquals(FrameType.REQUEST_STREAM, reassembled.getType());
+    assertEquals(0, reassembled.flags() & FrameHeaderFlyweight.FLAGS_F);
+    assertEquals(7, Frame.Request.initialRequestN(reassembled));
+    assertEquals(metadata.rewind(), reassembled.getMetadata());
+    assertEquals(data.rewind(), reassembled.getData());
+    reassembled.release();
+    from.release();
+  }
+
+  @Test
+  public void testReassembleNextComplete() {
+    ByteBuffer data = createRandomBytes(17);
+    ByteBuffer metadata = createRandomBytes(17);
+
+    Frame from =
+        Frame.PayloadFrame.from(
+            3,
+            FrameType.NEXT_COMPLETE,
+            new PayloadImpl(data, metadata),
+            FrameHeaderFlyweight.FLAGS_C);
+    List<Frame> fragments = new FrameFragmenter(2).fragment(from).collectList().block();
+
+    assertEquals(17, fragments.size());
+    assertEquals(FrameType.NEXT, fragments.get(0).getType());
+    assertEquals(FrameType.NEXT_COMPLETE, fragments.get(16).getType());
+
+    Frame reassembled = reassemble(fragments);
+    assertEquals(FrameType.NEXT_COMPLETE, reassembled.getType());
+    assertEquals(metadata.rewind(), reassembled.getMetadata());
+    assertEquals(data.rewind(), reassembled.getData());
+    reassembled.release();
+    from.release();
+  }
+
+  @Test
+  public void testDispose() {
+    Frame from =
+        Frame.Request.from(
+            1, FrameType.REQUEST_RESPONSE, new PayloadImpl(createRandomBytes(4096)), 1);
+    List<Frame> fragments = new FrameFragmenter(1024).fragment(from).collectList().block();
+    from.release();
+
+    FrameReassembler reassembler = new FrameReassembler(fragments.get(0));
+    reassembler.append(fragments.get(0));
+    fragments.forEach(Frame::release);
+    reassembler.dispose();
+
+    assertEquals(0, fragments.get(0).refCnt());
+    assertNull(reassembler.reassemble());
+  }
+
+  private static Frame reassemble(List<Frame> fragments) {
+    FrameReassembler reassembler = new FrameReassembler(fragments.get(0));
+    for (Frame fragment : fragments) {
+      reassembler.append(fragment);
+      fragment.release();
+    }
+    return reassembler.reassemble();
+  }
+
   private ByteBuffer createRandomBytes(int size) {
     byte[] bytes = new byte[size];
     ThreadLocalRandom.current().nextBytes(bytes);
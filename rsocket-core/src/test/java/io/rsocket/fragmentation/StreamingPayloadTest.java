@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.fragmentation;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.exceptions.CancelException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import reactor.test.StepVerifier;
+
+public class StreamingPayloadTest {
+
+  @Test
+  public void testGetDataBeforeSubscription() {
+    StreamingPayload payload = new StreamingPayload(ByteBuffer.allocate(0));
+    ByteBuf first = chunk("hello ");
+    ByteBuf second = chunk("world");
+    payload.onChunk(first);
+    payload.onChunk(second);
+    payload.onComplete();
+
+    assertThat(StandardCharsets.UTF_8.decode(payload.getData()).toString(), is("hello world"));
+    StepVerifier.create(payload.data()).expectNext(first).expectNext(second).verifyComplete();
+    assertThat("Chunk released by getData().", first.refCnt(), is(1));
+
+    first.release();
+    second.release();
+    payload.release();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testGetDataAfterSubscription() {
+    StreamingPayload payload = new StreamingPayload(ByteBuffer.allocate(0));
+    payload.data().subscribe();
+    payload.getData();
+  }
+
+  @Test
+  public void testReleaseWithoutSubscription() {
+    StreamingPayload payload = new StreamingPayload(ByteBuffer.allocate(0));
+    ByteBuf queued = chunk("queued");
+    payload.onChunk(queued);
+
+    assertThat(payload.release(), is(true));
+    assertThat("Queued chunk not released.", queued.refCnt(), is(0));
+
+    ByteBuf late = chunk("late");
+    payload.onChunk(late);
+    assertThat("Late chunk not released.", late.refCnt(), is(0));
+  }
+
+  @Test
+  public void testErrorWithoutSubscription() {
+    StreamingPayload payload = new StreamingPayload(ByteBuffer.allocate(0));
+    ByteBuf queued = chunk("queued");
+    payload.onChunk(queued);
+    payload.onError(new CancelException("cancelled"));
+
+    assertThat("Queued chunk not released.", queued.refCnt(), is(0));
+    StepVerifier.create(payload.data()).verifyError(CancelException.class);
+  }
+
+  @Test
+  public void testCancelReleasesUndelivered() {
+    StreamingPayload payload = new StreamingPayload(ByteBuffer.allocate(0));
+    ByteBuf delivered = chunk("delivered");
+    ByteBuf undelivered = chunk("undelivered");
+    payload.onChunk(delivered);
+    payload.onChunk(undelivered);
+
+    StepVerifier.create(payload.data(), 1).expectNext(delivered).thenCancel().verify();
+    assertThat("Delivered chunk released.", delivered.refCnt(), is(1));
+    assertThat("Undelivered chunk not released.", undelivered.refCnt(), is(0));
+    delivered.release();
+  }
+
+  @Test
+  public void testDequeuedChunksCredited() {
+    AtomicInteger dequeued = new AtomicInteger();
+    StreamingPayload payload =
+        new StreamingPayload(ByteBuffer.allocate(0), false, dequeued::addAndGet);
+    ByteBuf delivered = chunk("delivered");
+    ByteBuf undelivered = chunk("undelivered");
+    payload.onChunk(delivered);
+    payload.onChunk(undelivered);
+    assertThat("Queued chunks credited.", dequeued.get(), is(0));
+
+    StepVerifier.create(payload.data(), 1).expectNext(delivered).thenCancel().verify();
+    assertThat(
+        "Chunks not credited.",
+        dequeued.get(),
+        is("delivered".length() + "undelivered".length()));
+
+    ByteBuf late = chunk("late");
+    payload.onChunk(late);
+    assertThat(
+        "Late chunk not credited.",
+        dequeued.get(),
+        is("delivered".length() + "undelivered".length() + "late".length()));
+    delivered.release();
+  }
+
+  private static ByteBuf chunk(String text) {
+    return Unpooled.copiedBuffer(text, StandardCharsets.UTF_8);
+  }
+}
@@ -162,4 +162,21 @@ public class FrameHeaderFlyweightTest {
 
     assertEquals(ByteBufUtil.hexDump(expected), ByteBufUtil.hexDump(actual));
   }
+
+  @Test
+  public void encodeHeaderMatchesEncode() {
+    ByteBuf metadata = Unpooled.wrappedBuffer(new byte[] {1, 2, 3, 4});
+    ByteBuf data = Unpooled.wrappedBuffer(new byte[] {5, 6, 7, 8, 9});
+    int length = FrameHeaderFlyweight.encode(byteBuf, 3, 0, FrameType.NEXT, metadata, data);
+
+    ByteBuf header = Unpooled.buffer(1024);
+    int headerLength = FrameHeaderFlyweight.encodeHeader(header, 3, 0, FrameType.NEXT, 4, 5);
+    assertEquals(FrameHeaderFlyweight.computeHeaderLength(FrameType.NEXT, 4), headerLength);
+    header.writerIndex(headerLength);
+    metadata.resetReaderIndex();
+    data.resetReaderIndex();
+
+    ByteBuf composite = Unpooled.wrappedBuffer(header, metadata, data);
+    assertEquals(ByteBufUtil.hexDump(byteBuf, 0, length), ByteBufUtil.hexDump(composite));
+  }
 }
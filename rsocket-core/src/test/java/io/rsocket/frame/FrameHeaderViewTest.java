@@ -0,0 +1,68 @@
+package io.rsocket.frame;
+
+import static org.junit.Assert.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.FrameType;
+import org.junit.Test;
+
+public class FrameHeaderViewTest {
+  private final ByteBuf byteBuf = Unpooled.buffer(1024);
+  private final FrameHeaderView view = new FrameHeaderView();
+
+  @Test
+  public void matchesFlyweight() {
+    ByteBuf metadata = Unpooled.wrappedBuffer(new byte[] {1, 2, 3, 4});
+    ByteBuf data = Unpooled.wrappedBuffer(new byte[] {5, 6, 7, 8, 9});
+    FrameHeaderFlyweight.encode(
+        byteBuf, 5, FrameHeaderFlyweight.FLAGS_F, FrameType.NEXT_COMPLETE, metadata, data);
+    metadata.resetReaderIndex();
+    data.resetReaderIndex();
+
+    view.decode(byteBuf);
+    assertTrue(view.isDecoded());
+    assertEquals(FrameHeaderFlyweight.streamId(byteBuf), view.streamId());
+    assertEquals(FrameHeaderFlyweight.frameType(byteBuf), view.frameType());
+    assertEquals(FrameHeaderFlyweight.flags(byteBuf), view.flags());
+    assertEquals(FrameHeaderFlyweight.frameLength(byteBuf), view.frameLength());
+    assertEquals(FrameHeaderFlyweight.payloadLength(byteBuf), view.payloadLength());
+    assertEquals(metadata, view.sliceMetadata(byteBuf));
+    assertEquals(data, view.sliceData(byteBuf));
+  }
+
+  @Test
+  public void metadataOnlyFrame() {
+    ByteBuf metadata = Unpooled.wrappedBuffer(new byte[] {1, 2, 3, 4});
+    FrameHeaderFlyweight.encode(
+        byteBuf, 0, 0, FrameType.METADATA_PUSH, metadata, Unpooled.EMPTY_BUFFER);
+    metadata.resetReaderIndex();
+
+    view.decode(byteBuf);
+    assertEquals(FrameType.METADATA_PUSH, view.frameType());
+    assertEquals(metadata, view.sliceMetadata(byteBuf));
+    assertEquals(0, view.sliceData(byteBuf).readableBytes());
+  }
+
+  @Test
+  public void emptyFrame() {
+    FrameHeaderFlyweight.encode(
+        byteBuf, 3, 0, FrameType.CANCEL, Unpooled.EMPTY_BUFFER, Unpooled.EMPTY_BUFFER);
+
+    view.decode(byteBuf);
+    assertEquals(3, view.streamId());
+    assertEquals(FrameType.CANCEL, view.frameType());
+    assertEquals(0, view.sliceMetadata(byteBuf).readableBytes());
+    assertEquals(0, view.sliceData(byteBuf).readableBytes());
+  }
+
+  @Test
+  public void reset() {
+    FrameHeaderFlyweight.encode(
+        byteBuf, 3, 0, FrameType.CANCEL, Unpooled.EMPTY_BUFFER, Unpooled.EMPTY_BUFFER);
+    view.decode(byteBuf);
+
+    view.reset();
+    assertFalse(view.isDecoded());
+  }
+}
@@ -0,0 +1,63 @@
+package io.rsocket.frame;
+
+import static org.junit.Assert.*;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.FrameType;
+import org.junit.Test;
+
+public class ResumeFrameFlyweightTest {
+  private final ByteBuf byteBuf = Unpooled.buffer(1024);
+
+  @Test
+  public void resumeRoundTrip() {
+    ByteBuf token = Unpooled.wrappedBuffer(new byte[] {1, 2, 3, 4, 5});
+    int length = ResumeFrameFlyweight.encode(byteBuf, token, 42, 7);
+    token.resetReaderIndex();
+
+    assertEquals(ResumeFrameFlyweight.computeFrameLength(5), length);
+    assertEquals(FrameType.RESUME, FrameHeaderFlyweight.frameType(byteBuf));
+    assertEquals(0, FrameHeaderFlyweight.streamId(byteBuf));
+    assertEquals(SetupFrameFlyweight.CURRENT_VERSION, ResumeFrameFlyweight.version(byteBuf));
+    assertEquals(token, ResumeFrameFlyweight.resumeToken(byteBuf));
+    assertEquals(42, ResumeFrameFlyweight.lastReceivedServerPosition(byteBuf));
+    assertEquals(7, ResumeFrameFlyweight.firstAvailableClientPosition(byteBuf));
+  }
+
+  @Test
+  public void resumeOkRoundTrip() {
+    int length = ResumeOkFrameFlyweight.encode(byteBuf, 1234);
+
+    assertEquals(ResumeOkFrameFlyweight.computeFrameLength(), length);
+    assertEquals(FrameType.RESUME_OK, FrameHeaderFlyweight.frameType(byteBuf));
+    assertEquals(1234, ResumeOkFrameFlyweight.lastReceivedClientPosition(byteBuf));
+  }
+
+  @Test
+  public void keepaliveLastPosition() {
+    KeepaliveFrameFlyweight.encode(byteBuf, 0, Unpooled.EMPTY_BUFFER);
+    KeepaliveFrameFlyweight.encodeLastPosition(byteBuf, 99);
+
+    assertEquals(99, KeepaliveFrameFlyweight.lastPosition(byteBuf));
+  }
+
+  @Test
+  public void setupResumeToken() {
+    ByteBuf token = Unpooled.wrappedBuffer(new byte[] {9, 8, 7});
+    SetupFrameFlyweight.encode(
+        byteBuf,
+        SetupFrameFlyweight.FLAGS_RESUME_ENABLE,
+        5,
+        500,
+        token,
+        "metadata_type",
+        "data_type",
+        Unpooled.EMPTY_BUFFER,
+        Unpooled.EMPTY_BUFFER);
+    token.resetReaderIndex();
+
+    assertEquals(token, SetupFrameFlyweight.resumeToken(byteBuf));
+    assertEquals("data_type", SetupFrameFlyweight.dataMimeType(byteBuf));
+  }
+}
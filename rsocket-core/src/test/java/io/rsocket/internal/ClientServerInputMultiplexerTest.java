@@ -55,4 +55,22 @@ public class ClientServerInputMultiplexerTest {
     assertEquals(1, serverFrames.get());
     assertEquals(0, connectionFrames.get());
   }
+
+  @Test
+  public void testKeepsFramesUntilSubscribed() {
+    AtomicInteger serverFrames = new AtomicInteger();
+
+    source.addToReceivedBuffer(Frame.Error.from(2, new Exception()));
+    source.addToReceivedBuffer(Frame.Error.from(4, new Exception()));
+
+    multiplexer
+        .asServerConnection()
+        .receive()
+        .doOnNext(f -> serverFrames.incrementAndGet())
+        .subscribe();
+    assertEquals(2, serverFrames.get());
+
+    source.addToReceivedBuffer(Frame.Error.from(6, new Exception()));
+    assertEquals(3, serverFrames.get());
+  }
 }
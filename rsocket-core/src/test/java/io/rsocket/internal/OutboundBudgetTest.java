@@ -0,0 +1,106 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import io.netty.buffer.Unpooled;
+import io.rsocket.Frame;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+public class OutboundBudgetTest {
+
+  @Test
+  public void testLimitsFrames() {
+    OutboundBudget budget = new OutboundBudget(2, 1024);
+    Frame frame = frame(8);
+    budget.acquire(frame);
+    assertThat("Budget not available.", budget.isAvailable(), is(true));
+    budget.acquire(frame);
+    assertThat("Budget available beyond max frames.", budget.isAvailable(), is(false));
+
+    budget.release(frame);
+    assertThat("Budget not available after release.", budget.isAvailable(), is(true));
+  }
+
+  @Test
+  public void testLimitsBytes() {
+    OutboundBudget budget = new OutboundBudget(16, 10);
+    budget.acquire(frame(6));
+    assertThat("Budget not available.", budget.isAvailable(), is(true));
+    budget.acquire(frame(6));
+    assertThat("Budget available beyond max bytes.", budget.isAvailable(), is(false));
+    assertThat("Unexpected queued bytes.", budget.queuedBytes(), is(12L));
+  }
+
+  @Test
+  public void testResumesInOrder() {
+    OutboundBudget budget = new OutboundBudget(1, 1024);
+    Frame frame = frame(8);
+    budget.acquire(frame);
+
+    List<Integer> resumed = new ArrayList<>();
+    budget.await(
+        () -> {
+          resumed.add(1);
+          budget.acquire(frame);
+        });
+    budget.await(
+        () -> {
+          resumed.add(2);
+          budget.acquire(frame);
+        });
+    assertThat("Resumed while not available.", resumed.isEmpty(), is(true));
+
+    budget.release(frame);
+    assertThat("Unexpected streams resumed.", resumed, contains(1));
+    budget.release(frame);
+    assertThat("Unexpected streams resumed.", resumed, contains(1, 2));
+  }
+
+  @Test
+  public void testLimitsStreamsInBatches() {
+    OutboundBudget budget = new OutboundBudget(4, 1024);
+    List<Long> requests = new ArrayList<>();
+    List<Frame> queued = new ArrayList<>();
+    LimitableRequestPublisher<Frame> frames =
+        LimitableRequestPublisher.wrap(
+            Flux.range(0, 100).doOnRequest(requests::add).map(i -> frame(8)), budget);
+    frames.increaseRequestLimit(100);
+    frames.subscribe(
+        frame -> {
+          budget.acquire(frame);
+          queued.add(frame);
+        });
+
+    assertThat("Unexpected requests.", requests, contains(4L));
+    assertThat("Unexpected frames queued.", queued.size(), is(4));
+
+    budget.release(queued.get(0));
+    assertThat("Unexpected requests.", requests, contains(4L, 4L));
+    assertThat("Unexpected frames queued.", queued.size(), is(8));
+  }
+
+  private static Frame frame(int length) {
+    return Frame.from(Unpooled.buffer(length).writeZero(length));
+  }
+}
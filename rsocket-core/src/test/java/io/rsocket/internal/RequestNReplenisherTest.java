@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class RequestNReplenisherTest {
+  private final List<Long> requests = new ArrayList<>();
+
+  @Test
+  public void testReplenishesInBatches() {
+    RequestNReplenisher replenisher = new RequestNReplenisher(32, 32, () -> 1, requests::add);
+    assertThat("Unexpected initial request.", replenisher.initialRequest(1), is(32L));
+
+    for (int i = 0; i < 100; i++) {
+      replenisher.onDelivered();
+      replenisher.request(1);
+    }
+
+    assertThat("Unexpected requests.", requests, contains(24L, 24L, 24L, 24L));
+  }
+
+  @Test
+  public void testReplenishesOnlyWithDemand() {
+    RequestNReplenisher replenisher = new RequestNReplenisher(8, 8, () -> 1, requests::add);
+    assertThat("Unexpected initial request.", replenisher.initialRequest(1), is(8L));
+
+    replenisher.onDelivered();
+    replenisher.request(10);
+    assertThat("Replenished early.", requests, is(empty()));
+
+    for (int i = 0; i < 5; i++) {
+      replenisher.onDelivered();
+    }
+    assertThat("Unexpected requests.", requests, contains(6L));
+  }
+
+  @Test
+  public void testGrowsWindowWhileWaiting() {
+    RequestNReplenisher replenisher = new RequestNReplenisher(8, 32, () -> 0, requests::add);
+    replenisher.initialRequest(Integer.MAX_VALUE);
+
+    for (int i = 0; i < 6; i++) {
+      replenisher.onDelivered();
+    }
+    assertThat("Unexpected requests.", requests, contains(14L));
+    assertThat("Window not grown.", replenisher.window(), is(16));
+
+    for (int i = 0; i < 36; i++) {
+      replenisher.onDelivered();
+    }
+    assertThat("Window grown beyond max.", replenisher.window(), is(32));
+  }
+
+  @Test
+  public void testPassesOnUnboundedRequest() {
+    RequestNReplenisher replenisher = new RequestNReplenisher(8, 8, () -> 1, requests::add);
+    assertThat(
+        "Unexpected initial request.",
+        replenisher.initialRequest(Long.MAX_VALUE),
+        is(Long.MAX_VALUE));
+
+    for (int i = 0; i < 20; i++) {
+      replenisher.onDelivered();
+    }
+    replenisher.request(1);
+    assertThat("Unexpected requests.", requests, is(empty()));
+  }
+}
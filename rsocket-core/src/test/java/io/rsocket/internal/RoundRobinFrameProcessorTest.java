@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.Frame;
+import java.time.Duration;
+import org.junit.Test;
+import reactor.test.StepVerifier;
+
+public class RoundRobinFrameProcessorTest {
+  private static final int FRAME_LENGTH = frame(1).content().readableBytes();
+
+  private final RoundRobinFrameProcessor processor = new RoundRobinFrameProcessor(FRAME_LENGTH);
+
+  @Test
+  public void testKeepsOrderOfStream() {
+    processor.onNext(frame(1, 1));
+    processor.onNext(frame(1, 2));
+    processor.onNext(frame(1, 3));
+    processor.onComplete();
+
+    StepVerifier.create(processor.map(Frame.RequestN::requestN))
+        .expectNext(1, 2, 3)
+        .verifyComplete();
+  }
+
+  @Test
+  public void testNewStreamGoesAhead() {
+    StepVerifier.create(processor.map(Frame::getStreamId), 0)
+        .then(
+            () -> {
+              for (int i = 0; i < 4; i++) {
+                processor.onNext(frame(1));
+              }
+            })
+        .thenRequest(2)
+        .expectNext(1, 1)
+        .then(() -> processor.onNext(frame(3)))
+        .thenRequest(3)
+        .expectNext(3, 1, 1)
+        .expectNoEvent(Duration.ofMillis(10))
+        .thenCancel()
+        .verify();
+  }
+
+  @Test
+  public void testInterleavesStreams() {
+    StepVerifier.create(processor.map(Frame::getStreamId), 0)
+        .then(
+            () -> {
+              for (int i = 0; i < 3; i++) {
+                processor.onNext(frame(1));
+                processor.onNext(frame(3));
+              }
+            })
+        .thenRequest(6)
+        .expectNext(1, 3, 1, 3, 1, 3)
+        .thenCancel()
+        .verify();
+  }
+
+  @Test
+  public void testWeight() {
+    processor.setWeight(1, 2);
+
+    StepVerifier.create(processor.map(Frame::getStreamId), 0)
+        .then(
+            () -> {
+              for (int i = 0; i < 6; i++) {
+                processor.onNext(frame(1));
+                processor.onNext(frame(3));
+              }
+            })
+        .thenRequest(12)
+        .expectNext(1, 1, 3, 1, 1, 3, 1, 1, 3, 3, 3, 3)
+        .thenCancel()
+        .verify();
+  }
+
+  @Test
+  public void testConnectionFramesFirst() {
+    StepVerifier.create(processor.map(Frame::getStreamId), 0)
+        .then(
+            () -> {
+              processor.onNext(frame(1));
+              processor.onNext(frame(3));
+              processor.onNext(Frame.Keepalive.from(Unpooled.EMPTY_BUFFER, false));
+            })
+        .thenRequest(3)
+        .expectNext(0, 1, 3)
+        .thenCancel()
+        .verify();
+  }
+
+  @Test
+  public void testReleasesOnCancel() {
+    Frame queuedFrame = frame(1);
+    Frame lateFrame = frame(3);
+    ByteBuf queued = queuedFrame.content();
+    ByteBuf late = lateFrame.content();
+    processor.onNext(queuedFrame);
+
+    processor.dispose();
+    processor.onNext(lateFrame);
+
+    assertThat("Queued frame not released.", queued.refCnt(), is(0));
+    assertThat("Late frame not released.", late.refCnt(), is(0));
+  }
+
+  private static Frame frame(int streamId) {
+    return frame(streamId, 1);
+  }
+
+  private static Frame frame(int streamId, int requestN) {
+    return Frame.RequestN.from(streamId, requestN);
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.test.util.TestDuplexConnection;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import reactor.test.StepVerifier;
+
+public class SendQueueTest {
+
+  @Test
+  public void testSharedBySendersOfBothRoles() {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    SendQueue queue = new SendQueue(connection);
+
+    // a request of this side and a response to a request of the peer
+    queue.send(Frame.Cancel.from(1));
+    queue.send(Frame.PayloadFrame.from(2, FrameType.COMPLETE));
+
+    assertThat("Unexpected send subscriptions.", connection.getSendSubscribers(), hasSize(1));
+    assertThat(
+        "Unexpected frames sent.",
+        connection.getSent().stream().map(Frame::getStreamId).collect(Collectors.toList()),
+        contains(1, 2));
+    assertThat("Budget not released.", queue.budget().queuedFrames(), is(0));
+  }
+
+  @Test
+  public void testDisposeReleasesBudget() {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    connection.setInitialSendRequestN(0);
+    SendQueue queue = new SendQueue(connection);
+
+    queue.send(Frame.Cancel.from(1));
+    queue.send(Frame.PayloadFrame.from(2, FrameType.COMPLETE));
+    assertThat("Frames not queued.", queue.budget().queuedFrames(), is(2));
+
+    queue.dispose();
+    assertThat("Dropped frames not released.", queue.budget().queuedFrames(), is(0));
+    assertThat("Dropped bytes not released.", queue.budget().queuedBytes(), is(0L));
+  }
+
+  @Test
+  public void testSendTerminatedWithConnection() {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    SendQueue queue = new SendQueue(connection);
+    connection.setAvailability(0);
+
+    queue.send(Frame.Cancel.from(1));
+    StepVerifier.create(queue.onSendTerminated()).expectError(IllegalStateException.class).verify();
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class SynchronizedIntObjectHashMapTest {
+
+  @Test
+  public void testPutGetRemove() {
+    SynchronizedIntObjectHashMap<String> map = new SynchronizedIntObjectHashMap<>();
+    assertThat("Unexpected previous value.", map.put(1, "one"), is(nullValue()));
+    assertThat("Unexpected previous value.", map.put(1, "uno"), is("one"));
+    assertThat("Unexpected current value.", map.putIfAbsent(1, "eins"), is("uno"));
+    assertThat("Unexpected value.", map.get(1), is("uno"));
+    assertThat("Unexpected size.", map.size(), is(1));
+
+    assertThat("Unexpected removed value.", map.remove(1), is("uno"));
+    assertThat("Value not removed.", map.containsKey(1), is(false));
+    assertThat("Unexpected removed value.", map.remove(1), is(nullValue()));
+    assertThat("Map not empty.", map.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testRemoveValue() {
+    SynchronizedIntObjectHashMap<String> map = new SynchronizedIntObjectHashMap<>();
+    map.put(1, "one");
+    assertThat("Other value removed.", map.remove(1, "uno"), is(false));
+    assertThat("Unexpected value.", map.get(1), is("one"));
+    assertThat("Value not removed.", map.remove(1, "one"), is(true));
+    assertThat("Value not removed.", map.containsKey(1), is(false));
+    assertThat("Absent value removed.", map.remove(1, "one"), is(false));
+  }
+
+  @Test
+  public void testGrowAndReuseRemovedSlots() {
+    SynchronizedIntObjectHashMap<Integer> map = new SynchronizedIntObjectHashMap<>(2, 0.5f);
+    for (int round = 0; round < 3; round++) {
+      for (int i = 1; i < 10_000; i += 2) {
+        map.put(i, i);
+      }
+      assertThat("Unexpected size.", map.size(), is(5_000));
+      for (int i = 1; i < 10_000; i += 2) {
+        assertThat("Unexpected value.", map.get(i), is(i));
+        assertThat("Unexpected key.", map.containsKey(i + 1), is(false));
+      }
+      for (int i = 1; i < 10_000; i += 2) {
+        assertThat("Unexpected removed value.", map.remove(i), is(i));
+      }
+      assertThat("Map not empty.", map.isEmpty(), is(true));
+    }
+  }
+
+  @Test
+  public void testNegativeKeys() {
+    assertPutGetRemove(new SynchronizedIntObjectHashMap<>());
+  }
+
+  @Test
+  public void testFullLoadFactor() {
+    assertPutGetRemove(new SynchronizedIntObjectHashMap<>(256, 0.9f));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testNullValue() {
+    new SynchronizedIntObjectHashMap<>().put(1, null);
+  }
+
+  @Test
+  public void testForEachValueMayRemove() {
+    SynchronizedIntObjectHashMap<Integer> map = new SynchronizedIntObjectHashMap<>();
+    for (int i = 0; i < 10; i++) {
+      map.put(i, i);
+    }
+    map.forEachValue(map::remove);
+    assertThat("Map not empty.", map.isEmpty(), is(true));
+  }
+
+  private static void assertPutGetRemove(SynchronizedIntObjectHashMap<Integer> map) {
+    for (int i = -100; i < 100; i++) {
+      map.put(i, i);
+    }
+    assertThat("Unexpected size.", map.size(), is(200));
+    for (int i = -100; i < 100; i++) {
+      assertThat("Unexpected value.", map.get(i), is(i));
+      assertThat("Unexpected removed value.", map.remove(i), is(i));
+    }
+    assertThat("Map not empty.", map.isEmpty(), is(true));
+  }
+
+  @Test
+  public void testForEachValueAndClear() {
+    SynchronizedIntObjectHashMap<Integer> map = new SynchronizedIntObjectHashMap<>();
+    for (int i = 0; i < 100; i++) {
+      map.put(i, i);
+    }
+    map.remove(50);
+
+    AtomicInteger sum = new AtomicInteger();
+    map.forEachValue(sum::addAndGet);
+    assertThat("Unexpected sum of values.", sum.get(), is(4950 - 50));
+
+    map.clear();
+    assertThat("Map not empty.", map.isEmpty(), is(true));
+    assertThat("Value not cleared.", map.get(1), is(nullValue()));
+  }
+
+  @Test(timeout = 10_000)
+  public void testConcurrentWriters() throws Exception {
+    SynchronizedIntObjectHashMap<Integer> map = new SynchronizedIntObjectHashMap<>();
+    int threads = 4;
+    int perThread = 20_000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch done = new CountDownLatch(threads);
+    AtomicInteger misses = new AtomicInteger();
+    try {
+      for (int t = 0; t < threads; t++) {
+        int offset = t;
+        executor.execute(
+            () -> {
+              for (int i = 0; i < perThread; i++) {
+                int key = i * threads + offset;
+                map.put(key, key);
+                if (!Integer.valueOf(key).equals(map.get(key))) {
+                  misses.incrementAndGet();
+                }
+                if ((i & 1) == 0) {
+                  map.remove(key);
+                }
+              }
+              done.countDown();
+            });
+      }
+      assertThat("Writers did not finish.", done.await(5, TimeUnit.SECONDS), is(true));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat("Unexpected missed reads.", misses.get(), is(0));
+    assertThat("Unexpected size.", map.size(), is(threads * perThread / 2));
+  }
+}
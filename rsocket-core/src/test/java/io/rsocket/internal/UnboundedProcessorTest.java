@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import reactor.test.StepVerifier;
+
+public class UnboundedProcessorTest {
+
+  @Test
+  public void testQueuesUntilSubscribed() {
+    UnboundedProcessor<Integer> processor = new UnboundedProcessor<>();
+    processor.onNext(1);
+    processor.onNext(2);
+    processor.onComplete();
+
+    StepVerifier.create(processor).expectNext(1, 2).verifyComplete();
+  }
+
+  @Test
+  public void testBackpressure() {
+    UnboundedProcessor<Integer> processor = new UnboundedProcessor<>();
+
+    StepVerifier.create(processor, 1)
+        .then(
+            () -> {
+              processor.onNext(1);
+              processor.onNext(2);
+            })
+        .expectNext(1)
+        .expectNoEvent(Duration.ofMillis(10))
+        .thenRequest(1)
+        .expectNext(2)
+        .then(processor::onComplete)
+        .verifyComplete();
+  }
+
+  @Test
+  public void testSingleSubscriber() {
+    UnboundedProcessor<Integer> processor = new UnboundedProcessor<>();
+    processor.subscribe();
+
+    StepVerifier.create(processor).verifyError(IllegalStateException.class);
+  }
+
+  @Test
+  public void testReleasesOnCancel() {
+    UnboundedProcessor<ByteBuf> processor = new UnboundedProcessor<>();
+    ByteBuf queued = Unpooled.buffer();
+    ByteBuf late = Unpooled.buffer();
+    processor.onNext(queued);
+
+    processor.dispose();
+    processor.onNext(late);
+
+    assertThat("Queued item not released.", queued.refCnt(), is(0));
+    assertThat("Late item not released.", late.refCnt(), is(0));
+  }
+
+  @Test(timeout = 10_000)
+  public void testConcurrentProducers() throws Exception {
+    UnboundedProcessor<Integer> processor = new UnboundedProcessor<>();
+    int producers = 4;
+    int perProducer = 10_000;
+    ExecutorService executor = Executors.newFixedThreadPool(producers);
+    CountDownLatch start = new CountDownLatch(1);
+    try {
+      for (int p = 0; p < producers; p++) {
+        executor.execute(
+            () -> {
+              try {
+                start.await();
+              } catch (InterruptedException e) {
+                return;
+              }
+              for (int i = 0; i < perProducer; i++) {
+                processor.onNext(i);
+              }
+            });
+      }
+
+      StepVerifier.create(processor.take(producers * perProducer).count())
+          .then(start::countDown)
+          .expectNext((long) producers * perProducer)
+          .verifyComplete();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
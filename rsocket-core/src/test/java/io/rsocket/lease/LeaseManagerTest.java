@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.lease;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.Test;
+
+public class LeaseManagerTest {
+
+  private final LeaseManager leaseManager = new LeaseManager();
+
+  @Test
+  public void testNoLease() {
+    assertThat("Acquired without lease.", leaseManager.tryAcquire(), is(false));
+    assertThat("Unexpected availability.", leaseManager.availability(), is(0.0));
+  }
+
+  @Test
+  public void testAcquireUpToAllowedRequests() {
+    leaseManager.grant(new LeaseImpl(2, 60_000));
+    assertThat("Unexpected availability.", leaseManager.availability(), is(1.0));
+
+    assertThat("Not acquired.", leaseManager.tryAcquire(), is(true));
+    assertThat("Unexpected availability.", leaseManager.availability(), closeTo(0.5, 0.001));
+    assertThat("Not acquired.", leaseManager.tryAcquire(), is(true));
+    assertThat("Acquired beyond lease.", leaseManager.tryAcquire(), is(false));
+    assertThat("Unexpected availability.", leaseManager.availability(), is(0.0));
+  }
+
+  @Test
+  public void testNewLeaseReplacesOld() {
+    leaseManager.grant(new LeaseImpl(1, 60_000));
+    leaseManager.tryAcquire();
+
+    leaseManager.grant(new LeaseImpl(1, 60_000));
+    assertThat("Not acquired.", leaseManager.tryAcquire(), is(true));
+  }
+
+  @Test
+  public void testExpiredLease() {
+    leaseManager.grant(new LeaseImpl(1, -1));
+    assertThat("Acquired with expired lease.", leaseManager.tryAcquire(), is(false));
+    assertThat("Unexpected availability.", leaseManager.availability(), is(0.0));
+  }
+}
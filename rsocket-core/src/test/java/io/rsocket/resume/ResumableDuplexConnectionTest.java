@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.resume;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.DuplexConnection;
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.exceptions.Exceptions;
+import io.rsocket.exceptions.RejectedResumeException;
+import io.rsocket.frame.SetupFrameFlyweight;
+import io.rsocket.test.util.TestDuplexConnection;
+import io.rsocket.util.PayloadImpl;
+import java.time.Duration;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class ResumableDuplexConnectionTest {
+
+  private final ByteBuf token = Unpooled.wrappedBuffer(new byte[] {1, 2, 3, 4});
+  private final ResumeSessionStore sessions = new ResumeSessionStore();
+
+  @Test(timeout = 5_000)
+  public void testClientResumesAndReplaysMissedFrames() throws Exception {
+    TestDuplexConnection first = new TestDuplexConnection();
+    TestDuplexConnection second = new TestDuplexConnection();
+    ResumableDuplexConnection client = client(first, Mono.just(second));
+
+    Frame request = Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl("1"));
+    int length = request.content().readableBytes();
+    client.sendOne(request).block();
+    first.awaitSend();
+
+    first.closeFromPeer();
+    assertThat(
+        "Unexpected availability while resuming.",
+        client.availability(),
+        is(ResumableDuplexConnection.RESUMING_AVAILABILITY));
+    client.sendOne(Frame.PayloadFrame.from(3, FrameType.NEXT, new PayloadImpl("3"))).block();
+
+    Frame resume = second.awaitSend();
+    assertThat("Unexpected frame type.", resume.getType(), is(FrameType.RESUME));
+    assertThat("Unexpected token.", Frame.Resume.resumeToken(resume), is(token));
+    assertThat(
+        "Unexpected first available position.",
+        Frame.Resume.firstAvailableClientPosition(resume),
+        is(0L));
+
+    // the server received the first frame only
+    second.addToReceivedBuffer(Frame.ResumeOk.from(length));
+    Frame replayed = second.awaitSend();
+    assertThat("Unexpected frame replayed.", replayed.getStreamId(), is(3));
+    assertThat("Unexpected availability once resumed.", client.availability(), is(1.0));
+  }
+
+  @Test(timeout = 5_000)
+  public void testClientClosesWhenResumeRejected() throws Exception {
+    TestDuplexConnection first = new TestDuplexConnection();
+    TestDuplexConnection second = new TestDuplexConnection();
+    ResumableDuplexConnection client = client(first, Mono.just(second));
+
+    first.closeFromPeer();
+    second.awaitSend();
+    second.addToReceivedBuffer(
+        Frame.Error.from(0, new RejectedResumeException("Session can not be resumed")));
+
+    StepVerifier.create(client.receive()).verifyError(RejectedResumeException.class);
+    assertThat("Unexpected availability once closed.", client.availability(), is(0.0));
+  }
+
+  @Test(timeout = 5_000)
+  public void testKeepaliveCarriesImpliedPosition() throws Exception {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    ResumableDuplexConnection client = client(connection, Mono.never());
+
+    Frame received = Frame.PayloadFrame.from(2, FrameType.NEXT, new PayloadImpl("2"));
+    int length = received.content().readableBytes();
+    connection.addToReceivedBuffer(received);
+    client.sendOne(Frame.Keepalive.from(Unpooled.EMPTY_BUFFER, true)).block();
+
+    Frame keepalive = connection.awaitSend();
+    assertThat("Unexpected position.", Frame.Keepalive.lastPosition(keepalive), is((long) length));
+  }
+
+  @Test(timeout = 5_000)
+  public void testServerResumesSessionOnNewConnection() throws Exception {
+    TestDuplexConnection first = new TestDuplexConnection();
+    ResumableDuplexConnection session = server(first);
+    first.addToReceivedBuffer(resumableSetup());
+    assertThat("Session not registered.", sessions.size(), is(1));
+
+    session.sendOne(Frame.PayloadFrame.from(2, FrameType.NEXT, new PayloadImpl("2"))).block();
+    first.awaitSend();
+    first.closeFromPeer();
+
+    TestDuplexConnection second = new TestDuplexConnection();
+    ResumableDuplexConnection resuming = server(second);
+    second.addToReceivedBuffer(Frame.Resume.from(token, 0, 0));
+
+    Frame resumeOk = second.awaitSend();
+    assertThat("Unexpected frame type.", resumeOk.getType(), is(FrameType.RESUME_OK));
+    assertThat("Frame not replayed.", second.awaitSend().getStreamId(), is(2));
+    StepVerifier.create(resuming.receive()).verifyComplete();
+
+    second.addToReceivedBuffer(Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl("1")));
+    StepVerifier.create(session.receive())
+        .expectNextMatches(frame -> frame.getType() == FrameType.SETUP)
+        .expectNextMatches(frame -> frame.getStreamId() == 1)
+        .thenCancel()
+        .verify();
+  }
+
+  @Test(timeout = 5_000)
+  public void testServerRejectsUnknownSession() throws Exception {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    ResumableDuplexConnection resuming = server(connection);
+    connection.addToReceivedBuffer(Frame.Resume.from(token, 0, 0));
+
+    Frame error = connection.awaitSend();
+    assertThat("Unexpected frame type.", error.getType(), is(FrameType.ERROR));
+    assertThat(
+        "Unexpected error.", Exceptions.from(error), instanceOf(RejectedResumeException.class));
+    StepVerifier.create(resuming.receive()).verifyComplete();
+  }
+
+  @Test(timeout = 5_000)
+  public void testServerPassesThroughSessionsNotResumable() {
+    TestDuplexConnection connection = new TestDuplexConnection();
+    ResumableDuplexConnection server = server(connection);
+    connection.addToReceivedBuffer(
+        Frame.Setup.from(0, 5, 500, "metadata_type", "data_type", PayloadImpl.EMPTY));
+    connection.closeFromPeer();
+
+    assertThat("Session registered.", sessions.size(), is(0));
+    StepVerifier.create(server.receive())
+        .expectNextMatches(frame -> frame.getType() == FrameType.SETUP)
+        .verifyComplete();
+  }
+
+  private ResumableDuplexConnection client(
+      DuplexConnection connection, Mono<DuplexConnection> reconnect) {
+    return ResumableDuplexConnection.client(
+        connection, token, () -> reconnect, Duration.ofSeconds(10), 1024);
+  }
+
+  private ResumableDuplexConnection server(DuplexConnection connection) {
+    return ResumableDuplexConnection.server(connection, sessions, Duration.ofSeconds(10), 1024);
+  }
+
+  private Frame resumableSetup() {
+    return Frame.Setup.from(
+        SetupFrameFlyweight.FLAGS_RESUME_ENABLE,
+        5,
+        500,
+        token,
+        "metadata_type",
+        "data_type",
+        PayloadImpl.EMPTY);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.resume;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import io.netty.buffer.Unpooled;
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.util.PayloadImpl;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ResumeCacheTest {
+
+  private static Frame frame(int streamId) {
+    return Frame.PayloadFrame.from(streamId, FrameType.NEXT, new PayloadImpl("data"));
+  }
+
+  @Test
+  public void testTracksPositions() {
+    ResumeCache cache = new ResumeCache(1024);
+    Frame frame = frame(1);
+    int length = frame.content().readableBytes();
+    cache.add(frame);
+    cache.add(frame(3));
+
+    assertThat("Unexpected position.", cache.position(), is(2L * length));
+    assertThat("Unexpected first position.", cache.firstAvailablePosition(), is(0L));
+    assertThat("Frame not retained.", frame.content().refCnt(), is(2));
+
+    cache.release(length);
+    assertThat("Acknowledged frame not released.", frame.content().refCnt(), is(1));
+    assertThat("Unexpected first position.", cache.firstAvailablePosition(), is((long) length));
+    assertThat("Unexpected cached bytes.", cache.bytes(), is(length));
+  }
+
+  @Test
+  public void testEvictsOldestBeyondCapacity() {
+    Frame frame = frame(1);
+    int length = frame.content().readableBytes();
+    ResumeCache cache = new ResumeCache(2 * length);
+    cache.add(frame);
+    cache.add(frame(3));
+    cache.add(frame(5));
+
+    assertThat("Unexpected cached bytes.", cache.bytes(), is(2 * length));
+    assertThat("Evicted frame replayable.", cache.canReplayFrom(0), is(false));
+    assertThat("Cached frames not replayable.", cache.canReplayFrom(length), is(true));
+  }
+
+  @Test
+  public void testReplaysFromPosition() {
+    ResumeCache cache = new ResumeCache(1024);
+    Frame frame = frame(1);
+    int length = frame.content().readableBytes();
+    cache.add(frame);
+    cache.add(frame(3));
+    cache.add(frame(5));
+
+    List<Integer> replayed = new ArrayList<>();
+    cache.replay(
+        length,
+        f -> {
+          replayed.add(f.getStreamId());
+          f.release();
+        });
+
+    assertThat("Unexpected frames replayed.", replayed, contains(3, 5));
+    assertThat("Replayed frames evicted.", cache.bytes(), is(2 * length));
+  }
+
+  @Test
+  public void testCopiesHeapFramesOffHeap() {
+    ResumeCache cache = new ResumeCache(1024);
+    Frame frame = Frame.from(Unpooled.copiedBuffer(frame(1).content()));
+    cache.add(frame);
+
+    List<Frame> replayed = new ArrayList<>();
+    cache.replay(0, replayed::add);
+
+    assertThat("Frame not copied.", frame.content().refCnt(), is(1));
+    assertThat("Copy not direct.", replayed.get(0).content().isDirect(), is(true));
+    assertThat("Copy differs.", replayed.get(0).content(), is(frame.content()));
+  }
+}
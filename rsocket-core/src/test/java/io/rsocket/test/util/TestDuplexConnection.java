@@ -61,19 +61,27 @@ public class TestDuplexConnection implements DuplexConnection {
           new IllegalStateException("RSocket not available. Availability: " + availability));
     }
     TestSubscriber<Frame> subscriber = TestSubscriber.create(initialSendRequestN);
+    MonoProcessor<Void> sendResult = MonoProcessor.create();
     Flux.from(frames)
         .doOnNext(
             frame -> {
+              if (availability <= 0) {
+                frame.release();
+                throw new IllegalStateException(
+                    "RSocket not available. Availability: " + availability);
+              }
               sent.offer(frame);
               sentPublisher.onNext(frame);
             })
         .doOnError(
             throwable -> {
               logger.error("Error in send stream on test connection.", throwable);
+              sendResult.onError(throwable);
             })
+        .doOnComplete(sendResult::onComplete)
         .subscribe(subscriber);
     sendSubscribers.add(subscriber);
-    return Mono.empty();
+    return sendResult;
   }
 
   @Override
@@ -96,6 +104,11 @@ public class TestDuplexConnection implements DuplexConnection {
     return close();
   }
 
+  /** Completes {@link #onClose()}, as if the connection was lost. */
+  public void closeFromPeer() {
+    close.onComplete();
+  }
+
   public Frame awaitSend() throws InterruptedException {
     return sent.take();
   }
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.IllegalReferenceCountException;
+import io.rsocket.Frame;
+import io.rsocket.FrameType;
+import io.rsocket.TestUtil;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class ByteBufPayloadTest {
+  public static final String DATA_VAL = "data";
+  public static final String METADATA_VAL = "metadata";
+
+  @Test
+  public void testSharesFrameContent() {
+    Frame frame =
+        Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl(DATA_VAL, METADATA_VAL));
+    ByteBufPayload payload = ByteBufPayload.create(frame);
+
+    assertThat("Unexpected data.", TestUtil.byteToString(payload.getData()), equalTo(DATA_VAL));
+    assertThat(
+        "Unexpected metadata.",
+        TestUtil.byteToString(payload.getMetadata()),
+        equalTo(METADATA_VAL));
+    assertThat(
+        "Unexpected data slice.",
+        payload.sliceData().toString(StandardCharsets.UTF_8),
+        equalTo(DATA_VAL));
+
+    frame.content().setByte(frame.content().writerIndex() - 1, 'A');
+    assertThat("Data is not a view of the frame.", payload.sliceData().getByte(3), is((byte) 'A'));
+
+    frame.release();
+    payload.release();
+  }
+
+  @Test
+  public void testHoldsFrameReference() {
+    Frame frame =
+        Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl(DATA_VAL, METADATA_VAL));
+    ByteBuf content = frame.content();
+    ByteBufPayload payload = ByteBufPayload.create(frame);
+    assertThat("Unexpected reference count.", payload.refCnt(), is(1));
+    assertThat("Frame content not retained.", content.refCnt(), is(2));
+
+    frame.release();
+    assertThat("Unexpected reference count.", payload.refCnt(), is(1));
+    assertThat("Unexpected data.", TestUtil.byteToString(payload.getData()), equalTo(DATA_VAL));
+
+    assertThat("Payload not deallocated.", payload.release(), is(true));
+    assertThat("Unexpected reference count.", payload.refCnt(), is(0));
+    assertThat("Frame content not released.", content.refCnt(), is(0));
+  }
+
+  @Test
+  public void testPayloadReleasedBeforeFrame() {
+    Frame frame = Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl(DATA_VAL));
+    ByteBuf content = frame.content();
+    ByteBufPayload payload = ByteBufPayload.create(frame);
+
+    assertThat("Payload not deallocated.", payload.release(), is(true));
+    assertThat("Frame reference released.", content.refCnt(), is(1));
+    assertThat("Unexpected data.", TestUtil.byteToString(frame.getData()), equalTo(DATA_VAL));
+
+    assertThat("Frame not deallocated.", frame.release(), is(true));
+    assertThat("Frame content not released.", content.refCnt(), is(0));
+  }
+
+  @Test
+  public void testRetainedPayloadReleasesFrameContentOnce() {
+    Frame frame = Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl(DATA_VAL));
+    ByteBuf content = frame.content();
+    ByteBufPayload payload = ByteBufPayload.create(frame).retain();
+    frame.release();
+
+    assertThat("Payload deallocated.", payload.release(), is(false));
+    assertThat("Frame content released.", content.refCnt(), is(1));
+    assertThat("Unexpected data.", TestUtil.byteToString(payload.getData()), equalTo(DATA_VAL));
+
+    assertThat("Payload not deallocated.", payload.release(), is(true));
+    assertThat("Frame content not released.", content.refCnt(), is(0));
+  }
+
+  @Test(expected = IllegalReferenceCountException.class)
+  public void testReleaseTwice() {
+    Frame frame = Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl(DATA_VAL));
+    ByteBufPayload payload = ByteBufPayload.create(frame);
+    frame.release();
+    payload.release();
+
+    payload.release();
+  }
+
+  @Test(expected = IllegalReferenceCountException.class)
+  public void testAccessAfterRelease() {
+    Frame frame = Frame.PayloadFrame.from(1, FrameType.NEXT, new PayloadImpl(DATA_VAL));
+    ByteBufPayload payload = ByteBufPayload.create(frame);
+    frame.release();
+    payload.release();
+
+    payload.sliceData();
+  }
+}
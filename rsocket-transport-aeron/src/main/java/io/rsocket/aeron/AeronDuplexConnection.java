@@ -19,8 +19,11 @@ import io.netty.buffer.Unpooled;
 import io.rsocket.DuplexConnection;
 import io.rsocket.Frame;
 import io.rsocket.aeron.internal.reactivestreams.AeronChannel;
+import org.agrona.DirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.MonoProcessor;
@@ -28,15 +31,25 @@ import reactor.core.publisher.MonoProcessor;
 /**
  * Implementation of {@link DuplexConnection} over Aeron using an {@link
  * io.rsocket.aeron.internal.reactivestreams.AeronChannel}
+ *
+ * <p>With {@code zeroCopy}, received frames read the Aeron term buffer in place and are only
+ * copied, into pooled buffers, if they are still referenced once they have been handled or are
+ * written to.
  */
 public class AeronDuplexConnection implements DuplexConnection {
   private final String name;
   private final AeronChannel channel;
+  private final boolean zeroCopy;
   private final MonoProcessor<Void> emptySubject;
 
   public AeronDuplexConnection(String name, AeronChannel channel) {
+    this(name, channel, false);
+  }
+
+  public AeronDuplexConnection(String name, AeronChannel channel, boolean zeroCopy) {
     this.name = name;
     this.channel = channel;
+    this.zeroCopy = zeroCopy;
     this.emptySubject = MonoProcessor.create();
   }
 
@@ -50,6 +63,12 @@ public class AeronDuplexConnection implements DuplexConnection {
 
   @Override
   public Flux<Frame> receive() {
+    if (zeroCopy) {
+      Publisher<Frame> frames =
+          destination -> channel.receiveZeroCopy().subscribe(new FragmentSubscriber(destination));
+      return Flux.from(frames);
+    }
+
     return channel
         .receive()
         .map(b -> Frame.from(Unpooled.wrappedBuffer(b.byteBuffer())))
@@ -92,4 +111,38 @@ public class AeronDuplexConnection implements DuplexConnection {
         + emptySubject
         + '}';
   }
+
+  /** Emits every fragment as a frame, and detaches it from the term buffer once it is handled. */
+  private static final class FragmentSubscriber implements Subscriber<DirectBuffer> {
+    private final Subscriber<? super Frame> destination;
+
+    private FragmentSubscriber(Subscriber<? super Frame> destination) {
+      this.destination = destination;
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+      destination.onSubscribe(s);
+    }
+
+    @Override
+    public void onNext(DirectBuffer buffer) {
+      FragmentByteBuf content = FragmentByteBuf.wrap(buffer);
+      try {
+        destination.onNext(Frame.from(content));
+      } finally {
+        content.detach();
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      destination.onError(t);
+    }
+
+    @Override
+    public void onComplete() {
+      destination.onComplete();
+    }
+  }
 }
@@ -0,0 +1,500 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rsocket.aeron;
+
+import io.netty.buffer.AbstractReferenceCountedByteBuf;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import org.agrona.DirectBuffer;
+import org.agrona.UnsafeAccess;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * A {@link ByteBuf} reading a fragment in place, from the Aeron term buffer or the buffer it was
+ * reassembled in, which is only valid until the fragment handler returns. {@link #detach()} is
+ * called once it has returned, and copies the fragment into a pooled buffer if this buffer is still
+ * referenced, so the copy is only made for frames that are kept. Writes copy the fragment first, as
+ * the term buffer is shared with the other subscribers of the image.
+ *
+ * <p>A frame may be read on another thread while it is detached, e.g. after a {@code publishOn}, and
+ * the fragment may be reused as soon as {@link #detach()} returned. A read of the fragment therefore
+ * checks afterwards whether the fragment was copied meanwhile, and then reads the copy again.
+ *
+ * <p>NIO buffers of the fragment can not be checked that way and must not be kept until then, and
+ * {@link #hasArray()} and {@link #hasMemoryAddress()} are {@code false} so that the fragment is not
+ * accessed directly.
+ */
+final class FragmentByteBuf extends AbstractReferenceCountedByteBuf {
+  private static final ByteBufAllocator ALLOC = PooledByteBufAllocator.DEFAULT;
+
+  private final UnsafeBuffer fragment;
+  private volatile ByteBuf copy;
+  private boolean deallocated;
+
+  private FragmentByteBuf(UnsafeBuffer fragment) {
+    super(fragment.capacity());
+    this.fragment = fragment;
+    setIndex(0, fragment.capacity());
+  }
+
+  /** Reads the fragment {@code buffer} is wrapped on, without copying it. */
+  static FragmentByteBuf wrap(DirectBuffer buffer) {
+    FragmentByteBuf content = new FragmentByteBuf(new UnsafeBuffer(buffer, 0, buffer.capacity()));
+    if (buffer.byteArray() == null && buffer.byteBuffer() == null) {
+      // only wrapped on an address, which NIO buffers can't be created for
+      content.copyFragment();
+    }
+    return content;
+  }
+
+  /** Copies the fragment if this buffer is still referenced, before the fragment is reused. */
+  synchronized void detach() {
+    if (!deallocated && refCnt() > 0) {
+      copyFragment();
+    }
+  }
+
+  private synchronized ByteBuf writable() {
+    copyFragment();
+    return copy;
+  }
+
+  private void copyFragment() {
+    if (copy == null) {
+      int capacity = fragment.capacity();
+      ByteBuf copy = ALLOC.directBuffer(capacity, capacity);
+      fragment.getBytes(0, copy.internalNioBuffer(0, capacity), capacity);
+      this.copy = copy.writerIndex(capacity);
+    }
+  }
+
+  /**
+   * Returns the copy if it was made while the fragment was read, in which case the fragment may
+   * have been reused before the read and the copy must be read instead.
+   */
+  private ByteBuf copiedAfterRead() {
+    // the reads of the fragment must not be reordered after the read of copy
+    UnsafeAccess.UNSAFE.loadFence();
+    return copy;
+  }
+
+  @Override
+  protected synchronized void deallocate() {
+    deallocated = true;
+    if (copy != null) {
+      copy.release();
+    }
+  }
+
+  @Override
+  protected byte _getByte(int index) {
+    ByteBuf copy = this.copy;
+    if (copy == null) {
+      byte value = fragment.getByte(index);
+      if ((copy = copiedAfterRead()) == null) {
+        return value;
+      }
+    }
+    return copy.getByte(index);
+  }
+
+  @Override
+  protected short _getShort(int index) {
+    ByteBuf copy = this.copy;
+    if (copy == null) {
+      short value = fragment.getShort(index, ByteOrder.BIG_ENDIAN);
+      if ((copy = copiedAfterRead()) == null) {
+        return value;
+      }
+    }
+    return copy.getShort(index);
+  }
+
+  @Override
+  protected short _getShortLE(int index) {
+    ByteBuf copy = this.copy;
+    if (copy == null) {
+      short value = fragment.getShort(index, ByteOrder.LITTLE_ENDIAN);
+      if ((copy = copiedAfterRead()) == null) {
+        return value;
+      }
+    }
+    return copy.getShortLE(index);
+  }
+
+  @Override
+  protected int _getUnsignedMedium(int index) {
+    ByteBuf copy = this.copy;
+    if (copy == null) {
+      int value =
+          (fragment.getByte(index) & 0xff) << 16
+              | (fragment.getByte(index + 1) & 0xff) << 8
+              | fragment.getByte(index + 2) & 0xff;
+      if ((copy = copiedAfterRead()) == null) {
+        return value;
+      }
+    }
+    return copy.getUnsignedMedium(index);
+  }
+
+  @Override
+  protected int _getUnsignedMediumLE(int index) {
+    ByteBuf copy = this.copy;
+    if (copy == null) {
+      int value =
+          fragment.getByte(index) & 0xff
+              | (fragment.getByte(index + 1) & 0xff) << 8
+              | (fragment.getByte(index + 2) & 0xff) << 16;
+      if ((copy = copiedAfterRead()) == null) {
+        return value;
+      }
+    }
+    return copy.getUnsignedMediumLE(index);
+  }
+
+  @Override
+  protected int _getInt(int index) {
+    ByteBuf copy = this.copy;
+    if (copy == null) {
+      int value = fragment.getInt(index, ByteOrder.BIG_ENDIAN);
+      if ((copy = copiedAfterRead()) == null) {
+        return value;
+      }
+    }
+    return copy.getInt(index);
+  }
+
+  @Override
+  protected int _getIntLE(int index) {
+    ByteBuf copy = this.copy;
+    if (copy == null) {
+      int value = fragment.getInt(index, ByteOrder.LITTLE_ENDIAN);
+      if ((copy = copiedAfterRead()) == null) {
+        return value;
+      }
+    }
+    return copy.getIntLE(index);
+  }
+
+  @Override
+  protected long _getLong(int index) {
+    ByteBuf copy = this.copy;
+    if (copy == null) {
+      long value = fragment.getLong(index, ByteOrder.BIG_ENDIAN);
+      if ((copy = copiedAfterRead()) == null) {
+        return value;
+      }
+    }
+    return copy.getLong(index);
+  }
+
+  @Override
+  protected long _getLongLE(int index) {
+    ByteBuf copy = this.copy;
+    if (copy == null) {
+      long value = fragment.getLong(index, ByteOrder.LITTLE_ENDIAN);
+      if ((copy = copiedAfterRead()) == null) {
+        return value;
+      }
+    }
+    return copy.getLongLE(index);
+  }
+
+  @Override
+  protected void _setByte(int index, int value) {
+    writable().setByte(index, value);
+  }
+
+  @Override
+  protected void _setShort(int index, int value) {
+    writable().setShort(index, value);
+  }
+
+  @Override
+  protected void _setShortLE(int index, int value) {
+    writable().setShortLE(index, value);
+  }
+
+  @Override
+  protected void _setMedium(int index, int value) {
+    writable().setMedium(index, value);
+  }
+
+  @Override
+  protected void _setMediumLE(int index, int value) {
+    writable().setMediumLE(index, value);
+  }
+
+  @Override
+  protected void _setInt(int index, int value) {
+    writable().setInt(index, value);
+  }
+
+  @Override
+  protected void _setIntLE(int index, int value) {
+    writable().setIntLE(index, value);
+  }
+
+  @Override
+  protected void _setLong(int index, long value) {
+    writable().setLong(index, value);
+  }
+
+  @Override
+  protected void _setLongLE(int index, long value) {
+    writable().setLongLE(index, value);
+  }
+
+  @Override
+  public int capacity() {
+    return fragment.capacity();
+  }
+
+  @Override
+  public ByteBuf capacity(int newCapacity) {
+    throw new UnsupportedOperationException("fragments have a fixed capacity");
+  }
+
+  @Override
+  public ByteBufAllocator alloc() {
+    return ALLOC;
+  }
+
+  @Override
+  public ByteOrder order() {
+    return ByteOrder.BIG_ENDIAN;
+  }
+
+  @Override
+  public ByteBuf unwrap() {
+    return null;
+  }
+
+  @Override
+  public boolean isDirect() {
+    return copy != null || fragment.byteArray() == null;
+  }
+
+  @Override
+  public ByteBuf getBytes(int index, ByteBuf dst, int dstIndex, int length) {
+    checkDstIndex(index, length, dstIndex, dst.capacity());
+    ByteBuf copy = this.copy;
+    if (copy == null) {
+      if (dst.hasArray()) {
+        fragment.getBytes(index, dst.array(), dst.arrayOffset() + dstIndex, length);
+      } else if (dst.nioBufferCount() > 0) {
+        int offset = index;
+        for (ByteBuffer buffer : dst.nioBuffers(dstIndex, length)) {
+          int bufferLength = buffer.remaining();
+          fragment.getBytes(offset, buffer, bufferLength);
+          offset += bufferLength;
+        }
+      } else {
+        byte[] bytes = new byte[length];
+        getBytes(index, bytes, 0, length);
+        dst.setBytes(dstIndex, bytes);
+        return this;
+      }
+      if ((copy = copiedAfterRead()) == null) {
+        return this;
+      }
+    }
+    copy.getBytes(index, dst, dstIndex, length);
+    return this;
+  }
+
+  @Override
+  public ByteBuf getBytes(int index, byte[] dst, int dstIndex, int length) {
+    checkDstIndex(index, length, dstIndex, dst.length);
+    ByteBuf copy = this.copy;
+    if (copy == null) {
+      fragment.getBytes(index, dst, dstIndex, length);
+      if ((copy = copiedAfterRead()) == null) {
+        return this;
+      }
+    }
+    copy.getBytes(index, dst, dstIndex, length);
+    return this;
+  }
+
+  @Override
+  public ByteBuf getBytes(int index, ByteBuffer dst) {
+    checkIndex(index, dst.remaining());
+    ByteBuf copy = this.copy;
+    if (copy == null) {
+      int position = dst.position();
+      fragment.getBytes(index, dst, dst.remaining());
+      if ((copy = copiedAfterRead()) == null) {
+        return this;
+      }
+      dst.position(position);
+    }
+    copy.getBytes(index, dst);
+    return this;
+  }
+
+  @Override
+  public ByteBuf getBytes(int index, OutputStream out, int length) throws IOException {
+    checkIndex(index, length);
+    ByteBuf copy = this.copy;
+    if (copy != null) {
+      copy.getBytes(index, out, length);
+    } else {
+      byte[] bytes = new byte[length];
+      getBytes(index, bytes, 0, length);
+      out.write(bytes);
+    }
+    return this;
+  }
+
+  @Override
+  public int getBytes(int index, GatheringByteChannel out, int length) throws IOException {
+    checkIndex(index, length);
+    ByteBuf copy = this.copy;
+    if (copy != null) {
+      return copy.getBytes(index, out, length);
+    }
+    byte[] bytes = new byte[length];
+    getBytes(index, bytes, 0, length);
+    return out.write(ByteBuffer.wrap(bytes));
+  }
+
+  @Override
+  public int getBytes(int index, FileChannel out, long position, int length) throws IOException {
+    checkIndex(index, length);
+    ByteBuf copy = this.copy;
+    if (copy != null) {
+      return copy.getBytes(index, out, position, length);
+    }
+    byte[] bytes = new byte[length];
+    getBytes(index, bytes, 0, length);
+    return out.write(ByteBuffer.wrap(bytes), position);
+  }
+
+  @Override
+  public ByteBuf setBytes(int index, ByteBuf src, int srcIndex, int length) {
+    checkSrcIndex(index, length, srcIndex, src.capacity());
+    writable().setBytes(index, src, srcIndex, length);
+    return this;
+  }
+
+  @Override
+  public ByteBuf setBytes(int index, byte[] src, int srcIndex, int length) {
+    checkSrcIndex(index, length, srcIndex, src.length);
+    writable().setBytes(index, src, srcIndex, length);
+    return this;
+  }
+
+  @Override
+  public ByteBuf setBytes(int index, ByteBuffer src) {
+    checkIndex(index, src.remaining());
+    writable().setBytes(index, src);
+    return this;
+  }
+
+  @Override
+  public int setBytes(int index, InputStream in, int length) throws IOException {
+    checkIndex(index, length);
+    return writable().setBytes(index, in, length);
+  }
+
+  @Override
+  public int setBytes(int index, ScatteringByteChannel in, int length) throws IOException {
+    checkIndex(index, length);
+    return writable().setBytes(index, in, length);
+  }
+
+  @Override
+  public int setBytes(int index, FileChannel in, long position, int length) throws IOException {
+    checkIndex(index, length);
+    return writable().setBytes(index, in, position, length);
+  }
+
+  @Override
+  public ByteBuf copy(int index, int length) {
+    checkIndex(index, length);
+    return ALLOC.directBuffer(length).writeBytes(this, index, length);
+  }
+
+  @Override
+  public int nioBufferCount() {
+    return 1;
+  }
+
+  @Override
+  public ByteBuffer nioBuffer(int index, int length) {
+    checkIndex(index, length);
+    ByteBuf copy = this.copy;
+    if (copy != null) {
+      return copy.nioBuffer(index, length);
+    }
+
+    int offset = fragment.wrapAdjustment() + index;
+    byte[] array = fragment.byteArray();
+    if (array != null) {
+      return ByteBuffer.wrap(array, offset, length).slice();
+    }
+
+    ByteBuffer buffer = fragment.byteBuffer().duplicate();
+    buffer.limit(offset + length);
+    buffer.position(offset);
+    return buffer.slice();
+  }
+
+  @Override
+  public ByteBuffer internalNioBuffer(int index, int length) {
+    return nioBuffer(index, length);
+  }
+
+  @Override
+  public ByteBuffer[] nioBuffers(int index, int length) {
+    return new ByteBuffer[] {nioBuffer(index, length)};
+  }
+
+  @Override
+  public boolean hasArray() {
+    return false;
+  }
+
+  @Override
+  public byte[] array() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int arrayOffset() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean hasMemoryAddress() {
+    return false;
+  }
+
+  @Override
+  public long memoryAddress() {
+    throw new UnsupportedOperationException();
+  }
+}
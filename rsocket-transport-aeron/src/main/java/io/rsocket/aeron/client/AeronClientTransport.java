@@ -29,13 +29,26 @@ import reactor.core.publisher.Mono;
 public class AeronClientTransport implements ClientTransport {
   private final AeronClientChannelConnector connector;
   private final AeronClientChannelConnector.AeronClientConfig config;
+  private final boolean zeroCopy;
 
   public AeronClientTransport(
       AeronClientChannelConnector connector, AeronClientChannelConnector.AeronClientConfig config) {
+    this(connector, config, false);
+  }
+
+  /**
+   * @param zeroCopy whether received frames are read in place from the Aeron term buffer, see
+   *     {@link AeronDuplexConnection}
+   */
+  public AeronClientTransport(
+      AeronClientChannelConnector connector,
+      AeronClientChannelConnector.AeronClientConfig config,
+      boolean zeroCopy) {
     Objects.requireNonNull(config);
     Objects.requireNonNull(connector);
     this.connector = connector;
     this.config = config;
+    this.zeroCopy = zeroCopy;
   }
 
   @Override
@@ -43,6 +56,6 @@ public class AeronClientTransport implements ClientTransport {
     Publisher<AeronChannel> channelPublisher = connector.apply(config);
 
     return Mono.from(channelPublisher)
-        .map(aeronChannel -> new AeronDuplexConnection("client", aeronChannel));
+        .map(aeronChannel -> new AeronDuplexConnection("client", aeronChannel, zeroCopy));
   }
 }
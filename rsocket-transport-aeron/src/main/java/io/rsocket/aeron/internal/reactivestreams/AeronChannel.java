@@ -76,6 +76,16 @@ public class AeronChannel implements ReactiveStreamsRemote.Channel<DirectBuffer>
     return outPublisher;
   }
 
+  /**
+   * Same as {@link #receive()}, but fragments are not copied. The emitted {@link DirectBuffer} is
+   * only valid until {@code onNext} returns, and reused for the next fragment.
+   *
+   * @return ReactiveStreamsRemote.Out of DirectBuffer
+   */
+  public Flux<? extends DirectBuffer> receiveZeroCopy() {
+    return outPublisher.zeroCopy();
+  }
+
   @Override
   public void close() throws Exception {
     try {
@@ -62,6 +62,19 @@ public class AeronOutPublisher extends Flux<DirectBuffer> {
 
   @Override
   public void subscribe(Subscriber<? super DirectBuffer> destination) {
+    subscribe(destination, false);
+  }
+
+  /**
+   * Returns a publisher of the same data that emits fragments without copying them. Every fragment
+   * is emitted as the same {@link DirectBuffer}, wrapped on the Aeron term buffer or the buffer it
+   * was reassembled in, which is only valid until {@code onNext} returns.
+   */
+  public Flux<DirectBuffer> zeroCopy() {
+    return Flux.from(destination -> subscribe(destination, true));
+  }
+
+  private void subscribe(Subscriber<? super DirectBuffer> destination, boolean zeroCopy) {
     Objects.requireNonNull(destination);
     synchronized (this) {
       if (this.destination != null && subscription.canEmit()) {
@@ -74,7 +87,7 @@ public class AeronOutPublisher extends Flux<DirectBuffer> {
       this.destination = destination;
     }
 
-    this.subscription = new AeronOutProcessorSubscription(destination);
+    this.subscription = new AeronOutProcessorSubscription(destination, zeroCopy);
     destination.onSubscribe(subscription);
   }
 
@@ -101,10 +114,13 @@ public class AeronOutPublisher extends Flux<DirectBuffer> {
     private volatile boolean cancelled = false;
     private final Subscriber<? super DirectBuffer> destination;
     private final ControlledFragmentAssembler assembler;
+    private final UnsafeBuffer view;
 
-    public AeronOutProcessorSubscription(Subscriber<? super DirectBuffer> destination) {
+    public AeronOutProcessorSubscription(
+        Subscriber<? super DirectBuffer> destination, boolean zeroCopy) {
       this.destination = destination;
       this.assembler = new ControlledFragmentAssembler(this::onFragment, 4096);
+      this.view = zeroCopy ? new UnsafeBuffer(0, 0) : null;
     }
 
     boolean emitting = false;
@@ -152,11 +168,20 @@ public class AeronOutPublisher extends Flux<DirectBuffer> {
       }
 
       try {
-        ByteBuffer bytes = ByteBuffer.allocate(length);
-        buffer.getBytes(offset, bytes, length);
+        if (view != null) {
+          view.wrap(buffer, offset, length);
+
+          if (canEmit()) {
+            destination.onNext(view);
+          }
+        } else {
+          ByteBuffer bytes = ByteBuffer.allocate(length);
+          buffer.getBytes(offset, bytes, length);
+          bytes.flip();
 
-        if (canEmit()) {
-          destination.onNext(new UnsafeBuffer(bytes));
+          if (canEmit()) {
+            destination.onNext(new UnsafeBuffer(bytes));
+          }
         }
       } catch (Throwable t) {
         onError(t);
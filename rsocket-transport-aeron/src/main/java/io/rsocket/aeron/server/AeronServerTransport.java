@@ -34,6 +34,7 @@ public class AeronServerTransport implements ServerTransport {
   private final AeronWrapper aeronWrapper;
   private final AeronSocketAddress managementSubscriptionSocket;
   private final EventLoop eventLoop;
+  private final boolean zeroCopy;
 
   private AeronChannelServer aeronChannelServer;
 
@@ -41,9 +42,22 @@ public class AeronServerTransport implements ServerTransport {
       AeronWrapper aeronWrapper,
       AeronSocketAddress managementSubscriptionSocket,
       EventLoop eventLoop) {
+    this(aeronWrapper, managementSubscriptionSocket, eventLoop, false);
+  }
+
+  /**
+   * @param zeroCopy whether received frames are read in place from the Aeron term buffer, see
+   *     {@link AeronDuplexConnection}
+   */
+  public AeronServerTransport(
+      AeronWrapper aeronWrapper,
+      AeronSocketAddress managementSubscriptionSocket,
+      EventLoop eventLoop,
+      boolean zeroCopy) {
     this.aeronWrapper = aeronWrapper;
     this.managementSubscriptionSocket = managementSubscriptionSocket;
     this.eventLoop = eventLoop;
+    this.zeroCopy = zeroCopy;
   }
 
   @Override
@@ -56,7 +70,8 @@ public class AeronServerTransport implements ServerTransport {
       aeronChannelServer =
           AeronChannelServer.create(
               aeronChannel -> {
-                DuplexConnection connection = new AeronDuplexConnection("server", aeronChannel);
+                DuplexConnection connection =
+                    new AeronDuplexConnection("server", aeronChannel, zeroCopy);
                 acceptor.apply(connection).subscribe();
               },
               aeronWrapper,
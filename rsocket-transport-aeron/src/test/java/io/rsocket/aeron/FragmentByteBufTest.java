@@ -0,0 +1,121 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rsocket.aeron;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import io.netty.buffer.ByteBuf;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+public class FragmentByteBufTest {
+
+  @Test
+  public void testReadsFragmentInPlace() {
+    UnsafeBuffer term = new UnsafeBuffer(ByteBuffer.allocateDirect(64));
+    term.putBytes(8, bytes("fragment"));
+
+    FragmentByteBuf content = FragmentByteBuf.wrap(view(term, 8, 8));
+    assertThat(text(content), is("fragment"));
+
+    term.putBytes(8, bytes("replaced"));
+    assertThat("Fragment copied.", text(content), is("replaced"));
+
+    assertThat(content.release(), is(true));
+    content.detach();
+  }
+
+  @Test
+  public void testCopiedOnDetachWhenRetained() {
+    UnsafeBuffer term = new UnsafeBuffer(new byte[64]);
+    term.putBytes(16, bytes("fragment"));
+
+    FragmentByteBuf content = FragmentByteBuf.wrap(view(term, 16, 8));
+    ByteBuf slice = content.retainedSlice(4, 4);
+    content.release();
+    content.detach();
+
+    term.putBytes(16, bytes("replaced"));
+    assertThat(text(slice), is("ment"));
+    assertThat(slice.release(), is(true));
+  }
+
+  @Test
+  public void testCopiedOnWrite() {
+    UnsafeBuffer term = new UnsafeBuffer(ByteBuffer.allocateDirect(64));
+    term.putBytes(0, bytes("fragment"));
+
+    FragmentByteBuf content = FragmentByteBuf.wrap(view(term, 0, 8));
+    content.setByte(0, 'F');
+
+    assertThat(text(content), is("Fragment"));
+    assertThat("Term buffer written.", term.getByte(0), is((byte) 'f'));
+    assertThat(content.release(), is(true));
+  }
+
+  @Test(timeout = 10_000)
+  public void testReaderOnOtherThreadNeverSeesReusedFragment() throws InterruptedException {
+    UnsafeBuffer term = new UnsafeBuffer(ByteBuffer.allocateDirect(64));
+    term.putInt(0, 42);
+
+    FragmentByteBuf content = FragmentByteBuf.wrap(view(term, 0, 8));
+    AtomicBoolean detached = new AtomicBoolean();
+    AtomicInteger reads = new AtomicInteger();
+    AtomicInteger misreads = new AtomicInteger();
+    Thread reader =
+        new Thread(
+            () -> {
+              while (!detached.get() || reads.incrementAndGet() < 100_000) {
+                if (content.getInt(0) != 42) {
+                  misreads.incrementAndGet();
+                }
+              }
+            });
+    reader.start();
+
+    Thread.sleep(10);
+    content.detach();
+    detached.set(true);
+    // the term buffer is reused once the fragment was detached
+    while (reader.isAlive()) {
+      term.putInt(0, -1);
+      term.putInt(0, 42);
+    }
+    reader.join();
+
+    assertThat("Read reused fragment.", misreads.get(), is(0));
+    assertThat(content.release(), is(true));
+  }
+
+  private static UnsafeBuffer view(UnsafeBuffer term, int offset, int length) {
+    UnsafeBuffer view = new UnsafeBuffer(0, 0);
+    view.wrap(term, offset, length);
+    return view;
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String text(ByteBuf buffer) {
+    return buffer.toString(StandardCharsets.UTF_8);
+  }
+}
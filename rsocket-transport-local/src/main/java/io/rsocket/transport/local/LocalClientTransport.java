@@ -2,11 +2,11 @@ package io.rsocket.transport.local;
 
 import io.rsocket.DuplexConnection;
 import io.rsocket.Frame;
+import io.rsocket.internal.UnboundedProcessor;
 import io.rsocket.transport.ClientTransport;
 import io.rsocket.transport.local.LocalServerTransport.ServerDuplexConnectionAcceptor;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.MonoProcessor;
-import reactor.core.publisher.UnicastProcessor;
 
 public class LocalClientTransport implements ClientTransport {
   private final String name;
@@ -25,8 +25,8 @@ public class LocalClientTransport implements ClientTransport {
         () -> {
           ServerDuplexConnectionAcceptor server = LocalServerTransport.findServer(name);
           if (server != null) {
-            final UnicastProcessor<Frame> in = UnicastProcessor.create();
-            final UnicastProcessor<Frame> out = UnicastProcessor.create();
+            final UnboundedProcessor<Frame> in = new UnboundedProcessor<>();
+            final UnboundedProcessor<Frame> out = new UnboundedProcessor<>();
             final MonoProcessor<Void> closeNotifier = MonoProcessor.create();
             server.accept(new LocalDuplexConnection(out, in, closeNotifier));
             DuplexConnection client = new LocalDuplexConnection(in, out, closeNotifier);
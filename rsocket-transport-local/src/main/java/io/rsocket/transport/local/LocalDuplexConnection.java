@@ -2,12 +2,18 @@ package io.rsocket.transport.local;
 
 import io.rsocket.DuplexConnection;
 import io.rsocket.Frame;
+import io.rsocket.internal.UnboundedProcessor;
 import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.MonoProcessor;
 
+/**
+ * A {@link DuplexConnection} within the JVM. The frames are passed by reference through a pair of
+ * {@link UnboundedProcessor}s, one per direction, without being copied. Any number of threads may
+ * send, and a frame is handed straight to the receiver when nothing is queued.
+ */
 public class LocalDuplexConnection implements DuplexConnection {
   private final Flux<Frame> in;
   private final Subscriber<Frame> out;
@@ -22,7 +28,7 @@ public class LocalDuplexConnection implements DuplexConnection {
 
   @Override
   public Mono<Void> send(Publisher<Frame> frames) {
-    return Flux.from(frames).concatMap(this::sendOne).then();
+    return Flux.from(frames).takeUntilOther(closeNotifier).doOnNext(out::onNext).then();
   }
 
   @Override
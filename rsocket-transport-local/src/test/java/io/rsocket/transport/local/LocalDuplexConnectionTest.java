@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.local;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.Frame;
+import io.rsocket.internal.UnboundedProcessor;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+public class LocalDuplexConnectionTest {
+
+  @Test(timeout = 10_000)
+  public void testConcurrentSenders() {
+    UnboundedProcessor<Frame> frames = new UnboundedProcessor<>();
+    LocalDuplexConnection sender =
+        new LocalDuplexConnection(Flux.never(), frames, MonoProcessor.create());
+    int senders = 4;
+    int count = 10_000;
+    for (int s = 0; s < senders; s++) {
+      int streamId = s + 1;
+      sender
+          .send(Flux.range(1, count).map(i -> frame(streamId, i)).subscribeOn(Schedulers.elastic()))
+          .subscribe();
+    }
+
+    Map<Integer, Integer> last = new HashMap<>();
+    StepVerifier.create(frames.publishOn(Schedulers.single()).take(senders * count))
+        .thenConsumeWhile(
+            frame -> {
+              // the frames of every sender arrive in order
+              int n = (int) Frame.RequestN.requestN(frame);
+              Integer previous = last.put(frame.getStreamId(), n);
+              frame.release();
+              return previous == null ? n == 1 : n == previous + 1;
+            })
+        .expectComplete()
+        .verify(Duration.ofSeconds(10));
+    assertThat("Missing frames.", last.values().stream().allMatch(n -> n == count), is(true));
+  }
+
+  @Test(timeout = 5_000)
+  public void testReleaseFramesSentAfterClose() {
+    UnboundedProcessor<Frame> frames = new UnboundedProcessor<>();
+    LocalDuplexConnection connection =
+        new LocalDuplexConnection(Flux.never(), frames, MonoProcessor.create());
+    connection.close().block();
+
+    Frame frame = frame(1, 1);
+    ByteBuf content = frame.content();
+    connection.sendOne(frame).block();
+    assertThat("Frame not released.", content.refCnt(), is(0));
+  }
+
+  private static Frame frame(int streamId, int n) {
+    return Frame.RequestN.from(streamId, n);
+  }
+}
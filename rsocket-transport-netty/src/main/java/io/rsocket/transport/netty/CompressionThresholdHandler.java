@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+
+/**
+ * Sends WebSocket messages smaller than a threshold uncompressed, by writing them past the encoder
+ * of the {@code permessage-deflate} extension. Compressing small messages costs more CPU than it
+ * saves bandwidth, and the extension allows a message to be sent uncompressed.
+ */
+class CompressionThresholdHandler extends ChannelOutboundHandlerAdapter {
+
+  private final ChannelHandlerContext compressionEncoder;
+  private final int threshold;
+
+  /** @param compressionEncoder the context of the encoder of the compression extension. */
+  CompressionThresholdHandler(ChannelHandlerContext compressionEncoder, int threshold) {
+    this.compressionEncoder = compressionEncoder;
+    this.threshold = threshold;
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    if (msg instanceof BinaryWebSocketFrame
+        && ((BinaryWebSocketFrame) msg).isFinalFragment()
+        && ((BinaryWebSocketFrame) msg).content().readableBytes() < threshold) {
+      compressionEncoder.write(msg, promise);
+    } else {
+      ctx.write(msg, promise);
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Coalesces the flush after every written frame into one flush per event loop turn, similar to
+ * Netty's {@code FlushConsolidationHandler}.
+ *
+ * <p>A flush requested while a read is in progress is delayed until the read completes, as
+ * responses to the frames read are likely to follow. Any other flush is delayed to a task that runs
+ * once the event loop has processed the writes already submitted to it. Pending writes are flushed
+ * immediately once they exceed {@code maxPendingFrames} frames or {@code maxPendingBytes} bytes, or
+ * when the channel becomes unwritable.
+ *
+ * <p>A handler instance must only be added to a single channel.
+ */
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+
+  public static final String NAME = "rsocket-flush-coalescing";
+  public static final int DEFAULT_MAX_PENDING_FRAMES = 256;
+  public static final int DEFAULT_MAX_PENDING_BYTES = 64 * 1024;
+
+  private final int maxPendingFrames;
+  private final int maxPendingBytes;
+  private final Runnable flushTask;
+
+  private ChannelHandlerContext ctx;
+  private int pendingFrames;
+  private long pendingBytes;
+  private boolean flushPending;
+  private boolean flushScheduled;
+  private boolean readInProgress;
+
+  public FlushCoalescingHandler() {
+    this(DEFAULT_MAX_PENDING_FRAMES, DEFAULT_MAX_PENDING_BYTES);
+  }
+
+  public FlushCoalescingHandler(int maxPendingFrames, int maxPendingBytes) {
+    if (maxPendingFrames <= 0) {
+      throw new IllegalArgumentException("maxPendingFrames must be positive: " + maxPendingFrames);
+    }
+    if (maxPendingBytes <= 0) {
+      throw new IllegalArgumentException("maxPendingBytes must be positive: " + maxPendingBytes);
+    }
+    this.maxPendingFrames = maxPendingFrames;
+    this.maxPendingBytes = maxPendingBytes;
+    this.flushTask =
+        () -> {
+          flushScheduled = false;
+          if (flushPending && !readInProgress) {
+            flushNow(ctx);
+          }
+        };
+  }
+
+  @Override
+  public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+    this.ctx = ctx;
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    pendingFrames++;
+    pendingBytes += sizeOf(msg);
+    ctx.write(msg, promise);
+  }
+
+  @Override
+  public void flush(ChannelHandlerContext ctx) throws Exception {
+    flushPending = true;
+    if (pendingFrames >= maxPendingFrames || pendingBytes >= maxPendingBytes) {
+      flushNow(ctx);
+    } else if (!readInProgress && !flushScheduled) {
+      flushScheduled = true;
+      ctx.channel().eventLoop().execute(flushTask);
+    }
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    readInProgress = true;
+    ctx.fireChannelRead(msg);
+  }
+
+  @Override
+  public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+    readInProgress = false;
+    flushIfPending(ctx);
+    ctx.fireChannelReadComplete();
+  }
+
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    if (!ctx.channel().isWritable()) {
+      // let the pending bytes drain so the channel can become writable again
+      flushIfPending(ctx);
+    }
+    ctx.fireChannelWritabilityChanged();
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+    flushIfPending(ctx);
+    ctx.fireExceptionCaught(cause);
+  }
+
+  @Override
+  public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+    flushIfPending(ctx);
+    ctx.disconnect(promise);
+  }
+
+  @Override
+  public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+    flushIfPending(ctx);
+    ctx.close(promise);
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+    flushIfPending(ctx);
+  }
+
+  private void flushIfPending(ChannelHandlerContext ctx) {
+    if (flushPending) {
+      flushNow(ctx);
+    }
+  }
+
+  private void flushNow(ChannelHandlerContext ctx) {
+    pendingFrames = 0;
+    pendingBytes = 0;
+    flushPending = false;
+    ctx.flush();
+  }
+
+  private static long sizeOf(Object msg) {
+    if (msg instanceof ByteBuf) {
+      return ((ByteBuf) msg).readableBytes();
+    }
+    if (msg instanceof ByteBufHolder) {
+      return ((ByteBufHolder) msg).content().readableBytes();
+    }
+    return 0;
+  }
+}
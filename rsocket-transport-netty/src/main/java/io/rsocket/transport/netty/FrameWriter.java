@@ -0,0 +1,182 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.rsocket.Frame;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Writes the frames sent on a connection to its channel, requesting frames only while the channel
+ * is writable and while fewer than {@code maxPendingWrites} of them are not written yet. Frames
+ * that can not be written yet thus stay queued in the RSocket, where they count against the
+ * outbound budget of the connection and pause its streams, instead of piling up in the channel.
+ *
+ * <p>A channel is writable as long as the bytes pending in its outbound buffer did not exceed the
+ * high water mark, until they drop below the low water mark, see {@link
+ * io.netty.channel.ChannelOption#WRITE_BUFFER_WATER_MARK}.
+ *
+ * <p>The writer must be added to the pipeline of the channel to be notified when the channel
+ * becomes writable again.
+ */
+public class FrameWriter extends ChannelInboundHandlerAdapter {
+
+  public static final String NAME = "rsocket-frame-writer";
+  public static final int DEFAULT_MAX_PENDING_WRITES = 32;
+
+  private final Channel channel;
+  private final Function<Frame, ?> encoder;
+  private final int maxPendingWrites;
+  private final Set<Sender> senders;
+
+  public FrameWriter(Channel channel, Function<Frame, ?> encoder) {
+    this(channel, encoder, DEFAULT_MAX_PENDING_WRITES);
+  }
+
+  public FrameWriter(Channel channel, Function<Frame, ?> encoder, int maxPendingWrites) {
+    if (maxPendingWrites <= 0) {
+      throw new IllegalArgumentException("maxPendingWrites must be positive: " + maxPendingWrites);
+    }
+    this.channel = channel;
+    this.encoder = encoder;
+    this.maxPendingWrites = maxPendingWrites;
+    this.senders = ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+   * Writes the {@code frames}, completing once they completed and the writes of all of them
+   * completed, or erroring when a write failed.
+   */
+  public Mono<Void> send(Publisher<Frame> frames) {
+    return Mono.create(sink -> frames.subscribe(new Sender(sink)));
+  }
+
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    if (ctx.channel().isWritable()) {
+      senders.forEach(Sender::requestMore);
+    }
+    ctx.fireChannelWritabilityChanged();
+  }
+
+  private final class Sender implements Subscriber<Frame>, ChannelFutureListener {
+    private final MonoSink<Void> sink;
+    // frames requested or written that are not written yet
+    private final AtomicInteger inFlight;
+    // frames written that are not written yet
+    private final AtomicInteger pendingWrites;
+    private final AtomicBoolean done;
+    private volatile Subscription subscription;
+    private volatile boolean completed;
+
+    private Sender(MonoSink<Void> sink) {
+      this.sink = sink;
+      this.inFlight = new AtomicInteger();
+      this.pendingWrites = new AtomicInteger();
+      this.done = new AtomicBoolean();
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+      subscription = s;
+      senders.add(this);
+      sink.onCancel(this::cancel);
+      requestMore();
+    }
+
+    @Override
+    public void onNext(Frame frame) {
+      pendingWrites.incrementAndGet();
+      channel.writeAndFlush(encoder.apply(frame)).addListener(this);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      if (done.compareAndSet(false, true)) {
+        senders.remove(this);
+        sink.error(t);
+      }
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+      if (pendingWrites.get() == 0) {
+        success();
+      }
+    }
+
+    @Override
+    public void operationComplete(ChannelFuture future) {
+      if (!future.isSuccess()) {
+        cancel();
+        onError(future.cause());
+        return;
+      }
+
+      inFlight.decrementAndGet();
+      if (pendingWrites.decrementAndGet() == 0 && completed) {
+        // completes only once the last write completed
+        success();
+        return;
+      }
+      requestMore();
+    }
+
+    private void success() {
+      if (done.compareAndSet(false, true)) {
+        senders.remove(this);
+        sink.success();
+      }
+    }
+
+    private void requestMore() {
+      for (; ; ) {
+        if (done.get() || completed || !channel.isWritable()) {
+          return;
+        }
+
+        int n = inFlight.get();
+        if (n >= maxPendingWrites) {
+          return;
+        }
+        if (inFlight.compareAndSet(n, maxPendingWrites)) {
+          subscription.request(maxPendingWrites - n);
+          return;
+        }
+      }
+    }
+
+    private void cancel() {
+      senders.remove(this);
+      subscription.cancel();
+    }
+  }
+}
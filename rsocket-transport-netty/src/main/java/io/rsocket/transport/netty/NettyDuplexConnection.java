@@ -28,16 +28,31 @@ public class NettyDuplexConnection implements DuplexConnection {
   private final NettyInbound in;
   private final NettyOutbound out;
   private final NettyContext context;
+  private final FrameWriter writer;
 
   public NettyDuplexConnection(NettyInbound in, NettyOutbound out, NettyContext context) {
+    this(in, out, context, WriteOptions.create());
+  }
+
+  /** @param writeOptions how the frames sent are written to the connection. */
+  public NettyDuplexConnection(
+      NettyInbound in, NettyOutbound out, NettyContext context, WriteOptions writeOptions) {
+    writeOptions.configure(context.channel());
+    FlushCoalescingHandler flushCoalescing = writeOptions.newFlushCoalescingHandler();
+    if (flushCoalescing != null) {
+      context.addHandler(FlushCoalescingHandler.NAME, flushCoalescing);
+    }
     this.in = in;
     this.out = out;
     this.context = context;
+    this.writer =
+        new FrameWriter(context.channel(), Frame::content, writeOptions.maxPendingWrites());
+    context.addHandlerFirst(FrameWriter.NAME, writer);
   }
 
   @Override
   public Mono<Void> send(Publisher<Frame> frames) {
-    return Flux.from(frames).concatMap(this::sendOne).then();
+    return writer.send(frames);
   }
 
   @Override
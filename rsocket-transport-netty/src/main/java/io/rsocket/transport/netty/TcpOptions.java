@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
+import javax.annotation.Nullable;
+import reactor.ipc.netty.options.NettyOptions;
+import reactor.ipc.netty.options.ServerOptions;
+import reactor.ipc.netty.resources.LoopResources;
+import reactor.ipc.netty.tcp.TcpClient;
+import reactor.ipc.netty.tcp.TcpResources;
+import reactor.ipc.netty.tcp.TcpServer;
+
+/**
+ * Socket options of the TCP transports, including the options of Netty's native epoll transport.
+ * The native transport is used if it is {@link #isNativeAvailable() available}, i.e. on Linux with
+ * the native library of {@code netty-transport-native-epoll} on the class path, and otherwise the
+ * NIO transport, in which case the epoll only options are ignored.
+ *
+ * <p>{@code netty-transport-native-epoll} is an optional dependency, as its native library is
+ * specific to a platform. Add it with the classifier of the platform, e.g. {@code
+ * io.netty:netty-transport-native-epoll:4.1.9.Final:linux-x86_64}, in the Netty version of
+ * reactor-netty.
+ *
+ * <p>The options can also be given in the query of a {@code tcp} URI, e.g. {@code
+ * tcp://localhost:7878?reusePort=true&quickAck=true}.
+ */
+public final class TcpOptions {
+  private static final boolean EPOLL_PRESENT =
+      isPresent("io.netty.channel.epoll.Epoll", TcpOptions.class.getClassLoader());
+
+  private boolean preferNative = true;
+  private boolean edgeTriggered = true;
+  private boolean noDelay = true;
+  private boolean reusePort;
+  private boolean quickAck;
+  private boolean cork;
+
+  private TcpOptions() {}
+
+  public static TcpOptions create() {
+    return new TcpOptions();
+  }
+
+  /**
+   * Parses the options in the query of a URI, e.g. {@code noDelay=false&cork=true}. Unknown
+   * parameters are ignored.
+   */
+  public static TcpOptions fromQuery(@Nullable String query) {
+    TcpOptions options = new TcpOptions();
+    if (query == null || query.isEmpty()) {
+      return options;
+    }
+
+    for (String parameter : query.split("&")) {
+      int i = parameter.indexOf('=');
+      String name = i < 0 ? parameter : parameter.substring(0, i);
+      boolean value = i < 0 || Boolean.parseBoolean(parameter.substring(i + 1));
+      switch (name) {
+        case "native":
+          options.preferNative(value);
+          break;
+        case "edgeTriggered":
+          options.edgeTriggered(value);
+          break;
+        case "noDelay":
+          options.noDelay(value);
+          break;
+        case "reusePort":
+          options.reusePort(value);
+          break;
+        case "quickAck":
+          options.quickAck(value);
+          break;
+        case "cork":
+          options.cork(value);
+          break;
+        default:
+      }
+    }
+    return options;
+  }
+
+  /** Returns a copy of these options, which can be changed without affecting these. */
+  public TcpOptions copy() {
+    TcpOptions copy = new TcpOptions();
+    copy.preferNative = preferNative;
+    copy.edgeTriggered = edgeTriggered;
+    copy.noDelay = noDelay;
+    copy.reusePort = reusePort;
+    copy.quickAck = quickAck;
+    copy.cork = cork;
+    return copy;
+  }
+
+  /** Whether the native epoll transport can be used. */
+  public static boolean isNativeAvailable() {
+    // the epoll classes must not be touched if the optional dependency is missing
+    return EPOLL_PRESENT && Epoll.isAvailable();
+  }
+
+  /** Whether {@code netty-transport-native-epoll} is on the class path, whatever the platform. */
+  static boolean isEpollPresent() {
+    return EPOLL_PRESENT;
+  }
+
+  private static boolean isPresent(String className, @Nullable ClassLoader classLoader) {
+    try {
+      Class.forName(className, false, classLoader);
+      return true;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /** Uses the native epoll transport if available, which is the default. */
+  public TcpOptions preferNative(boolean preferNative) {
+    this.preferNative = preferNative;
+    return this;
+  }
+
+  /**
+   * Uses edge-triggered epoll, which is the default, or level-triggered epoll. Epoll only.
+   *
+   * @see EpollMode
+   */
+  public TcpOptions edgeTriggered(boolean edgeTriggered) {
+    this.edgeTriggered = edgeTriggered;
+    return this;
+  }
+
+  /** Sets {@code TCP_NODELAY}, which is enabled by default. */
+  public TcpOptions noDelay(boolean noDelay) {
+    this.noDelay = noDelay;
+    return this;
+  }
+
+  /**
+   * Sets {@code SO_REUSEPORT} on the server socket, so that several servers may listen on the same
+   * port, and the kernel balances the connections across them. Epoll only.
+   */
+  public TcpOptions reusePort(boolean reusePort) {
+    this.reusePort = reusePort;
+    return this;
+  }
+
+  /**
+   * Sets {@code TCP_QUICKACK} when a connection is opened, to acknowledge right away instead of
+   * delaying acknowledgements. Epoll only.
+   */
+  public TcpOptions quickAck(boolean quickAck) {
+    this.quickAck = quickAck;
+    return this;
+  }
+
+  /**
+   * Sets {@code TCP_CORK}, so that partial segments are only sent once full, at the latest after
+   * 200ms. This only pays off for throughput oriented connections. Epoll only.
+   */
+  public TcpOptions cork(boolean cork) {
+    this.cork = cork;
+    return this;
+  }
+
+  /** Returns a {@link TcpClient} connecting to {@code host} and {@code port} with these options. */
+  public TcpClient newClient(String host, int port) {
+    return TcpClient.create(options -> configure(options.connect(host, port)));
+  }
+
+  /** Whether the native transport is used with these options. */
+  public boolean usesNative() {
+    return preferNative && isNativeAvailable();
+  }
+
+  /** Returns a {@link TcpServer} listening on {@code host} and {@code port} with these options. */
+  public TcpServer newServer(String host, int port) {
+    return newServer(host, port, TcpResources.get());
+  }
+
+  /**
+   * Returns a {@link TcpServer} listening on {@code host} and {@code port} with these options,
+   * which runs on the event loops of {@code loops} instead of the shared ones.
+   */
+  public TcpServer newServer(String host, int port, LoopResources loops) {
+    ServerOptions options = new TcpServerOptions();
+    options.loopResources(loops);
+    configure(options.listen(host, port));
+    return new TcpServer(options) {};
+  }
+
+  private <O extends NettyOptions<?, O>> void configure(O options) {
+    options.preferNative(preferNative);
+    options.option(ChannelOption.TCP_NODELAY, noDelay);
+    if (usesNative()) {
+      options.option(
+          EpollChannelOption.EPOLL_MODE,
+          edgeTriggered ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED);
+      if (quickAck) {
+        options.option(EpollChannelOption.TCP_QUICKACK, true);
+      }
+      if (cork) {
+        options.option(EpollChannelOption.TCP_CORK, true);
+      }
+    }
+  }
+
+  /**
+   * {@link ServerOptions#option} and {@link ServerOptions#selectorOption} both only set the options
+   * of accepted connections, so the options of the server socket are set on the bootstrap.
+   */
+  private final class TcpServerOptions extends ServerOptions {
+    @Override
+    public ServerBootstrap get() {
+      ServerBootstrap bootstrap = super.get();
+      if (usesNative()) {
+        bootstrap.option(
+            EpollChannelOption.EPOLL_MODE,
+            edgeTriggered ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED);
+        if (reusePort) {
+          bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+      }
+      return bootstrap;
+    }
+  }
+}
@@ -7,13 +7,14 @@ import io.rsocket.transport.netty.server.TcpServerTransport;
 import io.rsocket.uri.UriHandler;
 import java.net.URI;
 import java.util.Optional;
-import reactor.ipc.netty.tcp.TcpServer;
 
 public class TcpUriHandler implements UriHandler {
   @Override
   public Optional<ClientTransport> buildClient(URI uri) {
     if (uri.getScheme().equals("tcp")) {
-      return Optional.of(TcpClientTransport.create(uri.getHost(), uri.getPort()));
+      return Optional.of(
+          TcpClientTransport.create(
+              uri.getHost(), uri.getPort(), TcpOptions.fromQuery(uri.getQuery())));
     }
 
     return UriHandler.super.buildClient(uri);
@@ -22,7 +23,9 @@ public class TcpUriHandler implements UriHandler {
   @Override
   public Optional<ServerTransport> buildServer(URI uri) {
     if (uri.getScheme().equals("tcp")) {
-      return Optional.of(TcpServerTransport.create(TcpServer.create(uri.getHost(), uri.getPort())));
+      return Optional.of(
+          TcpServerTransport.create(
+              uri.getHost(), uri.getPort(), TcpOptions.fromQuery(uri.getQuery())));
     }
 
     return UriHandler.super.buildServer(uri);
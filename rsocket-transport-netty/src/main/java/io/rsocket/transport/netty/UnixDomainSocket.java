@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.BootstrapConfig;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.bootstrap.ServerBootstrapConfig;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.handler.logging.LoggingHandler;
+import java.net.SocketAddress;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.MonoSink;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.NettyInbound;
+import reactor.ipc.netty.NettyOutbound;
+import reactor.ipc.netty.channel.ChannelOperations;
+import reactor.ipc.netty.channel.ContextHandler;
+import reactor.ipc.netty.options.ClientOptions;
+import reactor.ipc.netty.options.ServerOptions;
+import reactor.ipc.netty.tcp.TcpClient;
+import reactor.ipc.netty.tcp.TcpResources;
+import reactor.ipc.netty.tcp.TcpServer;
+
+/**
+ * Creates a {@link TcpClient} and {@link TcpServer} on Unix domain sockets of Netty's native epoll
+ * transport, which skip the TCP stack for connections on the same host. The frames are sent with
+ * the same length prefix as on TCP.
+ *
+ * <p>The options of reactor-netty only take IP addresses, so the bootstraps are created with the
+ * socket path and the domain socket channels instead. Options that only apply to IP sockets are not
+ * set, and {@link NettyContext#address()} is not supported on these connections.
+ *
+ * <p>Needs the optional {@code netty-transport-native-epoll} dependency with the classifier of the
+ * platform, see {@link TcpOptions}.
+ */
+public final class UnixDomainSocket {
+  private static final LoggingHandler clientLoggingHandler = new LoggingHandler(TcpClient.class);
+
+  private UnixDomainSocket() {}
+
+  /** Whether Unix domain sockets can be used, they need the native epoll transport. */
+  public static boolean isAvailable() {
+    return TcpOptions.isNativeAvailable();
+  }
+
+  /** Returns a {@link TcpClient} connecting to the socket at {@code path}. */
+  public static TcpClient newClient(String path) {
+    checkAvailable();
+    DomainSocketAddress address = new DomainSocketAddress(path);
+    ClientOptions options = new DomainSocketClientOptions(address);
+    options.loopResources(TcpResources.get()).preferNative(true);
+    return new TcpClient(options) {
+      @Override
+      @SuppressWarnings("unchecked")
+      protected ContextHandler<SocketChannel> doHandler(
+          BiFunction<? super NettyInbound, ? super NettyOutbound, ? extends Publisher<Void>>
+              handler,
+          MonoSink<NettyContext> sink,
+          boolean secure,
+          SocketAddress providedAddress,
+          ChannelPool pool,
+          Consumer<? super Channel> onSetup) {
+        // the operations of TcpClient only bind a SocketChannel, which a domain socket is not
+        ContextHandler<Channel> contextHandler =
+            ContextHandler.newClientContext(
+                sink,
+                options(),
+                clientLoggingHandler,
+                secure,
+                address,
+                pool,
+                handler == null
+                    ? EMPTY
+                    : (channel, context, msg) -> ChannelOperations.bind(channel, handler, context));
+        return (ContextHandler) contextHandler;
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link TcpServer} listening on the socket at {@code path}. The socket file is deleted
+   * once the server is closed.
+   */
+  public static TcpServer newServer(String path) {
+    checkAvailable();
+    ServerOptions options = new DomainSocketServerOptions(new DomainSocketAddress(path));
+    options.loopResources(TcpResources.get()).preferNative(true);
+    return new TcpServer(options) {};
+  }
+
+  private static void checkAvailable() {
+    if (!TcpOptions.isEpollPresent()) {
+      throw new UnsupportedOperationException(
+          "Unix domain sockets need netty-transport-native-epoll on the class path");
+    }
+    if (!isAvailable()) {
+      throw new UnsupportedOperationException(
+          "Unix domain sockets need the native epoll transport", Epoll.unavailabilityCause());
+    }
+  }
+
+  private static final class DomainSocketClientOptions extends ClientOptions {
+    private final DomainSocketAddress address;
+
+    private DomainSocketClientOptions(DomainSocketAddress address) {
+      this.address = address;
+    }
+
+    @Override
+    public Bootstrap get() {
+      BootstrapConfig template = super.get().config();
+      Bootstrap bootstrap =
+          new Bootstrap() {
+            @Override
+            public Bootstrap remoteAddress(SocketAddress ignored) {
+              return super.remoteAddress(address);
+            }
+          };
+      return bootstrap
+          .group(template.group())
+          .channel(EpollDomainSocketChannel.class)
+          .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+          .option(ChannelOption.AUTO_READ, false)
+          .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 30_000);
+    }
+  }
+
+  private static final class DomainSocketServerOptions extends ServerOptions {
+    private final DomainSocketAddress address;
+
+    private DomainSocketServerOptions(DomainSocketAddress address) {
+      this.address = address;
+    }
+
+    @Override
+    public ServerBootstrap get() {
+      ServerBootstrapConfig template = super.get().config();
+      ServerBootstrap bootstrap =
+          new ServerBootstrap() {
+            @Override
+            public ServerBootstrap localAddress(SocketAddress ignored) {
+              return super.localAddress(address);
+            }
+          };
+      return bootstrap
+          .group(template.group(), template.childGroup())
+          .channel(EpollServerDomainSocketChannel.class)
+          .option(ChannelOption.SO_BACKLOG, 1000)
+          .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+          .childOption(ChannelOption.AUTO_READ, false);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package io.rsocket.transport.netty;
+
+import io.rsocket.transport.ClientTransport;
+import io.rsocket.transport.ServerTransport;
+import io.rsocket.transport.netty.client.TcpClientTransport;
+import io.rsocket.transport.netty.server.TcpServerTransport;
+import io.rsocket.uri.UriHandler;
+import java.net.URI;
+import java.util.Optional;
+
+/** Handles {@code unix:///path/to/socket} URIs, see {@link UnixDomainSocket}. */
+public class UnixUriHandler implements UriHandler {
+  @Override
+  public Optional<ClientTransport> buildClient(URI uri) {
+    if (uri.getScheme().equals("unix")) {
+      return Optional.of(TcpClientTransport.create(UnixDomainSocket.newClient(uri.getPath())));
+    }
+
+    return UriHandler.super.buildClient(uri);
+  }
+
+  @Override
+  public Optional<ServerTransport> buildServer(URI uri) {
+    if (uri.getScheme().equals("unix")) {
+      return Optional.of(TcpServerTransport.create(UnixDomainSocket.newServer(uri.getPath())));
+    }
+
+    return UriHandler.super.buildServer(uri);
+  }
+}
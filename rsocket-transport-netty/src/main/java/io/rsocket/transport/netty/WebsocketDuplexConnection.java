@@ -18,6 +18,7 @@ package io.rsocket.transport.netty;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.rsocket.DuplexConnection;
 import io.rsocket.Frame;
+import javax.annotation.Nullable;
 import org.reactivestreams.Publisher;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -29,16 +30,54 @@ public class WebsocketDuplexConnection implements DuplexConnection {
   private final NettyInbound in;
   private final NettyOutbound out;
   private final NettyContext context;
+  private final FrameWriter writer;
 
   public WebsocketDuplexConnection(NettyInbound in, NettyOutbound out, NettyContext context) {
+    this(in, out, context, null);
+  }
+
+  /** @param options applied to the connection, or {@code null} to keep the defaults of Netty. */
+  public WebsocketDuplexConnection(
+      NettyInbound in,
+      NettyOutbound out,
+      NettyContext context,
+      @Nullable WebsocketOptions options) {
+    this(in, out, context, options, WriteOptions.create());
+  }
+
+  /**
+   * @param options applied to the connection, or {@code null} to keep the defaults of Netty.
+   * @param writeOptions how the frames sent are written to the connection.
+   */
+  public WebsocketDuplexConnection(
+      NettyInbound in,
+      NettyOutbound out,
+      NettyContext context,
+      @Nullable WebsocketOptions options,
+      WriteOptions writeOptions) {
+    writeOptions.configure(context.channel());
+    FlushCoalescingHandler flushCoalescing = writeOptions.newFlushCoalescingHandler();
+    if (flushCoalescing != null) {
+      // on the tail side of the pipeline, so that a packer sees the coalesced flushes
+      context.addHandlerLast(FlushCoalescingHandler.NAME, flushCoalescing);
+    }
+    if (options != null) {
+      options.configure(context.channel());
+    }
     this.in = in;
     this.out = out;
     this.context = context;
+    this.writer =
+        new FrameWriter(
+            context.channel(),
+            frame -> new BinaryWebSocketFrame(frame.content()),
+            writeOptions.maxPendingWrites());
+    context.addHandlerFirst(FrameWriter.NAME, writer);
   }
 
   @Override
   public Mono<Void> send(Publisher<Frame> frames) {
-    return Flux.from(frames).concatMap(this::sendOne).then();
+    return writer.send(frames);
   }
 
   @Override
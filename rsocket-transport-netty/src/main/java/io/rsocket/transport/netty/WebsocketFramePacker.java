@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import static io.rsocket.frame.FrameHeaderFlyweight.FRAME_LENGTH_SIZE;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.util.concurrent.PromiseNotifier;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs the RSocket frames written between two flushes into one WebSocket message, and unpacks
+ * received messages into their frames. The frames are packed as they are, since every frame starts
+ * with its length like on TCP, which splits a received message again. This saves the WebSocket
+ * framing and the per-message overhead of compression for small frames.
+ *
+ * <p>A message holds at most {@code maxPackedBytes}, larger frames are sent on their own. Both
+ * peers must pack frames, as packed messages are not understood otherwise.
+ *
+ * <p>A handler instance must only be added to a single channel.
+ */
+public class WebsocketFramePacker extends ChannelDuplexHandler {
+
+  private final int maxPackedBytes;
+  private final List<ChannelPromise> promises;
+
+  private CompositeByteBuf packed;
+
+  public WebsocketFramePacker(int maxPackedBytes) {
+    if (maxPackedBytes <= 0) {
+      throw new IllegalArgumentException("maxPackedBytes must be positive: " + maxPackedBytes);
+    }
+    this.maxPackedBytes = maxPackedBytes;
+    this.promises = new ArrayList<>();
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    if (!(msg instanceof BinaryWebSocketFrame)) {
+      writePacked(ctx);
+      ctx.write(msg, promise);
+      return;
+    }
+
+    ByteBuf frame = ((BinaryWebSocketFrame) msg).content();
+    if (packed != null && packed.readableBytes() + frame.readableBytes() > maxPackedBytes) {
+      writePacked(ctx);
+    }
+    if (packed == null) {
+      packed = ctx.alloc().compositeBuffer();
+    }
+
+    packed.addComponent(true, frame);
+    promises.add(promise.unvoid());
+  }
+
+  @Override
+  public void flush(ChannelHandlerContext ctx) throws Exception {
+    writePacked(ctx);
+    ctx.flush();
+  }
+
+  @Override
+  public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+    writePacked(ctx);
+    ctx.close(promise);
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+    if (packed != null) {
+      packed.release();
+      packed = null;
+      ClosedChannelException cause = new ClosedChannelException();
+      promises.forEach(promise -> promise.tryFailure(cause));
+      promises.clear();
+    }
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (!(msg instanceof BinaryWebSocketFrame)) {
+      ctx.fireChannelRead(msg);
+      return;
+    }
+
+    ByteBuf content = ((BinaryWebSocketFrame) msg).content();
+    try {
+      while (content.isReadable()) {
+        if (content.readableBytes() < FRAME_LENGTH_SIZE) {
+          throw new CorruptedFrameException("Truncated length of a packed frame");
+        }
+        int length = FRAME_LENGTH_SIZE + content.getUnsignedMedium(content.readerIndex());
+        if (content.readableBytes() < length) {
+          throw new CorruptedFrameException("Truncated packed frame of length " + length);
+        }
+        ctx.fireChannelRead(new BinaryWebSocketFrame(content.readRetainedSlice(length)));
+      }
+    } finally {
+      content.release();
+    }
+  }
+
+  private void writePacked(ChannelHandlerContext ctx) {
+    if (packed == null) {
+      return;
+    }
+
+    ChannelPromise[] notified = promises.toArray(new ChannelPromise[promises.size()]);
+    ctx.write(new BinaryWebSocketFrame(packed)).addListener(new PromiseNotifier<>(notified));
+    packed = null;
+    promises.clear();
+  }
+}
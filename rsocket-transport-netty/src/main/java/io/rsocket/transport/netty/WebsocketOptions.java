@@ -0,0 +1,217 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import static io.rsocket.frame.FrameHeaderFlyweight.FRAME_LENGTH_MASK;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.http.websocketx.WebSocket13FrameDecoder;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameDecoder;
+import io.netty.handler.codec.http.websocketx.WebSocketFrameEncoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionDecoder;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionEncoder;
+import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketClientCompressionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
+import javax.annotation.Nullable;
+import reactor.ipc.netty.NettyPipeline;
+import reactor.ipc.netty.http.client.HttpClientOptions;
+import reactor.ipc.netty.http.server.HttpServerOptions;
+
+/**
+ * Options of the WebSocket transports: {@code permessage-deflate} compression, packing several
+ * RSocket frames into one WebSocket message, and the maximum sizes of received messages.
+ *
+ * <p>Compression is negotiated in the handshake and only used if the peer supports it, which all
+ * browsers do. Packing is not negotiated, so it must be enabled on both peers.
+ */
+public final class WebsocketOptions {
+
+  public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+  public static final int DEFAULT_MAX_FRAME_PAYLOAD_LENGTH = 64 * 1024;
+  public static final int DEFAULT_MAX_AGGREGATED_LENGTH = FRAME_LENGTH_MASK;
+
+  private boolean compression;
+  private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
+  private boolean packFrames;
+  private int maxFramePayloadLength = DEFAULT_MAX_FRAME_PAYLOAD_LENGTH;
+  private int maxAggregatedLength = DEFAULT_MAX_AGGREGATED_LENGTH;
+  private int maxOutboundFramePayloadLength;
+
+  private WebsocketOptions() {}
+
+  public static WebsocketOptions create() {
+    return new WebsocketOptions();
+  }
+
+  /**
+   * Compresses messages with {@code permessage-deflate}, except messages smaller than {@link
+   * #DEFAULT_COMPRESSION_THRESHOLD}.
+   */
+  public WebsocketOptions compression() {
+    return compression(DEFAULT_COMPRESSION_THRESHOLD);
+  }
+
+  /**
+   * Compresses messages with {@code permessage-deflate}, except messages smaller than {@code
+   * threshold} bytes, which are not worth compressing.
+   */
+  public WebsocketOptions compression(int threshold) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold must not be negative: " + threshold);
+    }
+    this.compression = true;
+    this.compressionThreshold = threshold;
+    return this;
+  }
+
+  /**
+   * Packs the frames written between two flushes into one message, up to the maximum outbound frame
+   * payload length, see {@link WebsocketFramePacker}. Combine with flush coalescing to pack the
+   * frames written in one event loop turn. The peer must pack frames as well.
+   */
+  public WebsocketOptions packFrames() {
+    this.packFrames = true;
+    return this;
+  }
+
+  /**
+   * Sets the maximum payload length of a received WebSocket frame, which defaults to Netty's limit
+   * of 64 KiB. Larger frames close the connection.
+   */
+  public WebsocketOptions maxFramePayloadLength(int maxFramePayloadLength) {
+    if (maxFramePayloadLength <= 0) {
+      throw new IllegalArgumentException(
+          "maxFramePayloadLength must be positive: " + maxFramePayloadLength);
+    }
+    this.maxFramePayloadLength = maxFramePayloadLength;
+    return this;
+  }
+
+  /**
+   * Sets the maximum payload length of a WebSocket frame packed by {@link #packFrames()}, which
+   * must not exceed the maximum payload length of a frame received by the peer. Defaults to the
+   * smaller of the maximum payload length of a received frame and Netty's limit of 64 KiB, which a
+   * peer keeping the defaults accepts.
+   */
+  public WebsocketOptions maxOutboundFramePayloadLength(int maxOutboundFramePayloadLength) {
+    if (maxOutboundFramePayloadLength <= 0) {
+      throw new IllegalArgumentException(
+          "maxOutboundFramePayloadLength must be positive: " + maxOutboundFramePayloadLength);
+    }
+    this.maxOutboundFramePayloadLength = maxOutboundFramePayloadLength;
+    return this;
+  }
+
+  /**
+   * Sets the maximum length of a message received in several WebSocket frames, which are aggregated
+   * into one message. Defaults to the maximum length of an RSocket frame.
+   */
+  public WebsocketOptions maxAggregatedLength(int maxAggregatedLength) {
+    if (maxAggregatedLength <= 0) {
+      throw new IllegalArgumentException(
+          "maxAggregatedLength must be positive: " + maxAggregatedLength);
+    }
+    this.maxAggregatedLength = maxAggregatedLength;
+    return this;
+  }
+
+  /** Applies these options to the options of a server, before the handshake. */
+  public HttpServerOptions configure(HttpServerOptions options) {
+    if (compression) {
+      options.afterChannelInit(
+          channel -> addCompressionHandler(channel, new WebSocketServerCompressionHandler()));
+    }
+    return options;
+  }
+
+  /** Applies these options to the options of a client, before the handshake. */
+  public HttpClientOptions configure(HttpClientOptions options) {
+    if (compression) {
+      options.afterChannelInit(
+          channel -> addCompressionHandler(channel, WebSocketClientCompressionHandler.INSTANCE));
+    }
+    return options;
+  }
+
+  private static void addCompressionHandler(Channel channel, ChannelHandler handler) {
+    channel
+        .pipeline()
+        .addAfter(NettyPipeline.HttpEncoder, "rsocket-websocket-compression", handler);
+  }
+
+  /** Applies these options to the pipeline of a connection, once the handshake completed. */
+  void configure(Channel channel) {
+    ChannelPipeline pipeline = channel.pipeline();
+    ChannelHandlerContext decoder = pipeline.context(WebSocketFrameDecoder.class);
+    if (maxFramePayloadLength != DEFAULT_MAX_FRAME_PAYLOAD_LENGTH) {
+      // only a server expects the frames it receives to be masked
+      boolean server = channel.parent() != null;
+      pipeline.replace(
+          decoder.name(),
+          decoder.name(),
+          new WebSocket13FrameDecoder(server, true, maxFramePayloadLength));
+    }
+
+    // the handlers are added after the codecs, so frames are packed before they are compressed
+    String last = lastCodec(pipeline);
+    pipeline.addAfter(
+        last, "rsocket-websocket-aggregator", new WebSocketFrameAggregator(maxAggregatedLength));
+    last = "rsocket-websocket-aggregator";
+
+    ChannelHandlerContext compressionEncoder = pipeline.context(WebSocketExtensionEncoder.class);
+    if (compressionEncoder != null && compressionThreshold > 0) {
+      pipeline.addAfter(
+          last,
+          "rsocket-websocket-compression-threshold",
+          new CompressionThresholdHandler(compressionEncoder, compressionThreshold));
+      last = "rsocket-websocket-compression-threshold";
+    }
+
+    if (packFrames) {
+      pipeline.addAfter(
+          last, "rsocket-websocket-packer", new WebsocketFramePacker(outboundFramePayloadLength()));
+    }
+  }
+
+  /** The maximum payload length of a packed WebSocket frame. */
+  int outboundFramePayloadLength() {
+    return maxOutboundFramePayloadLength > 0
+        ? maxOutboundFramePayloadLength
+        : Math.min(maxFramePayloadLength, DEFAULT_MAX_FRAME_PAYLOAD_LENGTH);
+  }
+
+  private static String lastCodec(ChannelPipeline pipeline) {
+    String last = null;
+    for (String name : pipeline.names()) {
+      if (isCodec(pipeline.get(name))) {
+        last = name;
+      }
+    }
+    return last;
+  }
+
+  private static boolean isCodec(@Nullable ChannelHandler handler) {
+    return handler instanceof WebSocketFrameDecoder
+        || handler instanceof WebSocketFrameEncoder
+        || handler instanceof WebSocketExtensionDecoder
+        || handler instanceof WebSocketExtensionEncoder;
+  }
+}
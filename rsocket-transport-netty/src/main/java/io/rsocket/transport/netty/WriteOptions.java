@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import io.netty.channel.Channel;
+import io.netty.channel.WriteBufferWaterMark;
+import javax.annotation.Nullable;
+
+/**
+ * Options of how the frames sent on the connections of the TCP and WebSocket transports are written
+ * to the channel: whether their flushes are coalesced, and the water marks of the outbound buffer.
+ *
+ * <p>Without coalescing, the frames of a send are written one after the other, each once the write
+ * of the previous one completed. With coalescing, up to {@link
+ * FrameWriter#DEFAULT_MAX_PENDING_WRITES} frames are written ahead, so that a flush carries several
+ * frames even of a single stream. Either way the frames are written in the order they are sent.
+ */
+public final class WriteOptions {
+  private int maxPendingFrames;
+  private int maxPendingBytes;
+  private @Nullable WriteBufferWaterMark writeBufferWaterMark;
+
+  private WriteOptions() {}
+
+  public static WriteOptions create() {
+    return new WriteOptions();
+  }
+
+  /**
+   * Coalesces the flushes of the frames written to each connection, see {@link
+   * FlushCoalescingHandler}.
+   */
+  public WriteOptions coalesceFlushes() {
+    return coalesceFlushes(
+        FlushCoalescingHandler.DEFAULT_MAX_PENDING_FRAMES,
+        FlushCoalescingHandler.DEFAULT_MAX_PENDING_BYTES);
+  }
+
+  /**
+   * Coalesces the flushes of the frames written to each connection, flushing at the latest once
+   * {@code maxPendingFrames} frames or {@code maxPendingBytes} bytes are pending.
+   */
+  public WriteOptions coalesceFlushes(int maxPendingFrames, int maxPendingBytes) {
+    if (maxPendingFrames <= 0 || maxPendingBytes <= 0) {
+      throw new IllegalArgumentException("pending frames and bytes must be positive");
+    }
+    this.maxPendingFrames = maxPendingFrames;
+    this.maxPendingBytes = maxPendingBytes;
+    return this;
+  }
+
+  /**
+   * Sets the water marks of the bytes pending in the outbound buffer of each connection. Frames are
+   * only written while the buffer is below the high water mark, until it drops below the low water
+   * mark. Defaults to the water marks of Netty, 32 KiB and 64 KiB.
+   */
+  public WriteOptions writeBufferWaterMark(int low, int high) {
+    this.writeBufferWaterMark = new WriteBufferWaterMark(low, high);
+    return this;
+  }
+
+  /** Whether flushes are coalesced. */
+  public boolean coalescesFlushes() {
+    return maxPendingFrames > 0;
+  }
+
+  /** Number of frames of a send written before the writes of the previous ones completed. */
+  int maxPendingWrites() {
+    return coalescesFlushes() ? FrameWriter.DEFAULT_MAX_PENDING_WRITES : 1;
+  }
+
+  /** Returns a handler coalescing the flushes of one connection, or {@code null} if disabled. */
+  @Nullable
+  FlushCoalescingHandler newFlushCoalescingHandler() {
+    return coalescesFlushes()
+        ? new FlushCoalescingHandler(maxPendingFrames, maxPendingBytes)
+        : null;
+  }
+
+  /** Applies the water marks to a connection. */
+  void configure(Channel channel) {
+    if (writeBufferWaterMark != null) {
+      channel.config().setWriteBufferWaterMark(writeBufferWaterMark);
+    }
+  }
+}
@@ -20,6 +20,8 @@ import io.rsocket.DuplexConnection;
 import io.rsocket.transport.ClientTransport;
 import io.rsocket.transport.netty.NettyDuplexConnection;
 import io.rsocket.transport.netty.RSocketLengthCodec;
+import io.rsocket.transport.netty.TcpOptions;
+import io.rsocket.transport.netty.WriteOptions;
 import java.net.InetSocketAddress;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,6 +31,7 @@ import reactor.ipc.netty.tcp.TcpClient;
 public class TcpClientTransport implements ClientTransport {
   private final Logger logger = LoggerFactory.getLogger(TcpClientTransport.class);
   private final TcpClient client;
+  private WriteOptions writeOptions = WriteOptions.create();
 
   private TcpClientTransport(TcpClient client) {
     this.client = client;
@@ -44,6 +47,11 @@ public class TcpClientTransport implements ClientTransport {
     return create(tcpClient);
   }
 
+  /** Creates a transport with the socket {@code options}, e.g. to use the native transport. */
+  public static TcpClientTransport create(String bindAddress, int port, TcpOptions options) {
+    return create(options.newClient(bindAddress, port));
+  }
+
   public static TcpClientTransport create(InetSocketAddress address) {
     TcpClient tcpClient = TcpClient.create(address.getHostString(), address.getPort());
     return create(tcpClient);
@@ -53,6 +61,12 @@ public class TcpClientTransport implements ClientTransport {
     return new TcpClientTransport(client);
   }
 
+  /** Sets how the frames sent are written to each connection, see {@link WriteOptions}. */
+  public TcpClientTransport writeOptions(WriteOptions writeOptions) {
+    this.writeOptions = writeOptions;
+    return this;
+  }
+
   @Override
   public Mono<DuplexConnection> connect() {
     return Mono.create(
@@ -62,7 +76,7 @@ public class TcpClientTransport implements ClientTransport {
                     (in, out) -> {
                       in.context().addHandler("client-length-codec", new RSocketLengthCodec());
                       NettyDuplexConnection connection =
-                          new NettyDuplexConnection(in, out, in.context());
+                          new NettyDuplexConnection(in, out, in.context(), writeOptions);
                       sink.success(connection);
                       return connection.onClose();
                     })
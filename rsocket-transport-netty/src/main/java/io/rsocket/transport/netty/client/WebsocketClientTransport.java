@@ -19,6 +19,8 @@ package io.rsocket.transport.netty.client;
 import io.rsocket.DuplexConnection;
 import io.rsocket.transport.ClientTransport;
 import io.rsocket.transport.netty.WebsocketDuplexConnection;
+import io.rsocket.transport.netty.WebsocketOptions;
+import io.rsocket.transport.netty.WriteOptions;
 import java.net.URI;
 import reactor.core.publisher.Mono;
 import reactor.ipc.netty.http.client.HttpClient;
@@ -26,6 +28,8 @@ import reactor.ipc.netty.http.client.HttpClient;
 public class WebsocketClientTransport implements ClientTransport {
   private final HttpClient client;
   private String path;
+  private WebsocketOptions options;
+  private WriteOptions writeOptions = WriteOptions.create();
 
   private WebsocketClientTransport(HttpClient client, String path) {
     this.client = client;
@@ -42,11 +46,34 @@ public class WebsocketClientTransport implements ClientTransport {
     return create(httpClient, "/");
   }
 
+  /** Creates a transport with the WebSocket {@code options}, e.g. to compress messages. */
+  public static WebsocketClientTransport create(
+      String bindAddress, int port, WebsocketOptions options) {
+    HttpClient httpClient =
+        HttpClient.create(
+            clientOptions -> options.configure(clientOptions.connect(bindAddress, port)));
+    return create(httpClient, "/").options(options);
+  }
+
   public static WebsocketClientTransport create(URI uri) {
     HttpClient httpClient = createClient(uri);
     return create(httpClient, uri.getPath());
   }
 
+  /** Creates a transport with the WebSocket {@code options}, e.g. to compress messages. */
+  public static WebsocketClientTransport create(URI uri, WebsocketOptions options) {
+    HttpClient httpClient =
+        isSecureWebsocket(uri)
+            ? HttpClient.create(
+                clientOptions ->
+                    options.configure(
+                        clientOptions.sslSupport().connect(uri.getHost(), getPort(uri, 443))))
+            : HttpClient.create(
+                clientOptions ->
+                    options.configure(clientOptions.connect(uri.getHost(), getPort(uri, 80))));
+    return create(httpClient, uri.getPath()).options(options);
+  }
+
   private static HttpClient createClient(URI uri) {
     if (isSecureWebsocket(uri)) {
       return HttpClient.create(
@@ -72,6 +99,17 @@ public class WebsocketClientTransport implements ClientTransport {
     return new WebsocketClientTransport(client, path);
   }
 
+  private WebsocketClientTransport options(WebsocketOptions options) {
+    this.options = options;
+    return this;
+  }
+
+  /** Sets how the frames sent are written to each connection, see {@link WriteOptions}. */
+  public WebsocketClientTransport writeOptions(WriteOptions writeOptions) {
+    this.writeOptions = writeOptions;
+    return this;
+  }
+
   @Override
   public Mono<DuplexConnection> connect() {
     return Mono.create(
@@ -83,7 +121,8 @@ public class WebsocketClientTransport implements ClientTransport {
                         response.receiveWebsocket(
                             (in, out) -> {
                               WebsocketDuplexConnection connection =
-                                  new WebsocketDuplexConnection(in, out, in.context());
+                                  new WebsocketDuplexConnection(
+                                      in, out, in.context(), options, writeOptions);
                               sink.success(connection);
                               return connection.onClose();
                             }))
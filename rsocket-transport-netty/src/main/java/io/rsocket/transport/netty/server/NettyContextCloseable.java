@@ -2,21 +2,33 @@ package io.rsocket.transport.netty.server;
 
 import io.rsocket.Closeable;
 import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import reactor.core.Cancellation;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.MonoProcessor;
 import reactor.ipc.netty.NettyContext;
 
 /**
  * A {@link Closeable} wrapping a {@link NettyContext}, allowing for close and aware of its address.
+ * A sharded server wraps the contexts of all its listeners, which share the same address.
  */
 public class NettyContextCloseable implements Closeable {
-  private NettyContext context;
+  private List<NettyContext> contexts;
+
+  private Cancellation resources;
 
   private MonoProcessor<Void> onClose;
 
   NettyContextCloseable(NettyContext context) {
+    this(Collections.singletonList(context), () -> {});
+  }
+
+  /** @param resources disposed once the contexts are closed, e.g. the event loops of the shards. */
+  NettyContextCloseable(List<NettyContext> contexts, Cancellation resources) {
     this.onClose = MonoProcessor.create();
-    this.context = context;
+    this.contexts = contexts;
+    this.resources = resources;
   }
 
   @Override
@@ -24,7 +36,8 @@ public class NettyContextCloseable implements Closeable {
     return Mono.empty()
         .doFinally(
             s -> {
-              context.dispose();
+              contexts.forEach(NettyContext::dispose);
+              resources.dispose();
               onClose.onComplete();
             })
         .then();
@@ -37,6 +50,6 @@ public class NettyContextCloseable implements Closeable {
 
   /** @see NettyContext#address() */
   public InetSocketAddress address() {
-    return context.address();
+    return contexts.get(0).address();
   }
 }
@@ -19,14 +19,31 @@ package io.rsocket.transport.netty.server;
 import io.rsocket.transport.ServerTransport;
 import io.rsocket.transport.netty.NettyDuplexConnection;
 import io.rsocket.transport.netty.RSocketLengthCodec;
+import io.rsocket.transport.netty.TcpOptions;
+import io.rsocket.transport.netty.WriteOptions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+import org.reactivestreams.Publisher;
+import reactor.core.Cancellation;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.ipc.netty.NettyContext;
+import reactor.ipc.netty.NettyInbound;
+import reactor.ipc.netty.NettyOutbound;
+import reactor.ipc.netty.resources.LoopResources;
 import reactor.ipc.netty.tcp.TcpServer;
 
 public class TcpServerTransport implements ServerTransport<NettyContextCloseable> {
-  TcpServer server;
+  List<TcpServer> servers;
+  private Cancellation resources;
+  private WriteOptions writeOptions = WriteOptions.create();
 
-  private TcpServerTransport(TcpServer server) {
-    this.server = server;
+  /** @param resources disposed once the listeners are closed, or if one of them fails to bind. */
+  TcpServerTransport(List<TcpServer> servers, Cancellation resources) {
+    this.servers = servers;
+    this.resources = resources;
   }
 
   public static TcpServerTransport create(String bindAddress, int port) {
@@ -34,26 +51,86 @@ public class TcpServerTransport implements ServerTransport<NettyContextCloseable
     return create(server);
   }
 
+  /** Creates a transport with the socket {@code options}, e.g. to use the native transport. */
+  public static TcpServerTransport create(String bindAddress, int port, TcpOptions options) {
+    return create(options.newServer(bindAddress, port));
+  }
+
   public static TcpServerTransport create(int port) {
     TcpServer server = TcpServer.create(port);
     return create(server);
   }
 
   public static TcpServerTransport create(TcpServer server) {
-    return new TcpServerTransport(server);
+    return new TcpServerTransport(Collections.singletonList(server), () -> {});
+  }
+
+  /**
+   * Creates a transport that binds {@code shards} listeners to the same port with {@code
+   * SO_REUSEPORT}, which is enabled on a copy of the {@code options}. Every listener accepts
+   * connections on its own event loop group, and the kernel balances new connections across the
+   * listeners, so accepting connections is no longer limited to one thread.
+   *
+   * <p>Sharding requires the native transport, see {@link TcpOptions#usesNative()}. Otherwise a
+   * single listener is bound, as NIO does not support {@code SO_REUSEPORT}. As every listener would
+   * bind a different ephemeral port, the {@code port} must not be 0 with more than one shard.
+   */
+  public static TcpServerTransport createSharded(
+      String bindAddress, int port, int shards, TcpOptions options) {
+    if (shards <= 0) {
+      throw new IllegalArgumentException("shards must be positive");
+    }
+    if (!options.usesNative()) {
+      return create(bindAddress, port, options);
+    }
+
+    if (port == 0 && shards > 1) {
+      throw new IllegalArgumentException("shards must bind a fixed port, not an ephemeral one");
+    }
+
+    TcpOptions shardOptions = options.copy().reusePort(true);
+    int workers = Math.max(1, LoopResources.DEFAULT_IO_WORKER_COUNT / shards);
+    List<TcpServer> servers = new ArrayList<>(shards);
+    List<LoopResources> loops = new ArrayList<>(shards);
+    for (int i = 0; i < shards; i++) {
+      LoopResources shardLoops = LoopResources.create("rsocket-tcp-shard-" + i, 1, workers, true);
+      loops.add(shardLoops);
+      servers.add(shardOptions.newServer(bindAddress, port, shardLoops));
+    }
+    return new TcpServerTransport(servers, () -> loops.forEach(LoopResources::dispose));
+  }
+
+  /** Sets how the frames sent are written to each connection, see {@link WriteOptions}. */
+  public TcpServerTransport writeOptions(WriteOptions writeOptions) {
+    this.writeOptions = writeOptions;
+    return this;
   }
 
   @Override
   public Mono<NettyContextCloseable> start(ConnectionAcceptor acceptor) {
-    return server
-        .newHandler(
-            (in, out) -> {
-              in.context().addHandler("server-length-codec", new RSocketLengthCodec());
-              NettyDuplexConnection connection = new NettyDuplexConnection(in, out, in.context());
-              acceptor.apply(connection).subscribe();
-
-              return out.neverComplete();
+    // disposes the listeners that were bound, and their event loops, if one of them fails to bind
+    List<NettyContext> bound = new ArrayList<>(servers.size());
+    return Flux.fromIterable(servers)
+        .<NettyContext>concatMap(server -> server.newHandler(handler(acceptor)))
+        .doOnNext(bound::add)
+        .doOnError(
+            t -> {
+              bound.forEach(NettyContext::dispose);
+              resources.dispose();
             })
-        .map(NettyContextCloseable::new);
+        .collectList()
+        .map(contexts -> new NettyContextCloseable(contexts, resources));
+  }
+
+  private BiFunction<NettyInbound, NettyOutbound, Publisher<Void>> handler(
+      ConnectionAcceptor acceptor) {
+    return (in, out) -> {
+      in.context().addHandler("server-length-codec", new RSocketLengthCodec());
+      NettyDuplexConnection connection =
+          new NettyDuplexConnection(in, out, in.context(), writeOptions);
+      acceptor.apply(connection).subscribe();
+
+      return out.neverComplete();
+    };
   }
 }
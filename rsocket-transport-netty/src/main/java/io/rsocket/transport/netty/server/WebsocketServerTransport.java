@@ -18,11 +18,15 @@ package io.rsocket.transport.netty.server;
 
 import io.rsocket.transport.ServerTransport;
 import io.rsocket.transport.netty.WebsocketDuplexConnection;
+import io.rsocket.transport.netty.WebsocketOptions;
+import io.rsocket.transport.netty.WriteOptions;
 import reactor.core.publisher.Mono;
 import reactor.ipc.netty.http.server.HttpServer;
 
 public class WebsocketServerTransport implements ServerTransport<NettyContextCloseable> {
   HttpServer server;
+  private WebsocketOptions options;
+  private WriteOptions writeOptions = WriteOptions.create();
 
   private WebsocketServerTransport(HttpServer server) {
     this.server = server;
@@ -33,6 +37,15 @@ public class WebsocketServerTransport implements ServerTransport<NettyContextClo
     return create(httpServer);
   }
 
+  /** Creates a transport with the WebSocket {@code options}, e.g. to compress messages. */
+  public static WebsocketServerTransport create(
+      String bindAddress, int port, WebsocketOptions options) {
+    HttpServer httpServer =
+        HttpServer.create(
+            serverOptions -> options.configure(serverOptions.listen(bindAddress, port)));
+    return create(httpServer).options(options);
+  }
+
   public static WebsocketServerTransport create(int port) {
     HttpServer httpServer = HttpServer.create(port);
     return create(httpServer);
@@ -42,6 +55,17 @@ public class WebsocketServerTransport implements ServerTransport<NettyContextClo
     return new WebsocketServerTransport(server);
   }
 
+  private WebsocketServerTransport options(WebsocketOptions options) {
+    this.options = options;
+    return this;
+  }
+
+  /** Sets how the frames sent are written to each connection, see {@link WriteOptions}. */
+  public WebsocketServerTransport writeOptions(WriteOptions writeOptions) {
+    this.writeOptions = writeOptions;
+    return this;
+  }
+
   @Override
   public Mono<NettyContextCloseable> start(ServerTransport.ConnectionAcceptor acceptor) {
     return server
@@ -50,7 +74,8 @@ public class WebsocketServerTransport implements ServerTransport<NettyContextClo
                 response.sendWebsocket(
                     (in, out) -> {
                       WebsocketDuplexConnection connection =
-                          new WebsocketDuplexConnection(in, out, in.context());
+                          new WebsocketDuplexConnection(
+                              in, out, in.context(), options, writeOptions);
                       acceptor.apply(connection).subscribe();
 
                       return out.neverComplete();
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FlushCoalescingHandlerTest {
+  private FlushCounter flushes;
+  private EmbeddedChannel channel;
+
+  @Before
+  public void setUp() {
+    flushes = new FlushCounter();
+    channel = new EmbeddedChannel(flushes, new FlushCoalescingHandler(4, 1024));
+  }
+
+  @Test
+  public void testFlushOncePerEventLoopTurn() {
+    channel.writeAndFlush(buffer(8));
+    channel.writeAndFlush(buffer(8));
+    channel.writeAndFlush(buffer(8));
+    assertThat("Unexpected flushes.", flushes.count, is(0));
+    assertThat("Unexpected outbound message.", channel.readOutbound(), is(nullValue()));
+
+    channel.runPendingTasks();
+    assertThat("Unexpected flushes.", flushes.count, is(1));
+    assertThat("Unexpected outbound messages.", channel.outboundMessages().size(), is(3));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testFlushAfterMaxPendingFrames() {
+    for (int i = 0; i < 4; i++) {
+      channel.writeAndFlush(buffer(8));
+    }
+    assertThat("Unexpected flushes.", flushes.count, is(1));
+
+    channel.runPendingTasks();
+    assertThat("Unexpected flushes.", flushes.count, is(1));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testFlushAfterMaxPendingBytes() {
+    channel.writeAndFlush(buffer(512));
+    assertThat("Unexpected flushes.", flushes.count, is(0));
+    channel.writeAndFlush(buffer(512));
+    assertThat("Unexpected flushes.", flushes.count, is(1));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testFlushAfterReadComplete() {
+    channel.pipeline().fireChannelRead(buffer(8));
+    channel.writeAndFlush(buffer(8));
+    channel.runPendingTasks();
+    assertThat("Flushed during read.", flushes.count, is(0));
+
+    channel.pipeline().fireChannelReadComplete();
+    assertThat("Unexpected flushes.", flushes.count, is(1));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testFlushOnClose() {
+    channel.writeAndFlush(buffer(8));
+    channel.close();
+    assertThat("Unexpected flushes.", flushes.count, is(1));
+    channel.finishAndReleaseAll();
+  }
+
+  private static ByteBuf buffer(int size) {
+    return Unpooled.buffer(size).writeZero(size);
+  }
+
+  private static class FlushCounter extends ChannelOutboundHandlerAdapter {
+    int count;
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+      count++;
+      ctx.flush();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.rsocket.Frame;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.MonoProcessor;
+
+public class FrameWriterTest {
+  private FlushGate gate;
+  private EmbeddedChannel channel;
+  private FrameWriter writer;
+  private AtomicLong requested;
+
+  @Before
+  public void setUp() {
+    gate = new FlushGate();
+    channel = new EmbeddedChannel(gate);
+    channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+    writer = new FrameWriter(channel, Frame::content, 4);
+    channel.pipeline().addLast(writer);
+    requested = new AtomicLong();
+  }
+
+  @Test
+  public void testWritesWhileWritable() {
+    gate.open = true;
+    writer.send(frames()).subscribe();
+
+    // written frames complete right away, so the next ones are requested
+    assertThat("Frames not written.", channel.outboundMessages().size(), is(100));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testStopsWhileNotWritable() {
+    writer.send(frames()).subscribe();
+
+    assertThat("Channel writable.", channel.isWritable(), is(false));
+    assertThat("Unexpected frames requested.", requested.get(), is(4L));
+
+    gate.open = true;
+    channel.flush();
+    assertThat("Channel not writable.", channel.isWritable(), is(true));
+    assertThat("Frames not requested once writable.", requested.get() > 4, is(true));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testWritesInOrder() {
+    gate.open = true;
+    writer.send(frames()).subscribe();
+
+    for (int i = 0; i < 100; i++) {
+      ByteBuf written = channel.readOutbound();
+      assertThat("Frame written out of order.", written.getInt(0), is(i));
+      written.release();
+    }
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testSingleWriteInFlight() {
+    channel.finishAndReleaseAll();
+    gate = new FlushGate();
+    channel = new EmbeddedChannel(gate);
+    writer = new FrameWriter(channel, Frame::content, 1);
+    channel.pipeline().addLast(writer);
+    writer.send(frames()).subscribe();
+
+    // the write of the first frame completes only once flushed
+    assertThat("Unexpected frames requested.", requested.get(), is(1L));
+
+    gate.open = true;
+    channel.flush();
+    assertThat("Frames not written once flushed.", channel.outboundMessages().size(), is(100));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void testCompletesAfterLastWrite() {
+    MonoProcessor<Void> sent =
+        writer.send(Flux.just(frame(0))).subscribeWith(MonoProcessor.create());
+    assertThat("Completed before the write completed.", sent.isTerminated(), is(false));
+
+    gate.open = true;
+    channel.flush();
+    assertThat("Not completed once written.", sent.isSuccess(), is(true));
+    channel.finishAndReleaseAll();
+  }
+
+  private Flux<Frame> frames() {
+    return Flux.range(0, 100).doOnRequest(requested::addAndGet).map(FrameWriterTest::frame);
+  }
+
+  private static Frame frame(int index) {
+    return Frame.from(Unpooled.buffer(10).writeInt(index).writeZero(6));
+  }
+
+  private static class FlushGate extends ChannelOutboundHandlerAdapter {
+    boolean open;
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+      if (open) {
+        ctx.flush();
+      }
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package io.rsocket.transport.netty;
 
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import io.rsocket.transport.ClientTransport;
 import io.rsocket.transport.ServerTransport;
@@ -26,6 +27,22 @@ public class NettyUriTransportRegistryTest {
     assertTrue(transport instanceof TcpServerTransport);
   }
 
+  @Test
+  public void testTcpClientWithOptions() {
+    ClientTransport transport =
+        UriTransportRegistry.clientForUri("tcp://localhost:9898?noDelay=false&quickAck=true");
+
+    assertTrue(transport instanceof TcpClientTransport);
+  }
+
+  @Test
+  public void testTcpServerWithOptions() {
+    ServerTransport transport =
+        UriTransportRegistry.serverForUri("tcp://localhost:9898?reusePort=true&native=false");
+
+    assertTrue(transport instanceof TcpServerTransport);
+  }
+
   @Test
   public void testWsClient() {
     ClientTransport transport = UriTransportRegistry.clientForUri("ws://localhost:9898");
@@ -39,4 +56,20 @@ public class NettyUriTransportRegistryTest {
 
     assertTrue(transport instanceof WebsocketServerTransport);
   }
+
+  @Test
+  public void testUnixClient() {
+    assumeTrue(UnixDomainSocket.isAvailable());
+    ClientTransport transport = UriTransportRegistry.clientForUri("unix:///tmp/rsocket.sock");
+
+    assertTrue(transport instanceof TcpClientTransport);
+  }
+
+  @Test
+  public void testUnixServer() {
+    assumeTrue(UnixDomainSocket.isAvailable());
+    ServerTransport transport = UriTransportRegistry.serverForUri("unix:///tmp/rsocket.sock");
+
+    assertTrue(transport instanceof TcpServerTransport);
+  }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Closeable;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.RSocketFactory;
+import io.rsocket.uri.UriTransportRegistry;
+import io.rsocket.util.PayloadImpl;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import reactor.core.publisher.Mono;
+
+public class UnixDomainSocketTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Before
+  public void setup() {
+    assumeTrue(UnixDomainSocket.isAvailable());
+  }
+
+  @Test(timeout = 10_000)
+  public void testRequestResponse() throws InterruptedException {
+    File socket = new File(folder.getRoot(), "rsocket.sock");
+    Closeable server =
+        RSocketFactory.receive()
+            .acceptor((setup, sendingSocket) -> Mono.just(new EchoRSocket()))
+            .transport(UriTransportRegistry.serverForUri("unix://" + socket.getPath()))
+            .start()
+            .block();
+    assertTrue("Socket file not created.", socket.exists());
+
+    RSocket client =
+        RSocketFactory.connect()
+            .transport(UriTransportRegistry.clientForUri("unix://" + socket.getPath()))
+            .start()
+            .block();
+    for (int i = 0; i < 10; i++) {
+      Payload response = client.requestResponse(new PayloadImpl("hello " + i, "metadata")).block();
+      assertEquals("hello " + i, StandardCharsets.UTF_8.decode(response.getData()).toString());
+    }
+
+    client.close().block();
+    server.close().block();
+    // the listener closes asynchronously, and deletes the socket file once closed
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (socket.exists() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertFalse("Socket file not deleted.", socket.exists());
+  }
+
+  private static class EchoRSocket extends AbstractRSocket {
+    @Override
+    public Mono<Payload> requestResponse(Payload payload) {
+      return Mono.just(payload);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class WebsocketFramePackerTest {
+  private final EmbeddedChannel channel = new EmbeddedChannel(new WebsocketFramePacker(64));
+
+  @Test
+  public void testPackFramesUntilFlush() {
+    ChannelFuture first = channel.write(frame("first"));
+    ChannelFuture second = channel.write(frame("second"));
+    assertThat("Unexpected outbound message.", channel.readOutbound(), is(nullValue()));
+
+    channel.flush();
+    BinaryWebSocketFrame packed = channel.readOutbound();
+    assertThat("Unexpected packed length.", packed.content().readableBytes(), is(3 + 5 + 3 + 6));
+    assertThat("Unexpected outbound message.", channel.readOutbound(), is(nullValue()));
+    assertThat("Write not completed.", first.isSuccess() && second.isSuccess(), is(true));
+
+    EmbeddedChannel peer = new EmbeddedChannel(new WebsocketFramePacker(64));
+    peer.writeInbound(packed);
+    assertThat(text(peer.readInbound()), is("first"));
+    assertThat(text(peer.readInbound()), is("second"));
+    assertThat("Unexpected inbound message.", peer.readInbound(), is(nullValue()));
+  }
+
+  @Test
+  public void testWritePackedBeforeMaxPackedBytes() {
+    channel.write(frame(repeat('a', 40)));
+    channel.write(frame(repeat('b', 40)));
+    channel.flush();
+
+    BinaryWebSocketFrame packed = channel.readOutbound();
+    assertThat("Unexpected packed length.", packed.content().readableBytes(), is(3 + 40));
+    packed.release();
+    packed = channel.readOutbound();
+    assertThat("Unexpected packed length.", packed.content().readableBytes(), is(3 + 40));
+    packed.release();
+  }
+
+  @Test
+  public void testWritePackedBeforeControlFrame() {
+    channel.write(frame("data"));
+    channel.writeAndFlush(new PingWebSocketFrame());
+
+    BinaryWebSocketFrame packed = channel.readOutbound();
+    assertThat("Unexpected packed length.", packed.content().readableBytes(), is(3 + 4));
+    packed.release();
+    PingWebSocketFrame ping = channel.readOutbound();
+    ping.release();
+  }
+
+  @Test(expected = CorruptedFrameException.class)
+  public void testRejectTruncatedFrame() {
+    ByteBuf packed = Unpooled.buffer().writeMedium(8).writeBytes(new byte[4]);
+    channel.writeInbound(new BinaryWebSocketFrame(packed));
+  }
+
+  /** Returns a frame of {@code text} that starts with its length, like an RSocket frame. */
+  private static BinaryWebSocketFrame frame(String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    return new BinaryWebSocketFrame(Unpooled.buffer().writeMedium(bytes.length).writeBytes(bytes));
+  }
+
+  private static String text(BinaryWebSocketFrame frame) {
+    try {
+      ByteBuf content = frame.content();
+      assertThat(
+          "Unexpected frame length.",
+          content.readUnsignedMedium(),
+          is(content.readableBytes()));
+      return content.toString(StandardCharsets.UTF_8);
+    } finally {
+      frame.release();
+    }
+  }
+
+  private static String repeat(char c, int count) {
+    return new String(new char[count]).replace('\0', c);
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.Test;
+
+public class WebsocketOptionsTest {
+
+  @Test
+  public void testOutboundLimitDefaultsToPeerDefault() {
+    WebsocketOptions options = WebsocketOptions.create().maxFramePayloadLength(1024 * 1024);
+    assertThat(
+        "Packed frames exceed the default limit of the peer.",
+        options.outboundFramePayloadLength(),
+        is(WebsocketOptions.DEFAULT_MAX_FRAME_PAYLOAD_LENGTH));
+  }
+
+  @Test
+  public void testOutboundLimitDefaultsToSmallerLocalLimit() {
+    WebsocketOptions options = WebsocketOptions.create().maxFramePayloadLength(1024);
+    assertThat(options.outboundFramePayloadLength(), is(1024));
+  }
+
+  @Test
+  public void testOutboundLimit() {
+    WebsocketOptions options =
+        WebsocketOptions.create().maxFramePayloadLength(1024).maxOutboundFramePayloadLength(4096);
+    assertThat(options.outboundFramePayloadLength(), is(4096));
+  }
+}
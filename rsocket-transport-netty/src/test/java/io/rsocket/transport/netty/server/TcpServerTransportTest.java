@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.netty.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import io.rsocket.transport.ServerTransport.ConnectionAcceptor;
+import io.rsocket.transport.netty.TcpOptions;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.ipc.netty.tcp.TcpServer;
+
+public class TcpServerTransportTest {
+  private static final ConnectionAcceptor ACCEPTOR = connection -> Mono.never();
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectNoShards() {
+    TcpServerTransport.createSharded("localhost", 0, 0, TcpOptions.create());
+  }
+
+  @Test(timeout = 10_000)
+  public void testSingleListenerWithoutNative() {
+    TcpServerTransport transport =
+        TcpServerTransport.createSharded(
+            "localhost", 0, 4, TcpOptions.create().preferNative(false));
+    assertEquals("Unexpected number of listeners.", 1, transport.servers.size());
+
+    // an ephemeral port is fine for a single listener
+    NettyContextCloseable closeable = transport.start(ACCEPTOR).block();
+    assertNotEquals("Not bound.", 0, closeable.address().getPort());
+    closeable.close().block();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectEphemeralPortWithShards() {
+    assumeTrue(TcpOptions.isNativeAvailable());
+    TcpServerTransport.createSharded("localhost", 0, 2, TcpOptions.create());
+  }
+
+  @Test(timeout = 10_000)
+  public void testShards() throws IOException {
+    assumeTrue(TcpOptions.isNativeAvailable());
+    TcpServerTransport transport =
+        TcpServerTransport.createSharded("localhost", freePort(), 3, TcpOptions.create());
+    assertEquals("Unexpected number of listeners.", 3, transport.servers.size());
+
+    // all listeners bind the same port
+    transport.start(ACCEPTOR).block().close().block();
+  }
+
+  @Test(timeout = 10_000)
+  public void testDisposeBoundListenersWhenBindFails() throws Exception {
+    int port = freePort();
+    AtomicBoolean disposed = new AtomicBoolean();
+    try (ServerSocket taken = new ServerSocket(0, 50, InetAddress.getByName("localhost"))) {
+      TcpServerTransport transport =
+          new TcpServerTransport(
+              Arrays.asList(
+                  TcpServer.create("localhost", port),
+                  TcpServer.create("localhost", taken.getLocalPort())),
+              () -> disposed.set(true));
+      try {
+        transport.start(ACCEPTOR).block();
+        fail("Bound a port that is taken.");
+      } catch (RuntimeException expected) {
+      }
+    }
+    assertTrue("Resources not disposed.", disposed.get());
+
+    // the listener bound first is closed asynchronously
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (true) {
+      try (ServerSocket rebound = new ServerSocket(port, 50, InetAddress.getByName("localhost"))) {
+        break;
+      } catch (IOException e) {
+        if (System.currentTimeMillis() > deadline) {
+          throw new AssertionError("Listener bound first not disposed.", e);
+        }
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledUnsafeDirectByteBuf;
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+import org.agrona.BitUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * One direction of a shared-memory connection: fixed-size slots in a memory-mapped file that the
+ * writer copies frames into, and a queue of the written slots in the order of the frames. Frames
+ * larger than a slot are split across several slots.
+ *
+ * <p>The reader does not copy the frames, they are read from the mapped slots and a slot is only
+ * returned to the writer once the frame read from it is released. As slots are returned in any
+ * order, a frame that is held on to only takes its own slots from the writer.
+ *
+ * <p>Layout of the region, relative to its offset in the file:
+ *
+ * <pre>
+ * 0                    tail, the count of queued slots, written by the writer
+ * 64                   closed flag, written by the writer
+ * 128                  queue of slotCount entries: slot index, length and whether more follow
+ * 128 + 8 * slotCount  state of every slot, free or in use
+ * slots                slotCount slots of slotSize bytes
+ * </pre>
+ */
+final class ShmChannel {
+
+  private static final int TAIL_OFFSET = 0;
+  private static final int CLOSED_OFFSET = BitUtil.CACHE_LINE_LENGTH;
+  private static final int HEARTBEAT_OFFSET = CLOSED_OFFSET + Long.BYTES;
+  private static final int ENTRIES_OFFSET = 2 * BitUtil.CACHE_LINE_LENGTH;
+
+  private static final int FREE = 0;
+  private static final int IN_USE = 1;
+  private static final long MORE = 0x8000_0000L;
+
+  private final UnsafeBuffer buffer;
+  private final ByteBuffer mapped;
+  private final int offset;
+  private final ByteBuf region;
+  private final int slotCount;
+  private final int slotSize;
+  private final int statesOffset;
+  private final int slotsOffset;
+
+  // only accessed by the writer
+  private final int[] claimed;
+  private int cursor;
+  private long tail;
+
+  // only accessed by the reader
+  private long head;
+
+  /**
+   * @param mapped the mapped file
+   * @param offset the offset of this channel in the file, aligned to a cache line
+   */
+  ShmChannel(ByteBuffer mapped, int offset, int slotCount, int slotSize) {
+    checkGeometry(slotCount, slotSize);
+    this.mapped = mapped;
+    this.offset = offset;
+    this.buffer = new UnsafeBuffer(mapped, offset, length(slotCount, slotSize));
+    this.region = Unpooled.wrappedBuffer(mapped).slice(offset, buffer.capacity());
+    this.slotCount = slotCount;
+    this.slotSize = slotSize;
+    this.statesOffset = ENTRIES_OFFSET + slotCount * Long.BYTES;
+    this.slotsOffset =
+        BitUtil.align(statesOffset + slotCount * Integer.BYTES, BitUtil.CACHE_LINE_LENGTH);
+    this.claimed = new int[slotCount];
+  }
+
+  /** Returns the length of a channel with the given slots, a multiple of a cache line. */
+  static int length(int slotCount, int slotSize) {
+    checkGeometry(slotCount, slotSize);
+    int slotsOffset =
+        BitUtil.align(
+            ENTRIES_OFFSET + slotCount * (Long.BYTES + Integer.BYTES), BitUtil.CACHE_LINE_LENGTH);
+    return BitUtil.align(slotsOffset + slotCount * slotSize, BitUtil.CACHE_LINE_LENGTH);
+  }
+
+  static void checkGeometry(int slotCount, int slotSize) {
+    if (slotCount <= 0 || !BitUtil.isPowerOfTwo(slotCount)) {
+      throw new IllegalArgumentException("slotCount must be a power of two: " + slotCount);
+    }
+    if (slotSize <= 0) {
+      throw new IllegalArgumentException("slotSize must be positive: " + slotSize);
+    }
+  }
+
+  /** Returns the largest frame that fits into the slots. */
+  int maxFrameLength() {
+    return (int) Math.min(Integer.MAX_VALUE, (long) slotCount * slotSize);
+  }
+
+  /**
+   * Writes the {@code frame} if enough slots are free, and makes it visible to the reader. The
+   * {@code frame} is not released.
+   *
+   * @return {@code false} if not enough slots are free.
+   * @throws IllegalArgumentException if the {@code frame} is larger than all slots.
+   */
+  boolean offer(ByteBuf frame) {
+    int length = frame.readableBytes();
+    if (length > maxFrameLength()) {
+      throw new IllegalArgumentException(
+          "Frame of length " + length + " exceeds the maximum of " + maxFrameLength());
+    }
+
+    int chunks = Math.max(1, (length + slotSize - 1) / slotSize);
+    int found = 0;
+    int slot = cursor;
+    for (int i = 0; i < slotCount && found < chunks; i++) {
+      if (buffer.getIntVolatile(stateOffset(slot)) == FREE) {
+        claimed[found++] = slot;
+      }
+      slot = (slot + 1) & (slotCount - 1);
+    }
+    if (found < chunks) {
+      return false;
+    }
+    cursor = slot;
+
+    int index = frame.readerIndex();
+    for (int i = 0; i < chunks; i++) {
+      int n = Math.min(slotSize, length - i * slotSize);
+      buffer.putInt(stateOffset(claimed[i]), IN_USE);
+      frame.getBytes(index, region, slotOffset(claimed[i]), n);
+      index += n;
+
+      long entry = ((long) claimed[i] << 32) | n | (i < chunks - 1 ? MORE : 0);
+      buffer.putLong(entryOffset(tail++), entry);
+    }
+    buffer.putLongOrdered(TAIL_OFFSET, tail);
+    return true;
+  }
+
+  /** Marks this channel closed, once the frames written were read the reader sees it closed. */
+  void close() {
+    buffer.putIntOrdered(CLOSED_OFFSET, 1);
+  }
+
+  /**
+   * Reads the next frame without copying it, its slots are returned to the writer once it is
+   * released.
+   *
+   * @return the frame, or {@code null} if none was written.
+   */
+  @Nullable
+  ByteBuf poll() {
+    if (head == buffer.getLongVolatile(TAIL_OFFSET)) {
+      return null;
+    }
+
+    // all slots of a frame are visible at once
+    long entry = buffer.getLong(entryOffset(head++));
+    ByteBuf frame = slot(entry);
+    if ((entry & MORE) == 0) {
+      return frame;
+    }
+
+    CompositeByteBuf composite = ByteBufAllocator.DEFAULT.compositeDirectBuffer(slotCount);
+    composite.addComponent(true, frame);
+    do {
+      entry = buffer.getLong(entryOffset(head++));
+      composite.addComponent(true, slot(entry));
+    } while ((entry & MORE) != 0);
+    return composite;
+  }
+
+  /** Records that the writer is alive at {@code time}, in milliseconds since the epoch. */
+  void heartbeat(long time) {
+    buffer.putLongOrdered(HEARTBEAT_OFFSET, time);
+  }
+
+  /** Returns when the writer was last alive, or zero if it never said so. */
+  long heartbeatTime() {
+    return buffer.getLongVolatile(HEARTBEAT_OFFSET);
+  }
+
+  /** Returns whether the writer closed this channel, the frames written before may remain. */
+  boolean isClosed() {
+    return buffer.getIntVolatile(CLOSED_OFFSET) != 0;
+  }
+
+  private ByteBuf slot(long entry) {
+    int slot = (int) (entry >>> 32);
+    int length = (int) (entry & (MORE - 1));
+    int position = offset + slotOffset(slot);
+    ByteBuffer content = mapped.duplicate();
+    content.limit(position + length).position(position);
+    return new SlotByteBuf(content, stateOffset(slot));
+  }
+
+  private int entryOffset(long sequence) {
+    return ENTRIES_OFFSET + (int) (sequence & (slotCount - 1)) * Long.BYTES;
+  }
+
+  private int stateOffset(int slot) {
+    return statesOffset + slot * Integer.BYTES;
+  }
+
+  private int slotOffset(int slot) {
+    return slotsOffset + slot * slotSize;
+  }
+
+  /** A frame read from a slot, that returns the slot once released. */
+  private final class SlotByteBuf extends UnpooledUnsafeDirectByteBuf {
+    private final int stateOffset;
+
+    private SlotByteBuf(ByteBuffer content, int stateOffset) {
+      super(ByteBufAllocator.DEFAULT, content, content.remaining());
+      this.stateOffset = stateOffset;
+    }
+
+    @Override
+    protected void deallocate() {
+      super.deallocate();
+      buffer.putIntOrdered(stateOffset, FREE);
+    }
+  }
+}
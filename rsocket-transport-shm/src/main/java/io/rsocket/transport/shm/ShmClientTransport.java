@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import io.rsocket.DuplexConnection;
+import io.rsocket.transport.ClientTransport;
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
+import reactor.core.publisher.Mono;
+
+/**
+ * A client of a {@link ShmServerTransport} in another process on the same host. Every connection
+ * maps a file of {@code 2 * slotCount * slotSize} bytes, frames larger than a slot are split across
+ * slots.
+ *
+ * <p>A frame can not be larger than all slots, {@code slotCount * slotSize} bytes, which is 1 MiB
+ * by default. A larger frame fails its stream with an error, in either direction, while the other
+ * streams of the connection go on.
+ */
+public class ShmClientTransport implements ClientTransport {
+  public static final int DEFAULT_SLOT_COUNT = 1024;
+  public static final int DEFAULT_SLOT_SIZE = 1024;
+
+  private final String name;
+  private final int slotCount;
+  private final int slotSize;
+
+  private ShmClientTransport(String name, int slotCount, int slotSize) {
+    this.name = name;
+    this.slotCount = slotCount;
+    this.slotSize = slotSize;
+  }
+
+  public static ShmClientTransport create(String name) {
+    return create(name, DEFAULT_SLOT_COUNT, DEFAULT_SLOT_SIZE);
+  }
+
+  /**
+   * Creates a client whose connections have {@code slotCount} slots of {@code slotSize} bytes in
+   * each direction, bounding the frames sent either way to {@code slotCount * slotSize} bytes.
+   *
+   * @param slotCount the number of slots in each direction, a power of two
+   * @param slotSize the size of a slot in bytes
+   */
+  public static ShmClientTransport create(String name, int slotCount, int slotSize) {
+    ShmChannel.checkGeometry(slotCount, slotSize);
+    return new ShmClientTransport(name, slotCount, slotSize);
+  }
+
+  @Override
+  public Mono<DuplexConnection> connect() {
+    return Mono.fromCallable(
+        () -> {
+          File file = ShmServerTransport.file(name);
+          if (!file.exists()) {
+            throw new IllegalArgumentException("Could not find server: " + name);
+          }
+
+          MappedByteBuffer mapped = ShmFiles.mapExisting(file);
+          ManyToOneRingBuffer acceptRing = new ManyToOneRingBuffer(new UnsafeBuffer(mapped));
+          if (!ShmServerTransport.isRunning(acceptRing)) {
+            throw new IllegalArgumentException("Could not find server: " + name);
+          }
+
+          long connectionId = acceptRing.nextCorrelationId();
+          File connectionFile = ShmServerTransport.connectionFile(file, connectionId);
+          // a file left over by a connection the previous server never opened is replaced
+          ShmFiles.delete(connectionFile);
+          ShmDuplexConnection connection =
+              ShmDuplexConnection.create(connectionFile, slotCount, slotSize, ShmEventLoop.get());
+
+          UnsafeBuffer message = new UnsafeBuffer(new byte[Long.BYTES]);
+          message.putLong(0, connectionId);
+          if (!acceptRing.write(ShmServerTransport.MSG_TYPE_CONNECT, message, 0, Long.BYTES)) {
+            connection.close().subscribe();
+            ShmFiles.delete(connectionFile);
+            throw new IllegalStateException("Server did not accept connections: " + name);
+          }
+          return connection;
+        });
+  }
+}
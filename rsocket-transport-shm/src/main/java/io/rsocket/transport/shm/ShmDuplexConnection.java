@@ -0,0 +1,456 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.DuplexConnection;
+import io.rsocket.Frame;
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.IntSupplier;
+import javax.annotation.Nullable;
+import org.agrona.BitUtil;
+import org.agrona.concurrent.OneToOneConcurrentArrayQueue;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.UnicastProcessor;
+
+/**
+ * A connection over a memory-mapped file, with a {@link ShmChannel} for each direction. The frames
+ * are written and read by the {@link ShmEventLoop}, received frames are not copied but read from
+ * the mapped file.
+ *
+ * <p>The file starts with a header of the slot count and slot size, followed by the channel from
+ * the client to the server and the channel from the server to the client.
+ *
+ * <p>Each end writes a heartbeat into the channel it writes to, and closes the connection once the
+ * heartbeat of the peer is stale, as a peer that crashed or was killed never marks its channel
+ * closed.
+ *
+ * <p>The server deletes the file once it opened it. The client deletes a file the server never
+ * opened when the connection terminates, so it does not stay behind in memory.
+ *
+ * <p>A frame larger than all slots of a channel is not sent, and fails only its stream: the peer
+ * receives an ERROR frame for the stream instead, and this end receives an ERROR frame for a stream
+ * it requested or a CANCEL frame for a stream it responds to. Such a frame of stream 0 fails the
+ * send of the connection.
+ */
+public class ShmDuplexConnection implements DuplexConnection {
+  private static final Logger logger = LoggerFactory.getLogger(ShmDuplexConnection.class);
+
+  private static final int SLOT_COUNT_OFFSET = 0;
+  private static final int SLOT_SIZE_OFFSET = Integer.BYTES;
+  private static final int HEADER_LENGTH = BitUtil.CACHE_LINE_LENGTH;
+
+  /** Frames requested from a sender at once. */
+  private static final int SENDER_PREFETCH = 64;
+
+  /** Frames read at most per poll, to not starve the other connections of the event loop. */
+  private static final int READ_LIMIT = 64;
+
+  private final ShmChannel in;
+  private final ShmChannel out;
+  private final ShmEventLoop eventLoop;
+  // the file of the client end, null for the server end which deleted it already
+  private final @Nullable File file;
+  // client streams have odd ids
+  private final boolean client;
+  private final IntSupplier task;
+  private final UnicastProcessor<Frame> receiver;
+  private final MonoProcessor<Void> closeNotifier;
+  private final Set<Sender> senders;
+  private final long heartbeatIntervalMillis;
+  private final long heartbeatTimeoutMillis;
+  private final long createdTime;
+  // only accessed by the event loop
+  private long heartbeat;
+
+  private volatile boolean closing;
+  private volatile boolean closed;
+
+  private ShmDuplexConnection(
+      ShmChannel in,
+      ShmChannel out,
+      ShmEventLoop eventLoop,
+      @Nullable File file,
+      boolean client,
+      long heartbeatIntervalMillis,
+      long heartbeatTimeoutMillis) {
+    this.in = in;
+    this.out = out;
+    this.eventLoop = eventLoop;
+    this.file = file;
+    this.client = client;
+    this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+    this.heartbeatTimeoutMillis = heartbeatTimeoutMillis;
+    this.createdTime = System.currentTimeMillis();
+    this.heartbeat = createdTime;
+    out.heartbeat(createdTime);
+    this.task = this::poll;
+    this.receiver = UnicastProcessor.create();
+    this.closeNotifier = MonoProcessor.create();
+    this.senders = ConcurrentHashMap.newKeySet();
+    eventLoop.add(task);
+  }
+
+  /** Creates the {@code file} of a new connection, and returns the client end of it. */
+  static ShmDuplexConnection create(
+      File file, int slotCount, int slotSize, ShmEventLoop eventLoop) {
+    return create(
+        file,
+        slotCount,
+        slotSize,
+        eventLoop,
+        ShmServerTransport.HEARTBEAT_INTERVAL_MILLIS,
+        ShmServerTransport.HEARTBEAT_TIMEOUT_MILLIS);
+  }
+
+  static ShmDuplexConnection create(
+      File file,
+      int slotCount,
+      int slotSize,
+      ShmEventLoop eventLoop,
+      long heartbeatIntervalMillis,
+      long heartbeatTimeoutMillis) {
+    int channelLength = ShmChannel.length(slotCount, slotSize);
+    MappedByteBuffer mapped = ShmFiles.mapNew(file, HEADER_LENGTH + 2L * channelLength);
+    UnsafeBuffer header = new UnsafeBuffer(mapped, 0, HEADER_LENGTH);
+    header.putInt(SLOT_COUNT_OFFSET, slotCount);
+    header.putInt(SLOT_SIZE_OFFSET, slotSize);
+
+    ShmChannel toServer = new ShmChannel(mapped, HEADER_LENGTH, slotCount, slotSize);
+    ShmChannel toClient =
+        new ShmChannel(mapped, HEADER_LENGTH + channelLength, slotCount, slotSize);
+    return new ShmDuplexConnection(
+        toClient,
+        toServer,
+        eventLoop,
+        file,
+        true,
+        heartbeatIntervalMillis,
+        heartbeatTimeoutMillis);
+  }
+
+  /**
+   * Opens the {@code file} created by a client, and returns the server end of the connection. The
+   * file is deleted, it stays mapped until both ends are garbage collected.
+   */
+  static ShmDuplexConnection open(File file, ShmEventLoop eventLoop) {
+    return open(
+        file,
+        eventLoop,
+        ShmServerTransport.HEARTBEAT_INTERVAL_MILLIS,
+        ShmServerTransport.HEARTBEAT_TIMEOUT_MILLIS);
+  }
+
+  static ShmDuplexConnection open(
+      File file, ShmEventLoop eventLoop, long heartbeatIntervalMillis, long heartbeatTimeoutMillis) {
+    MappedByteBuffer mapped = ShmFiles.mapExisting(file);
+    ShmFiles.delete(file);
+    UnsafeBuffer header = new UnsafeBuffer(mapped, 0, HEADER_LENGTH);
+    int slotCount = header.getInt(SLOT_COUNT_OFFSET);
+    int slotSize = header.getInt(SLOT_SIZE_OFFSET);
+    int channelLength = ShmChannel.length(slotCount, slotSize);
+    if (mapped.capacity() < HEADER_LENGTH + 2L * channelLength) {
+      throw new IllegalStateException("Truncated connection file: " + file);
+    }
+
+    ShmChannel toServer = new ShmChannel(mapped, HEADER_LENGTH, slotCount, slotSize);
+    ShmChannel toClient =
+        new ShmChannel(mapped, HEADER_LENGTH + channelLength, slotCount, slotSize);
+    return new ShmDuplexConnection(
+        toServer,
+        toClient,
+        eventLoop,
+        null,
+        false,
+        heartbeatIntervalMillis,
+        heartbeatTimeoutMillis);
+  }
+
+  @Override
+  public Mono<Void> send(Publisher<Frame> frames) {
+    return Mono.create(sink -> frames.subscribe(new Sender(this, sink)));
+  }
+
+  @Override
+  public Flux<Frame> receive() {
+    return receiver;
+  }
+
+  @Override
+  public Mono<Void> close() {
+    return Mono.defer(
+        () -> {
+          closing = true;
+          eventLoop.wakeup();
+          return closeNotifier;
+        });
+  }
+
+  @Override
+  public Mono<Void> onClose() {
+    return closeNotifier;
+  }
+
+  @Override
+  public double availability() {
+    return closeNotifier.isDisposed() ? 0.0 : 1.0;
+  }
+
+  /** Writes the frames of the senders and reads the received frames, on the event loop. */
+  private int poll() {
+    if (closing) {
+      terminate();
+      return 1;
+    }
+
+    long now = System.currentTimeMillis();
+    if (now - heartbeat >= heartbeatIntervalMillis) {
+      heartbeat = now;
+      out.heartbeat(now);
+    }
+
+    int work = 0;
+    for (Sender sender : senders) {
+      work += sender.write();
+    }
+
+    // closed is checked first, so no frame written before closing is missed
+    boolean peerClosed = in.isClosed();
+    int read = 0;
+    ByteBuf content;
+    while (read < READ_LIMIT && (content = in.poll()) != null) {
+      receiver.onNext(Frame.from(content));
+      read++;
+    }
+    if (read == 0 && peerClosed) {
+      terminate();
+    } else if (read == 0 && isPeerStale(now)) {
+      logger.warn("Closing shared memory connection, the peer stopped responding");
+      terminate();
+    }
+
+    return work + read;
+  }
+
+  /** Returns whether the peer has not written a heartbeat for too long, e.g. as it crashed. */
+  private boolean isPeerStale(long now) {
+    // a client counts from its creation until the server opened the connection
+    return now - Math.max(in.heartbeatTime(), createdTime) >= heartbeatTimeoutMillis;
+  }
+
+  private void terminate() {
+    if (closed) {
+      return;
+    }
+
+    closed = true;
+    eventLoop.remove(task);
+    out.close();
+    deleteUnopenedFile();
+    senders.forEach(Sender::cancel);
+    receiver.onComplete();
+    closeNotifier.onComplete();
+  }
+
+  /**
+   * Deletes the file of a client end the server never opened. Once the server wrote a heartbeat it
+   * deleted the file itself, and the name may already belong to another connection.
+   */
+  private void deleteUnopenedFile() {
+    if (file == null || in.heartbeatTime() != 0) {
+      return;
+    }
+    try {
+      ShmFiles.delete(file);
+    } catch (RuntimeException e) {
+      logger.warn("Could not delete shared memory connection file " + file, e);
+    }
+  }
+
+  private static final class Sender implements Subscriber<Frame> {
+
+    private static final AtomicIntegerFieldUpdater<Sender> TERMINATED =
+        AtomicIntegerFieldUpdater.newUpdater(Sender.class, "terminated");
+
+    private final ShmDuplexConnection connection;
+    private final MonoSink<Void> sink;
+    private final Queue<Frame> queue;
+    // an ERROR frame to the peer, written before the queued frames
+    private @Nullable Frame rejection;
+    private volatile Subscription subscription;
+    private volatile boolean done;
+    private volatile @Nullable Throwable error;
+    private volatile boolean cancelled;
+    private volatile int terminated;
+
+    private Sender(ShmDuplexConnection connection, MonoSink<Void> sink) {
+      this.connection = connection;
+      this.sink = sink;
+      this.queue = new OneToOneConcurrentArrayQueue<>(SENDER_PREFETCH);
+    }
+
+    @Override
+    public void onSubscribe(Subscription s) {
+      subscription = s;
+      connection.senders.add(this);
+      sink.onCancel(
+          () -> {
+            cancelled = true;
+            connection.eventLoop.wakeup();
+          });
+      if (connection.closed) {
+        cancel();
+      } else {
+        s.request(SENDER_PREFETCH);
+      }
+    }
+
+    @Override
+    public void onNext(Frame frame) {
+      if (terminated != 0 || !queue.offer(frame)) {
+        frame.release();
+        return;
+      }
+      connection.eventLoop.wakeup();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      error = t;
+      done = true;
+      connection.eventLoop.wakeup();
+    }
+
+    @Override
+    public void onComplete() {
+      done = true;
+      connection.eventLoop.wakeup();
+    }
+
+    /** Writes the queued frames while there are free slots, on the event loop. */
+    private int write() {
+      if (cancelled) {
+        cancel();
+        return 0;
+      }
+
+      if (rejection != null) {
+        if (!connection.out.offer(rejection.content())) {
+          return 0;
+        }
+        rejection.release();
+        rejection = null;
+      }
+
+      boolean d = done;
+      int written = 0;
+      Frame frame;
+      while ((frame = queue.peek()) != null) {
+        int length = frame.content().readableBytes();
+        if (length > connection.out.maxFrameLength()) {
+          IllegalArgumentException e =
+              new IllegalArgumentException(
+                  "Frame of length "
+                      + length
+                      + " exceeds the maximum of "
+                      + connection.out.maxFrameLength());
+          if (frame.getStreamId() == 0) {
+            subscription.cancel();
+            terminate(e);
+            return written;
+          }
+
+          queue.poll();
+          reject(frame, e);
+          written++;
+          if (!connection.out.offer(rejection.content())) {
+            break;
+          }
+          rejection.release();
+          rejection = null;
+          continue;
+        }
+
+        if (!connection.out.offer(frame.content())) {
+          break;
+        }
+        queue.poll();
+        frame.release();
+        written++;
+      }
+
+      if (d && queue.isEmpty() && rejection == null) {
+        terminate(error);
+      } else if (written != 0) {
+        subscription.request(written);
+      }
+      return written;
+    }
+
+    /** Fails the stream of a {@code frame} too large to be written, and releases the frame. */
+    private void reject(Frame frame, Throwable e) {
+      int streamId = frame.getStreamId();
+      frame.release();
+      rejection = Frame.Error.from(streamId, e);
+
+      boolean requested = ((streamId & 1) == 1) == connection.client;
+      connection.receiver.onNext(
+          requested ? Frame.Error.from(streamId, e) : Frame.Cancel.from(streamId));
+    }
+
+    /** Cancels the frames not written yet. */
+    private void cancel() {
+      subscription.cancel();
+      terminate(null);
+    }
+
+    private void terminate(@Nullable Throwable t) {
+      if (!TERMINATED.compareAndSet(this, 0, 1)) {
+        return;
+      }
+
+      connection.senders.remove(this);
+      if (rejection != null) {
+        rejection.release();
+        rejection = null;
+      }
+      Frame frame;
+      while ((frame = queue.poll()) != null) {
+        frame.release();
+      }
+      if (t == null) {
+        sink.success();
+      } else {
+        sink.error(t);
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+import org.agrona.concurrent.BackoffIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The thread that polls the shared memory of all servers and connections of this process, as there
+ * is nothing to wait on for data written by another process. The thread spins while there is work
+ * and backs off to parking for up to {@link #MAX_PARK_MICROS} when idle. Without any task it parks
+ * until {@link #add(IntSupplier)} wakes it up.
+ */
+final class ShmEventLoop {
+  private static final Logger logger = LoggerFactory.getLogger(ShmEventLoop.class);
+
+  private static final long MAX_PARK_MICROS = 100;
+
+  private static final ShmEventLoop INSTANCE = new ShmEventLoop();
+
+  private final CopyOnWriteArrayList<IntSupplier> tasks = new CopyOnWriteArrayList<>();
+  private final Thread thread;
+
+  private ShmEventLoop() {
+    thread = new Thread(this::run, "rsocket-shm-event-loop");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  static ShmEventLoop get() {
+    return INSTANCE;
+  }
+
+  /**
+   * Runs the {@code task} on every iteration until it is removed.
+   *
+   * @param task does some work and returns the amount done, zero if there was nothing to do.
+   */
+  void add(IntSupplier task) {
+    tasks.add(task);
+    wakeup();
+  }
+
+  void remove(IntSupplier task) {
+    tasks.remove(task);
+  }
+
+  /** Wakes up the loop if it parks, for work that was not polled for. */
+  void wakeup() {
+    if (Thread.currentThread() != thread) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  private void run() {
+    IdleStrategy idleStrategy =
+        new BackoffIdleStrategy(100, 10, 1, TimeUnit.MICROSECONDS.toNanos(MAX_PARK_MICROS));
+    while (true) {
+      if (tasks.isEmpty()) {
+        // add() unparks after adding, so a task added since the check is not missed
+        LockSupport.park(this);
+        idleStrategy.reset();
+        continue;
+      }
+
+      int work = 0;
+      for (IntSupplier task : tasks) {
+        try {
+          work += task.getAsInt();
+        } catch (Throwable t) {
+          logger.error("Error polling shared memory.", t);
+        }
+      }
+      idleStrategy.idle(work);
+    }
+  }
+}
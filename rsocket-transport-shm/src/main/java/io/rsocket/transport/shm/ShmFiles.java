@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Maps the files shared with other processes. Files are never unmapped explicitly, as frames may
+ * still be read from them, the mapping is released once the buffers are garbage collected.
+ *
+ * <p>Files are created readable and writable by their owner only, so the processes of a server and
+ * its clients must run as the same user.
+ */
+final class ShmFiles {
+
+  /** Where the files are created, {@code /dev/shm} or the temporary directory if it is missing. */
+  static final File DIRECTORY =
+      new File("/dev/shm").isDirectory()
+          ? new File("/dev/shm")
+          : new File(System.getProperty("java.io.tmpdir"));
+
+  private static final Set<OpenOption> CREATE_NEW =
+      new HashSet<>(
+          Arrays.asList(
+              StandardOpenOption.CREATE_NEW,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE,
+              LinkOption.NOFOLLOW_LINKS));
+
+  private static final FileAttribute<?>[] OWNER_ONLY =
+      FileSystems.getDefault().supportedFileAttributeViews().contains("posix")
+          ? new FileAttribute<?>[] {
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))
+          }
+          : new FileAttribute<?>[0];
+
+  private ShmFiles() {}
+
+  /**
+   * Creates the {@code file} filled with zeros, readable and writable by its owner only, and maps
+   * it. Fails if the {@code file} exists, so neither a file nor a link planted by another user is
+   * ever opened instead. A file created but not mapped is deleted again.
+   */
+  static MappedByteBuffer mapNew(File file, long length) {
+    FileChannel channel;
+    try {
+      channel = FileChannel.open(file.toPath(), CREATE_NEW, OWNER_ONLY);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error creating " + file, e);
+    }
+    boolean mapped = false;
+    try (FileChannel c = channel) {
+      MappedByteBuffer buffer = c.map(FileChannel.MapMode.READ_WRITE, 0, length);
+      mapped = true;
+      return buffer;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error mapping " + file, e);
+    } finally {
+      if (!mapped) {
+        delete(file);
+      }
+    }
+  }
+
+  /** Maps the whole of an existing {@code file}, which must not be a link. */
+  static MappedByteBuffer mapExisting(File file) {
+    try (FileChannel channel =
+        FileChannel.open(
+            file.toPath(),
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+            LinkOption.NOFOLLOW_LINKS)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error mapping " + file, e);
+    }
+  }
+
+  static void delete(File file) {
+    try {
+      Files.deleteIfExists(file.toPath());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error deleting " + file, e);
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import io.rsocket.Closeable;
+import io.rsocket.transport.ServerTransport;
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.ManyToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+/**
+ * A server for processes on the same host, connecting through memory-mapped files in {@code
+ * /dev/shm}, or the temporary directory where it does not exist.
+ *
+ * <p>The server maps a file named after it, with a ring buffer that clients write the ids of new
+ * connections to. Each connection has its own file, see {@link ShmDuplexConnection}.
+ */
+public class ShmServerTransport implements ServerTransport<Closeable> {
+  private static final Logger logger = LoggerFactory.getLogger(ShmServerTransport.class);
+
+  static final int MSG_TYPE_CONNECT = 1;
+
+  private static final int ACCEPT_CAPACITY = 64 * 1024;
+  private static final int ACCEPT_LIMIT = 16;
+  static final long HEARTBEAT_INTERVAL_MILLIS = 1_000;
+  static final long HEARTBEAT_TIMEOUT_MILLIS = 5_000;
+
+  private final String name;
+
+  private ShmServerTransport(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Creates a server accepting connections on a file named after {@code name}. The slots of each
+   * connection are sized by the client, see {@link ShmClientTransport#create(String, int, int)}.
+   */
+  public static ShmServerTransport create(String name) {
+    return new ShmServerTransport(name);
+  }
+
+  /** Returns the file a server of the given name accepts connections on. */
+  static File file(String name) {
+    return new File(ShmFiles.DIRECTORY, "rsocket-" + name);
+  }
+
+  /** Returns the file of a connection to the server accepting on {@code file}. */
+  static File connectionFile(File file, long connectionId) {
+    return new File(file.getPath() + "-" + connectionId);
+  }
+
+  /** Returns whether a server polls the {@code acceptRing}, it may be a leftover of a crash. */
+  static boolean isRunning(ManyToOneRingBuffer acceptRing) {
+    return System.currentTimeMillis() - acceptRing.consumerHeartbeatTime()
+        < HEARTBEAT_TIMEOUT_MILLIS;
+  }
+
+  @Override
+  public Mono<Closeable> start(ConnectionAcceptor acceptor) {
+    return Mono.create(
+        sink -> {
+          File file = file(name);
+          if (file.exists()
+              && isRunning(new ManyToOneRingBuffer(new UnsafeBuffer(ShmFiles.mapExisting(file))))) {
+            throw new IllegalStateException("name already registered: " + name);
+          }
+
+          // a file left over by a crashed server is replaced
+          ShmFiles.delete(file);
+          MappedByteBuffer mapped =
+              ShmFiles.mapNew(file, ACCEPT_CAPACITY + RingBufferDescriptor.TRAILER_LENGTH);
+          ShmServer server =
+              new ShmServer(file, new ManyToOneRingBuffer(new UnsafeBuffer(mapped)), acceptor);
+          ShmEventLoop.get().add(server.task);
+          sink.success(server);
+        });
+  }
+
+  private static class ShmServer implements Closeable {
+    private final File file;
+    private final ManyToOneRingBuffer acceptRing;
+    private final ConnectionAcceptor acceptor;
+    private final IntSupplier task;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final MonoProcessor<Void> closeNotifier = MonoProcessor.create();
+    private long heartbeat;
+
+    private ShmServer(File file, ManyToOneRingBuffer acceptRing, ConnectionAcceptor acceptor) {
+      this.file = file;
+      this.acceptRing = acceptRing;
+      this.acceptor = acceptor;
+      this.task = this::poll;
+      heartbeat = System.currentTimeMillis();
+      acceptRing.consumerHeartbeatTime(heartbeat);
+    }
+
+    private int poll() {
+      long now = System.currentTimeMillis();
+      if (now - heartbeat >= HEARTBEAT_INTERVAL_MILLIS) {
+        heartbeat = now;
+        acceptRing.consumerHeartbeatTime(now);
+      }
+      return acceptRing.read(this::accept, ACCEPT_LIMIT);
+    }
+
+    private void accept(int msgTypeId, MutableDirectBuffer buffer, int index, int length) {
+      if (msgTypeId != MSG_TYPE_CONNECT) {
+        logger.warn("Ignoring message of unknown type {} on {}", msgTypeId, file);
+        return;
+      }
+
+      File connectionFile = connectionFile(file, buffer.getLong(index));
+      try {
+        ShmDuplexConnection connection =
+            ShmDuplexConnection.open(connectionFile, ShmEventLoop.get());
+        acceptor.apply(connection).subscribe();
+      } catch (Exception e) {
+        logger.error("Error accepting connection " + connectionFile, e);
+      }
+    }
+
+    @Override
+    public Mono<Void> close() {
+      return Mono.defer(
+          () -> {
+            if (closed.compareAndSet(false, true)) {
+              ShmEventLoop.get().remove(task);
+              ShmFiles.delete(file);
+              closeNotifier.onComplete();
+            }
+            return closeNotifier;
+          });
+    }
+
+    @Override
+    public Mono<Void> onClose() {
+      return closeNotifier;
+    }
+  }
+}
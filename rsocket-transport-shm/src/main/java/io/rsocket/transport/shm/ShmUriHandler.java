@@ -0,0 +1,48 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import io.rsocket.transport.ClientTransport;
+import io.rsocket.transport.ServerTransport;
+import io.rsocket.uri.UriHandler;
+import java.net.URI;
+import java.util.Optional;
+
+/** Handles {@code shm://name} and {@code shm:name} URIs. */
+public class ShmUriHandler implements UriHandler {
+  @Override
+  public Optional<ClientTransport> buildClient(URI uri) {
+    if (uri.getScheme().equals("shm")) {
+      return Optional.of(ShmClientTransport.create(name(uri)));
+    }
+
+    return UriHandler.super.buildClient(uri);
+  }
+
+  @Override
+  public Optional<ServerTransport> buildServer(URI uri) {
+    if (uri.getScheme().equals("shm")) {
+      return Optional.of(ShmServerTransport.create(name(uri)));
+    }
+
+    return UriHandler.super.buildServer(uri);
+  }
+
+  private static String name(URI uri) {
+    return uri.getAuthority() != null ? uri.getAuthority() : uri.getSchemeSpecificPart();
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class ShmChannelTest {
+
+  @Test
+  public void testSlotReusedOnceReleased() {
+    ShmChannel channel = channel(2, 16);
+    assertThat(channel.offer(frame("first")), is(true));
+    assertThat(channel.offer(frame("second")), is(true));
+    assertThat("Slot overwritten.", channel.offer(frame("third")), is(false));
+
+    ByteBuf first = channel.poll();
+    assertThat(text(first), is("first"));
+    assertThat(channel.offer(frame("third")), is(true));
+
+    assertThat(text(channel.poll()), is("second"));
+    assertThat(text(channel.poll()), is("third"));
+    assertThat("Unexpected frame.", channel.poll(), is(nullValue()));
+  }
+
+  @Test
+  public void testReleaseOutOfOrder() {
+    ShmChannel channel = channel(4, 16);
+    for (int i = 0; i < 4; i++) {
+      assertThat(channel.offer(frame("frame" + i)), is(true));
+    }
+
+    ByteBuf[] frames = new ByteBuf[4];
+    for (int i = 0; i < 4; i++) {
+      frames[i] = channel.poll();
+    }
+    frames[2].release();
+
+    assertThat(channel.offer(frame("reused")), is(true));
+    assertThat("Slot overwritten.", channel.offer(frame("full")), is(false));
+    assertThat(text(frames[0]), is("frame0"));
+    assertThat(text(channel.poll()), is("reused"));
+  }
+
+  @Test
+  public void testSplitFrameLargerThanSlot() {
+    ShmChannel channel = channel(4, 16);
+    String text = "a frame that is longer than a slot";
+    assertThat(channel.offer(frame(text)), is(true));
+    assertThat(channel.offer(frame("small")), is(true));
+
+    assertThat(text(channel.poll()), is(text));
+    assertThat(text(channel.poll()), is("small"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectFrameLargerThanAllSlots() {
+    channel(2, 16).offer(Unpooled.buffer().writeZero(33));
+  }
+
+  @Test
+  public void testReadFramesWrittenBeforeClose() {
+    ShmChannel channel = channel(2, 16);
+    channel.offer(frame("last"));
+    channel.close();
+
+    assertThat(channel.isClosed(), is(true));
+    ByteBuf last = channel.poll();
+    assertThat("Frame lost on close.", last, is(notNullValue()));
+    assertThat(text(last), is("last"));
+  }
+
+  private static ShmChannel channel(int slotCount, int slotSize) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(64 + ShmChannel.length(slotCount, slotSize));
+    return new ShmChannel(buffer, 64, slotCount, slotSize);
+  }
+
+  private static ByteBuf frame(String text) {
+    return Unpooled.copiedBuffer(text, StandardCharsets.UTF_8);
+  }
+
+  private static String text(ByteBuf frame) {
+    try {
+      return frame.toString(StandardCharsets.UTF_8);
+    } finally {
+      frame.release();
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rsocket.transport.shm;
+package io.rsocket.transport.shm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.UUID;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class ShmFilesTest {
+  private final File file = new File(ShmFiles.DIRECTORY, "rsocket-test-" + UUID.randomUUID());
+  private final File target = new File(file.getPath() + "-target");
+
+  @After
+  public void teardown() {
+    ShmFiles.delete(file);
+    ShmFiles.delete(target);
+  }
+
+  @Test
+  public void testCreateOwnerOnly() throws IOException {
+    Assume.assumeTrue(
+        file.toPath().getFileSystem().supportedFileAttributeViews().contains("posix"));
+    ShmFiles.mapNew(file, 64);
+
+    assertThat(
+        PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())),
+        is("rw-------"));
+  }
+
+  @Test(expected = UncheckedIOException.class)
+  public void testNotCreateExisting() throws IOException {
+    Files.createFile(file.toPath());
+    ShmFiles.mapNew(file, 64);
+  }
+
+  @Test
+  public void testNotFollowLink() throws IOException {
+    Files.createFile(target.toPath());
+    try {
+      Files.createSymbolicLink(file.toPath(), target.toPath());
+    } catch (UnsupportedOperationException e) {
+      Assume.assumeNoException(e);
+    }
+
+    try {
+      ShmFiles.mapNew(file, 64);
+    } catch (UncheckedIOException expected) {
+      assertThat("Target written through the link.", target.length(), is(0L));
+      return;
+    }
+    throw new AssertionError("Mapped a link.");
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rsocket.transport.shm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import io.rsocket.AbstractRSocket;
+import io.rsocket.Closeable;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.RSocketFactory;
+import io.rsocket.util.PayloadImpl;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class ShmFrameLengthTest {
+  // frames of at most 256 bytes in either direction
+  private static final int SLOT_COUNT = 4;
+  private static final int SLOT_SIZE = 64;
+
+  private Closeable server;
+  private RSocket client;
+
+  @Before
+  public void setup() {
+    String name = "test-" + UUID.randomUUID();
+    server =
+        RSocketFactory.receive()
+            .acceptor((setup, sendingSocket) -> Mono.just(new EchoRSocket()))
+            .transport(ShmServerTransport.create(name))
+            .start()
+            .block();
+    client =
+        RSocketFactory.connect()
+            .transport(ShmClientTransport.create(name, SLOT_COUNT, SLOT_SIZE))
+            .start()
+            .block();
+  }
+
+  @After
+  public void teardown() {
+    client.close().block();
+    server.close().block();
+  }
+
+  @Test(timeout = 10_000)
+  public void testRequestLargerThanAllSlots() {
+    StepVerifier.create(client.requestResponse(new PayloadImpl(repeat('a', 1024))))
+        .expectError()
+        .verify();
+    assertEcho("small");
+  }
+
+  @Test(timeout = 10_000)
+  public void testResponseLargerThanAllSlots() {
+    StepVerifier.create(client.requestResponse(new PayloadImpl("large"))).expectError().verify();
+    assertEcho("small");
+  }
+
+  private void assertEcho(String data) {
+    Payload response = client.requestResponse(new PayloadImpl(data)).block();
+    assertThat(StandardCharsets.UTF_8.decode(response.getData()).toString(), is(data));
+  }
+
+  private static String repeat(char c, int times) {
+    StringBuilder builder = new StringBuilder(times);
+    for (int i = 0; i < times; i++) {
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+
+  /** Echoes the data of a request, except for "large", which it answers with 1 KiB of data. */
+  private static class EchoRSocket extends AbstractRSocket {
+    @Override
+    public Mono<Payload> requestResponse(Payload payload) {
+      String data = StandardCharsets.UTF_8.decode(payload.getData()).toString();
+      return Mono.just(new PayloadImpl(data.equals("large") ? repeat('b', 1024) : data));
+    }
+  }
+}
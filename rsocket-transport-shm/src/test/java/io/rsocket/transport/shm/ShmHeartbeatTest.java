@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.rsocket.transport.shm;
+package io.rsocket.transport.shm;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.UUID;
+import org.junit.Test;
+import reactor.test.StepVerifier;
+
+public class ShmHeartbeatTest {
+  private static final long INTERVAL_MILLIS = 10;
+  private static final long TIMEOUT_MILLIS = 200;
+
+  private final File file = new File(ShmFiles.DIRECTORY, "rsocket-test-" + UUID.randomUUID());
+
+  @Test(timeout = 10_000)
+  public void testCloseWhenPeerIsGone() {
+    // no server ever opens the connection, as if it crashed
+    ShmDuplexConnection client = create();
+
+    StepVerifier.create(client.onClose()).expectComplete().verify(Duration.ofSeconds(5));
+    assertThat("Unopened file not deleted.", file.exists(), is(false));
+  }
+
+  @Test(timeout = 10_000)
+  public void testDeleteUnopenedFileOnClose() {
+    ShmDuplexConnection client = create();
+    assertThat("File not created.", file.exists(), is(true));
+
+    client.close().block();
+    assertThat("Unopened file not deleted.", file.exists(), is(false));
+  }
+
+  @Test(timeout = 10_000)
+  public void testStayOpenWhilePeerIsAlive() throws InterruptedException {
+    ShmDuplexConnection client = create();
+    ShmDuplexConnection server =
+        ShmDuplexConnection.open(file, ShmEventLoop.get(), INTERVAL_MILLIS, TIMEOUT_MILLIS);
+    assertThat("Opened file not deleted.", file.exists(), is(false));
+
+    Thread.sleep(3 * TIMEOUT_MILLIS);
+    assertThat("Client closed.", client.availability(), is(1.0));
+    assertThat("Server closed.", server.availability(), is(1.0));
+
+    client.close().block();
+    StepVerifier.create(server.onClose()).expectComplete().verify(Duration.ofSeconds(5));
+  }
+
+  private ShmDuplexConnection create() {
+    return ShmDuplexConnection.create(
+        file, 4, 64, ShmEventLoop.get(), INTERVAL_MILLIS, TIMEOUT_MILLIS);
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Netflix, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.transport.shm;
+
+import static org.junit.Assert.assertTrue;
+
+import io.rsocket.transport.ClientTransport;
+import io.rsocket.transport.ServerTransport;
+import io.rsocket.uri.UriTransportRegistry;
+import org.junit.Test;
+
+public class ShmUriTransportRegistryTest {
+  @Test
+  public void testShmClient() {
+    ClientTransport transport = UriTransportRegistry.clientForUri("shm://test1");
+
+    assertTrue(transport instanceof ShmClientTransport);
+  }
+
+  @Test
+  public void testShmServer() {
+    ServerTransport transport = UriTransportRegistry.serverForUri("shm://test1");
+
+    assertTrue(transport instanceof ShmServerTransport);
+  }
+}